@@ -70,6 +70,7 @@ import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hbase.thirdparty.com.google.common.base.Preconditions;
 import org.apache.hbase.thirdparty.io.netty.buffer.ByteBuf;
 import org.apache.hbase.thirdparty.io.netty.buffer.ByteBufAllocator;
+import org.apache.hbase.thirdparty.io.netty.buffer.CompositeByteBuf;
 import org.apache.hbase.thirdparty.io.netty.channel.Channel;
 import org.apache.hbase.thirdparty.io.netty.channel.ChannelFuture;
 import org.apache.hbase.thirdparty.io.netty.channel.ChannelHandler.Sharable;
@@ -100,6 +101,11 @@ import org.apache.hbase.thirdparty.io.netty.handler.timeout.IdleStateHandler;
  * ASAP.</li>
  * <li>We could benefit from netty's ByteBuf management mechanism.</li>
  * </ol>
+ * <p>
+ * The data is buffered in a {@link CompositeByteBuf} which grows by adding new components, so the
+ * buffered data is never copied to a bigger buffer when a large write comes in. The capacity of the
+ * components is kept a multiple of the checksum chunk size, so the checksums are calculated over
+ * the components in place.
  */
 @InterfaceAudience.Private
 public class FanOutOneBlockAsyncDFSOutput implements AsyncFSOutput {
@@ -370,21 +376,45 @@ public class FanOutOneBlockAsyncDFSOutput implements AsyncFSOutput {
     this.summer = summer;
     this.maxDataLen = MAX_DATA_LEN - (MAX_DATA_LEN % summer.getBytesPerChecksum());
     this.alloc = alloc;
-    this.buf = alloc.directBuffer(sendBufSizePRedictor.initialSize());
+    this.buf = newBuffer(sendBufSizePRedictor.initialSize());
     this.state = State.STREAMING;
     setupReceiver(conf.getInt(DFS_CLIENT_SOCKET_TIMEOUT_KEY, READ_TIMEOUT));
     this.streamSlowMonitor = streamSlowMonitor;
   }
 
+  private int alignToChunk(int len) {
+    int chunkLen = summer.getBytesPerChecksum();
+    return (len + chunkLen - 1) / chunkLen * chunkLen;
+  }
+
+  private CompositeByteBuf newBuffer(int capacity) {
+    CompositeByteBuf newBuf = alloc.compositeDirectBuffer(Integer.MAX_VALUE);
+    newBuf.capacity(alignToChunk(capacity));
+    return newBuf;
+  }
+
+  /**
+   * Make room for {@code len} more bytes by adding a component, at least as big as what we have
+   * already, instead of letting netty copy the buffered data to a bigger buffer.
+   */
+  private void ensureWritable(int len) {
+    int writable = buf.writableBytes();
+    if (writable >= len) {
+      return;
+    }
+    int capacity = buf.capacity();
+    buf.capacity(alignToChunk(capacity + Math.max(len - writable, capacity)));
+  }
+
   @Override
   public void writeInt(int i) {
-    buf.ensureWritable(4);
+    ensureWritable(4);
     buf.writeInt(i);
   }
 
   @Override
   public void write(ByteBuffer bb) {
-    buf.ensureWritable(bb.remaining());
+    ensureWritable(bb.remaining());
     buf.writeBytes(bb);
   }
 
@@ -395,7 +425,7 @@ public class FanOutOneBlockAsyncDFSOutput implements AsyncFSOutput {
 
   @Override
   public void write(byte[] b, int off, int len) {
-    buf.ensureWritable(len);
+    ensureWritable(len);
     buf.writeBytes(b, off, len);
   }
 
@@ -409,6 +439,35 @@ public class FanOutOneBlockAsyncDFSOutput implements AsyncFSOutput {
     return locations;
   }
 
+  /**
+   * Calculate the checksums of the data in place. As the components of the buffer, except the last
+   * one, hold whole chunks, we can do it component by component. The data is only copied to a
+   * single buffer if this is not the case, e.g, when the buffer is not created by us.
+   */
+  private void calculateChunkedSums(ByteBuf dataBuf, ByteBuffer checksums) {
+    if (dataBuf.nioBufferCount() == 1) {
+      summer.calculateChunkedSums(dataBuf.nioBuffer(), checksums);
+      return;
+    }
+    int chunkLen = summer.getBytesPerChecksum();
+    ByteBuffer[] dataBufs = dataBuf.nioBuffers();
+    for (int i = 0; i < dataBufs.length - 1; i++) {
+      if (dataBufs[i].remaining() % chunkLen != 0) {
+        summer.calculateChunkedSums(dataBuf.nioBuffer(), checksums);
+        return;
+      }
+    }
+    int checksumOffset = checksums.position();
+    for (ByteBuffer bb : dataBufs) {
+      int numChecks = (bb.remaining() + chunkLen - 1) / chunkLen;
+      ByteBuffer sums = checksums.duplicate();
+      sums.position(checksumOffset);
+      checksumOffset += numChecks * summer.getChecksumSize();
+      sums.limit(checksumOffset);
+      summer.calculateChunkedSums(bb, sums);
+    }
+  }
+
   private void flushBuffer(CompletableFuture<Long> future, ByteBuf dataBuf,
     long nextPacketOffsetInBlock, boolean syncBlock) {
     int dataLen = dataBuf.readableBytes();
@@ -417,7 +476,7 @@ public class FanOutOneBlockAsyncDFSOutput implements AsyncFSOutput {
     int numChecks = dataLen / chunkLen + (trailingPartialChunkLen != 0 ? 1 : 0);
     int checksumLen = numChecks * summer.getChecksumSize();
     ByteBuf checksumBuf = alloc.directBuffer(checksumLen);
-    summer.calculateChunkedSums(dataBuf.nioBuffer(), checksumBuf.nioBuffer(0, checksumLen));
+    calculateChunkedSums(dataBuf, checksumBuf.nioBuffer(0, checksumLen));
     checksumBuf.writerIndex(checksumLen);
     PacketHeader header = new PacketHeader(4 + checksumLen + dataLen, nextPacketOffsetInBlock,
       nextPacketSeqno, false, dataLen, syncBlock);
@@ -526,8 +585,8 @@ public class FanOutOneBlockAsyncDFSOutput implements AsyncFSOutput {
       flushBuffer(future, buf.retain(), nextPacketOffsetInBlock, syncBlock);
     }
     trailingPartialChunkLength = dataLen % summer.getBytesPerChecksum();
-    ByteBuf newBuf = alloc.directBuffer(sendBufSizePRedictor.guess(dataLen))
-      .ensureWritable(trailingPartialChunkLength);
+    // the trailing partial chunk is always smaller than the aligned capacity
+    ByteBuf newBuf = newBuffer(sendBufSizePRedictor.guess(dataLen));
     if (trailingPartialChunkLength != 0) {
       buf.readerIndex(dataLen - trailingPartialChunkLength).readBytes(newBuf,
         trailingPartialChunkLength);
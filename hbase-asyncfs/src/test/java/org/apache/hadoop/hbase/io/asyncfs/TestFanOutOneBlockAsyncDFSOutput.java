@@ -273,4 +273,35 @@ public class TestFanOutOneBlockAsyncDFSOutput extends AsyncFSTestBase {
     }
     assertArrayEquals(b, actual);
   }
+
+  /**
+   * Grow the buffer several times within one packet, with writes which are not aligned with the
+   * checksum chunks, to make sure the checksums calculated over the buffer components are right.
+   */
+  @Test
+  public void testWriteGrowingBuffer()
+    throws IOException, InterruptedException, ExecutionException {
+    Path f = new Path("/" + name.getMethodName());
+    EventLoop eventLoop = EVENT_LOOP_GROUP.next();
+    FanOutOneBlockAsyncDFSOutput out = FanOutOneBlockAsyncDFSOutputHelper.createOutput(FS, f, true,
+      false, (short) 3, FS.getDefaultBlockSize(), eventLoop, CHANNEL_CLASS, MONITOR);
+    byte[] b = new byte[3 * 1024 * 1024 + 123];
+    Bytes.random(b);
+    int off = 0;
+    for (int len : new int[] { 100, 5000, 30001, 1024 * 1024 }) {
+      out.write(b, off, len);
+      off += len;
+    }
+    out.flush(false).get();
+    // the trailing partial chunk of the last packet is followed by a big write too
+    out.write(b, off, b.length - off);
+    assertEquals(b.length, out.flush(false).get().longValue());
+    out.close();
+    assertEquals(b.length, FS.getFileStatus(f).getLen());
+    byte[] actual = new byte[b.length];
+    try (FSDataInputStream in = FS.open(f)) {
+      in.readFully(actual);
+    }
+    assertArrayEquals(b, actual);
+  }
 }
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.benchmarks.CellGenerator;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares neighbouring cells with {@link CellComparatorImpl}, as done when merging scanners or
+ * writing sorted cells, for on-heap {@link KeyValue}s and off-heap {@link ByteBufferKeyValue}s.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CellComparatorBenchmark {
+
+  private static final int CELLS = 4096;
+
+  @Param({ "false", "true" })
+  public boolean offheap;
+
+  @Param({ "16", "64" })
+  public int rowLength;
+
+  private Cell[] cells;
+  private Cell[] copies;
+  private int index;
+
+  private Cell[] generate() {
+    KeyValue[] keyValues = new CellGenerator().setRowLength(rowLength).generate(CELLS);
+    return offheap ? CellGenerator.toOffheap(keyValues) : keyValues;
+  }
+
+  @Setup
+  public void setup() {
+    cells = generate();
+    // Same seed, so equal cells in other buffers
+    copies = generate();
+  }
+
+  private int next() {
+    int i = index;
+    index = i + 2 == CELLS ? 0 : i + 1;
+    return i;
+  }
+
+  /** Cells of the same row, or of rows sharing a prefix. */
+  @Benchmark
+  public int compare() {
+    int i = next();
+    return CellComparatorImpl.COMPARATOR.compare(cells[i], cells[i + 1]);
+  }
+
+  @Benchmark
+  public int compareRows() {
+    int i = next();
+    return CellComparatorImpl.COMPARATOR.compareRows(cells[i], cells[i + 1]);
+  }
+
+  /** Equal cells, i.e. the whole keys are compared. */
+  @Benchmark
+  public int compareEqual() {
+    int i = next();
+    return CellComparatorImpl.COMPARATOR.compare(cells[i], copies[i]);
+  }
+}
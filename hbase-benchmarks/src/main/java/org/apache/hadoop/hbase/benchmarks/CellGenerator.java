@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hbase.thirdparty.com.google.common.base.Preconditions;
+
+/**
+ * Generates the cells the benchmarks work on from a seed, so that every run of a benchmark sees the
+ * same data. Rows are made of a zero-padded counter followed by random bytes, so neighbouring rows
+ * share a prefix as the keys of many tables do, and each row has the same set of qualifiers.
+ */
+@InterfaceAudience.Private
+public class CellGenerator {
+
+  public static final long DEFAULT_SEED = 0x5eed_cafeL;
+  public static final byte[] FAMILY = Bytes.toBytes("f");
+
+  private static final int ROW_COUNTER_LENGTH = 10;
+  private static final long TIMESTAMP = 1_600_000_000_000L;
+
+  private final Random rand;
+  private int rowLength = 24;
+  private int qualifierLength = 8;
+  private int valueLength = 64;
+  private int columnsPerRow = 4;
+
+  public CellGenerator() {
+    this(DEFAULT_SEED);
+  }
+
+  public CellGenerator(long seed) {
+    this.rand = new Random(seed);
+  }
+
+  public CellGenerator setRowLength(int rowLength) {
+    Preconditions.checkArgument(rowLength >= ROW_COUNTER_LENGTH, "Row length must be at least %s",
+      ROW_COUNTER_LENGTH);
+    this.rowLength = rowLength;
+    return this;
+  }
+
+  public CellGenerator setQualifierLength(int qualifierLength) {
+    Preconditions.checkArgument(qualifierLength >= 2, "Qualifier length must be at least 2");
+    this.qualifierLength = qualifierLength;
+    return this;
+  }
+
+  public CellGenerator setValueLength(int valueLength) {
+    this.valueLength = valueLength;
+    return this;
+  }
+
+  public CellGenerator setColumnsPerRow(int columnsPerRow) {
+    Preconditions.checkArgument(columnsPerRow > 0, "There must be at least one column per row");
+    this.columnsPerRow = columnsPerRow;
+    return this;
+  }
+
+  public Random getRandom() {
+    return rand;
+  }
+
+  public byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    rand.nextBytes(bytes);
+    return bytes;
+  }
+
+  /** Returns the i-th row, rows being in increasing order. */
+  public byte[] row(long i) {
+    byte[] row = new byte[rowLength];
+    Bytes.putBytes(row, 0, Bytes.toBytes(String.format("%010d", i)), 0, ROW_COUNTER_LENGTH);
+    for (int j = ROW_COUNTER_LENGTH; j < rowLength; j++) {
+      // Printable, like most row keys
+      row[j] = (byte) ('a' + rand.nextInt(26));
+    }
+    return row;
+  }
+
+  /** Returns the j-th qualifier of a row, qualifiers being in increasing order. */
+  public byte[] qualifier(int j) {
+    return Bytes.toBytes(String.format("q%0" + (qualifierLength - 1) + "d", j));
+  }
+
+  /**
+   * Generates count KeyValues of {@link #FAMILY}, in the order of
+   * {@link org.apache.hadoop.hbase.CellComparatorImpl}.
+   */
+  public KeyValue[] generate(int count) {
+    byte[][] qualifiers = new byte[columnsPerRow][];
+    for (int j = 0; j < columnsPerRow; j++) {
+      qualifiers[j] = qualifier(j);
+    }
+    KeyValue[] cells = new KeyValue[count];
+    for (int i = 0, r = 0; i < count; r++) {
+      byte[] row = row(r);
+      for (int j = 0; j < columnsPerRow && i < count; j++) {
+        cells[i++] = new KeyValue(row, FAMILY, qualifiers[j], TIMESTAMP, KeyValue.Type.Put,
+          randomBytes(valueLength));
+      }
+    }
+    return cells;
+  }
+
+  /** Copies the cells into a single direct ByteBuffer, as the cells of an off-heap block. */
+  public static Cell[] toOffheap(KeyValue[] cells) {
+    int size = 0;
+    for (KeyValue cell : cells) {
+      size += cell.getSerializedSize();
+    }
+    ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+    Cell[] offheap = new Cell[cells.length];
+    for (int i = 0; i < cells.length; i++) {
+      int offset = buffer.position();
+      buffer.put(cells[i].getBuffer(), cells[i].getOffset(), cells[i].getLength());
+      offheap[i] = new ByteBufferKeyValue(buffer, offset, cells[i].getLength());
+    }
+    return offheap;
+  }
+}
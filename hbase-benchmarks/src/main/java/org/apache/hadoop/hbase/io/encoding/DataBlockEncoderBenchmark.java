@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.encoding;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.benchmarks.CellGenerator;
+import org.apache.hadoop.hbase.io.ByteArrayOutputStream;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Encodes a data block with each {@link DataBlockEncoding}, then scans and seeks in the encoded
+ * block as the HFile reader does, with the block on or off heap.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DataBlockEncoderBenchmark {
+
+  /** About 64KB of cells, the default block size. */
+  private static final int CELLS = 512;
+  private static final int SEEKS = 1024;
+  private static final byte[] DUMMY_HEADER = new byte[HConstants.HFILEBLOCK_HEADER_SIZE];
+
+  @Param({ "PREFIX", "DIFF", "FAST_DIFF", "ROW_INDEX_V1" })
+  public DataBlockEncoding encoding;
+
+  @Param({ "false", "true" })
+  public boolean offheap;
+
+  private KeyValue[] cells;
+  private Cell[] seekKeys;
+  private int seekIndex;
+  private DataBlockEncoder encoder;
+  private HFileBlockEncodingContext encodingContext;
+  private ByteArrayOutputStream baos;
+  private ByteBuffer encodedBlock;
+  private DataBlockEncoder.EncodedSeeker seeker;
+
+  @Setup
+  public void setup() throws IOException {
+    CellGenerator generator = new CellGenerator();
+    cells = generator.generate(CELLS);
+    seekKeys = new Cell[SEEKS];
+    for (int i = 0; i < SEEKS; i++) {
+      seekKeys[i] = cells[generator.getRandom().nextInt(CELLS)];
+    }
+
+    Configuration conf = HBaseConfiguration.create();
+    HFileContext meta = new HFileContextBuilder().withHBaseCheckSum(false).withIncludesMvcc(true)
+      .withIncludesTags(false).build();
+    encoder = encoding.getEncoder();
+    encodingContext = encoder.newDataBlockEncodingContext(conf, encoding, DUMMY_HEADER, meta);
+    baos = new ByteArrayOutputStream(2 * CELLS * cells[0].getLength());
+    encode();
+
+    // Skip the header and the encoding id, as the HFile reader does
+    int offset = HConstants.HFILEBLOCK_HEADER_SIZE + DataBlockEncoding.ID_SIZE;
+    int length = baos.size() - offset;
+    encodedBlock = offheap ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+    encodedBlock.put(baos.getBuffer(), offset, length).flip();
+    seeker = encoder.createSeeker(encoder.newDataBlockDecodingContext(conf, meta));
+  }
+
+  @Benchmark
+  public int encode() throws IOException {
+    baos.reset();
+    baos.write(DUMMY_HEADER);
+    DataOutputStream out = new DataOutputStream(baos);
+    encoder.startBlockEncoding(encodingContext, out);
+    for (KeyValue cell : cells) {
+      encoder.encode(cell, encodingContext, out);
+    }
+    encoder.endBlockEncoding(encodingContext, out, baos.getBuffer());
+    return baos.size();
+  }
+
+  @Benchmark
+  public void scan(Blackhole bh) {
+    seeker.setCurrentBuffer(new SingleByteBuff(encodedBlock.duplicate()));
+    do {
+      bh.consume(seeker.getCell());
+    } while (seeker.next());
+  }
+
+  @Benchmark
+  public int seek() {
+    Cell key = seekKeys[seekIndex];
+    seekIndex = (seekIndex + 1) % SEEKS;
+    seeker.setCurrentBuffer(new SingleByteBuff(encodedBlock.duplicate()));
+    return seeker.seekToKeyInBlock(key, false);
+  }
+}
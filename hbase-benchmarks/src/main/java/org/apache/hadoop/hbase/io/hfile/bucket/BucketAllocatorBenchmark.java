@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.benchmarks.CellGenerator;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replaces random blocks of a {@link BucketAllocator} filled to a given ratio, as the BucketCache
+ * does once it is warm. Most blocks are data blocks of about 64KB, the others are smaller index and
+ * bloom blocks.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BucketAllocatorBenchmark {
+
+  private static final long CAPACITY = 4L * 1024 * 1024 * 1024;
+  private static final int SIZES = 64 * 1024;
+
+  @Param({ "0.5", "0.9" })
+  public double fillRatio;
+
+  private BucketAllocator allocator;
+  private Random rand;
+  private int[] sizes;
+  private int sizeIndex;
+  private long[] offsets;
+  private int[] lengths;
+
+  private int nextSize() {
+    int size = sizes[sizeIndex];
+    sizeIndex = (sizeIndex + 1) % SIZES;
+    return size;
+  }
+
+  private void allocate(int i) throws BucketAllocatorException {
+    lengths[i] = nextSize();
+    try {
+      offsets[i] = allocator.allocateBlock(lengths[i]);
+    } catch (CacheFullException e) {
+      // No free slot of this size, and no completely free bucket to take one from
+      offsets[i] = -1;
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setup() throws BucketAllocatorException {
+    CellGenerator generator = new CellGenerator();
+    rand = generator.getRandom();
+    sizes = new int[SIZES];
+    for (int i = 0; i < SIZES; i++) {
+      sizes[i] = rand.nextInt(20) == 0
+        ? 1024 + rand.nextInt(15 * 1024)
+        : 64 * 1024 + rand.nextInt(1024) - 512;
+    }
+    allocator = new BucketAllocator(CAPACITY, null);
+    int blocks = (int) (CAPACITY * fillRatio / (64 * 1024));
+    offsets = new long[blocks];
+    lengths = new int[blocks];
+    for (int i = 0; i < blocks; i++) {
+      allocate(i);
+    }
+  }
+
+  /** Frees a random block, then allocates one in its place. */
+  @Benchmark
+  public long replace() throws BucketAllocatorException {
+    int i = rand.nextInt(offsets.length);
+    if (offsets[i] >= 0) {
+      allocator.freeBlock(offsets[i], lengths[i]);
+    }
+    allocate(i);
+    return offsets[i];
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellScanner;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.benchmarks.CellGenerator;
+import org.apache.hadoop.hbase.codec.Codec;
+import org.apache.hadoop.hbase.codec.KeyValueCodec;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Builds the cell block of an RPC with {@link CellBlockBuilder}, and reads it back as the client
+ * and the server do, with and without compression of the block.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CellBlockBuilderBenchmark {
+
+  @Param({ "10", "1000" })
+  public int cells;
+
+  @Param({ "false", "true" })
+  public boolean compress;
+
+  private CellBlockBuilder builder;
+  private Codec codec;
+  private CompressionCodec compressor;
+  private Cell[] data;
+  private byte[] cellBlock;
+
+  @Setup
+  public void setup() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    builder = new CellBlockBuilder(conf);
+    codec = new KeyValueCodec();
+    compressor = compress ? ReflectionUtils.newInstance(DefaultCodec.class, conf) : null;
+    data = new CellGenerator().generate(cells);
+    ByteBuffer block = build();
+    cellBlock = Arrays.copyOfRange(block.array(), block.arrayOffset() + block.position(),
+      block.arrayOffset() + block.limit());
+  }
+
+  @Benchmark
+  public ByteBuffer build() throws IOException {
+    return builder.buildCellBlock(codec, compressor, CellUtil.createCellScanner(data));
+  }
+
+  /** Reads the cell block as the client does, copying the cells out of the response. */
+  @Benchmark
+  public void readOnClient(Blackhole bh) throws IOException {
+    CellScanner scanner = builder.createCellScanner(codec, compressor, cellBlock);
+    while (scanner.advance()) {
+      bh.consume(scanner.current());
+    }
+  }
+
+  /** Reads the cell block as the server does, the cells sharing the request buffer. */
+  @Benchmark
+  public void readOnServer(Blackhole bh) throws IOException {
+    CellScanner scanner = builder.createCellScannerReusingBuffers(codec, compressor,
+      new SingleByteBuff(ByteBuffer.wrap(cellBlock)));
+    while (scanner.advance()) {
+      bh.consume(scanner.current());
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.MemoryCompactionPolicy;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.benchmarks.CellGenerator;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.io.util.MemorySizeUtil;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adds cells to the {@link CompactingMemStore} of a store, with each in-memory compaction policy.
+ * Enough cells are added per invocation for the active segment to be flushed in memory, and so
+ * compacted in the background, a few times. The memstore is flushed, without writing a file,
+ * after each invocation.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class CompactingMemStoreBenchmark {
+
+  private static final int CELLS = 64 * 1024;
+
+  @Param({ "BASIC", "EAGER", "ADAPTIVE" })
+  public MemoryCompactionPolicy policy;
+
+  @Param({ "true", "false" })
+  public boolean mslab;
+
+  private java.nio.file.Path dir;
+  private HRegion region;
+  private CompactingMemStore memstore;
+  private KeyValue[] cells;
+
+  @Setup
+  public void setup() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setBoolean(MemStoreLAB.USEMSLAB_KEY, mslab);
+    long globalMemStoreLimit = (long) (ManagementFactory.getMemoryMXBean().getHeapMemoryUsage()
+      .getMax() * MemorySizeUtil.getGlobalMemStoreHeapPercent(conf, false));
+    ChunkCreator.initialize(MemStoreLAB.CHUNK_SIZE_DEFAULT, false, globalMemStoreLimit, 0.2f,
+      MemStoreLAB.POOL_INITIAL_SIZE_DEFAULT, null, MemStoreLAB.INDEX_CHUNK_SIZE_PERCENTAGE_DEFAULT);
+
+    dir = Files.createTempDirectory(getClass().getSimpleName());
+    TableName tableName = TableName.valueOf(getClass().getSimpleName());
+    TableDescriptor desc = TableDescriptorBuilder.newBuilder(tableName)
+      .setColumnFamily(ColumnFamilyDescriptorBuilder.newBuilder(CellGenerator.FAMILY)
+        .setInMemoryCompaction(policy).build())
+      .build();
+    RegionInfo info = RegionInfoBuilder.newBuilder(tableName).build();
+    // No WAL, as cells are added to the memstore directly
+    region = HRegion.createHRegion(info, new Path(dir.toUri()), conf, desc, null);
+    memstore = (CompactingMemStore) region.getStore(CellGenerator.FAMILY).memstore;
+    cells = new CellGenerator().generate(CELLS);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    // Abort, so there is no flush to a WAL
+    region.close(true);
+    FileSystem.getLocal(region.getBaseConf()).delete(new Path(dir.toUri()), true);
+  }
+
+  @TearDown(Level.Invocation)
+  public void flush() throws IOException {
+    MemStoreSnapshot snapshot = memstore.snapshot();
+    memstore.clearSnapshot(snapshot.getId());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CELLS)
+  public void add() {
+    MemStoreSizing sizing = new NonThreadSafeMemStoreSizing();
+    for (KeyValue cell : cells) {
+      memstore.add(cell, sizing);
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.benchmarks.CellGenerator;
+import org.apache.hadoop.hbase.util.CollectionBackedScanner;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Merges the cells of several scanners through a {@link KeyValueHeap}, as a StoreScanner does over
+ * the memstore and the store files. Each cell goes to a random scanner, as if the rows had been
+ * written over time to as many store files.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class KeyValueHeapBenchmark {
+
+  private static final int CELLS = 64 * 1024;
+  private static final int RESEEK_STRIDE = 16;
+
+  @Param({ "2", "8", "32" })
+  public int scanners;
+
+  private KeyValue[] cells;
+  private List<NavigableSet<Cell>> data;
+
+  @Setup
+  public void setup() {
+    CellGenerator generator = new CellGenerator();
+    cells = generator.generate(CELLS);
+    Random rand = generator.getRandom();
+    data = new ArrayList<>(scanners);
+    for (int i = 0; i < scanners; i++) {
+      data.add(new TreeSet<>(CellComparatorImpl.COMPARATOR));
+    }
+    for (KeyValue cell : cells) {
+      data.get(rand.nextInt(scanners)).add(cell);
+    }
+  }
+
+  private KeyValueHeap newHeap() throws IOException {
+    List<KeyValueScanner> list = new ArrayList<>(scanners);
+    for (NavigableSet<Cell> set : data) {
+      list.add(new CollectionBackedScanner(set, CellComparatorImpl.COMPARATOR));
+    }
+    return new KeyValueHeap(list, CellComparatorImpl.COMPARATOR);
+  }
+
+  /** Returns the cost per cell of a full scan. */
+  @Benchmark
+  @OperationsPerInvocation(CELLS)
+  public void next(Blackhole bh) throws IOException {
+    KeyValueHeap heap = newHeap();
+    for (Cell cell; (cell = heap.next()) != null;) {
+      bh.consume(cell);
+    }
+    heap.close();
+  }
+
+  /** Returns the cost per reseek of skipping forward over a few cells at a time. */
+  @Benchmark
+  @OperationsPerInvocation(CELLS / RESEEK_STRIDE)
+  public void reseek(Blackhole bh) throws IOException {
+    KeyValueHeap heap = newHeap();
+    for (int i = 0; i < CELLS; i += RESEEK_STRIDE) {
+      heap.reseek(cells[i]);
+      bh.consume(heap.peek());
+    }
+    heap.close();
+  }
+}
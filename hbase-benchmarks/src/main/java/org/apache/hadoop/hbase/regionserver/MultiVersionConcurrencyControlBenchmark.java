@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Begins and completes writes from as many threads as a busy region server has handlers, all
+ * writing to the same region, with the {@link MultiVersionConcurrencyControl} and with the
+ * {@link RingMultiVersionConcurrencyControl}. Run with -t to change the number of threads.
+ */
+@InterfaceAudience.Private
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Threads(200)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MultiVersionConcurrencyControlBenchmark {
+
+  @Param({ "lock", "ring" })
+  public String impl;
+
+  /** The amount of work done between the beginning and the completion of a write. */
+  @Param({ "0", "64" })
+  public int tokens;
+
+  private MultiVersionConcurrencyControl mvcc;
+
+  @Setup
+  public void setup() {
+    mvcc = impl.equals("ring")
+      ? new RingMultiVersionConcurrencyControl(getClass().getSimpleName(),
+        RingMultiVersionConcurrencyControl.DEFAULT_RING_SIZE)
+      : new MultiVersionConcurrencyControl(getClass().getSimpleName());
+  }
+
+  /** A write which skips the WAL. */
+  @Benchmark
+  public long beginAndComplete() {
+    MultiVersionConcurrencyControl.WriteEntry e = mvcc.begin();
+    Blackhole.consumeCPU(tokens);
+    mvcc.completeAndWait(e);
+    return e.getWriteNumber();
+  }
+
+  /** A write which is appended to the WAL, so gets its write number along with its WAL txid. */
+  @Benchmark
+  public long beginWithActionAndComplete(Blackhole bh) {
+    MultiVersionConcurrencyControl.WriteEntry e = mvcc.begin(() -> bh.consume(mvcc));
+    Blackhole.consumeCPU(tokens);
+    mvcc.completeAndWait(e);
+    return e.getWriteNumber();
+  }
+}
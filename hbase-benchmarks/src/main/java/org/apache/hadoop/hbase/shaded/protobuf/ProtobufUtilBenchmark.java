@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.shaded.protobuf;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.benchmarks.CellGenerator;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.MutationProto;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.MutationProto.MutationType;
+
+/**
+ * Converts a Put, a Get and a Result of one row to and from their protobuf messages with
+ * {@link ProtobufUtil}, including the serialization of the messages, as done when the cells are
+ * not sent in a cell block.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProtobufUtilBenchmark {
+
+  @Param({ "1", "16", "128" })
+  public int columns;
+
+  private Put put;
+  private byte[] putBytes;
+  private Get get;
+  private byte[] getBytes;
+  private Result result;
+  private byte[] resultBytes;
+
+  @Setup
+  public void setup() throws IOException {
+    KeyValue[] cells = new CellGenerator().setColumnsPerRow(columns).generate(columns);
+    put = new Put(CellUtil.cloneRow(cells[0]));
+    get = new Get(put.getRow());
+    for (KeyValue cell : cells) {
+      put.add(cell);
+      get.addColumn(CellGenerator.FAMILY, CellUtil.cloneQualifier(cell));
+    }
+    result = Result.create((Cell[]) cells);
+    putBytes = putToProto();
+    getBytes = getToProto();
+    resultBytes = resultToProto();
+  }
+
+  @Benchmark
+  public byte[] putToProto() throws IOException {
+    return ProtobufUtil.toMutation(MutationType.PUT, put).toByteArray();
+  }
+
+  @Benchmark
+  public Put putFromProto() throws IOException {
+    return ProtobufUtil.toPut(MutationProto.parseFrom(putBytes));
+  }
+
+  @Benchmark
+  public byte[] getToProto() throws IOException {
+    return ProtobufUtil.toGet(get).toByteArray();
+  }
+
+  @Benchmark
+  public Get getFromProto() throws IOException {
+    return ProtobufUtil.toGet(ClientProtos.Get.parseFrom(getBytes));
+  }
+
+  @Benchmark
+  public byte[] resultToProto() {
+    return ProtobufUtil.toResult(result).toByteArray();
+  }
+
+  @Benchmark
+  public Result resultFromProto() throws IOException {
+    return ProtobufUtil.toResult(ClientProtos.Result.parseFrom(resultBytes));
+  }
+}
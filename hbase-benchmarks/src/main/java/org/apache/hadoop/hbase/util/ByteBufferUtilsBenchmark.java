@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.util;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.benchmarks.CellGenerator;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares and copies ByteBuffers with {@link ByteBufferUtils}, for heap and direct buffers. The
+ * buffers compared only differ by their last byte, so all their bytes are compared.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ByteBufferUtilsBenchmark {
+
+  private static final int VLONGS = 1024;
+
+  @Param({ "8", "64", "1024" })
+  public int length;
+
+  @Param({ "false", "true" })
+  public boolean direct;
+
+  private ByteBuffer left;
+  private ByteBuffer right;
+  private ByteBuffer target;
+  private long[] vlongs;
+  private ByteBuffer vlongBuffer;
+
+  private ByteBuffer allocate(int capacity) {
+    return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+  }
+
+  @Setup
+  public void setup() {
+    CellGenerator generator = new CellGenerator();
+    byte[] bytes = generator.randomBytes(length);
+    left = allocate(length);
+    left.put(bytes).flip();
+    bytes[length - 1]++;
+    right = allocate(length);
+    right.put(bytes).flip();
+    target = allocate(length);
+
+    // Values of all sizes, from one to nine bytes once encoded
+    Random rand = generator.getRandom();
+    vlongs = new long[VLONGS];
+    for (int i = 0; i < VLONGS; i++) {
+      vlongs[i] = rand.nextLong() >> rand.nextInt(64);
+    }
+    vlongBuffer = allocate(VLONGS * 9);
+  }
+
+  @Benchmark
+  public int compareTo() {
+    return ByteBufferUtils.compareTo(left, 0, length, right, 0, length);
+  }
+
+  @Benchmark
+  public boolean equals() {
+    return ByteBufferUtils.equals(left, 0, length, right, 0, length);
+  }
+
+  @Benchmark
+  public int findCommonPrefix() {
+    return ByteBufferUtils.findCommonPrefix(left, 0, length, right, 0, length);
+  }
+
+  @Benchmark
+  public ByteBuffer copyFromBufferToBuffer() {
+    ByteBufferUtils.copyFromBufferToBuffer(left, target, 0, 0, length);
+    return target;
+  }
+
+  @Benchmark
+  public long toLong() {
+    return ByteBufferUtils.toLong(left, length - Bytes.SIZEOF_LONG);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(VLONGS)
+  public long writeAndReadVLong() {
+    vlongBuffer.clear();
+    for (long value : vlongs) {
+      ByteBufferUtils.writeVLong(vlongBuffer, value);
+    }
+    vlongBuffer.flip();
+    long sum = 0;
+    for (int i = 0; i < VLONGS; i++) {
+      sum += ByteBufferUtils.readVLong(vlongBuffer);
+    }
+    return sum;
+  }
+}
@@ -1099,4 +1099,10 @@ class AdminOverAsyncAdmin implements Admin {
   public void flushMasterStore() throws IOException {
     get(admin.flushMasterStore());
   }
+
+  @Override
+  public Map<String, Map<String, Long>> getIngestCheckpoints(TableName tableName)
+    throws IOException {
+    return get(admin.getIngestCheckpoints(tableName));
+  }
 }
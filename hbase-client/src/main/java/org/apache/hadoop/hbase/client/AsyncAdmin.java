@@ -1800,4 +1800,15 @@ public interface AsyncAdmin {
    * Flush master local region
    */
   CompletableFuture<Void> flushMasterStore();
+
+  /**
+   * Get the ingest checkpoints of the regions of a table ingesting without WAL, as set by the
+   * {@code hbase.hregion.ingest.checkpoint} table attribute. Each region tells the offset of each
+   * source up to which the edits it got from the source are durable, or -1 if none of them is yet.
+   * A region without checkpoint, or without offset for a source, never got edits of the source.
+   * After a crash, a source should be replayed from the lowest offset of all the regions.
+   * @param tableName table to get the checkpoints of
+   * @return the offsets by source, by encoded region name, wrapped by a {@link CompletableFuture}
+   */
+  CompletableFuture<Map<String, Map<String, Long>>> getIngestCheckpoints(TableName tableName);
 }
@@ -974,4 +974,10 @@ class AsyncHBaseAdmin implements AsyncAdmin {
   public CompletableFuture<Void> flushMasterStore() {
     return wrap(rawAdmin.flushMasterStore());
   }
+
+  @Override
+  public CompletableFuture<Map<String, Map<String, Long>>>
+    getIngestCheckpoints(TableName tableName) {
+    return wrap(rawAdmin.getIngestCheckpoints(tableName));
+  }
 }
@@ -144,6 +144,14 @@ public interface ColumnFamilyDescriptor {
    */
   long getMobThreshold();
 
+  /**
+   * Gets the maximum heap size of the row cache of the family in each region. The row cache holds
+   * the materialized cells of recently read rows, so that repeated Gets of the same hot rows do
+   * not have to go through the store scanners. The default size is 0, i.e. no row cache.
+   * @return The row cache size in bytes.
+   */
+  long getRowCacheSize();
+
   /** Returns a copy of Name of this column family */
   byte[] getName();
 
@@ -190,6 +190,11 @@ public class ColumnFamilyDescriptorBuilder {
   public static final String STORAGE_POLICY = "STORAGE_POLICY";
   private static final Bytes STORAGE_POLICY_BYTES = new Bytes(Bytes.toBytes(STORAGE_POLICY));
 
+  @InterfaceAudience.Private
+  public static final String ROW_CACHE_SIZE = "ROW_CACHE_SIZE";
+  private static final Bytes ROW_CACHE_SIZE_BYTES = new Bytes(Bytes.toBytes(ROW_CACHE_SIZE));
+  public static final long DEFAULT_ROW_CACHE_SIZE = 0L;
+
   public static final String NEW_VERSION_BEHAVIOR = "NEW_VERSION_BEHAVIOR";
   private static final Bytes NEW_VERSION_BEHAVIOR_BYTES =
     new Bytes(Bytes.toBytes(NEW_VERSION_BEHAVIOR));
@@ -323,6 +328,7 @@ public class ColumnFamilyDescriptorBuilder {
     RESERVED_KEYWORDS.add(new Bytes(Bytes.toBytes(IS_MOB)));
     RESERVED_KEYWORDS.add(new Bytes(Bytes.toBytes(MOB_THRESHOLD)));
     RESERVED_KEYWORDS.add(new Bytes(Bytes.toBytes(MOB_COMPACT_PARTITION_POLICY)));
+    RESERVED_KEYWORDS.add(new Bytes(Bytes.toBytes(ROW_CACHE_SIZE)));
   }
 
   public static Unit getUnit(String key) {
@@ -578,6 +584,11 @@ public class ColumnFamilyDescriptorBuilder {
     return this;
   }
 
+  public ColumnFamilyDescriptorBuilder setRowCacheSize(final long value) {
+    desc.setRowCacheSize(value);
+    return this;
+  }
+
   public ColumnFamilyDescriptorBuilder setScope(final int value) {
     desc.setScope(value);
     return this;
@@ -1351,6 +1362,20 @@ public class ColumnFamilyDescriptorBuilder {
       return setValue(MOB_THRESHOLD_BYTES, String.valueOf(threshold));
     }
 
+    @Override
+    public long getRowCacheSize() {
+      return getStringOrDefault(ROW_CACHE_SIZE_BYTES, Long::valueOf, DEFAULT_ROW_CACHE_SIZE);
+    }
+
+    /**
+     * Sets the maximum heap size, in bytes, of the row cache of the family in each region.
+     * @param rowCacheSize The row cache size, 0 to disable the row cache.
+     * @return this (for chained invocation)
+     */
+    public ModifyableColumnFamilyDescriptor setRowCacheSize(long rowCacheSize) {
+      return setValue(ROW_CACHE_SIZE_BYTES, String.valueOf(rowCacheSize));
+    }
+
     @Override
     public boolean isMobEnabled() {
       return getStringOrDefault(IS_MOB_BYTES, Boolean::valueOf, DEFAULT_MOB);
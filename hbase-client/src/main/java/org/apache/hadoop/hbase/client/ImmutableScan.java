@@ -228,6 +228,12 @@ public final class ImmutableScan extends Scan {
       "ImmutableScan does not allow access to setScanMetricsEnabled");
   }
 
+  @Override
+  public Scan setReadAheadBlocks(int blocks) {
+    throw new UnsupportedOperationException(
+      "ImmutableScan does not allow access to setReadAheadBlocks");
+  }
+
   @Override
   @Deprecated
   public Scan setAsyncPrefetch(boolean asyncPrefetch) {
@@ -402,6 +408,11 @@ public final class ImmutableScan extends Scan {
     return this.delegateScan.isScanMetricsEnabled();
   }
 
+  @Override
+  public int getReadAheadBlocks() {
+    return this.delegateScan.getReadAheadBlocks();
+  }
+
   @Override
   public Boolean isAsyncPrefetch() {
     return this.delegateScan.isAsyncPrefetch();
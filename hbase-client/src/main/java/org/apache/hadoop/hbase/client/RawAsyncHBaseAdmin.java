@@ -143,6 +143,7 @@ import org.apache.hadoop.hbase.shaded.protobuf.generated.AdminProtos.StopServerR
 import org.apache.hadoop.hbase.shaded.protobuf.generated.AdminProtos.UpdateConfigurationRequest;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.AdminProtos.UpdateConfigurationResponse;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.NameInt64Pair;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.NameStringPair;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.ProcedureDescription;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.RegionSpecifier.RegionSpecifierType;
@@ -184,6 +185,8 @@ import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetCluster
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetClusterStatusResponse;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetCompletedSnapshotsRequest;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetCompletedSnapshotsResponse;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetIngestCheckpointsRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetIngestCheckpointsResponse;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetLocksRequest;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetLocksResponse;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetNamespaceDescriptorRequest;
@@ -253,6 +256,7 @@ import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.OfflineReg
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.OfflineRegionResponse;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.RecommissionRegionServerRequest;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.RecommissionRegionServerResponse;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.RegionIngestCheckpoint;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.RestoreSnapshotRequest;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.RestoreSnapshotResponse;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.RunCatalogScanRequest;
@@ -4324,4 +4328,30 @@ class RawAsyncHBaseAdmin implements AsyncAdmin {
           (s, c, req, done) -> s.flushMasterStore(c, req, done), resp -> null))
       .call();
   }
+
+  @Override
+  public CompletableFuture<Map<String, Map<String, Long>>>
+    getIngestCheckpoints(TableName tableName) {
+    GetIngestCheckpointsRequest request = GetIngestCheckpointsRequest.newBuilder()
+      .setTableName(ProtobufUtil.toProtoTableName(tableName)).build();
+    return this.<Map<String, Map<String, Long>>> newMasterCaller()
+      .action((controller, stub) -> this.<GetIngestCheckpointsRequest,
+        GetIngestCheckpointsResponse, Map<String, Map<String, Long>>> call(controller, stub,
+          request, (s, c, req, done) -> s.getIngestCheckpoints(c, req, done),
+          RawAsyncHBaseAdmin::toIngestCheckpoints))
+      .call();
+  }
+
+  private static Map<String, Map<String, Long>>
+    toIngestCheckpoints(GetIngestCheckpointsResponse response) {
+    Map<String, Map<String, Long>> checkpoints = new HashMap<>();
+    for (RegionIngestCheckpoint checkpoint : response.getCheckpointList()) {
+      Map<String, Long> offsets = new HashMap<>();
+      for (NameInt64Pair offset : checkpoint.getOffsetList()) {
+        offsets.put(offset.getName(), offset.getValue());
+      }
+      checkpoints.put(checkpoint.getEncodedRegionName(), offsets);
+    }
+    return checkpoints;
+  }
 }
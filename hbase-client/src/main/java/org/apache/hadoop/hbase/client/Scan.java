@@ -115,6 +115,10 @@ public class Scan extends Query {
   // scan.setAttribute(Scan.SCAN_ATTRIBUTES_TABLE_NAME, Bytes.toBytes(tableName))
   static public final String SCAN_ATTRIBUTES_TABLE_NAME = "scan.attributes.table.name";
 
+  // The maximum number of data blocks of each store file that the region server reads ahead of
+  // the scan, overriding hbase.storescanner.readahead.blocks. See setReadAheadBlocks.
+  static public final String SCAN_ATTRIBUTES_READAHEAD_BLOCKS = "scan.attributes.readahead.blocks";
+
   /**
    * -1 means no caching specified and the value of {@link HConstants#HBASE_CLIENT_SCANNER_CACHING}
    * (default to {@link HConstants#DEFAULT_HBASE_CLIENT_SCANNER_CACHING}) will be used
@@ -876,6 +880,27 @@ public class Scan extends Query {
     return attr == null ? false : Bytes.toBoolean(attr);
   }
 
+  /**
+   * Set the maximum number of data blocks of each store file which are read asynchronously ahead
+   * of the scan, when it reads the store files with pread. The region server starts reading one
+   * block ahead, and reads further ahead while the scan has to wait for the blocks it reads ahead.
+   * Set to 0 to disable the read-ahead. If not set, hbase.storescanner.readahead.blocks is used.
+   * @param blocks the maximum number of blocks to read ahead
+   */
+  public Scan setReadAheadBlocks(int blocks) {
+    setAttribute(Scan.SCAN_ATTRIBUTES_READAHEAD_BLOCKS, Bytes.toBytes(blocks));
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of data blocks read ahead of the scan, or -1 if it is not set.
+   * @see #setReadAheadBlocks(int)
+   */
+  public int getReadAheadBlocks() {
+    byte[] attr = getAttribute(Scan.SCAN_ATTRIBUTES_READAHEAD_BLOCKS);
+    return attr == null ? -1 : Bytes.toInt(attr);
+  }
+
   public Boolean isAsyncPrefetch() {
     return asyncPrefetch;
   }
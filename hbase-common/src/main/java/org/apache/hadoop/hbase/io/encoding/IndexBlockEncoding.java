@@ -32,7 +32,7 @@ public enum IndexBlockEncoding {
 
   /** Disable index block encoding. */
   NONE(0, null),
-  // id 1 is reserved for the PREFIX_TREE algorithm to be added later
+  /** Prefix tree encoding of the keys, searched without being expanded. */
   PREFIX_TREE(1, null);
 
   private final short id;
@@ -468,6 +468,16 @@ public abstract class ByteBuff implements HBaseReferenceCounted {
 
   public abstract ByteBuffer[] nioByteBuffers();
 
+  /**
+   * Returns the bytes in the given range of this ByteBuff without copying them, as one ByteBuffer
+   * per underlying ByteBuffer the range spans. The returned ByteBuffers are duplicates, positioned
+   * at the first byte of the range they hold and limited after its last byte, so callers may
+   * change their positions and limits. The position and limit of this ByteBuff are not changed.
+   * @param offset the index of the first byte of the range
+   * @param length the number of bytes in the range
+   */
+  public abstract ByteBuffer[] nioByteBuffers(int offset, int length);
+
   @Override
   public String toString() {
     return this.getClass().getSimpleName() + "[pos=" + position() + ", lim=" + limit() + ", cap= "
@@ -1175,6 +1175,24 @@ public class MultiByteBuff extends ByteBuff {
     return this.items;
   }
 
+  @Override
+  public ByteBuffer[] nioByteBuffers(int offset, int length) {
+    checkRefCount();
+    if (length == 0) {
+      return new ByteBuffer[0];
+    }
+    int firstItemIndex = getItemIndex(offset);
+    int lastItemIndex = getItemIndex(offset + length - 1);
+    ByteBuffer[] result = new ByteBuffer[lastItemIndex - firstItemIndex + 1];
+    for (int i = firstItemIndex; i <= lastItemIndex; i++) {
+      ByteBuffer item = this.items[i].duplicate();
+      item.limit(Math.min(offset + length, this.itemBeginPos[i + 1]) - this.itemBeginPos[i]);
+      item.position(Math.max(offset, this.itemBeginPos[i]) - this.itemBeginPos[i]);
+      result[i - firstItemIndex] = item;
+    }
+    return result;
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (!(obj instanceof MultiByteBuff)) return false;
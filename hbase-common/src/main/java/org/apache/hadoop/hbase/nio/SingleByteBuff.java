@@ -396,6 +396,15 @@ public class SingleByteBuff extends ByteBuff {
     return new ByteBuffer[] { this.buf };
   }
 
+  @Override
+  public ByteBuffer[] nioByteBuffers(int offset, int length) {
+    checkRefCount();
+    ByteBuffer dup = this.buf.duplicate();
+    dup.limit(offset + length);
+    dup.position(offset);
+    return new ByteBuffer[] { dup };
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (!(obj instanceof SingleByteBuff)) {
@@ -645,4 +645,36 @@ public class TestMultiByteBuff {
       assertTrue(e != null);
     }
   }
+
+  @Test
+  public void testNioByteBuffersRange() {
+    ByteBuffer bb1 = ByteBuffer.allocate(10);
+    ByteBuffer bb2 = ByteBuffer.allocate(10);
+    ByteBuffer bb3 = ByteBuffer.allocate(10);
+    MultiByteBuff mbb = new MultiByteBuff(bb1, bb2, bb3);
+    for (int i = 0; i < 30; i++) {
+      mbb.put((byte) i);
+    }
+    mbb.position(3).limit(25);
+
+    ByteBuffer[] buffers = mbb.nioByteBuffers(5, 20);
+    assertEquals(3, buffers.length);
+    int expected = 5;
+    for (ByteBuffer bb : buffers) {
+      while (bb.hasRemaining()) {
+        assertEquals(expected++, bb.get());
+      }
+    }
+    assertEquals(25, expected);
+    // The position and limit of the MultiByteBuff and of its items are not changed
+    assertEquals(3, mbb.position());
+    assertEquals(25, mbb.limit());
+    assertEquals(10, bb2.limit());
+
+    buffers = mbb.nioByteBuffers(12, 5);
+    assertEquals(1, buffers.length);
+    assertEquals(2, buffers[0].position());
+    assertEquals(7, buffers[0].limit());
+    assertEquals(0, mbb.nioByteBuffers(4, 0).length);
+  }
 }
@@ -149,6 +149,39 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
    */
   void incrSlowAppend();
 
+  /**
+   * Increment the number of Gets served from a row cache.
+   */
+  void incrRowCacheHit();
+
+  /**
+   * Increment the number of cacheable Gets which missed the row cache.
+   */
+  void incrRowCacheMiss();
+
+  /**
+   * Update the time histograms of the phases of a mini-batch of mutations. Only updated for the
+   * batches which pipeline their mini-batches, to keep them off the default write path.
+   * @param lockTime     time in microseconds it took to lock the rows
+   * @param prepareTime  time in microseconds it took to prepare the mutations and WAL edits
+   * @param walTime      time in microseconds it took to append to the WAL and sync
+   * @param memStoreTime time in microseconds it took to write to the memstore and complete
+   */
+  void updateMiniBatch(long lockTime, long prepareTime, long walTime, long memStoreTime);
+
+  /**
+   * Increment the number of mini-batches prepared while the WAL sync of the previous one was in
+   * flight.
+   */
+  void incrPipelinedMiniBatch();
+
+  /**
+   * Update the metrics of the replay of a recovered edits file at region open.
+   * @param t     time it took, in milliseconds
+   * @param edits the number of edits applied to the memstore
+   */
+  void updateRecoveredEditsReplay(long t, long edits);
+
   /**
    * Update the split transaction time histogram
    * @param t time it took, in milliseconds
@@ -236,6 +269,31 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
   String MAX_COMPACTED_STORE_FILE_REF_COUNT = "maxCompactedStoreFileRefCount";
   String MEMSTORE_SIZE = "memStoreSize";
   String MEMSTORE_SIZE_DESC = "Size of the memstore";
+  String MEMSTORE_INDEX_OFFHEAP_SIZE = "memStoreIndexOffHeapSize";
+  String MEMSTORE_INDEX_OFFHEAP_SIZE_DESC =
+    "Size of the off-heap chunks holding the indexes of flattened memstore segments";
+  String IN_MEMORY_FLATTEN_COUNT = "inMemoryFlattenCount";
+  String IN_MEMORY_FLATTEN_COUNT_DESC =
+    "Number of times in-memory compaction flattened a memstore segment";
+  String IN_MEMORY_MERGE_COUNT = "inMemoryMergeCount";
+  String IN_MEMORY_MERGE_COUNT_DESC =
+    "Number of times in-memory compaction merged the segments of a memstore pipeline";
+  String IN_MEMORY_COMPACTION_COUNT = "inMemoryCompactionCount";
+  String IN_MEMORY_COMPACTION_COUNT_DESC =
+    "Number of times in-memory compaction compacted the segments of a memstore pipeline";
+  String MEMSTORE_INDEX_CHUNK_POOL_MISS_COUNT = "memStoreIndexChunkPoolMissCount";
+  String MEMSTORE_INDEX_CHUNK_POOL_MISS_COUNT_DESC =
+    "Number of memstore index chunks allocated on heap because the index chunk pool was exhausted";
+  String MEMSTORE_DATA_CHUNK_POOL_MISS_COUNT = "memStoreDataChunkPoolMissCount";
+  String MEMSTORE_DATA_CHUNK_POOL_MISS_COUNT_DESC =
+    "Number of memstore data chunks allocated on heap because the data chunk pool was exhausted";
+  String MEMSTORE_CHUNK_ALLOC_RETRY_COUNT = "memStoreChunkAllocRetryCount";
+  String MEMSTORE_CHUNK_ALLOC_RETRY_COUNT_DESC =
+    "Number of memstore cell allocations retried because the current MSLAB chunk was full or "
+      + "was being replaced by another thread";
+  String MEMSTORE_JUMBO_CHUNK_COUNT = "memStoreJumboChunkCount";
+  String MEMSTORE_JUMBO_CHUNK_COUNT_DESC =
+    "Number of on heap memstore chunks allocated for cells bigger than a data chunk";
   String STOREFILE_SIZE = "storeFileSize";
   String STOREFILE_SIZE_GROWTH_RATE = "storeFileSizeGrowthRate";
   String MAX_STORE_FILE_AGE = "maxStoreFileAge";
@@ -457,6 +515,38 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
   String SLOW_INCREMENT_DESC = "The number of Increments that took over 1000ms to complete";
   String SLOW_APPEND_DESC = "The number of Appends that took over 1000ms to complete";
 
+  String ROW_CACHE_HIT_COUNT = "rowCacheHitCount";
+  String ROW_CACHE_HIT_COUNT_DESC = "The number of Gets served from a row cache";
+  String ROW_CACHE_MISS_COUNT = "rowCacheMissCount";
+  String ROW_CACHE_MISS_COUNT_DESC = "The number of cacheable Gets which missed the row cache";
+
+  String MINI_BATCH_LOCK_TIME = "miniBatchLockTime";
+  String MINI_BATCH_LOCK_TIME_DESC =
+    "Time in microseconds to lock the rows of a pipelined mini-batch of mutations";
+  String MINI_BATCH_PREPARE_TIME = "miniBatchPrepareTime";
+  String MINI_BATCH_PREPARE_TIME_DESC =
+    "Time in microseconds to prepare a pipelined mini-batch of mutations and build its WAL edits";
+  String MINI_BATCH_WAL_TIME = "miniBatchWalTime";
+  String MINI_BATCH_WAL_TIME_DESC = "Time in microseconds to append a pipelined mini-batch of "
+    + "mutations to the WAL and sync it, not counting the preparation of the next mini-batch "
+    + "meanwhile";
+  String MINI_BATCH_MEMSTORE_TIME = "miniBatchMemStoreTime";
+  String MINI_BATCH_MEMSTORE_TIME_DESC = "Time in microseconds to write a pipelined mini-batch "
+    + "of mutations to the memstore and complete it";
+  String PIPELINED_MINI_BATCH_COUNT = "pipelinedMiniBatchCount";
+  String PIPELINED_MINI_BATCH_COUNT_DESC = "The number of mini-batches of mutations locked and "
+    + "prepared while the WAL sync of the previous mini-batch was in flight";
+
+  String RECOVERED_EDITS_REPLAY_TIME = "recoveredEditsReplayTime";
+  String RECOVERED_EDITS_REPLAY_TIME_DESC =
+    "Histogram for the time in millis to replay a recovered edits file at region open";
+  String RECOVERED_EDITS_REPLAY_RATE = "recoveredEditsReplayRate";
+  String RECOVERED_EDITS_REPLAY_RATE_DESC =
+    "Histogram for the number of edits per second applied when replaying a recovered edits file";
+  String RECOVERED_EDITS_REPLAYED_COUNT = "recoveredEditsReplayedCount";
+  String RECOVERED_EDITS_REPLAYED_COUNT_DESC =
+    "The number of recovered edits applied to the memstore at region open";
+
   String FLUSHED_CELLS = "flushedCellsCount";
   String FLUSHED_CELLS_DESC = "The number of cells flushed to disk";
   String FLUSHED_CELLS_SIZE = "flushedCellsSize";
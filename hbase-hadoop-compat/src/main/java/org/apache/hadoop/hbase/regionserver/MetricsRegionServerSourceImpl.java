@@ -54,6 +54,19 @@ public class MetricsRegionServerSourceImpl extends BaseSourceImpl
   private final MutableFastCounter slowIncrement;
   private final MutableFastCounter slowAppend;
 
+  private final MutableFastCounter rowCacheHit;
+  private final MutableFastCounter rowCacheMiss;
+
+  private final MetricHistogram miniBatchLockTimeHisto;
+  private final MetricHistogram miniBatchPrepareTimeHisto;
+  private final MetricHistogram miniBatchWalTimeHisto;
+  private final MetricHistogram miniBatchMemStoreTimeHisto;
+  private final MutableFastCounter pipelinedMiniBatch;
+
+  private final MetricHistogram recoveredEditsReplayTimeHisto;
+  private final MetricHistogram recoveredEditsReplayRateHisto;
+  private final MutableFastCounter recoveredEditsReplayed;
+
   // split related metrics
   private final MutableFastCounter splitRequest;
   private final MutableFastCounter splitSuccess;
@@ -121,6 +134,29 @@ public class MetricsRegionServerSourceImpl extends BaseSourceImpl
     appendHisto = getMetricsRegistry().newTimeHistogram(APPEND_KEY);
     slowAppend = getMetricsRegistry().newCounter(SLOW_APPEND_KEY, SLOW_APPEND_DESC, 0L);
 
+    rowCacheHit =
+      getMetricsRegistry().newCounter(ROW_CACHE_HIT_COUNT, ROW_CACHE_HIT_COUNT_DESC, 0L);
+    rowCacheMiss =
+      getMetricsRegistry().newCounter(ROW_CACHE_MISS_COUNT, ROW_CACHE_MISS_COUNT_DESC, 0L);
+
+    miniBatchLockTimeHisto =
+      getMetricsRegistry().newTimeHistogram(MINI_BATCH_LOCK_TIME, MINI_BATCH_LOCK_TIME_DESC);
+    miniBatchPrepareTimeHisto =
+      getMetricsRegistry().newTimeHistogram(MINI_BATCH_PREPARE_TIME, MINI_BATCH_PREPARE_TIME_DESC);
+    miniBatchWalTimeHisto =
+      getMetricsRegistry().newTimeHistogram(MINI_BATCH_WAL_TIME, MINI_BATCH_WAL_TIME_DESC);
+    miniBatchMemStoreTimeHisto = getMetricsRegistry().newTimeHistogram(MINI_BATCH_MEMSTORE_TIME,
+      MINI_BATCH_MEMSTORE_TIME_DESC);
+    pipelinedMiniBatch = getMetricsRegistry().newCounter(PIPELINED_MINI_BATCH_COUNT,
+      PIPELINED_MINI_BATCH_COUNT_DESC, 0L);
+
+    recoveredEditsReplayTimeHisto = getMetricsRegistry()
+      .newTimeHistogram(RECOVERED_EDITS_REPLAY_TIME, RECOVERED_EDITS_REPLAY_TIME_DESC);
+    recoveredEditsReplayRateHisto = getMetricsRegistry()
+      .newHistogram(RECOVERED_EDITS_REPLAY_RATE, RECOVERED_EDITS_REPLAY_RATE_DESC);
+    recoveredEditsReplayed = getMetricsRegistry().newCounter(RECOVERED_EDITS_REPLAYED_COUNT,
+      RECOVERED_EDITS_REPLAYED_COUNT_DESC, 0L);
+
     replayHisto = getMetricsRegistry().newTimeHistogram(REPLAY_KEY);
     scanSizeHisto = getMetricsRegistry().newSizeHistogram(SCAN_SIZE_KEY);
     scanTimeHisto = getMetricsRegistry().newTimeHistogram(SCAN_TIME_KEY);
@@ -246,6 +282,36 @@ public class MetricsRegionServerSourceImpl extends BaseSourceImpl
     slowAppend.incr();
   }
 
+  @Override
+  public void incrRowCacheHit() {
+    rowCacheHit.incr();
+  }
+
+  @Override
+  public void incrRowCacheMiss() {
+    rowCacheMiss.incr();
+  }
+
+  @Override
+  public void updateMiniBatch(long lockTime, long prepareTime, long walTime, long memStoreTime) {
+    miniBatchLockTimeHisto.add(lockTime);
+    miniBatchPrepareTimeHisto.add(prepareTime);
+    miniBatchWalTimeHisto.add(walTime);
+    miniBatchMemStoreTimeHisto.add(memStoreTime);
+  }
+
+  @Override
+  public void incrPipelinedMiniBatch() {
+    pipelinedMiniBatch.incr();
+  }
+
+  @Override
+  public void updateRecoveredEditsReplay(long t, long edits) {
+    recoveredEditsReplayTimeHisto.add(t);
+    recoveredEditsReplayRateHisto.add(edits * 1000 / Math.max(1, t));
+    recoveredEditsReplayed.incr(edits);
+  }
+
   @Override
   public void incrSplitRequest() {
     splitRequest.incr();
@@ -391,6 +457,20 @@ public class MetricsRegionServerSourceImpl extends BaseSourceImpl
           Interns.info(BLOCK_CACHE_FAILED_INSERTION_COUNT, BLOCK_CACHE_FAILED_INSERTION_COUNT_DESC),
           rsWrap.getBlockCacheFailedInsertions())
         .addCounter(Interns.info(BLOCK_CACHE_DATA_MISS_COUNT, ""), rsWrap.getDataMissCount())
+        .addCounter(Interns.info(IN_MEMORY_FLATTEN_COUNT, IN_MEMORY_FLATTEN_COUNT_DESC),
+          rsWrap.getInMemoryFlattenCount())
+        .addCounter(Interns.info(IN_MEMORY_MERGE_COUNT, IN_MEMORY_MERGE_COUNT_DESC),
+          rsWrap.getInMemoryMergeCount())
+        .addCounter(Interns.info(IN_MEMORY_COMPACTION_COUNT, IN_MEMORY_COMPACTION_COUNT_DESC),
+          rsWrap.getInMemoryCompactionCount())
+        .addCounter(Interns.info(MEMSTORE_INDEX_CHUNK_POOL_MISS_COUNT,
+          MEMSTORE_INDEX_CHUNK_POOL_MISS_COUNT_DESC), rsWrap.getMemStoreIndexChunkPoolMissCount())
+        .addCounter(Interns.info(MEMSTORE_DATA_CHUNK_POOL_MISS_COUNT,
+          MEMSTORE_DATA_CHUNK_POOL_MISS_COUNT_DESC), rsWrap.getMemStoreDataChunkPoolMissCount())
+        .addCounter(Interns.info(MEMSTORE_CHUNK_ALLOC_RETRY_COUNT,
+          MEMSTORE_CHUNK_ALLOC_RETRY_COUNT_DESC), rsWrap.getMemStoreChunkAllocRetryCount())
+        .addCounter(Interns.info(MEMSTORE_JUMBO_CHUNK_COUNT, MEMSTORE_JUMBO_CHUNK_COUNT_DESC),
+          rsWrap.getMemStoreJumboChunkCount())
         .addCounter(Interns.info(BLOCK_CACHE_LEAF_INDEX_MISS_COUNT, ""),
           rsWrap.getLeafIndexMissCount())
         .addCounter(Interns.info(BLOCK_CACHE_BLOOM_CHUNK_MISS_COUNT, ""),
@@ -111,6 +111,44 @@ public interface MetricsRegionServerWrapper {
    */
   long getOffHeapMemStoreSize();
 
+  /**
+   * Get the number of times the in-memory compaction of the memstores flattened a segment.
+   */
+  long getInMemoryFlattenCount();
+
+  /**
+   * Get the number of times the in-memory compaction of the memstores merged their pipeline.
+   */
+  long getInMemoryMergeCount();
+
+  /**
+   * Get the number of times the in-memory compaction of the memstores compacted their pipeline.
+   */
+  long getInMemoryCompactionCount();
+
+  /**
+   * Get the number of memstore index chunks allocated on heap because the index chunk pool was
+   * exhausted.
+   */
+  long getMemStoreIndexChunkPoolMissCount();
+
+  /**
+   * Get the number of memstore data chunks allocated on heap because the data chunk pool was
+   * exhausted.
+   */
+  long getMemStoreDataChunkPoolMissCount();
+
+  /**
+   * Get the number of memstore cell allocations retried because the current chunk of the MSLAB was
+   * full or was being replaced by another thread.
+   */
+  long getMemStoreChunkAllocRetryCount();
+
+  /**
+   * Get the number of memstore chunks allocated for cells bigger than a data chunk.
+   */
+  long getMemStoreJumboChunkCount();
+
   /**
    * Get the total size of the store files this region server is serving from.
    */
@@ -56,6 +56,17 @@ public interface MetricsRegionSource extends Comparable<MetricsRegionSource> {
   String ROW_READS_ONLY_ON_MEMSTORE_DESC = "Row reads happening completely out of memstore";
   String MIXED_ROW_READS = "mixedRowReadsCount";
   String MIXED_ROW_READS_ON_STORE_DESC = "Row reads happening out of files and memstore on store";
+  String FLUSH_WRITE_TIME = "flushWriteTime";
+  String FLUSH_WRITE_TIME_DESC =
+    "Time in milliseconds spent writing out the memstore snapshots of flushes on store";
+  String FLUSH_COMMIT_TIME = "flushCommitTime";
+  String FLUSH_COMMIT_TIME_DESC =
+    "Time in milliseconds spent committing the files written by flushes on store";
+  // The number of row lock acquisitions of the region which had to wait, and the total time they
+  // waited. The time of each wait goes to a histogram of the aggregate source. In microseconds.
+  String ROW_LOCK_WAIT_COUNT = "rowLockWaitCount";
+  String ROW_LOCK_WAIT_TIME_TOTAL = "rowLockWaitTimeTotal";
+  String ROW_LOCK_WAIT_TIME = "rowLockWaitTime";
 
   /**
    * Close the region's metrics as this region is closing.
@@ -93,6 +104,12 @@ public interface MetricsRegionSource extends Comparable<MetricsRegionSource> {
    */
   void updateAppend();
 
+  /**
+   * Update the time spent waiting for a row lock, when it was not available right away.
+   * @param micros time waited, including for the acquisitions which timed out.
+   */
+  void updateRowLockWait(long micros);
+
   /**
    * Get the aggregate source to which this reports.
    */
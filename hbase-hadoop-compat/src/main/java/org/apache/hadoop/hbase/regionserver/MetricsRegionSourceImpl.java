@@ -55,10 +55,13 @@ public class MetricsRegionSourceImpl implements MetricsRegionSource {
   private final String regionIncrementKey;
   private final String regionAppendKey;
   private final String regionScanKey;
+  private final String regionRowLockWaitKey;
+  private final String regionRowLockWaitTimeKey;
 
   /*
    * Implementation note: Do not put histograms per region. With hundreds of regions in a server
-   * histograms allocate too many counters. See HBASE-17016.
+   * histograms allocate too many counters. See HBASE-17016. The row lock wait times go to a
+   * histogram of the aggregate source instead.
    */
   private final MutableFastCounter regionPut;
   private final MutableFastCounter regionDelete;
@@ -66,6 +69,8 @@ public class MetricsRegionSourceImpl implements MetricsRegionSource {
   private final MutableFastCounter regionAppend;
   private final MutableFastCounter regionGet;
   private final MutableFastCounter regionScan;
+  private final MutableFastCounter regionRowLockWait;
+  private final MutableFastCounter regionRowLockWaitTime;
 
   private final int hashCode;
 
@@ -105,6 +110,12 @@ public class MetricsRegionSourceImpl implements MetricsRegionSource {
 
     regionScanKey = regionNamePrefix + MetricsRegionServerSource.SCAN_KEY + suffix;
     regionScan = registry.getCounter(regionScanKey, 0L);
+
+    regionRowLockWaitKey = regionNamePrefix + MetricsRegionSource.ROW_LOCK_WAIT_COUNT;
+    regionRowLockWait = registry.getCounter(regionRowLockWaitKey, 0L);
+
+    regionRowLockWaitTimeKey = regionNamePrefix + MetricsRegionSource.ROW_LOCK_WAIT_TIME_TOTAL;
+    regionRowLockWaitTime = registry.getCounter(regionRowLockWaitTimeKey, 0L);
   }
 
   @Override
@@ -133,6 +144,8 @@ public class MetricsRegionSourceImpl implements MetricsRegionSource {
       registry.removeMetric(regionAppendKey);
       registry.removeMetric(regionGetKey);
       registry.removeMetric(regionScanKey);
+      registry.removeMetric(regionRowLockWaitKey);
+      registry.removeMetric(regionRowLockWaitTimeKey);
 
       regionWrapper = null;
     }
@@ -168,6 +181,13 @@ public class MetricsRegionSourceImpl implements MetricsRegionSource {
     regionAppend.incr();
   }
 
+  @Override
+  public void updateRowLockWait(long micros) {
+    regionRowLockWait.incr();
+    regionRowLockWaitTime.incr(micros);
+    agg.updateHistogram(MetricsRegionSource.ROW_LOCK_WAIT_TIME, micros);
+  }
+
   @Override
   public MetricsRegionAggregateSource getAggregateSource() {
     return agg;
@@ -215,6 +235,10 @@ public class MetricsRegionSourceImpl implements MetricsRegionSource {
         this.regionWrapper.getMaxCompactedStoreFileRefCount());
       mrb.addGauge(Interns.info(regionNamePrefix + MetricsRegionServerSource.MEMSTORE_SIZE,
         MetricsRegionServerSource.MEMSTORE_SIZE_DESC), this.regionWrapper.getMemStoreSize());
+      mrb.addGauge(
+        Interns.info(regionNamePrefix + MetricsRegionServerSource.MEMSTORE_INDEX_OFFHEAP_SIZE,
+          MetricsRegionServerSource.MEMSTORE_INDEX_OFFHEAP_SIZE_DESC),
+        this.regionWrapper.getMemStoreIndexOffHeapSize());
       mrb.addGauge(
         Interns.info(regionNamePrefix + MetricsRegionServerSource.MAX_STORE_FILE_AGE,
           MetricsRegionServerSource.MAX_STORE_FILE_AGE_DESC),
@@ -282,6 +306,10 @@ public class MetricsRegionSourceImpl implements MetricsRegionSource {
         MetricsRegionSource.ROW_READS_ONLY_ON_MEMSTORE_DESC);
       addCounter(mrb, this.regionWrapper.getMixedRowReadsCount(),
         MetricsRegionSource.MIXED_ROW_READS, MetricsRegionSource.MIXED_ROW_READS_ON_STORE_DESC);
+      addCounter(mrb, this.regionWrapper.getFlushWriteTime(),
+        MetricsRegionSource.FLUSH_WRITE_TIME, MetricsRegionSource.FLUSH_WRITE_TIME_DESC);
+      addCounter(mrb, this.regionWrapper.getFlushCommitTime(),
+        MetricsRegionSource.FLUSH_COMMIT_TIME, MetricsRegionSource.FLUSH_COMMIT_TIME_DESC);
     }
   }
 
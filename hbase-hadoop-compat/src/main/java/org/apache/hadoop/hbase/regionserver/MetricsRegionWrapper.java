@@ -60,6 +60,12 @@ public interface MetricsRegionWrapper {
    */
   long getMemStoreSize();
 
+  /**
+   * Get the size of the off-heap chunks holding the indexes of the flattened memstore segments of
+   * this region.
+   */
+  long getMemStoreIndexOffHeapSize();
+
   /**
    * Get the total size of the store files this region server is serving from.
    */
@@ -161,4 +167,10 @@ public interface MetricsRegionWrapper {
   /** Returns the number of row reads on memstore and file per store */
   Map<String, Long> getMixedRowReadsCount();
 
+  /** Returns the time spent writing out the snapshots of flushes per store */
+  Map<String, Long> getFlushWriteTime();
+
+  /** Returns the time spent committing the files written by flushes per store */
+  Map<String, Long> getFlushCommitTime();
+
 }
@@ -75,6 +75,11 @@ public interface MetricsWALSource extends BaseSource {
   String WRITTEN_BYTES_DESC = "Size (in bytes) of the data written to the WAL.";
   String SUCCESSFUL_LOG_ROLLS = "successfulLogRolls";
   String SUCCESSFUL_LOG_ROLLS_DESC = "Number of successful log rolls requests";
+  String GROUP_LOAD_SKEW = "groupLoadSkew";
+  String GROUP_LOAD_SKEW_DESC = "Bytes appended to the busiest WAL group over the mean of the "
+    + "groups, in percent, as of the last rebalance of the regions over the groups";
+  String GROUP_REGION_MOVES = "groupRegionMoves";
+  String GROUP_REGION_MOVES_DESC = "Number of regions reassigned to a less busy WAL group";
 
   /**
    * Add the append size.
@@ -121,4 +126,14 @@ public interface MetricsWALSource extends BaseSource {
   void incrementSuccessfulLogRolls();
 
   long getSuccessfulLogRolls();
+
+  /**
+   * Set the skew of the load of the WAL groups, in percent.
+   */
+  void setGroupLoadSkew(long percent);
+
+  /**
+   * Increment the number of regions reassigned to a less busy WAL group.
+   */
+  void incrementGroupRegionMoves();
 }
@@ -23,6 +23,7 @@ import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.metrics.BaseSourceImpl;
 import org.apache.hadoop.metrics2.MetricHistogram;
 import org.apache.hadoop.metrics2.lib.MutableFastCounter;
+import org.apache.hadoop.metrics2.lib.MutableGaugeLong;
 import org.apache.yetus.audience.InterfaceAudience;
 
 /**
@@ -45,6 +46,8 @@ public class MetricsWALSourceImpl extends BaseSourceImpl implements MetricsWALSo
   private final MutableFastCounter sizeRollRequested;
   private final MutableFastCounter writtenBytes;
   private final MutableFastCounter successfulLogRolls;
+  private final MutableGaugeLong groupLoadSkew;
+  private final MutableFastCounter groupRegionMoves;
   // Per table metrics.
   private final ConcurrentMap<TableName, MutableFastCounter> perTableAppendCount;
   private final ConcurrentMap<TableName, MutableFastCounter> perTableAppendSize;
@@ -77,6 +80,9 @@ public class MetricsWALSourceImpl extends BaseSourceImpl implements MetricsWALSo
     writtenBytes = this.getMetricsRegistry().newCounter(WRITTEN_BYTES, WRITTEN_BYTES_DESC, 0L);
     successfulLogRolls =
       this.getMetricsRegistry().newCounter(SUCCESSFUL_LOG_ROLLS, SUCCESSFUL_LOG_ROLLS_DESC, 0L);
+    groupLoadSkew = this.getMetricsRegistry().newGauge(GROUP_LOAD_SKEW, GROUP_LOAD_SKEW_DESC, 0L);
+    groupRegionMoves =
+      this.getMetricsRegistry().newCounter(GROUP_REGION_MOVES, GROUP_REGION_MOVES_DESC, 0L);
     perTableAppendCount = new ConcurrentHashMap<>();
     perTableAppendSize = new ConcurrentHashMap<>();
   }
@@ -168,4 +174,14 @@ public class MetricsWALSourceImpl extends BaseSourceImpl implements MetricsWALSo
   public long getSuccessfulLogRolls() {
     return successfulLogRolls.value();
   }
+
+  @Override
+  public void setGroupLoadSkew(long percent) {
+    groupLoadSkew.set(percent);
+  }
+
+  @Override
+  public void incrementGroupRegionMoves() {
+    groupRegionMoves.incr();
+  }
 }
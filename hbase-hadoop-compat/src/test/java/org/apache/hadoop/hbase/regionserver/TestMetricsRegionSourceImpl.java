@@ -111,6 +111,11 @@ public class TestMetricsRegionSourceImpl {
       return 0;
     }
 
+    @Override
+    public long getMemStoreIndexOffHeapSize() {
+      return 0;
+    }
+
     @Override
     public long getStoreFileSize() {
       return 0;
@@ -232,5 +237,19 @@ public class TestMetricsRegionSourceImpl {
       map.put("info", 0L);
       return map;
     }
+
+    @Override
+    public Map<String, Long> getFlushWriteTime() {
+      Map<String, Long> map = new HashMap<String, Long>();
+      map.put("info", 0L);
+      return map;
+    }
+
+    @Override
+    public Map<String, Long> getFlushCommitTime() {
+      Map<String, Long> map = new HashMap<String, Long>();
+      map.put("info", 0L);
+      return map;
+    }
   }
 }
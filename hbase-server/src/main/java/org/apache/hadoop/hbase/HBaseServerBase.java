@@ -417,9 +417,11 @@ public abstract class HBaseServerBase<R extends HBaseRpcServicesBase<?>> extends
       int chunkSize = conf.getInt(MemStoreLAB.CHUNK_SIZE_KEY, MemStoreLAB.CHUNK_SIZE_DEFAULT);
       float indexChunkSizePercent = conf.getFloat(MemStoreLAB.INDEX_CHUNK_SIZE_PERCENTAGE_KEY,
         MemStoreLAB.INDEX_CHUNK_SIZE_PERCENTAGE_DEFAULT);
+      int cacheStripes = conf.getInt(MemStoreLAB.CHUNK_POOL_CACHE_STRIPES_KEY,
+        MemStoreLAB.POOL_CACHE_STRIPES_DEFAULT);
       // init the chunkCreator
       ChunkCreator.initialize(chunkSize, offheap, globalMemStoreSize, poolSizePercentage,
-        initialCountPercentage, hMemManager, indexChunkSizePercent);
+        initialCountPercentage, hMemManager, indexChunkSizePercent, cacheStripes);
     }
   }
 
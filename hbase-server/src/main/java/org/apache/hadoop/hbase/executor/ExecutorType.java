@@ -54,7 +54,8 @@ public enum ExecutorType {
   RS_SWITCH_RPC_THROTTLE(33),
   RS_IN_MEMORY_COMPACTION(34),
   RS_CLAIM_REPLICATION_QUEUE(35),
-  RS_SNAPSHOT_OPERATIONS(36);
+  RS_SNAPSHOT_OPERATIONS(36),
+  RS_FLUSH_STORE_OPS(37);
 
   ExecutorType(int value) {
   }
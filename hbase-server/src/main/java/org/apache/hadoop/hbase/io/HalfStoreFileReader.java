@@ -269,6 +269,11 @@ public class HalfStoreFileReader extends StoreFileReader {
         return null;
       }
 
+      @Override
+      public void setReadAhead(int maxBlocks) {
+        delegate.setReadAhead(maxBlocks);
+      }
+
       @Override
       public void close() {
         this.delegate.close();
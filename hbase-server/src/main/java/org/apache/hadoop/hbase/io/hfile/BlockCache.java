@@ -20,6 +20,8 @@ package org.apache.hadoop.hbase.io.hfile;
 import java.util.Iterator;
 import org.apache.yetus.audience.InterfaceAudience;
 
+import org.apache.hbase.thirdparty.com.google.common.collect.Iterators;
+
 /**
  * Block cache interface. Anything that implements the {@link Cacheable} interface can be put in the
  * cache.
@@ -150,6 +152,14 @@ public interface BlockCache extends Iterable<CachedBlock> {
   @Override
   Iterator<CachedBlock> iterator();
 
+  /**
+   * Returns Iterator over the blocks of the given file in the cache. Caches which keep their blocks
+   * by file should override this default, which goes through all the blocks of the cache.
+   */
+  default Iterator<CachedBlock> iterator(String hfileName) {
+    return Iterators.filter(iterator(), cb -> hfileName.equals(cb.getFilename()));
+  }
+
   /** Returns The list of sub blockcaches that make up this one; returns null if no sub caches. */
   BlockCache[] getBlockCaches();
 
@@ -19,6 +19,7 @@ package org.apache.hadoop.hbase.io.hfile;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Iterator;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentSkipListMap;
@@ -163,6 +164,23 @@ public class BlockCacheUtil {
     return cbsbf;
   }
 
+  /**
+   * Get a {@link CachedBlocksByFile} instance loaded with the blocks of a single file, which the
+   * caches find without iterating over all their blocks.
+   * @param conf      Used to read configurations
+   * @param bc        Block Cache to look up.
+   * @param hfileName Name of the file.
+   * @return Loaded up instance of CachedBlocksByFile
+   */
+  public static CachedBlocksByFile getLoadedCachedBlocksByFile(final Configuration conf,
+    final BlockCache bc, final String hfileName) {
+    CachedBlocksByFile cbsbf = new CachedBlocksByFile(conf);
+    for (Iterator<CachedBlock> it = bc.iterator(hfileName); it.hasNext();) {
+      if (cbsbf.update(it.next())) break;
+    }
+    return cbsbf;
+  }
+
   private static int compareCacheBlock(Cacheable left, Cacheable right,
     boolean includeNextBlockMetadata) {
     ByteBuffer l = ByteBuffer.allocate(left.getSerializedLength());
@@ -18,6 +18,7 @@
 package org.apache.hadoop.hbase.io.hfile;
 
 import java.util.Iterator;
+import java.util.function.Function;
 import org.apache.yetus.audience.InterfaceAudience;
 
 /**
@@ -27,11 +28,23 @@ import org.apache.yetus.audience.InterfaceAudience;
 class BlockCachesIterator implements Iterator<CachedBlock> {
   int index = 0;
   final BlockCache[] bcs;
+  final Function<BlockCache, Iterator<CachedBlock>> iterators;
   Iterator<CachedBlock> current;
 
   BlockCachesIterator(final BlockCache[] blockCaches) {
+    this(blockCaches, BlockCache::iterator);
+  }
+
+  /** Iterates over the blocks of the given file only. */
+  BlockCachesIterator(final BlockCache[] blockCaches, final String hfileName) {
+    this(blockCaches, bc -> bc.iterator(hfileName));
+  }
+
+  private BlockCachesIterator(final BlockCache[] blockCaches,
+    final Function<BlockCache, Iterator<CachedBlock>> iterators) {
     this.bcs = blockCaches;
-    this.current = this.bcs[this.index].iterator();
+    this.iterators = iterators;
+    this.current = iterators.apply(this.bcs[this.index]);
   }
 
   @Override
@@ -39,7 +52,7 @@ class BlockCachesIterator implements Iterator<CachedBlock> {
     if (current.hasNext()) return true;
     this.index++;
     if (this.index >= this.bcs.length) return false;
-    this.current = this.bcs[this.index].iterator();
+    this.current = iterators.apply(this.bcs[this.index]);
     return hasNext();
   }
 
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * The keys of the blocks in a {@link BlockCache}, sorted by file and offset, so that the blocks of
+ * a file can be found without going through the whole cache, e.g. to evict them when the file is
+ * closed. The caches keep it in sync with their own map of the blocks.
+ */
+@InterfaceAudience.Private
+public final class BlocksByHFile {
+
+  private final NavigableSet<BlockCacheKey> keys = new ConcurrentSkipListSet<>((a, b) -> {
+    int nameComparison = a.getHfileName().compareTo(b.getHfileName());
+    if (nameComparison != 0) {
+      return nameComparison;
+    }
+    return Long.compare(a.getOffset(), b.getOffset());
+  });
+
+  public void add(BlockCacheKey key) {
+    keys.add(key);
+  }
+
+  public void addAll(Collection<BlockCacheKey> keys) {
+    this.keys.addAll(keys);
+  }
+
+  public void remove(BlockCacheKey key) {
+    keys.remove(key);
+  }
+
+  public void clear() {
+    keys.clear();
+  }
+
+  /** Returns a live view of the keys of the blocks of the file, sorted by offset. */
+  public NavigableSet<BlockCacheKey> getBlocks(String hfileName) {
+    return keys.subSet(new BlockCacheKey(hfileName, Long.MIN_VALUE), true,
+      new BlockCacheKey(hfileName, Long.MAX_VALUE), true);
+  }
+}
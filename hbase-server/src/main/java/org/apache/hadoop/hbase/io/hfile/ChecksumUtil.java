@@ -18,7 +18,12 @@
 package org.apache.hadoop.hbase.io.hfile;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
 import org.apache.hadoop.fs.ChecksumException;
 import org.apache.hadoop.hbase.nio.ByteBuff;
 import org.apache.hadoop.hbase.nio.SingleByteBuff;
@@ -45,6 +50,38 @@ public class ChecksumUtil {
    */
   private static boolean generateExceptions = false;
 
+  /** Constructor of java.util.zip.CRC32C, which is only available since Java 9 */
+  private static final MethodHandle CRC32C_CONSTRUCTOR;
+
+  /**
+   * {@link Checksum#update(ByteBuffer)}, or {@link CRC32#update(ByteBuffer)} before Java 9. The JDK
+   * computes CRC32 and CRC32C over direct ByteBuffers without copying them, with intrinsics.
+   */
+  private static final MethodHandle CHECKSUM_UPDATE;
+
+  static {
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    MethodType updateType = MethodType.methodType(void.class, ByteBuffer.class);
+    MethodHandle constructor = null;
+    MethodHandle update;
+    try {
+      update = lookup.findVirtual(Checksum.class, "update", updateType);
+      constructor = lookup
+        .findConstructor(Class.forName("java.util.zip.CRC32C"), MethodType.methodType(void.class))
+        .asType(MethodType.methodType(Checksum.class));
+    } catch (ReflectiveOperationException e) {
+      LOG.debug("java.util.zip.CRC32C is not available, CRC32C checksums are verified by Hadoop");
+      try {
+        update = lookup.findVirtual(CRC32.class, "update", updateType)
+          .asType(MethodType.methodType(void.class, Checksum.class, ByteBuffer.class));
+      } catch (ReflectiveOperationException e1) {
+        throw new ExceptionInInitializerError(e1);
+      }
+    }
+    CRC32C_CONSTRUCTOR = constructor;
+    CHECKSUM_UPDATE = update;
+  }
+
   /**
    * Generates a checksum for all the data in indata. The checksum is written to outdata.
    * @param indata           input data stream
@@ -84,7 +121,7 @@ public class ChecksumUtil {
    * @see org.apache.hadoop.util.DataChecksum#verifyChunkedSums(ByteBuffer, ByteBuffer, String,
    *      long)
    */
-  private static boolean verifyChunkedSums(DataChecksum dataChecksum, ByteBuff data,
+  static boolean verifyChunkedSums(DataChecksum dataChecksum, ByteBuff data,
     ByteBuff checksums, String pathName) {
     // Almost all of the HFile Block are about 64KB, and it would be a SingleByteBuff, use the
     // Hadoop's verify checksum directly, because it'll use the native checksum, which has no extra
@@ -154,6 +191,90 @@ public class ChecksumUtil {
     return true;
   }
 
+  /**
+   * Returns a JDK checksum of the given type, which is computed over direct ByteBuffers without
+   * copying them, or null if the JDK does not provide the checksum type.
+   */
+  static Checksum newZeroCopyChecksum(ChecksumType type) {
+    switch (type) {
+      case CRC32:
+        return new CRC32();
+      case CRC32C:
+        if (CRC32C_CONSTRUCTOR == null) {
+          return null;
+        }
+        try {
+          return (Checksum) CRC32C_CONSTRUCTOR.invokeExact();
+        } catch (Throwable e) {
+          throw new AssertionError(e);
+        }
+      default:
+        return null;
+    }
+  }
+
+  private static void update(Checksum checksum, ByteBuffer buf) {
+    try {
+      CHECKSUM_UPDATE.invokeExact(checksum, buf);
+    } catch (Throwable e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Verifies the checksum of each chunk of the data, by computing it over the ByteBuffers of the
+   * data without copying them, whether the data is in a {@link SingleByteBuff} or spans several
+   * ByteBuffers of a {@link org.apache.hadoop.hbase.nio.MultiByteBuff}. Unlike
+   * {@link #verifyChunkedSums(DataChecksum, ByteBuff, ByteBuff, String)}, it does not depend on
+   * the Hadoop native library to avoid copying off-heap data.
+   * @param checksum         to calculate the checksum of each chunk.
+   * @param bytesPerChecksum number of bytes in a chunk.
+   * @param buf              contains the data, then the checksums.
+   * @param dataLength       length of the data at the beginning of buf.
+   * @param pathName         indicate that the data is read from which file.
+   * @return a flag indicate the checksum match or mismatch.
+   */
+  static boolean verifyChunkedSumsZeroCopy(Checksum checksum, int bytesPerChecksum, ByteBuff buf,
+    int dataLength, String pathName) {
+    if (bytesPerChecksum <= 0) {
+      return false;
+    }
+    ByteBuffer[] data = buf.nioByteBuffers(0, dataLength);
+    int checksumIndex = dataLength;
+    int dataIndex = 0;
+    for (int i = 0; dataIndex < dataLength;) {
+      checksum.reset();
+      int n = Math.min(bytesPerChecksum, dataLength - dataIndex);
+      for (int remain = n; remain > 0;) {
+        ByteBuffer bb = data[i];
+        int len = Math.min(remain, bb.remaining());
+        int limit = bb.limit();
+        bb.limit(bb.position() + len);
+        update(checksum, bb);
+        bb.limit(limit);
+        remain -= len;
+        if (!bb.hasRemaining()) {
+          i++;
+        }
+      }
+      if (checksumIndex + HFileBlock.CHECKSUM_SIZE > buf.limit()) {
+        return false;
+      }
+      int calculated = (int) checksum.getValue();
+      int stored = buf.getInt(checksumIndex);
+      if (calculated != stored) {
+        if (LOG.isTraceEnabled()) {
+          LOG.trace("Checksum error: {} at {} expected: {} got: {}", pathName, dataIndex, stored,
+            calculated);
+        }
+        return false;
+      }
+      dataIndex += n;
+      checksumIndex += HFileBlock.CHECKSUM_SIZE;
+    }
+    return true;
+  }
+
   /**
    * Validates that the data in the specified HFileBlock matches the checksum. Generates the
    * checksums for the data and then validate that it matches those stored in the end of the data.
@@ -171,9 +292,6 @@ public class ChecksumUtil {
 
     // read in the stored value of the checksum size from the header.
     int bytesPerChecksum = buf.getInt(HFileBlock.Header.BYTES_PER_CHECKSUM_INDEX);
-    DataChecksum dataChecksum =
-      DataChecksum.newDataChecksum(ctype.getDataChecksumType(), bytesPerChecksum);
-    assert dataChecksum != null;
     int onDiskDataSizeWithHeader =
       buf.getInt(HFileBlock.Header.ON_DISK_DATA_SIZE_WITH_HEADER_INDEX);
     LOG.trace(
@@ -181,6 +299,14 @@ public class ChecksumUtil {
         + "offset={}, headerSize={}, bytesPerChecksum={}",
       buf.capacity(), onDiskDataSizeWithHeader, ctype.getName(), pathName, offset, hdrSize,
       bytesPerChecksum);
+    Checksum checksum = newZeroCopyChecksum(ctype);
+    if (checksum != null) {
+      return verifyChunkedSumsZeroCopy(checksum, bytesPerChecksum, buf, onDiskDataSizeWithHeader,
+        pathName);
+    }
+    DataChecksum dataChecksum =
+      DataChecksum.newDataChecksum(ctype.getDataChecksumType(), bytesPerChecksum);
+    assert dataChecksum != null;
     ByteBuff data = buf.duplicate().position(0).limit(onDiskDataSizeWithHeader);
     ByteBuff checksums = buf.duplicate().position(onDiskDataSizeWithHeader).limit(buf.limit());
     return verifyChunkedSums(dataChecksum, data, checksums, pathName);
@@ -377,6 +377,11 @@ public class CombinedBlockCache implements ResizableBlockCache, HeapSize {
     return new BlockCachesIterator(getBlockCaches());
   }
 
+  @Override
+  public Iterator<CachedBlock> iterator(String hfileName) {
+    return new BlockCachesIterator(getBlockCaches(), hfileName);
+  }
+
   @Override
   public BlockCache[] getBlockCaches() {
     return new BlockCache[] { this.l1Cache, this.l2Cache };
@@ -70,12 +70,23 @@ public class HFileIndexBlockEncoderImpl implements HFileIndexBlockEncoder {
   @Override
   public void encode(BlockIndexChunk blockIndexChunk, boolean rootIndexBlock, DataOutput out)
     throws IOException {
-    // TODO
+    switch (indexBlockEncoding) {
+      case PREFIX_TREE:
+        PrefixTreeIndexBlockEncoder.encode(blockIndexChunk, out);
+        break;
+      default:
+        NoOpIndexBlockEncoder.INSTANCE.encode(blockIndexChunk, rootIndexBlock, out);
+    }
   }
 
   @Override
   public EncodedSeeker createSeeker() {
-    return null;
+    switch (indexBlockEncoding) {
+      case PREFIX_TREE:
+        return new PrefixTreeIndexBlockEncoder.PrefixTreeEncodedSeeker();
+      default:
+        return NoOpIndexBlockEncoder.INSTANCE.createSeeker();
+    }
   }
 
   @Override
@@ -58,15 +58,24 @@ public class HFilePreadReader extends HFileReaderImpl {
               // cached block. This 'optimization' triggers extremely rarely I'd say.
               HFileBlock block = readBlock(offset, onDiskSizeOfNextBlock, /* cacheBlock= */true,
                 /* pread= */true, false, false, null, null, true);
+              long blockSize;
               try {
                 onDiskSizeOfNextBlock = block.getNextBlockOnDiskSize();
-                offset += block.getOnDiskSizeWithHeader();
+                blockSize = block.getOnDiskSizeWithHeader();
+                offset += blockSize;
               } finally {
                 // Ideally here the readBlock won't find the block in cache. We call this
                 // readBlock so that block data is read from FS and cached in BC. we must call
                 // returnBlock here to decrease the reference count of block.
                 block.release();
               }
+              // Reports the progress, and sleeps if prefetching too fast
+              PrefetchExecutor.prefetched(path, offset, end, blockSize);
+            }
+          } catch (InterruptedException e) {
+            // Cancelled while throttled
+            if (LOG.isTraceEnabled()) {
+              LOG.trace("Prefetch interrupted " + getPathOffsetEndStr(path, offset, end));
             }
           } catch (IOException e) {
             // IOExceptions are probably due to region closes (relocation, etc.)
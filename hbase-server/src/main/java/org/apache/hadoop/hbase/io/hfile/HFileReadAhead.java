@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.hadoop.hbase.util.Threads;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hbase.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Reads the blocks following the current block of a pread scanner asynchronously, so that they
+ * are already read, decompressed and cached when the scanner moves to them.
+ * <p>
+ * The offset of a block is only known once the previous block has been read, as each block read
+ * also reads the header of the next block, so the blocks are read one after the other by a chain
+ * of asynchronous reads, while the scanner works on the blocks already read. The depth of the
+ * read-ahead starts at one block, and doubles up to the maximum each time the scanner has to wait
+ * for a block read ahead, i.e. while the reads are slower than the scan. It goes back to one block
+ * when the scanner does not move to the next block, e.g. after a seek.
+ * <p>
+ * Not thread safe, it is only used by the thread of its scanner.
+ */
+@InterfaceAudience.Private
+class HFileReadAhead {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HFileReadAhead.class);
+
+  static final String READAHEAD_THREADS_KEY = "hbase.hfile.thread.readahead";
+
+  /** Pool shared among all the scanners for the reads ahead */
+  private static final ExecutorService READAHEAD_POOL;
+
+  static {
+    Configuration conf = HBaseConfiguration.create();
+    int threads = conf.getInt(READAHEAD_THREADS_KEY, 16);
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<>(),
+      new ThreadFactoryBuilder().setNameFormat("hfile-readahead-%d").setDaemon(true)
+        .setUncaughtExceptionHandler(Threads.LOGGING_EXCEPTION_HANDLER).build());
+    pool.allowCoreThreadTimeOut(true);
+    READAHEAD_POOL = pool;
+  }
+
+  /** The reads of a chain stop once it is cancelled */
+  private static final class Chain {
+    private volatile boolean cancelled;
+  }
+
+  private final HFile.Reader reader;
+  private final boolean cacheBlocks;
+  private final boolean isCompaction;
+  private final DataBlockEncoding expectedDataBlockEncoding;
+  private final int maxDepth;
+  private int depth = 1;
+  private Chain chain = new Chain();
+  /** The offset of the block following the last block returned, which is the first read ahead */
+  private long nextOffset = -1;
+  /** The blocks being read ahead, in file order */
+  private final ArrayDeque<CompletableFuture<HFileBlock>> pending = new ArrayDeque<>();
+
+  HFileReadAhead(HFile.Reader reader, boolean cacheBlocks, boolean isCompaction,
+    DataBlockEncoding expectedDataBlockEncoding, int maxDepth) {
+    this.reader = reader;
+    this.cacheBlocks = cacheBlocks;
+    this.isCompaction = isCompaction;
+    this.expectedDataBlockEncoding = expectedDataBlockEncoding;
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * Returns the block at the given offset, which is the block following the previous block
+   * returned, if the scanner moves from one block to the next. The block is taken from the blocks
+   * read ahead if it is among them, else it is read, and the read-ahead is restarted after it.
+   * Like {@link HFile.Reader#readBlock}, the caller must release the returned block.
+   */
+  HFileBlock readBlock(long offset, long onDiskSize) throws IOException {
+    HFileBlock block = take(offset);
+    if (block == null) {
+      block = reader.readBlock(offset, onDiskSize, cacheBlocks, true, isCompaction, true, null,
+        expectedDataBlockEncoding);
+    }
+    nextOffset = block.getOffset() + block.getOnDiskSizeWithHeader();
+    fill(block);
+    return block;
+  }
+
+  private HFileBlock take(long offset) {
+    if (offset != nextOffset) {
+      // Not the next block, do not wait for the blocks read ahead
+      cancel();
+      return null;
+    }
+    CompletableFuture<HFileBlock> future = pending.poll();
+    if (future == null) {
+      return null;
+    }
+    boolean waited = !future.isDone();
+    HFileBlock block = null;
+    try {
+      block = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // The caller reads the block itself, and gets the error if there is one
+      LOG.debug("Failed to read ahead block at offset {} of {}", offset, reader.getPath(),
+        e.getCause());
+    }
+    if (block == null || block.getOffset() != offset) {
+      if (block != null) {
+        block.release();
+      }
+      cancel();
+      return null;
+    }
+    if (waited) {
+      depth = Math.min(maxDepth, depth * 2);
+    }
+    return block;
+  }
+
+  /** Reads ahead the blocks following the given block, up to the current depth */
+  private void fill(HFileBlock block) {
+    CompletableFuture<HFileBlock> last = pending.peekLast();
+    if (last == null) {
+      last = CompletableFuture.completedFuture(block);
+    }
+    Chain c = chain;
+    while (pending.size() < depth) {
+      last = last.thenApplyAsync(prev -> readNext(c, prev), READAHEAD_POOL);
+      pending.add(last);
+    }
+  }
+
+  private HFileBlock readNext(Chain c, HFileBlock prev) {
+    if (
+      c.cancelled || prev == null
+        || prev.getOffset() >= reader.getTrailer().getLastDataBlockOffset()
+    ) {
+      return null;
+    }
+    try {
+      // Only the offsets of the previous block are used, which stay valid once it is released
+      return reader.readBlock(prev.getOffset() + prev.getOnDiskSizeWithHeader(),
+        prev.getNextBlockOnDiskSize(), cacheBlocks, true, isCompaction, true, null,
+        expectedDataBlockEncoding);
+    } catch (IOException e) {
+      throw new CompletionException(new UncheckedIOException(e));
+    }
+  }
+
+  /** Stops reading ahead, and releases the blocks read ahead */
+  void cancel() {
+    chain.cancelled = true;
+    chain = new Chain();
+    for (CompletableFuture<HFileBlock> future : pending) {
+      future.whenComplete((block, error) -> {
+        if (block != null) {
+          block.release();
+        }
+      });
+    }
+    pending.clear();
+    depth = 1;
+  }
+
+  int getDepth() {
+    return depth;
+  }
+}
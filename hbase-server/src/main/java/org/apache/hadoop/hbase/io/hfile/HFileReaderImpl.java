@@ -335,6 +335,8 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
     protected HFileBlock curBlock;
     // Previous blocks that were used in the course of the read
     protected final ArrayList<HFileBlock> prevBlocks = new ArrayList<>();
+    // Reads the next blocks ahead, if enabled
+    private HFileReadAhead readAhead;
 
     public HFileScannerImpl(final HFile.Reader reader, final boolean cacheBlocks,
       final boolean pread, final boolean isCompaction) {
@@ -403,8 +405,27 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
       return kvBufSize;
     }
 
+    @Override
+    public void setReadAhead(int maxBlocks) {
+      if (readAhead != null) {
+        readAhead.cancel();
+        readAhead = null;
+      }
+      if (pread && maxBlocks > 0) {
+        readAhead = new HFileReadAhead(reader, cacheBlocks, isCompaction,
+          getEffectiveDataBlockEncoding(), maxBlocks);
+      }
+    }
+
+    HFileReadAhead getReadAhead() {
+      return readAhead;
+    }
+
     @Override
     public void close() {
+      if (readAhead != null) {
+        readAhead.cancel();
+      }
       if (!pread) {
         // For seek + pread stream socket should be closed when the scanner is closed. HBASE-9393
         reader.unbufferStream();
@@ -738,9 +759,13 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
         }
         // We are reading the next block without block type validation, because
         // it might turn out to be a non-data block.
-        block = reader.readBlock(block.getOffset() + block.getOnDiskSizeWithHeader(),
-          block.getNextBlockOnDiskSize(), cacheBlocks, pread, isCompaction, true, null,
-          getEffectiveDataBlockEncoding());
+        long offset = block.getOffset() + block.getOnDiskSizeWithHeader();
+        if (readAhead != null) {
+          block = readAhead.readBlock(offset, block.getNextBlockOnDiskSize());
+        } else {
+          block = reader.readBlock(offset, block.getNextBlockOnDiskSize(), cacheBlocks, pread,
+            isCompaction, true, null, getEffectiveDataBlockEncoding());
+        }
         if (block != null && !block.getBlockType().isData()) {
           // Whatever block we read we will be returning it unless
           // it is a datablock. Just in case the blocks are non data blocks
@@ -135,6 +135,15 @@ public interface HFileScanner extends Shipper, Closeable {
   /** Returns the next key in the index (the key to seek to the next block) */
   Cell getNextIndexedKey();
 
+  /**
+   * Reads up to the given number of data blocks asynchronously ahead of the current one, so that
+   * they are already read when the scanner moves to the next block. Only pread scanners read
+   * ahead. The default implementation does not read ahead.
+   * @param maxBlocks the maximum number of blocks to read ahead, 0 to disable the read-ahead
+   */
+  default void setReadAhead(int maxBlocks) {
+  }
+
   /**
    * Close this HFile scanner and do necessary cleanup.
    */
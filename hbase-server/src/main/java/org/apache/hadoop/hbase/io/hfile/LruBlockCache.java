@@ -154,6 +154,9 @@ public class LruBlockCache implements FirstLevelBlockCache {
    */
   private transient final ConcurrentHashMap<BlockCacheKey, LruCachedBlock> map;
 
+  /** Keys of the blocks in the map by file, only updated along with the map */
+  private transient final BlocksByHFile blocksByHFile = new BlocksByHFile();
+
   /** Eviction lock (locked when eviction in process) */
   private transient final ReentrantLock evictionLock = new ReentrantLock(true);
 
@@ -425,7 +428,7 @@ public class LruBlockCache implements FirstLevelBlockCache {
     buf = asReferencedHeapBlock(buf);
     cb = new LruCachedBlock(cacheKey, buf, count.incrementAndGet(), inMemory);
     long newSize = updateSizeMetrics(cb, false);
-    map.put(cacheKey, cb);
+    putIntoMap(cb);
     long val = elements.incrementAndGet();
     if (buf.getBlockType().isBloom()) {
       bloomBlockElements.increment();
@@ -562,9 +565,7 @@ public class LruBlockCache implements FirstLevelBlockCache {
   }
 
   /**
-   * Evicts all blocks for a specific HFile. This is an expensive operation implemented as a
-   * linear-time search through all blocks in the cache. Ideally this should be a search in a
-   * log-access-time map.
+   * Evicts all blocks for a specific HFile, found through {@link #blocksByHFile}.
    * <p>
    * This is used for evict-on-close to remove all blocks of a specific HFile.
    * @return the number of blocks evicted
@@ -572,11 +573,9 @@ public class LruBlockCache implements FirstLevelBlockCache {
   @Override
   public int evictBlocksByHfileName(String hfileName) {
     int numEvicted = 0;
-    for (BlockCacheKey key : map.keySet()) {
-      if (key.getHfileName().equals(hfileName)) {
-        if (evictBlock(key)) {
-          ++numEvicted;
-        }
+    for (BlockCacheKey key : blocksByHFile.getBlocks(hfileName)) {
+      if (evictBlock(key)) {
+        ++numEvicted;
       }
     }
     if (victimHandler != null) {
@@ -585,6 +584,25 @@ public class LruBlockCache implements FirstLevelBlockCache {
     return numEvicted;
   }
 
+  /** Puts the block in the map and its key in {@link #blocksByHFile}, atomically. */
+  private void putIntoMap(LruCachedBlock cb) {
+    map.compute(cb.getCacheKey(), (key, previous) -> {
+      blocksByHFile.add(key);
+      return cb;
+    });
+  }
+
+  /** Removes the block from the map and its key from {@link #blocksByHFile}, atomically. */
+  private LruCachedBlock removeFromMap(BlockCacheKey cacheKey) {
+    LruCachedBlock[] removed = new LruCachedBlock[1];
+    map.computeIfPresent(cacheKey, (key, value) -> {
+      blocksByHFile.remove(key);
+      removed[0] = value;
+      return null;
+    });
+    return removed[0];
+  }
+
   /**
    * Evict the block, and it will be cached by the victim handler if exists &amp;&amp; block may be
    * read again later
@@ -592,7 +610,7 @@ public class LruBlockCache implements FirstLevelBlockCache {
    * @return the heap size of evicted block
    */
   protected long evictBlock(LruCachedBlock block, boolean evictedByEvictionProcess) {
-    LruCachedBlock previous = map.remove(block.getCacheKey());
+    LruCachedBlock previous = removeFromMap(block.getCacheKey());
     if (previous == null) {
       return 0;
     }
@@ -1040,14 +1058,23 @@ public class LruBlockCache implements FirstLevelBlockCache {
   private static long calculateOverhead(long maxSize, long blockSize, int concurrency) {
     // FindBugs ICAST_INTEGER_MULTIPLY_CAST_TO_LONG
     return CACHE_FIXED_OVERHEAD + ClassSize.CONCURRENT_HASHMAP
-      + ((long) Math.ceil(maxSize * 1.2 / blockSize) * ClassSize.CONCURRENT_HASHMAP_ENTRY)
+      + ((long) Math.ceil(maxSize * 1.2 / blockSize)
+        * (ClassSize.CONCURRENT_HASHMAP_ENTRY + ClassSize.CONCURRENT_SKIPLISTMAP_ENTRY))
       + ((long) concurrency * ClassSize.CONCURRENT_HASHMAP_SEGMENT);
   }
 
   @Override
   public Iterator<CachedBlock> iterator() {
-    final Iterator<LruCachedBlock> iterator = map.values().iterator();
+    return iterator(map.values().iterator());
+  }
+
+  @Override
+  public Iterator<CachedBlock> iterator(String hfileName) {
+    return iterator(blocksByHFile.getBlocks(hfileName).stream().map(map::get)
+      .filter(cb -> cb != null).iterator());
+  }
 
+  private Iterator<CachedBlock> iterator(final Iterator<LruCachedBlock> iterator) {
     return new Iterator<CachedBlock>() {
       private final long now = System.nanoTime();
 
@@ -1185,6 +1212,7 @@ public class LruBlockCache implements FirstLevelBlockCache {
   /** Clears the cache. Used in tests. */
   public void clearCache() {
     this.map.clear();
+    this.blocksByHFile.clear();
     this.elements.set(0);
   }
 
@@ -21,7 +21,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Future;
@@ -31,11 +34,15 @@ import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
 import java.util.regex.Pattern;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.regionserver.throttle.NoLimitThroughputController;
+import org.apache.hadoop.hbase.regionserver.throttle.ThroughputController;
 import org.apache.hadoop.hbase.trace.TraceUtil;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.yetus.audience.InterfaceAudience;
@@ -44,18 +51,34 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.hadoop.hbase.shaded.protobuf.generated.PersistentPrefetchProtos;
 
+/**
+ * Schedules the prefetches of HFile blocks into the block cache. Like the prefetch threads, the
+ * state of the executor is static, so the priority function and the throughput controller are
+ * shared by all the region servers of a JVM, e.g. in a mini cluster: the last region server to
+ * start or to reload its configuration sets them for all.
+ */
 @InterfaceAudience.Private
 public final class PrefetchExecutor {
 
   private static final Logger LOG = LoggerFactory.getLogger(PrefetchExecutor.class);
 
-  /** Futures for tracking block prefetch activity */
-  private static final Map<Path, Future<?>> prefetchFutures = new ConcurrentSkipListMap<>();
+  /** Tasks for tracking block prefetch activity */
+  private static final Map<Path, PrefetchTask> prefetchTasks = new ConcurrentSkipListMap<>();
+  /** Tasks whose delay has elapsed, waiting for a prefetch thread */
+  private static final List<PrefetchTask> readyTasks = new ArrayList<>();
+  private static final AtomicLong taskSeqId = new AtomicLong();
+  /** Gives the priority of the prefetch of a file, the higher the sooner */
+  private static volatile ToLongFunction<Path> priorityFunction = path -> 0;
+  /** Limits the aggregate throughput of the prefetches */
+  private static volatile ThroughputController throughputController =
+    NoLimitThroughputController.INSTANCE;
   /** Set of files for which prefetch is completed */
   @edu.umd.cs.findbugs.annotations.SuppressWarnings(value = "MS_SHOULD_BE_FINAL")
   private static HashMap<String, Boolean> prefetchCompleted = new HashMap<>();
   /** Executor pool shared among all HFiles for block prefetch */
   private static final ScheduledExecutorService prefetchExecutorPool;
+  /** Timer of the prefetch delays, which elapse even when all the prefetch threads are busy */
+  private static final ScheduledExecutorService prefetchDelayTimer;
   /** Delay before beginning prefetch */
   private static final int prefetchDelayMillis;
   /** Variation in prefetch delay times, to mitigate stampedes */
@@ -79,6 +102,11 @@ public final class PrefetchExecutor {
         return t;
       }
     });
+    prefetchDelayTimer = new ScheduledThreadPoolExecutor(1, r -> {
+      Thread t = new Thread(r, "hfile-prefetch-timer-" + EnvironmentEdgeManager.currentTime());
+      t.setDaemon(true);
+      return t;
+    });
   }
 
   // TODO: We want HFile, which is where the blockcache lives, to handle
@@ -106,45 +134,169 @@ public final class PrefetchExecutor {
       } else {
         delay = 0;
       }
+      PrefetchTask task = new PrefetchTask(path,
+        TraceUtil.tracedRunnable(runnable, "PrefetchExecutor.request"));
       try {
         LOG.debug("Prefetch requested for {}, delay={} ms", path, delay);
-        final Runnable tracedRunnable =
-          TraceUtil.tracedRunnable(runnable, "PrefetchExecutor.request");
-        final Future<?> future =
-          prefetchExecutorPool.schedule(tracedRunnable, delay, TimeUnit.MILLISECONDS);
-        prefetchFutures.put(path, future);
+        prefetchTasks.put(path, task);
+        task.delayFuture =
+          prefetchDelayTimer.schedule(() -> ready(task), delay, TimeUnit.MILLISECONDS);
       } catch (RejectedExecutionException e) {
-        prefetchFutures.remove(path);
+        prefetchTasks.remove(path);
         LOG.warn("Prefetch request rejected for {}", path);
       }
     }
   }
 
+  /**
+   * Called once the delay of a prefetch has elapsed. The prefetch is not run right away, instead a
+   * prefetch thread will pick the ready prefetch with the highest priority, so that files of hot
+   * regions are prefetched first when many are opened at once, e.g. after a restart.
+   */
+  private static void ready(PrefetchTask task) {
+    if (task.cancelled) {
+      return;
+    }
+    synchronized (readyTasks) {
+      task.state = PrefetchTask.State.READY;
+      readyTasks.add(task);
+    }
+    try {
+      prefetchExecutorPool.execute(PrefetchExecutor::runHottest);
+    } catch (RejectedExecutionException e) {
+      synchronized (readyTasks) {
+        readyTasks.remove(task);
+      }
+      prefetchTasks.remove(task.path);
+      LOG.warn("Prefetch request rejected for {}", task.path);
+    }
+  }
+
+  private static void runHottest() {
+    PrefetchTask task;
+    synchronized (readyTasks) {
+      if (readyTasks.isEmpty()) {
+        // cancelled
+        return;
+      }
+      ToLongFunction<Path> priority = priorityFunction;
+      for (PrefetchTask t : readyTasks) {
+        t.priority = getPriority(priority, t.path);
+      }
+      task = readyTasks.stream().max(PrefetchTask.COMPARATOR).get();
+      readyTasks.remove(task);
+      task.state = PrefetchTask.State.RUNNING;
+      task.thread = Thread.currentThread();
+    }
+    try {
+      if (task.cancelled) {
+        return;
+      }
+      ThroughputController controller = throughputController;
+      String opName = "prefetch-" + task.path.getName() + "-" + task.seqId;
+      controller.start(opName);
+      task.controller = controller;
+      task.opName = opName;
+      try {
+        task.runnable.run();
+      } finally {
+        task.controller = null;
+        controller.finish(opName);
+      }
+    } finally {
+      task.done = true;
+      synchronized (readyTasks) {
+        task.thread = null;
+        // Do not leave a cancellation interrupt to the next task run by this thread
+        Thread.interrupted();
+      }
+    }
+  }
+
+  private static long getPriority(ToLongFunction<Path> priority, Path path) {
+    try {
+      return priority.applyAsLong(path);
+    } catch (RuntimeException e) {
+      LOG.debug("Failed to get the prefetch priority of {}", path, e);
+      return 0;
+    }
+  }
+
+  /**
+   * Called by a running prefetch after it read a block, to report its progress and to be throttled
+   * if the prefetches read faster than the {@link ThroughputController} allows.
+   * @param path   the file being prefetched
+   * @param offset the offset up to which the file has been prefetched
+   * @param end    the offset at which the prefetch ends
+   * @param size   the number of bytes read since the last call
+   */
+  public static void prefetched(Path path, long offset, long end, long size)
+    throws InterruptedException {
+    PrefetchTask task = prefetchTasks.get(path);
+    if (task == null || task.thread != Thread.currentThread()) {
+      return;
+    }
+    task.offset = offset;
+    task.end = end;
+    ThroughputController controller = task.controller;
+    if (controller != null) {
+      controller.control(task.opName, size);
+    }
+  }
+
   public static void complete(Path path) {
-    prefetchFutures.remove(path);
+    prefetchTasks.remove(path);
     prefetchCompleted.put(path.getName(), true);
     LOG.debug("Prefetch completed for {}", path);
   }
 
   public static void cancel(Path path) {
-    Future<?> future = prefetchFutures.get(path);
-    if (future != null) {
+    PrefetchTask task = prefetchTasks.remove(path);
+    if (task != null) {
       // ok to race with other cancellation attempts
-      future.cancel(true);
-      prefetchFutures.remove(path);
+      task.cancel();
       LOG.debug("Prefetch cancelled for {}", path);
     }
     prefetchCompleted.remove(path.getName());
   }
 
   public static boolean isCompleted(Path path) {
-    Future<?> future = prefetchFutures.get(path);
-    if (future != null) {
-      return future.isDone();
+    PrefetchTask task = prefetchTasks.get(path);
+    if (task != null) {
+      return task.done;
     }
     return true;
   }
 
+  /**
+   * Sets the function giving the priority of the prefetch of a file. Among the prefetches whose
+   * delay has elapsed, the one with the highest priority is run first. The function is shared by
+   * all the region servers of the JVM.
+   */
+  public static void setPriorityFunction(ToLongFunction<Path> function) {
+    priorityFunction = function;
+  }
+
+  /**
+   * Sets the controller limiting the aggregate throughput of the prefetches to start. The
+   * controller is shared by all the region servers of the JVM.
+   */
+  public static void setThroughputController(ThroughputController controller) {
+    throughputController = controller;
+  }
+
+  public static ThroughputController getThroughputController() {
+    return throughputController;
+  }
+
+  /** Returns the prefetches not completed yet, running ones first, then by priority. */
+  public static List<PrefetchTask> getPrefetchTasks() {
+    List<PrefetchTask> tasks = new ArrayList<>(prefetchTasks.values());
+    tasks.removeIf(task -> task.done);
+    tasks.sort(PrefetchTask.COMPARATOR.reversed());
+    return tasks;
+  }
+
   @edu.umd.cs.findbugs.annotations.SuppressWarnings(value = "OBL_UNSATISFIED_OBLIGATION",
       justification = "false positive, try-with-resources ensures close is called.")
   public static void persistToFile(String path) throws IOException {
@@ -211,4 +363,79 @@ public final class PrefetchExecutor {
 
   private PrefetchExecutor() {
   }
+
+  /**
+   * The prefetch of a file, which is first delayed, then ready to run once the delay has elapsed,
+   * and then run by one of the prefetch threads.
+   */
+  public static final class PrefetchTask {
+
+    public enum State {
+      SCHEDULED,
+      READY,
+      RUNNING
+    }
+
+    /** Running first, then by priority, then by request order */
+    private static final Comparator<PrefetchTask> COMPARATOR =
+      Comparator.<PrefetchTask> comparingInt(t -> t.state.ordinal())
+        .thenComparingLong(t -> t.priority).thenComparingLong(t -> -t.seqId);
+
+    private final Path path;
+    private final Runnable runnable;
+    private final long seqId = taskSeqId.incrementAndGet();
+    private volatile State state = State.SCHEDULED;
+    private volatile long priority;
+    private volatile long offset;
+    private volatile long end;
+    private volatile boolean cancelled;
+    private volatile boolean done;
+    private volatile Future<?> delayFuture;
+    private volatile Thread thread;
+    private volatile ThroughputController controller;
+    private volatile String opName;
+
+    private PrefetchTask(Path path, Runnable runnable) {
+      this.path = path;
+      this.runnable = runnable;
+    }
+
+    private void cancel() {
+      cancelled = true;
+      Future<?> future = delayFuture;
+      if (future != null) {
+        future.cancel(false);
+      }
+      synchronized (readyTasks) {
+        readyTasks.remove(this);
+        Thread t = thread;
+        if (t != null) {
+          t.interrupt();
+        }
+      }
+      done = true;
+    }
+
+    public Path getPath() {
+      return path;
+    }
+
+    public State getState() {
+      return state;
+    }
+
+    /** Returns the priority of the prefetch, as of the last time a prefetch thread was free. */
+    public long getPriority() {
+      return priority;
+    }
+
+    public long getOffset() {
+      return offset;
+    }
+
+    /** Returns the offset at which the prefetch ends, or 0 if it is not known yet. */
+    public long getEnd() {
+      return end;
+    }
+  }
 }
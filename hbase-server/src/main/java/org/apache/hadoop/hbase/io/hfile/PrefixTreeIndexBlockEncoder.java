@@ -0,0 +1,579 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import static org.apache.hadoop.hbase.io.hfile.HFileBlockIndex.MID_KEY_METADATA_SIZE;
+
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.PrivateCellUtil;
+import org.apache.hadoop.hbase.io.ByteArrayOutputStream;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.hadoop.hbase.io.encoding.IndexBlockEncoding;
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.hadoop.hbase.regionserver.KeyValueScanner;
+import org.apache.hadoop.hbase.util.ByteBufferUtils;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Encodes block index chunks for {@link IndexBlockEncoding#PREFIX_TREE}. Index keys are serialized
+ * KeyValue keys, so the leading row length is stored per entry and the prefix tree is built over
+ * the remaining bytes: the prefix shared by every key of the chunk is stored once at the root, and
+ * the entries are grouped under restart points, where each key only stores the bytes that differ
+ * from the previous key of its group. Blocks are searched in this form without being expanded: a
+ * binary search over the restart points is followed by a short linear scan inside one group.
+ * <p>
+ * Root and non-root index blocks share the same layout:
+ *
+ * <pre>
+ * int    number of entries
+ * int    restart interval
+ * int    common prefix length
+ * byte[] common prefix
+ * int    number of restart points
+ * int[]  restart point offsets, relative to the start of the entries
+ * int    total length of the entries
+ * entries, each one being:
+ *   vint   row length
+ *   vint   number of bytes shared with the previous key (0 at restart points)
+ *   vint   number of bytes not shared with the previous key
+ *   byte[] unshared bytes
+ *   vlong  block offset
+ *   vint   on-disk block size
+ * </pre>
+ *
+ * The root index block is followed by the mid-key metadata when the index has more than one level,
+ * exactly as for {@link IndexBlockEncoding#NONE}.
+ */
+@InterfaceAudience.Private
+public final class PrefixTreeIndexBlockEncoder {
+
+  /** Number of entries between two restart points, i.e. two fully stored keys. */
+  static final int RESTART_INTERVAL = 16;
+
+  private PrefixTreeIndexBlockEncoder() {
+  }
+
+  /**
+   * Writes the block index chunk in the prefix tree format. The format is the same for root and
+   * non-root index blocks.
+   */
+  static void encode(BlockIndexChunk blockIndexChunk, DataOutput out) throws IOException {
+    int numEntries = blockIndexChunk.getNumEntries();
+    int prefixLength = commonPrefixLength(blockIndexChunk);
+    int numRestarts = (numEntries + RESTART_INTERVAL - 1) / RESTART_INTERVAL;
+    int[] restarts = new int[numRestarts];
+
+    ByteArrayOutputStream entries = new ByteArrayOutputStream();
+    DataOutputStream entriesOut = new DataOutputStream(entries);
+    byte[] prevKey = null;
+    for (int i = 0; i < numEntries; ++i) {
+      byte[] key = blockIndexChunk.getBlockKey(i);
+      int shared = 0;
+      if (i % RESTART_INTERVAL == 0) {
+        restarts[i / RESTART_INTERVAL] = entriesOut.size();
+      } else {
+        int start = Bytes.SIZEOF_SHORT + prefixLength;
+        shared = Bytes.findCommonPrefix(prevKey, key, prevKey.length - start, key.length - start,
+          start, start);
+      }
+      int unsharedOffset = Bytes.SIZEOF_SHORT + prefixLength + shared;
+      WritableUtils.writeVInt(entriesOut, Bytes.toShort(key, 0));
+      WritableUtils.writeVInt(entriesOut, shared);
+      WritableUtils.writeVInt(entriesOut, key.length - unsharedOffset);
+      entriesOut.write(key, unsharedOffset, key.length - unsharedOffset);
+      WritableUtils.writeVLong(entriesOut, blockIndexChunk.getBlockOffset(i));
+      WritableUtils.writeVInt(entriesOut, blockIndexChunk.getOnDiskDataSize(i));
+      prevKey = key;
+    }
+    entriesOut.flush();
+
+    out.writeInt(numEntries);
+    out.writeInt(RESTART_INTERVAL);
+    out.writeInt(prefixLength);
+    if (prefixLength > 0) {
+      out.write(blockIndexChunk.getBlockKey(0), Bytes.SIZEOF_SHORT, prefixLength);
+    }
+    out.writeInt(numRestarts);
+    for (int restart : restarts) {
+      out.writeInt(restart);
+    }
+    out.writeInt(entries.size());
+    out.write(entries.getBuffer(), 0, entries.size());
+  }
+
+  /**
+   * Returns the length of the prefix shared by all the keys of the chunk, not counting the leading
+   * row length.
+   */
+  private static int commonPrefixLength(BlockIndexChunk blockIndexChunk) throws IOException {
+    int numEntries = blockIndexChunk.getNumEntries();
+    if (numEntries == 0) {
+      return 0;
+    }
+    byte[] first = blockIndexChunk.getBlockKey(0);
+    int prefixLength = first.length - Bytes.SIZEOF_SHORT;
+    for (int i = 0; i < numEntries; ++i) {
+      byte[] key = blockIndexChunk.getBlockKey(i);
+      if (key.length < Bytes.SIZEOF_SHORT) {
+        throw new IOException("Index key #" + i + " is too short to be a cell key: "
+          + Bytes.toStringBinary(key));
+      }
+      if (i > 0 && prefixLength > 0) {
+        prefixLength = Bytes.findCommonPrefix(first, key, prefixLength,
+          key.length - Bytes.SIZEOF_SHORT, Bytes.SIZEOF_SHORT, Bytes.SIZEOF_SHORT);
+      }
+    }
+    return prefixLength;
+  }
+
+  /**
+   * Reads one prefix tree encoded index block in place. Not thread safe, a new cursor has to be
+   * created for every search.
+   */
+  static class BlockCursor {
+    private final ByteBuff buf;
+    private final int numEntries;
+    private final int restartInterval;
+    private final int prefixLength;
+    private final int numRestarts;
+    private final int restartsOffset;
+    private final int entriesOffset;
+    private final int entriesLength;
+
+    /** The current key, the common prefix included. */
+    private byte[] key;
+    private int keyLength;
+    private long blockOffset;
+    private int onDiskSize;
+    private int index = -1;
+
+    BlockCursor(ByteBuff buf) {
+      this.buf = buf;
+      int pos = 0;
+      this.numEntries = buf.getInt(pos);
+      pos += Bytes.SIZEOF_INT;
+      this.restartInterval = buf.getInt(pos);
+      pos += Bytes.SIZEOF_INT;
+      this.prefixLength = buf.getInt(pos);
+      pos += Bytes.SIZEOF_INT;
+      this.key = new byte[Math.max(64, 2 * (Bytes.SIZEOF_SHORT + prefixLength))];
+      buf.get(pos, key, Bytes.SIZEOF_SHORT, prefixLength);
+      pos += prefixLength;
+      this.numRestarts = buf.getInt(pos);
+      pos += Bytes.SIZEOF_INT;
+      this.restartsOffset = pos;
+      pos += numRestarts * Bytes.SIZEOF_INT;
+      this.entriesLength = buf.getInt(pos);
+      this.entriesOffset = pos + Bytes.SIZEOF_INT;
+    }
+
+    /** Returns the total length of the encoded block, without any trailing metadata. */
+    int getEncodedLength() {
+      return entriesOffset + entriesLength;
+    }
+
+    int getNumEntries() {
+      return numEntries;
+    }
+
+    int getIndex() {
+      return index;
+    }
+
+    long getBlockOffset() {
+      return blockOffset;
+    }
+
+    int getOnDiskSize() {
+      return onDiskSize;
+    }
+
+    /** Returns a copy of the current key. */
+    byte[] copyKey() {
+      return Arrays.copyOf(key, keyLength);
+    }
+
+    private void seekToRestart(int restart) {
+      buf.position(entriesOffset + buf.getInt(restartsOffset + restart * Bytes.SIZEOF_INT));
+      index = restart * restartInterval - 1;
+    }
+
+    /** Decodes the next entry. Returns false if the current entry was the last one. */
+    boolean next() {
+      if (index + 1 >= numEntries) {
+        return false;
+      }
+      int rowLength = (int) ByteBufferUtils.readVLong(buf);
+      int shared = (int) ByteBufferUtils.readVLong(buf);
+      int unshared = (int) ByteBufferUtils.readVLong(buf);
+      int unsharedOffset = Bytes.SIZEOF_SHORT + prefixLength + shared;
+      keyLength = unsharedOffset + unshared;
+      if (keyLength > key.length) {
+        key = Arrays.copyOf(key, Math.max(keyLength, 2 * key.length));
+      }
+      Bytes.putShort(key, 0, (short) rowLength);
+      buf.get(key, unsharedOffset, unshared);
+      blockOffset = ByteBufferUtils.readVLong(buf);
+      onDiskSize = (int) ByteBufferUtils.readVLong(buf);
+      index++;
+      return true;
+    }
+
+    /** Positions the cursor on the i-th entry. */
+    void seekToEntry(int i) {
+      if (i < 0 || i >= numEntries) {
+        throw new IllegalArgumentException(
+          "Entry " + i + " is out of bounds, block has " + numEntries + " entries");
+      }
+      seekToRestart(i / restartInterval);
+      while (index < i) {
+        next();
+      }
+    }
+
+    private int compareTo(Cell searchKey, CellComparator comparator,
+      KeyValue.KeyOnlyKeyValue current) {
+      current.setKey(key, 0, keyLength);
+      // we have to compare in this order, because the comparator order
+      // has special logic when the 'left side' is a special key.
+      return PrivateCellUtil.compareKeyIgnoresMvcc(comparator, searchKey, current);
+    }
+
+    /**
+     * Finds the entry i such that keys[i] <= searchKey < keys[i + 1]. On success the block offset
+     * and on-disk size of that entry are available through {@link #getBlockOffset()} and
+     * {@link #getOnDiskSize()}.
+     * @return the key of the entry following the found one, or null if the found entry is the last
+     *         one of the block
+     * @see #getIndex() for the found entry, -1 if searchKey is before the first key
+     */
+    byte[] seekTo(Cell searchKey, CellComparator comparator) {
+      KeyValue.KeyOnlyKeyValue current = new KeyValue.KeyOnlyKeyValue();
+      int low = 0;
+      int high = numRestarts - 1;
+      // Find the last restart point whose key is not after the search key.
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        seekToRestart(mid);
+        next();
+        int cmp = compareTo(searchKey, comparator, current);
+        if (cmp > 0) {
+          low = mid + 1;
+        } else if (cmp < 0) {
+          high = mid - 1;
+        } else {
+          high = mid;
+          break;
+        }
+      }
+      if (high < 0) {
+        index = -1;
+        return null;
+      }
+
+      // Scan the group of that restart point, it is the only one which can hold the entry.
+      seekToRestart(high);
+      next();
+      int foundIndex = index;
+      long foundBlockOffset = blockOffset;
+      int foundOnDiskSize = onDiskSize;
+      byte[] nextKey = null;
+      while (next()) {
+        if (compareTo(searchKey, comparator, current) < 0) {
+          nextKey = copyKey();
+          break;
+        }
+        foundIndex = index;
+        foundBlockOffset = blockOffset;
+        foundOnDiskSize = onDiskSize;
+      }
+      index = foundIndex;
+      blockOffset = foundBlockOffset;
+      onDiskSize = foundOnDiskSize;
+      return nextKey;
+    }
+  }
+
+  static class PrefixTreeEncodedSeeker implements HFileIndexBlockEncoder.EncodedSeeker {
+
+    /** The encoded root index block. Root keys are only expanded on demand. */
+    private byte[] rootIndex;
+    private int rootCount = 0;
+
+    // Mid-key metadata.
+    private long midLeafBlockOffset = -1;
+    private int midLeafBlockOnDiskSize = -1;
+    private int midKeyEntry = -1;
+
+    private CellComparator comparator;
+    private int searchTreeLevel;
+
+    /** Pre-computed mid-key */
+    private AtomicReference<Cell> midKey = new AtomicReference<>();
+
+    @Override
+    public long heapSize() {
+      long heapSize = ClassSize.align(ClassSize.OBJECT);
+
+      // Mid-key metadata.
+      heapSize += MID_KEY_METADATA_SIZE;
+
+      if (rootIndex != null) {
+        heapSize += ClassSize.REFERENCE;
+        heapSize += ClassSize.align(ClassSize.ARRAY + rootIndex.length);
+      }
+      // Add comparator and the midkey atomicreference
+      heapSize += 2 * ClassSize.REFERENCE;
+      // Add rootCount and searchTreeLevel
+      heapSize += 2 * Bytes.SIZEOF_INT;
+
+      return ClassSize.align(heapSize);
+    }
+
+    private BlockCursor rootCursor() {
+      return new BlockCursor(new SingleByteBuff(ByteBuffer.wrap(rootIndex)));
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return rootCount == 0;
+    }
+
+    @Override
+    public Cell getRootBlockKey(int i) {
+      BlockCursor cursor = rootCursor();
+      cursor.seekToEntry(i);
+      byte[] key = cursor.copyKey();
+      return new KeyValue.KeyOnlyKeyValue(key, 0, key.length);
+    }
+
+    @Override
+    public int getRootBlockCount() {
+      return rootCount;
+    }
+
+    @Override
+    public void initRootIndex(HFileBlock blk, int numEntries, CellComparator comparator,
+      int treeLevel) throws IOException {
+      this.comparator = comparator;
+      this.searchTreeLevel = treeLevel;
+
+      ByteBuff buf = blk.getBufferWithoutHeader();
+      BlockCursor cursor = new BlockCursor(buf);
+      if (cursor.getNumEntries() != numEntries) {
+        throw new IOException("Root index block has " + cursor.getNumEntries()
+          + " entries but the trailer expects " + numEntries);
+      }
+      int encodedLength = cursor.getEncodedLength();
+      rootIndex = new byte[encodedLength];
+      buf.get(0, rootIndex, 0, encodedLength);
+      rootCount = numEntries;
+
+      // after reading the root index the checksum bytes have to
+      // be subtracted to know if the mid key exists.
+      if (buf.limit() - encodedLength - blk.totalChecksumBytes() < MID_KEY_METADATA_SIZE) {
+        // No mid-key metadata available.
+        return;
+      }
+      midLeafBlockOffset = buf.getLong(encodedLength);
+      midLeafBlockOnDiskSize = buf.getInt(encodedLength + Bytes.SIZEOF_LONG);
+      midKeyEntry = buf.getInt(encodedLength + Bytes.SIZEOF_LONG + Bytes.SIZEOF_INT);
+    }
+
+    @Override
+    public Cell midkey(HFile.CachingBlockReader cachingBlockReader) throws IOException {
+      if (rootCount == 0) throw new IOException("HFile empty");
+
+      Cell targetMidKey = this.midKey.get();
+      if (targetMidKey != null) {
+        return targetMidKey;
+      }
+
+      if (midLeafBlockOffset >= 0) {
+        if (cachingBlockReader == null) {
+          throw new IOException(
+            "Have to read the middle leaf block but " + "no block reader available");
+        }
+
+        // Caching, using pread, assuming this is not a compaction.
+        HFileBlock midLeafBlock = cachingBlockReader.readBlock(midLeafBlockOffset,
+          midLeafBlockOnDiskSize, true, true, false, true, BlockType.LEAF_INDEX, null);
+        try {
+          BlockCursor cursor = new BlockCursor(midLeafBlock.getBufferWithoutHeader());
+          cursor.seekToEntry(midKeyEntry);
+          byte[] bytes = cursor.copyKey();
+          targetMidKey = new KeyValue.KeyOnlyKeyValue(bytes, 0, bytes.length);
+        } finally {
+          midLeafBlock.release();
+        }
+      } else {
+        // The middle of the root-level index.
+        targetMidKey = getRootBlockKey(rootCount / 2);
+      }
+
+      this.midKey.set(targetMidKey);
+      return targetMidKey;
+    }
+
+    @Override
+    public BlockWithScanInfo loadDataBlockWithScanInfo(Cell key, HFileBlock currentBlock,
+      boolean cacheBlocks, boolean pread, boolean isCompaction,
+      DataBlockEncoding expectedDataBlockEncoding, HFile.CachingBlockReader cachingBlockReader)
+      throws IOException {
+      BlockCursor rootCursor = rootCursor();
+      byte[] nextKey = rootCursor.seekTo(key, comparator);
+      if (rootCursor.getIndex() < 0) {
+        return null;
+      }
+
+      // Read the next-level (intermediate or leaf) index block.
+      long currentOffset = rootCursor.getBlockOffset();
+      int currentOnDiskSize = rootCursor.getOnDiskSize();
+
+      // the next indexed key
+      Cell nextIndexedKey = nextKey != null
+        ? new KeyValue.KeyOnlyKeyValue(nextKey, 0, nextKey.length)
+        : KeyValueScanner.NO_NEXT_INDEXED_KEY;
+
+      int lookupLevel = 1; // How many levels deep we are in our lookup.
+
+      HFileBlock block = null;
+      while (true) {
+        try {
+          // Must initialize it with null here, because if don't and once an exception happen in
+          // readBlock, then we'll release the previous assigned block twice in the finally block.
+          // (See HBASE-22422)
+          block = null;
+          if (currentBlock != null && currentBlock.getOffset() == currentOffset) {
+            // Avoid reading the same block again, even with caching turned off.
+            // This is crucial for compaction-type workload which might have
+            // caching turned off. This is like a one-block cache inside the
+            // scanner.
+            block = currentBlock;
+          } else {
+            // Call HFile's caching block reader API. We always cache index
+            // blocks, otherwise we might get terrible performance.
+            boolean shouldCache = cacheBlocks || (lookupLevel < searchTreeLevel);
+            BlockType expectedBlockType;
+            if (lookupLevel < searchTreeLevel - 1) {
+              expectedBlockType = BlockType.INTERMEDIATE_INDEX;
+            } else if (lookupLevel == searchTreeLevel - 1) {
+              expectedBlockType = BlockType.LEAF_INDEX;
+            } else {
+              // this also accounts for ENCODED_DATA
+              expectedBlockType = BlockType.DATA;
+            }
+            block = cachingBlockReader.readBlock(currentOffset, currentOnDiskSize, shouldCache,
+              pread, isCompaction, true, expectedBlockType, expectedDataBlockEncoding);
+          }
+
+          if (block == null) {
+            throw new IOException("Failed to read block at offset " + currentOffset
+              + ", onDiskSize=" + currentOnDiskSize);
+          }
+
+          // Found a data block, break the loop and check our level in the tree.
+          if (block.getBlockType().isData()) {
+            break;
+          }
+
+          // Not a data block. This must be a leaf-level or intermediate-level
+          // index block. We don't allow going deeper than searchTreeLevel.
+          if (++lookupLevel > searchTreeLevel) {
+            throw new IOException("Search Tree Level overflow: lookupLevel=" + lookupLevel
+              + ", searchTreeLevel=" + searchTreeLevel);
+          }
+
+          // Locate the entry corresponding to the given key in the non-root
+          // (leaf or intermediate-level) index block.
+          BlockCursor cursor = new BlockCursor(block.getBufferWithoutHeader());
+          nextKey = cursor.seekTo(key, comparator);
+          if (cursor.getIndex() == -1) {
+            throw new IOException("The key " + CellUtil.getCellKeyAsString(key) + " is before the"
+              + " first key of the non-root index block " + block);
+          }
+
+          currentOffset = cursor.getBlockOffset();
+          currentOnDiskSize = cursor.getOnDiskSize();
+
+          // Only update next indexed key if there is a next indexed key in the current level
+          if (nextKey != null) {
+            nextIndexedKey = new KeyValue.KeyOnlyKeyValue(nextKey, 0, nextKey.length);
+          }
+        } finally {
+          if (block != null && !block.getBlockType().isData()) {
+            // Release the block immediately if it is not the data block
+            block.release();
+          }
+        }
+      }
+
+      if (lookupLevel != searchTreeLevel) {
+        assert block.getBlockType().isData();
+        // Though we have retrieved a data block we have found an issue
+        // in the retrieved data block. Hence returned the block so that
+        // the ref count can be decremented
+        if (block != null) {
+          block.release();
+        }
+        throw new IOException("Reached a data block at level " + lookupLevel
+          + " but the number of levels is " + searchTreeLevel);
+      }
+
+      // set the next indexed key for the current block.
+      return new BlockWithScanInfo(block, nextIndexedKey);
+    }
+
+    @Override
+    public int rootBlockContainingKey(Cell key) {
+      BlockCursor cursor = rootCursor();
+      cursor.seekTo(key, comparator);
+      return cursor.getIndex();
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append("size=" + rootCount).append("\n");
+      BlockCursor cursor = rootCursor();
+      if (rootCount > 0) {
+        cursor.seekToEntry(0);
+        do {
+          byte[] key = cursor.copyKey();
+          sb.append("key=").append(new KeyValue.KeyOnlyKeyValue(key, 0, key.length))
+            .append("\n  offset=").append(cursor.getBlockOffset())
+            .append(", dataSize=" + cursor.getOnDiskSize()).append("\n");
+        } while (cursor.next());
+      }
+      return sb.toString();
+    }
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.hadoop.hbase.io.hfile;
 import static java.util.Objects.requireNonNull;
 
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheWriter;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.Policy.Eviction;
 import com.github.benmanes.caffeine.cache.RemovalCause;
@@ -66,6 +67,9 @@ public final class TinyLfuBlockCache implements FirstLevelBlockCache {
 
   private transient BlockCache victimCache;
 
+  /** Keys of the blocks in the cache by file, updated by a {@link BlocksByHFileWriter} */
+  private transient final BlocksByHFile blocksByHFile = new BlocksByHFile();
+
   transient final Cache<BlockCacheKey, Cacheable> cache;
 
   /**
@@ -91,7 +95,7 @@ public final class TinyLfuBlockCache implements FirstLevelBlockCache {
   public TinyLfuBlockCache(long maximumSizeInBytes, long avgBlockSize, long maxBlockSize,
     Executor executor) {
     this.cache = Caffeine.newBuilder().executor(executor).maximumWeight(maximumSizeInBytes)
-      .removalListener(new EvictionListener())
+      .removalListener(new EvictionListener()).writer(new BlocksByHFileWriter())
       .weigher(
         (BlockCacheKey key, Cacheable value) -> (int) Math.min(value.heapSize(), Integer.MAX_VALUE))
       .initialCapacity((int) Math.ceil((1.2 * maximumSizeInBytes) / avgBlockSize)).build();
@@ -235,8 +239,8 @@ public final class TinyLfuBlockCache implements FirstLevelBlockCache {
   @Override
   public int evictBlocksByHfileName(String hfileName) {
     int evicted = 0;
-    for (BlockCacheKey key : cache.asMap().keySet()) {
-      if (key.getHfileName().equals(hfileName) && evictBlock(key)) {
+    for (BlockCacheKey key : blocksByHFile.getBlocks(hfileName)) {
+      if (evictBlock(key)) {
         evicted++;
       }
     }
@@ -293,6 +297,25 @@ public final class TinyLfuBlockCache implements FirstLevelBlockCache {
       .add("heapSize", heapSize()).add("victimCache", (victimCache != null)).toString();
   }
 
+  /**
+   * Adds and removes the keys of {@link #blocksByHFile} as the entries of the cache change. Unlike
+   * the removal listener, a writer is called synchronously and atomically with the change.
+   */
+  private final class BlocksByHFileWriter implements CacheWriter<BlockCacheKey, Cacheable> {
+
+    @Override
+    public void write(BlockCacheKey key, Cacheable value) {
+      blocksByHFile.add(key);
+    }
+
+    @Override
+    public void delete(BlockCacheKey key, Cacheable value, RemovalCause cause) {
+      if (cause != RemovalCause.REPLACED) {
+        blocksByHFile.remove(key);
+      }
+    }
+  }
+
   /** A removal listener to asynchronously record evictions and populate the victim cache. */
   private final class EvictionListener implements RemovalListener<BlockCacheKey, Cacheable> {
 
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Decides which of the blocks offered to a {@link BucketCache} are worth writing to the IOEngine,
+ * so that blocks read only once, e.g. by a full table scan, do not push the working set out of the
+ * cache. Configured with {@link BucketCache#ADMISSION_POLICY_KEY}, implementations must have a
+ * constructor taking the {@link org.apache.hadoop.conf.Configuration} and the maximum number of
+ * blocks of the cache, as a long.
+ * <p>
+ * Blocks cached on write, prefetched, or of in-memory families are always admitted.
+ */
+@InterfaceAudience.Private
+public interface BlockAdmissionPolicy {
+
+  /**
+   * Records a lookup of the block in the cache, whether it was cached or not. Called concurrently
+   * by the readers.
+   */
+  void recordAccess(BlockCacheKey key);
+
+  /**
+   * Returns whether the block, which is not in the cache, should be written to the cache.
+   */
+  boolean admit(BlockCacheKey key, Cacheable block);
+}
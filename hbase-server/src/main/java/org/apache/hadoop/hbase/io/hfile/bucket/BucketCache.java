@@ -24,20 +24,20 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -61,6 +61,7 @@ import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
 import org.apache.hadoop.hbase.io.hfile.BlockCacheUtil;
 import org.apache.hadoop.hbase.io.hfile.BlockPriority;
 import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.io.hfile.BlocksByHFile;
 import org.apache.hadoop.hbase.io.hfile.CacheStats;
 import org.apache.hadoop.hbase.io.hfile.Cacheable;
 import org.apache.hadoop.hbase.io.hfile.CachedBlock;
@@ -76,6 +77,7 @@ import org.apache.hadoop.hbase.util.IdReadWriteLock;
 import org.apache.hadoop.hbase.util.IdReadWriteLockStrongRef;
 import org.apache.hadoop.hbase.util.IdReadWriteLockWithObjectPool;
 import org.apache.hadoop.hbase.util.IdReadWriteLockWithObjectPool.ReferenceType;
+import org.apache.hadoop.hbase.util.ReflectionUtils;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
@@ -143,7 +145,7 @@ public class BucketCache implements BlockCache, HeapSize {
   // Store the block in this map before writing it to cache
   transient final RAMCache ramCache;
   // In this map, store the block's meta data like offset, length
-  transient ConcurrentHashMap<BlockCacheKey, BucketEntry> backingMap;
+  transient ConcurrentMap<BlockCacheKey, BucketEntry> backingMap;
 
   /**
    * Flag if the cache is enabled or not... We shut it off if there are IO errors for some time, so
@@ -198,13 +200,7 @@ public class BucketCache implements BlockCache, HeapSize {
    */
   transient final IdReadWriteLock<Long> offsetLock;
 
-  private final NavigableSet<BlockCacheKey> blocksByHFile = new ConcurrentSkipListSet<>((a, b) -> {
-    int nameComparison = a.getHfileName().compareTo(b.getHfileName());
-    if (nameComparison != 0) {
-      return nameComparison;
-    }
-    return Long.compare(a.getOffset(), b.getOffset());
-  });
+  private final BlocksByHFile blocksByHFile = new BlocksByHFile();
 
   /** Statistics thread schedule pool (for heavy debugging, could remove) */
   private transient final ScheduledExecutorService scheduleThreadPool =
@@ -245,6 +241,44 @@ public class BucketCache implements BlockCache, HeapSize {
     "hbase.bucketcache.queue.addition.waittime";
   private static final long DEFAULT_QUEUE_ADDITION_WAIT_TIME = 0;
   private long queueAdditionWaitTime;
+
+  /**
+   * Interval, in milliseconds, between checkpoints of the backing map of a persistent cache, so
+   * that the cache can be recovered after a crash. Disabled when 0, the backing map is then only
+   * persisted on shutdown.
+   */
+  static final String CHECKPOINT_INTERVAL_KEY = "hbase.bucketcache.checkpoint.interval";
+  static final long DEFAULT_CHECKPOINT_INTERVAL = 0;
+
+  /**
+   * The checkpoint log is compacted into a new snapshot of the backing map once it holds more
+   * entries than this factor times the number of cached blocks.
+   */
+  static final String CHECKPOINT_COMPACTION_FACTOR_KEY =
+    "hbase.bucketcache.checkpoint.compaction.factor";
+  static final float DEFAULT_CHECKPOINT_COMPACTION_FACTOR = 1.0f;
+
+  // Null if checkpoints are disabled
+  private final BucketCacheCheckpointer checkpointer;
+
+  /**
+   * Class name of the {@link BlockAdmissionPolicy} filtering the blocks offered to the cache, e.g.
+   * {@link TinyLfuAdmissionPolicy}. All blocks are admitted if unset.
+   */
+  public static final String ADMISSION_POLICY_KEY = "hbase.bucketcache.admission.policy";
+
+  // Null if all blocks are admitted
+  private final BlockAdmissionPolicy admissionPolicy;
+
+  /**
+   * Whether to keep the backing map off heap, in a {@link CompactBackingMap}. Ignored if the
+   * IOEngine shares its memory with the blocks read from it.
+   */
+  public static final String COMPACT_BACKING_MAP_KEY = "hbase.bucketcache.backingmap.compact";
+  static final boolean DEFAULT_COMPACT_BACKING_MAP = false;
+
+  private final boolean compactBackingMap;
+
   /**
    * Use {@link java.security.MessageDigest} class's encryption algorithms to check persistent file
    * integrity, default algorithm is MD5
@@ -288,6 +322,10 @@ public class BucketCache implements BlockCache, HeapSize {
     this.queueAdditionWaitTime =
       conf.getLong(QUEUE_ADDITION_WAIT_TIME, DEFAULT_QUEUE_ADDITION_WAIT_TIME);
     this.prefetchedFileListPath = conf.get(PREFETCH_PERSISTENCE_PATH_KEY);
+    String admissionPolicyClass = conf.get(ADMISSION_POLICY_KEY);
+    this.admissionPolicy = admissionPolicyClass == null
+      ? null
+      : ReflectionUtils.newInstance(admissionPolicyClass, conf, blockNumCapacity);
 
     sanityCheckConfigs();
 
@@ -311,14 +349,42 @@ public class BucketCache implements BlockCache, HeapSize {
     assert writerQueues.size() == writerThreads.length;
     this.ramCache = new RAMCache();
 
-    this.backingMap = new ConcurrentHashMap<>((int) blockNumCapacity);
+    boolean compact = conf.getBoolean(COMPACT_BACKING_MAP_KEY, DEFAULT_COMPACT_BACKING_MAP);
+    if (compact && ioEngine.usesSharedMemory()) {
+      LOG.warn("Ignoring {} as the blocks read from {} share the reference count of their bucket "
+        + "entry", COMPACT_BACKING_MAP_KEY, ioEngine.getClass().getSimpleName());
+      compact = false;
+    }
+    this.compactBackingMap = compact;
+    this.backingMap = compactBackingMap
+      ? new CompactBackingMap(this::createRecycler)
+      : new ConcurrentHashMap<>((int) blockNumCapacity);
+    cacheStats.setBackingMapHeapSaved(() -> backingMap instanceof CompactBackingMap
+      ? ((CompactBackingMap) backingMap).getHeapSaved()
+      : 0);
+
+    long checkpointInterval = conf.getLong(CHECKPOINT_INTERVAL_KEY, DEFAULT_CHECKPOINT_INTERVAL);
+    if (ioEngine.isPersistent() && persistencePath != null && checkpointInterval > 0) {
+      this.checkpointer = new BucketCacheCheckpointer(this, persistencePath, conf
+        .getFloat(CHECKPOINT_COMPACTION_FACTOR_KEY, DEFAULT_CHECKPOINT_COMPACTION_FACTOR));
+    } else {
+      this.checkpointer = null;
+    }
 
     if (ioEngine.isPersistent() && persistencePath != null) {
       try {
-        retrieveFromFile(bucketSizes);
+        if (checkpointer != null && !new File(persistencePath).exists()) {
+          // We did not shut down cleanly
+          retrieveFromCheckpoint(bucketSizes);
+        } else {
+          retrieveFromFile(bucketSizes);
+        }
       } catch (IOException ioex) {
         LOG.error("Can't restore from file[" + persistencePath + "] because of ", ioex);
       }
+      if (checkpointer != null) {
+        checkpointer.start();
+      }
     }
     final String threadName = Thread.currentThread().getName();
     this.cacheEnabled = true;
@@ -334,6 +400,10 @@ public class BucketCache implements BlockCache, HeapSize {
     // every five minutes.
     this.scheduleThreadPool.scheduleAtFixedRate(new StatisticsThread(this), statThreadPeriod,
       statThreadPeriod, TimeUnit.SECONDS);
+    if (checkpointer != null) {
+      this.scheduleThreadPool.scheduleWithFixedDelay(checkpointer::checkpoint, checkpointInterval,
+        checkpointInterval, TimeUnit.MILLISECONDS);
+    }
     LOG.info("Started bucket cache; ioengine=" + ioEngineName + ", capacity="
       + StringUtils.byteDesc(capacity) + ", blockSize=" + StringUtils.byteDesc(blockSize)
       + ", writerThreadNum=" + writerThreadNum + ", writerQLen=" + writerQLen + ", persistencePath="
@@ -432,7 +502,9 @@ public class BucketCache implements BlockCache, HeapSize {
    */
   @Override
   public void cacheBlock(BlockCacheKey cacheKey, Cacheable cachedItem, boolean inMemory) {
-    cacheBlockWithWait(cacheKey, cachedItem, inMemory, false);
+    if (shouldAdmit(cacheKey, cachedItem, inMemory)) {
+      cacheBlockWithWait(cacheKey, cachedItem, inMemory, false);
+    }
   }
 
   /**
@@ -444,7 +516,11 @@ public class BucketCache implements BlockCache, HeapSize {
   @Override
   public void cacheBlock(BlockCacheKey cacheKey, Cacheable cachedItem, boolean inMemory,
     boolean waitWhenCache) {
-    cacheBlockWithWait(cacheKey, cachedItem, inMemory, waitWhenCache && queueAdditionWaitTime > 0);
+    // Blocks cached on write or prefetched are always admitted
+    if (waitWhenCache || shouldAdmit(cacheKey, cachedItem, inMemory)) {
+      cacheBlockWithWait(cacheKey, cachedItem, inMemory,
+        waitWhenCache && queueAdditionWaitTime > 0);
+    }
   }
 
   /**
@@ -472,6 +548,25 @@ public class BucketCache implements BlockCache, HeapSize {
     }
   }
 
+  /**
+   * Asks the admission policy whether a block read from the file system should be cached.
+   */
+  private boolean shouldAdmit(BlockCacheKey cacheKey, Cacheable cachedItem, boolean inMemory) {
+    if (admissionPolicy == null || inMemory || !cacheEnabled) {
+      return true;
+    }
+    if (backingMap.containsKey(cacheKey) || ramCache.containsKey(cacheKey)) {
+      // Replacing an existing block
+      return true;
+    }
+    if (admissionPolicy.admit(cacheKey, cachedItem)) {
+      cacheStats.admitted();
+      return true;
+    }
+    cacheStats.rejected();
+    return false;
+  }
+
   protected boolean shouldReplaceExistingCacheBlock(BlockCacheKey cacheKey, Cacheable newBlock) {
     return BlockCacheUtil.shouldReplaceExistingCacheBlock(this, cacheKey, newBlock);
   }
@@ -533,6 +628,9 @@ public class BucketCache implements BlockCache, HeapSize {
     if (!cacheEnabled) {
       return null;
     }
+    if (admissionPolicy != null && !repeat) {
+      admissionPolicy.recordAccess(key);
+    }
     RAMQueueEntry re = ramCache.get(key);
     if (re != null) {
       if (updateCacheMetrics) {
@@ -589,6 +687,10 @@ public class BucketCache implements BlockCache, HeapSize {
    */
   void blockEvicted(BlockCacheKey cacheKey, BucketEntry bucketEntry, boolean decrementBlockNumber,
     boolean evictedByEvictionProcess) {
+    if (checkpointer != null) {
+      // Must be queued before the space of the block can be freed
+      checkpointer.evicted(cacheKey, bucketEntry);
+    }
     bucketEntry.markAsEvicted();
     blocksByHFile.remove(cacheKey);
     if (decrementBlockNumber) {
@@ -680,7 +782,12 @@ public class BucketCache implements BlockCache, HeapSize {
    */
   private Recycler createRecycler(final BucketEntry bucketEntry) {
     return () -> {
-      freeBucketEntry(bucketEntry);
+      if (checkpointer != null) {
+        // The space is only reused once the eviction is in the checkpoint log
+        checkpointer.deferFree(bucketEntry);
+      } else {
+        freeBucketEntry(bucketEntry);
+      }
       return;
     };
   }
@@ -919,6 +1026,7 @@ public class BucketCache implements BlockCache, HeapSize {
         }
         remainingBuckets--;
       }
+      flushCheckpoint();
 
       // Check and free if there are buckets that still need freeing of space
       if (bucketSizesAboveThresholdCount(minFactor) > 0) {
@@ -958,6 +1066,7 @@ public class BucketCache implements BlockCache, HeapSize {
     } catch (Throwable t) {
       LOG.warn("Failed freeing space", t);
     } finally {
+      flushCheckpoint();
       cacheStats.evict();
       freeInProgress = false;
       freeSpaceLock.unlock();
@@ -1167,6 +1276,9 @@ public class BucketCache implements BlockCache, HeapSize {
       // Only add if non-null entry.
       if (bucketEntries[i] != null) {
         putIntoBackingMap(key, bucketEntries[i]);
+        if (checkpointer != null) {
+          checkpointer.added(key, bucketEntries[i]);
+        }
       }
       // Always remove from ramCache even if we failed adding it to the block cache above.
       boolean existed = ramCache.remove(key, re -> {
@@ -1257,9 +1369,56 @@ public class BucketCache implements BlockCache, HeapSize {
         throw new IOException(
           "Persistence file does not start with protobuf magic number. " + persistencePath);
       }
-      parsePB(BucketCacheProtos.BucketCacheEntry.parseDelimitedFrom(in));
+      long startTime = EnvironmentEdgeManager.currentTime();
+      BucketCacheProtos.BucketCacheEntry proto =
+        BucketCacheProtos.BucketCacheEntry.parseDelimitedFrom(in);
+      // Counted before the allocator drops the entries which do not fit the cache
+      long persistedBlocks = proto.getBackingMap().getEntryCount();
+      parsePB(proto);
       bucketAllocator = new BucketAllocator(cacheCapacity, bucketSizes, backingMap, realCacheSize);
       blockNumber.add(backingMap.size());
+      blocksByHFile.addAll(backingMap.keySet());
+      cacheStats.recovered(EnvironmentEdgeManager.currentTime() - startTime, backingMap.size(),
+        persistedBlocks);
+    }
+  }
+
+  /**
+   * Restores the backing map from the checkpoint, after a crash.
+   * @see BucketCacheCheckpointer
+   */
+  private void retrieveFromCheckpoint(int[] bucketSizes) throws IOException {
+    assert !cacheEnabled;
+    long startTime = EnvironmentEdgeManager.currentTime();
+    ConcurrentHashMap<BlockCacheKey, BucketEntry> recovered =
+      checkpointer.recover(this::createRecycler);
+    if (recovered == null) {
+      return;
+    }
+    // The allocator drops the entries which do not fit the cache
+    long persistedBlocks = checkpointer.getPersistedBlockCount();
+    try {
+      bucketAllocator = new BucketAllocator(cacheCapacity, bucketSizes, recovered, realCacheSize);
+    } catch (BucketAllocatorException e) {
+      realCacheSize.reset();
+      bucketAllocator = new BucketAllocator(cacheCapacity, bucketSizes);
+      throw e;
+    }
+    if (prefetchedFileListPath != null) {
+      PrefetchExecutor.retrieveFromFile(prefetchedFileListPath);
+    }
+    backingMap = adoptRecovered(recovered);
+    blockNumber.add(backingMap.size());
+    blocksByHFile.addAll(backingMap.keySet());
+    long took = EnvironmentEdgeManager.currentTime() - startTime;
+    cacheStats.recovered(took, backingMap.size(), persistedBlocks);
+    LOG.info("Recovered {} blocks from the bucket cache checkpoint in {} ms, {} were cached as of "
+      + "the last checkpoint", backingMap.size(), took, checkpointer.getLastBlockCount());
+  }
+
+  private void flushCheckpoint() {
+    if (checkpointer != null) {
+      checkpointer.flush();
     }
   }
 
@@ -1307,7 +1466,7 @@ public class BucketCache implements BlockCache, HeapSize {
     }.init(file);
   }
 
-  private void verifyCapacityAndClasses(long capacitySize, String ioclass, String mapclass)
+  void verifyCapacityAndClasses(long capacitySize, String ioclass, String mapclass)
     throws IOException {
     if (capacitySize != cacheCapacity) {
       throw new IOException("Mismatched cache capacity:" + StringUtils.byteDesc(capacitySize)
@@ -1317,7 +1476,11 @@ public class BucketCache implements BlockCache, HeapSize {
       throw new IOException("Class name for IO engine mismatch: " + ioclass + ", expected:"
         + ioEngine.getClass().getName());
     }
-    if (!backingMap.getClass().getName().equals(mapclass)) {
+    // Both backing maps are persisted the same way
+    if (
+      !ConcurrentHashMap.class.getName().equals(mapclass)
+        && !CompactBackingMap.class.getName().equals(mapclass)
+    ) {
       throw new IOException("Class name for cache map mismatch: " + mapclass + ", expected:"
         + backingMap.getClass().getName());
     }
@@ -1332,8 +1495,19 @@ public class BucketCache implements BlockCache, HeapSize {
       LOG.info("Persistent file is old format, it does not support verifying file integrity!");
     }
     verifyCapacityAndClasses(proto.getCacheCapacity(), proto.getIoClass(), proto.getMapClass());
-    backingMap = BucketProtoUtils.fromPB(proto.getDeserializersMap(), proto.getBackingMap(),
-      this::createRecycler);
+    backingMap = adoptRecovered(BucketProtoUtils.fromPB(proto.getDeserializersMap(),
+      proto.getBackingMap(), this::createRecycler));
+  }
+
+  /** Returns the backing map to use for the entries restored on startup. */
+  private ConcurrentMap<BlockCacheKey, BucketEntry>
+    adoptRecovered(ConcurrentHashMap<BlockCacheKey, BucketEntry> recovered) {
+    if (!compactBackingMap) {
+      return recovered;
+    }
+    CompactBackingMap map = new CompactBackingMap(this::createRecycler);
+    map.putAll(recovered);
+    return map;
   }
 
   /**
@@ -1383,14 +1557,20 @@ public class BucketCache implements BlockCache, HeapSize {
     LOG.info("Shutdown bucket cache: IO persistent=" + ioEngine.isPersistent() + "; path to write="
       + persistencePath);
     if (ioEngine.isPersistent() && persistencePath != null) {
+      boolean persisted = false;
       try {
         join();
         persistToFile();
+        persisted = true;
       } catch (IOException ex) {
         LOG.error("Unable to persist data on exit: " + ex.toString(), ex);
       } catch (InterruptedException e) {
         LOG.warn("Failed to persist data on exit", e);
       }
+      if (checkpointer != null) {
+        // Keep the checkpoint to recover from if we could not persist the backing map
+        checkpointer.close(persisted);
+      }
     }
   }
 
@@ -1451,11 +1631,8 @@ public class BucketCache implements BlockCache, HeapSize {
   @Override
   public int evictBlocksByHfileName(String hfileName) {
     PrefetchExecutor.removePrefetchedFileWhileEvict(hfileName);
-    Set<BlockCacheKey> keySet = blocksByHFile.subSet(new BlockCacheKey(hfileName, Long.MIN_VALUE),
-      true, new BlockCacheKey(hfileName, Long.MAX_VALUE), true);
-
     int numEvicted = 0;
-    for (BlockCacheKey key : keySet) {
+    for (BlockCacheKey key : blocksByHFile.getBlocks(hfileName)) {
       if (evictBlock(key)) {
         ++numEvicted;
       }
@@ -1601,7 +1778,21 @@ public class BucketCache implements BlockCache, HeapSize {
   @Override
   public Iterator<CachedBlock> iterator() {
     // Don't bother with ramcache since stuff is in here only a little while.
-    final Iterator<Map.Entry<BlockCacheKey, BucketEntry>> i = this.backingMap.entrySet().iterator();
+    return iterator(this.backingMap.entrySet().iterator());
+  }
+
+  @Override
+  public Iterator<CachedBlock> iterator(String hfileName) {
+    return iterator(blocksByHFile.getBlocks(hfileName).stream()
+      .<Map.Entry<BlockCacheKey, BucketEntry>> map(key -> {
+        BucketEntry bucketEntry = backingMap.get(key);
+        return bucketEntry == null
+          ? null
+          : new AbstractMap.SimpleImmutableEntry<>(key, bucketEntry);
+      }).filter(Objects::nonNull).iterator());
+  }
+
+  private Iterator<CachedBlock> iterator(final Iterator<Map.Entry<BlockCacheKey, BucketEntry>> i) {
     return new Iterator<CachedBlock>() {
       private final long now = System.nanoTime();
 
@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import org.apache.hadoop.hbase.io.ByteBuffAllocator.Recycler;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.CacheableDeserializerIdManager;
+import org.apache.hadoop.hbase.protobuf.ProtobufMagic;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.hbase.shaded.protobuf.generated.BucketCacheProtos;
+
+/**
+ * Keeps a crash consistent copy of the backing map of a persistent {@link BucketCache}, so that a
+ * region server restarting after a crash finds its cache warm, while the full persistence file is
+ * only written on a clean shutdown.
+ * <p>
+ * The checkpoint is made of a snapshot of the backing map and of an append-only log of the blocks
+ * added to and evicted from the cache since the snapshot. Changes are queued by the cache and
+ * appended to the log, then synced, by {@link #flush()}. Once the log holds more entries than the
+ * compaction factor times the number of cached blocks, {@link #checkpoint()} rolls it and writes a
+ * new snapshot.
+ * <p>
+ * Additions are queued once the block is synced to the IOEngine. The space of an evicted block must
+ * not be reused before its eviction is durable, or a recovered entry could point to another block,
+ * so the cache hands freed entries to {@link #deferFree(BucketEntry)} and they are only given back
+ * to the allocator after the next flush.
+ */
+@InterfaceAudience.Private
+final class BucketCacheCheckpointer {
+  private static final Logger LOG = LoggerFactory.getLogger(BucketCacheCheckpointer.class);
+
+  static final String CHECKPOINT_SUFFIX = ".checkpoint";
+  static final String LOG_SUFFIX = ".checkpoint.log.";
+
+  /** Do not bother compacting logs with fewer entries than this */
+  private static final long MIN_ENTRIES_TO_COMPACT = 1024;
+
+  private final BucketCache cache;
+  private final File snapshotFile;
+  private final File dir;
+  private final String logPrefix;
+  private final float compactionFactor;
+
+  private final Queue<BucketCacheProtos.BackingMapDeltaEntry> pendingEntries =
+    new ConcurrentLinkedQueue<>();
+  private final Queue<BucketEntry> pendingFrees = new ConcurrentLinkedQueue<>();
+
+  private long logSeqId;
+  private FileOutputStream logFileOut;
+  private DataOutputStream logOut;
+  private long logEntries;
+  private volatile boolean closed;
+  // The number of blocks in the cache as of the last flush of the recovered checkpoint
+  private long lastBlockCount;
+  // The number of blocks the recovered checkpoint holds, before the restore drops invalid ones
+  private long persistedBlockCount;
+
+  BucketCacheCheckpointer(BucketCache cache, String persistencePath, float compactionFactor) {
+    this.cache = cache;
+    this.snapshotFile = new File(persistencePath + CHECKPOINT_SUFFIX);
+    this.dir = snapshotFile.getAbsoluteFile().getParentFile();
+    this.logPrefix = new File(persistencePath).getName() + LOG_SUFFIX;
+    this.compactionFactor = compactionFactor;
+  }
+
+  /** Queues the addition of a block, once it has been synced to the IOEngine. */
+  void added(BlockCacheKey key, BucketEntry entry) {
+    if (!closed) {
+      pendingEntries.add(BucketProtoUtils.toAddedPB(key, entry));
+    }
+  }
+
+  /** Queues the eviction of a block, before the space of the block can be freed. */
+  void evicted(BlockCacheKey key, BucketEntry entry) {
+    if (!closed) {
+      pendingEntries.add(BucketProtoUtils.toEvictedPB(key, entry));
+    }
+  }
+
+  /** Frees the space of the entry once its eviction has been made durable by a flush. */
+  void deferFree(BucketEntry entry) {
+    pendingFrees.add(entry);
+    if (closed) {
+      releaseFrees(drainFrees());
+    }
+  }
+
+  /**
+   * Removes the checkpoint files left by a previous run, starts a new log and snapshots the current
+   * backing map. Called once the cache has been restored.
+   */
+  synchronized void start() {
+    long maxSeqId = -1;
+    for (long seqId : listLogs().keySet()) {
+      maxSeqId = Math.max(maxSeqId, seqId);
+    }
+    try {
+      rollLog(maxSeqId + 1);
+      writeSnapshot(logSeqId);
+      deleteLogsBefore(logSeqId);
+    } catch (IOException e) {
+      LOG.warn("Failed to start bucket cache checkpoints, disabling them", e);
+      abandon();
+    }
+  }
+
+  /**
+   * Appends the queued changes to the log and syncs it, then frees the space of the entries which
+   * were evicted before the flush.
+   */
+  synchronized void flush() {
+    if (closed) {
+      return;
+    }
+    // Only the frees queued before the entries are drained are covered by this flush
+    List<BucketEntry> frees = drainFrees();
+    BucketCacheProtos.BackingMapDelta.Builder delta = BucketCacheProtos.BackingMapDelta.newBuilder();
+    for (BucketCacheProtos.BackingMapDeltaEntry entry; (entry = pendingEntries.poll()) != null;) {
+      delta.addEntry(entry);
+    }
+    if (delta.getEntryCount() > 0) {
+      try {
+        byte[] bytes = delta.setBlockCount(cache.getBlockCount())
+          .putAllDeserializers(CacheableDeserializerIdManager.save()).build().toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        logOut.writeInt(bytes.length);
+        logOut.writeInt((int) crc.getValue());
+        logOut.write(bytes);
+        logOut.flush();
+        logFileOut.getChannel().force(false);
+        logEntries += delta.getEntryCount();
+      } catch (IOException e) {
+        LOG.warn("Failed to append to bucket cache checkpoint log, disabling checkpoints", e);
+        abandon();
+      }
+    }
+    releaseFrees(frees);
+  }
+
+  /** Flushes the queued changes, and compacts the log into a new snapshot if it grew too large. */
+  void checkpoint() {
+    long snapshotSeqId;
+    synchronized (this) {
+      flush();
+      if (
+        closed
+          || logEntries < Math.max(MIN_ENTRIES_TO_COMPACT, compactionFactor * cache.getBlockCount())
+      ) {
+        return;
+      }
+      // Changes made while the backing map is serialized go to the new log, and replaying them
+      // over a snapshot which already has them is harmless.
+      try {
+        rollLog(logSeqId + 1);
+      } catch (IOException e) {
+        LOG.warn("Failed to roll bucket cache checkpoint log, disabling checkpoints", e);
+        abandon();
+        return;
+      }
+      snapshotSeqId = logSeqId;
+    }
+    try {
+      writeSnapshot(snapshotSeqId);
+      deleteLogsBefore(snapshotSeqId);
+    } catch (IOException e) {
+      // The previous snapshot and the logs since then are still there
+      LOG.warn("Failed to write bucket cache checkpoint", e);
+    }
+  }
+
+  /**
+   * Stops checkpointing after syncing the queued changes, e.g. on shutdown. The checkpoint files
+   * are kept, unless deleteFiles is set because the full persistence file has been written.
+   */
+  synchronized void close(boolean deleteFiles) {
+    flush();
+    closed = true;
+    closeLog();
+    releaseFrees(drainFrees());
+    if (deleteFiles) {
+      deleteFiles();
+    }
+  }
+
+  /**
+   * Reads the last snapshot and replays the logs written after it.
+   * @return the recovered backing map, or null if there is no checkpoint
+   */
+  ConcurrentHashMap<BlockCacheKey, BucketEntry> recover(
+    Function<BucketEntry, Recycler> createRecycler) throws IOException {
+    if (!snapshotFile.exists()) {
+      return null;
+    }
+    long snapshotSeqId;
+    BucketCacheProtos.BucketCacheEntry proto;
+    try (DataInputStream in = new DataInputStream(new FileInputStream(snapshotFile))) {
+      byte[] magic = new byte[ProtobufMagic.lengthOfPBMagic()];
+      in.readFully(magic);
+      if (!ProtobufMagic.isPBMagicPrefix(magic)) {
+        throw new IOException(
+          "Checkpoint does not start with protobuf magic number. " + snapshotFile);
+      }
+      snapshotSeqId = in.readLong();
+      proto = BucketCacheProtos.BucketCacheEntry.parseDelimitedFrom(in);
+    }
+    cache.verifyCapacityAndClasses(proto.getCacheCapacity(), proto.getIoClass(),
+      proto.getMapClass());
+    ConcurrentHashMap<BlockCacheKey, BucketEntry> backingMap = BucketProtoUtils
+      .fromPB(proto.getDeserializersMap(), proto.getBackingMap(), createRecycler);
+    lastBlockCount = backingMap.size();
+    for (Map.Entry<Long, File> log : listLogs().tailMap(snapshotSeqId).entrySet()) {
+      try (DataInputStream in = new DataInputStream(new FileInputStream(log.getValue()))) {
+        for (byte[] bytes; (bytes = readRecord(in)) != null;) {
+          lastBlockCount = BucketProtoUtils.applyDelta(backingMap,
+            BucketCacheProtos.BackingMapDelta.parseFrom(bytes), createRecycler);
+        }
+      }
+    }
+    persistedBlockCount = backingMap.size();
+    return backingMap;
+  }
+
+  /**
+   * Returns the number of blocks the snapshot and the logs read by {@link #recover(Function)} hold,
+   * counted before the entries which fail validation on restore are dropped.
+   */
+  long getPersistedBlockCount() {
+    return persistedBlockCount;
+  }
+
+  /**
+   * Returns the number of blocks which were in the cache as of the last flush of the checkpoint
+   * read by {@link #recover(Function)}.
+   */
+  long getLastBlockCount() {
+    return lastBlockCount;
+  }
+
+  /** Returns the next record of the log, or null at the end of the log or on a torn record. */
+  private byte[] readRecord(DataInputStream in) throws IOException {
+    try {
+      int length = in.readInt();
+      int checksum = in.readInt();
+      if (length < 0) {
+        return null;
+      }
+      byte[] bytes = new byte[length];
+      in.readFully(bytes);
+      CRC32 crc = new CRC32();
+      crc.update(bytes, 0, bytes.length);
+      return (int) crc.getValue() == checksum ? bytes : null;
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  private void writeSnapshot(long seqId) throws IOException {
+    File tmp = new File(snapshotFile.getPath() + ".tmp");
+    try (FileOutputStream fos = new FileOutputStream(tmp, false)) {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+      out.write(ProtobufMagic.PB_MAGIC);
+      out.writeLong(seqId);
+      BucketProtoUtils.toCheckpointPB(cache).writeDelimitedTo(out);
+      out.flush();
+      fos.getChannel().force(true);
+    }
+    Files.move(tmp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+      StandardCopyOption.ATOMIC_MOVE);
+    LOG.debug("Wrote bucket cache checkpoint {} at log {}", snapshotFile, seqId);
+  }
+
+  private void rollLog(long seqId) throws IOException {
+    closeLog();
+    logFileOut = new FileOutputStream(new File(dir, logPrefix + seqId), false);
+    logOut = new DataOutputStream(new BufferedOutputStream(logFileOut));
+    logSeqId = seqId;
+    logEntries = 0;
+  }
+
+  private void closeLog() {
+    if (logOut != null) {
+      try {
+        logOut.close();
+      } catch (IOException e) {
+        LOG.warn("Failed to close bucket cache checkpoint log", e);
+      }
+      logOut = null;
+      logFileOut = null;
+    }
+  }
+
+  private void abandon() {
+    closed = true;
+    closeLog();
+    // The checkpoint would not be consistent with the cache anymore
+    deleteFiles();
+    pendingEntries.clear();
+    releaseFrees(drainFrees());
+  }
+
+  private TreeMap<Long, File> listLogs() {
+    TreeMap<Long, File> logs = new TreeMap<>();
+    File[] files = dir.listFiles((d, name) -> name.startsWith(logPrefix));
+    if (files != null) {
+      for (File file : files) {
+        try {
+          logs.put(Long.parseLong(file.getName().substring(logPrefix.length())), file);
+        } catch (NumberFormatException e) {
+          LOG.warn("Ignoring unexpected file {}", file);
+        }
+      }
+    }
+    return logs;
+  }
+
+  private void deleteLogsBefore(long seqId) {
+    for (File log : listLogs().headMap(seqId).values()) {
+      if (!log.delete()) {
+        LOG.warn("Failed to delete bucket cache checkpoint log {}", log);
+      }
+    }
+  }
+
+  private void deleteFiles() {
+    deleteLogsBefore(Long.MAX_VALUE);
+    if (snapshotFile.exists() && !snapshotFile.delete()) {
+      LOG.warn("Failed to delete bucket cache checkpoint {}", snapshotFile);
+    }
+  }
+
+  private List<BucketEntry> drainFrees() {
+    List<BucketEntry> frees = new ArrayList<>();
+    for (BucketEntry entry; (entry = pendingFrees.poll()) != null;) {
+      frees.add(entry);
+    }
+    return frees;
+  }
+
+  private void releaseFrees(List<BucketEntry> frees) {
+    for (BucketEntry entry : frees) {
+      cache.freeBucketEntry(entry);
+    }
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.hadoop.hbase.io.hfile.bucket;
 
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 import org.apache.hadoop.hbase.io.hfile.CacheStats;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.yetus.audience.InterfaceAudience;
@@ -36,6 +37,18 @@ public class BucketCacheStats extends CacheStats {
   /* Tracing failed Bucket Cache allocations. */
   private LongAdder allocationFailCount = new LongAdder();
 
+  /* Decisions of the admission policy. */
+  private final LongAdder admittedCount = new LongAdder();
+  private final LongAdder rejectedCount = new LongAdder();
+
+  /* Restoring the cache from its persistence file or checkpoint on startup. */
+  private volatile long recoveryTime;
+  private volatile long recoveredBlockCount;
+  private volatile long persistedBlockCount;
+
+  /* Heap not used by the backing map as its entries are kept off heap. */
+  private volatile LongSupplier backingMapHeapSaved = () -> 0;
+
   BucketCacheStats() {
     super("BucketCache");
 
@@ -45,7 +58,10 @@ public class BucketCacheStats extends CacheStats {
   @Override
   public String toString() {
     return super.toString() + ", ioHitsPerSecond=" + getIOHitsPerSecond() + ", ioTimePerHit="
-      + getIOTimePerHit() + ", allocationFailCount=" + getAllocationFailCount();
+      + getIOTimePerHit() + ", allocationFailCount=" + getAllocationFailCount()
+      + ", admittedCount=" + getAdmittedCount() + ", rejectedCount=" + getRejectedCount()
+      + ", recoveryTime=" + getRecoveryTime() + ", recoveredBlockRatio="
+      + getRecoveredBlockRatio() + ", backingMapHeapSaved=" + getBackingMapHeapSaved();
   }
 
   public void ioHit(long time) {
@@ -70,6 +86,8 @@ public class BucketCacheStats extends CacheStats {
     ioHitCount.reset();
     ioHitTime.reset();
     allocationFailCount.reset();
+    admittedCount.reset();
+    rejectedCount.reset();
   }
 
   public long getAllocationFailCount() {
@@ -79,4 +97,59 @@ public class BucketCacheStats extends CacheStats {
   public void allocationFailed() {
     allocationFailCount.increment();
   }
+
+  public void admitted() {
+    admittedCount.increment();
+  }
+
+  public void rejected() {
+    rejectedCount.increment();
+  }
+
+  /** Returns the number of blocks the admission policy let into the cache. */
+  public long getAdmittedCount() {
+    return admittedCount.sum();
+  }
+
+  /** Returns the number of blocks the admission policy kept out of the cache. */
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  void recovered(long time, long recoveredBlocks, long persistedBlocks) {
+    recoveryTime = time;
+    recoveredBlockCount = recoveredBlocks;
+    persistedBlockCount = persistedBlocks;
+  }
+
+  /** Returns the time it took to restore the cache on startup, in milliseconds. */
+  public long getRecoveryTime() {
+    return recoveryTime;
+  }
+
+  /** Returns the number of blocks restored on startup. */
+  public long getRecoveredBlockCount() {
+    return recoveredBlockCount;
+  }
+
+  /**
+   * Returns the fraction of the blocks persisted by the previous run, or found in its last
+   * checkpoint after a crash, which were restored on startup.
+   */
+  public double getRecoveredBlockRatio() {
+    long persisted = persistedBlockCount;
+    return persisted == 0 ? 0 : Math.min(1.0, (double) recoveredBlockCount / persisted);
+  }
+
+  void setBackingMapHeapSaved(LongSupplier backingMapHeapSaved) {
+    this.backingMapHeapSaved = backingMapHeapSaved;
+  }
+
+  /**
+   * Returns an estimate of the heap saved by keeping the backing map off heap, in bytes, or 0 if it
+   * is on heap.
+   */
+  public long getBackingMapHeapSaved() {
+    return backingMapHeapSaved.getAsLong();
+  }
 }
@@ -91,7 +91,7 @@ class BucketEntry implements HBaseReferenceCounted {
   /**
    * Time this block was cached. Presumes we are created just before we are added to the cache.
    */
-  private final long cachedTime = System.nanoTime();
+  private final long cachedTime;
 
   /**
    * @param createRecycler used to free this {@link BucketEntry} when {@link BucketEntry#refCnt}
@@ -99,12 +99,21 @@ class BucketEntry implements HBaseReferenceCounted {
    *                       for test.
    */
   BucketEntry(long offset, int length, long accessCounter, boolean inMemory,
+    Function<BucketEntry, Recycler> createRecycler, ByteBuffAllocator allocator) {
+    this(offset, length, System.nanoTime(), accessCounter, inMemory, createRecycler, allocator);
+  }
+
+  /**
+   * Creates an entry for a block cached at the given time, as given by {@link System#nanoTime()}.
+   */
+  BucketEntry(long offset, int length, long cachedTime, long accessCounter, boolean inMemory,
     Function<BucketEntry, Recycler> createRecycler, ByteBuffAllocator allocator) {
     if (createRecycler == null) {
       throw new IllegalArgumentException("createRecycler could not be null!");
     }
     setOffset(offset);
     this.length = length;
+    this.cachedTime = cachedTime;
     this.accessCounter = accessCounter;
     this.priority = inMemory ? BlockPriority.MEMORY : BlockPriority.MULTI;
     this.refCnt = RefCnt.create(createRecycler.apply(this));
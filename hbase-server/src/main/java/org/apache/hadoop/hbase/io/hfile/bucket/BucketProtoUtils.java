@@ -41,14 +41,36 @@ final class BucketProtoUtils {
   }
 
   static BucketCacheProtos.BucketCacheEntry toPB(BucketCache cache) {
+    return toPBBuilder(cache)
+      .setChecksum(ByteString
+        .copyFrom(((PersistentIOEngine) cache.ioEngine).calculateChecksum(cache.getAlgorithm())))
+      .build();
+  }
+
+  /**
+   * Serializes the backing map of the cache for a checkpoint. Unlike {@link #toPB(BucketCache)}
+   * there is no checksum of the cache files, as they keep changing while the cache is in use.
+   */
+  static BucketCacheProtos.BucketCacheEntry toCheckpointPB(BucketCache cache) {
+    return toPBBuilder(cache).build();
+  }
+
+  private static BucketCacheProtos.BucketCacheEntry.Builder toPBBuilder(BucketCache cache) {
     return BucketCacheProtos.BucketCacheEntry.newBuilder().setCacheCapacity(cache.getMaxSize())
       .setIoClass(cache.ioEngine.getClass().getName())
       .setMapClass(cache.backingMap.getClass().getName())
       .putAllDeserializers(CacheableDeserializerIdManager.save())
-      .setBackingMap(BucketProtoUtils.toPB(cache.backingMap))
-      .setChecksum(ByteString
-        .copyFrom(((PersistentIOEngine) cache.ioEngine).calculateChecksum(cache.getAlgorithm())))
-      .build();
+      .setBackingMap(BucketProtoUtils.toPB(cache.backingMap));
+  }
+
+  static BucketCacheProtos.BackingMapDeltaEntry toAddedPB(BlockCacheKey key, BucketEntry entry) {
+    return BucketCacheProtos.BackingMapDeltaEntry.newBuilder().setKey(toPB(key))
+      .setAdded(toPB(entry)).build();
+  }
+
+  static BucketCacheProtos.BackingMapDeltaEntry toEvictedPB(BlockCacheKey key, BucketEntry entry) {
+    return BucketCacheProtos.BackingMapDeltaEntry.newBuilder().setKey(toPB(key))
+      .setEvictedOffset(entry.offset()).build();
   }
 
   private static BucketCacheProtos.BackingMap toPB(Map<BlockCacheKey, BucketEntry> backingMap) {
@@ -121,34 +143,64 @@ final class BucketProtoUtils {
     throws IOException {
     ConcurrentHashMap<BlockCacheKey, BucketEntry> result = new ConcurrentHashMap<>();
     for (BucketCacheProtos.BackingMapEntry entry : backingMap.getEntryList()) {
-      BucketCacheProtos.BlockCacheKey protoKey = entry.getKey();
-      BlockCacheKey key = new BlockCacheKey(protoKey.getHfilename(), protoKey.getOffset(),
-        protoKey.getPrimaryReplicaBlock(), fromPb(protoKey.getBlockType()));
-      BucketCacheProtos.BucketEntry protoValue = entry.getValue();
-      // TODO:We use ByteBuffAllocator.HEAP here, because we could not get the ByteBuffAllocator
-      // which created by RpcServer elegantly.
-      BucketEntry value = new BucketEntry(protoValue.getOffset(), protoValue.getLength(),
-        protoValue.getAccessCounter(),
-        protoValue.getPriority() == BucketCacheProtos.BlockPriority.memory, createRecycler,
-        ByteBuffAllocator.HEAP);
-      // This is the deserializer that we stored
-      int oldIndex = protoValue.getDeserialiserIndex();
-      String deserializerClass = deserializers.get(oldIndex);
-      if (deserializerClass == null) {
-        throw new IOException("Found deserializer index without matching entry.");
-      }
-      // Convert it to the identifier for the deserializer that we have in this runtime
-      if (deserializerClass.equals(HFileBlock.BlockDeserializer.class.getName())) {
-        int actualIndex = HFileBlock.BLOCK_DESERIALIZER.getDeserializerIdentifier();
-        value.deserializerIndex = (byte) actualIndex;
+      result.put(fromPB(entry.getKey()), fromPB(deserializers, entry.getValue(), createRecycler));
+    }
+    return result;
+  }
+
+  /**
+   * Applies a batch of changes read from the checkpoint log to the backing map.
+   * @return the number of blocks in the cache once the batch was applied
+   */
+  static long applyDelta(Map<BlockCacheKey, BucketEntry> backingMap,
+    BucketCacheProtos.BackingMapDelta delta, Function<BucketEntry, Recycler> createRecycler)
+    throws IOException {
+    for (BucketCacheProtos.BackingMapDeltaEntry entry : delta.getEntryList()) {
+      BlockCacheKey key = fromPB(entry.getKey());
+      if (entry.hasAdded()) {
+        backingMap.put(key,
+          fromPB(delta.getDeserializersMap(), entry.getAdded(), createRecycler));
       } else {
-        // We could make this more plugable, but right now HFileBlock is the only implementation
-        // of Cacheable outside of tests, so this might not ever matter.
-        throw new IOException("Unknown deserializer class found: " + deserializerClass);
+        // The block may have been cached again at another offset in the meantime
+        BucketEntry current = backingMap.get(key);
+        if (current != null && current.offset() == entry.getEvictedOffset()) {
+          backingMap.remove(key, current);
+        }
       }
-      result.put(key, value);
     }
-    return result;
+    return delta.getBlockCount();
+  }
+
+  private static BlockCacheKey fromPB(BucketCacheProtos.BlockCacheKey protoKey) {
+    return new BlockCacheKey(protoKey.getHfilename(), protoKey.getOffset(),
+      protoKey.getPrimaryReplicaBlock(), fromPb(protoKey.getBlockType()));
+  }
+
+  private static BucketEntry fromPB(Map<Integer, String> deserializers,
+    BucketCacheProtos.BucketEntry protoValue, Function<BucketEntry, Recycler> createRecycler)
+    throws IOException {
+    // TODO:We use ByteBuffAllocator.HEAP here, because we could not get the ByteBuffAllocator
+    // which created by RpcServer elegantly.
+    BucketEntry value = new BucketEntry(protoValue.getOffset(), protoValue.getLength(),
+      protoValue.getAccessCounter(),
+      protoValue.getPriority() == BucketCacheProtos.BlockPriority.memory, createRecycler,
+      ByteBuffAllocator.HEAP);
+    // This is the deserializer that we stored
+    int oldIndex = protoValue.getDeserialiserIndex();
+    String deserializerClass = deserializers.get(oldIndex);
+    if (deserializerClass == null) {
+      throw new IOException("Found deserializer index without matching entry.");
+    }
+    // Convert it to the identifier for the deserializer that we have in this runtime
+    if (deserializerClass.equals(HFileBlock.BlockDeserializer.class.getName())) {
+      int actualIndex = HFileBlock.BLOCK_DESERIALIZER.getDeserializerIdentifier();
+      value.deserializerIndex = (byte) actualIndex;
+    } else {
+      // We could make this more plugable, but right now HFileBlock is the only implementation
+      // of Cacheable outside of tests, so this might not ever matter.
+      throw new IOException("Unknown deserializer class found: " + deserializerClass);
+    }
+    return value;
   }
 
   private static BlockType fromPb(BucketCacheProtos.BlockType blockType) {
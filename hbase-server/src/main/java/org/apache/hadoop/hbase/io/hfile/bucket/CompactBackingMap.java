@@ -0,0 +1,714 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import org.apache.hadoop.hbase.io.ByteBuffAllocator;
+import org.apache.hadoop.hbase.io.ByteBuffAllocator.Recycler;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockPriority;
+import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.nio.RefCnt;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A backing map for the {@link BucketCache} which keeps its entries off heap, instead of the three
+ * or four objects per cached block of a {@link ConcurrentHashMap} of {@link BucketEntry}s.
+ * <p>
+ * Keys are stored as the id of their file name, interned on heap once per file, and the offset of
+ * the block, in open addressing hash tables of fixed size slots held in direct buffers. The map is
+ * split in segments, each guarded by a {@link StampedLock}: lookups are optimistic and only take
+ * the read lock if they raced with a write. Removals shift the following entries back instead of
+ * leaving tombstones.
+ * <p>
+ * A {@link BucketEntry} is created each time an entry is read, so entries are compared by their
+ * location and the time they were cached rather than by identity, and access counters are written
+ * through to the table. As each of these entries has its own reference count, this map can only
+ * be used with an {@link IOEngine} which does not share its memory with the blocks it returns.
+ */
+@InterfaceAudience.Private
+class CompactBackingMap extends AbstractMap<BlockCacheKey, BucketEntry>
+  implements ConcurrentMap<BlockCacheKey, BucketEntry> {
+
+  // Slot layout, in bytes. A file id of 0 marks an empty slot.
+  private static final int FILE_ID = 0;
+  private static final int LENGTH = 4;
+  private static final int OFFSET = 8;
+  private static final int BUCKET_OFFSET = 16;
+  private static final int ACCESS_COUNTER = 24;
+  private static final int CACHED_TIME = 32;
+  private static final int DESERIALIZER_INDEX = 40;
+  private static final int BLOCK_TYPE = 41;
+  private static final int FLAGS = 42;
+  static final int SLOT_SIZE = 48;
+
+  private static final byte PRIMARY_FLAG = 1;
+  private static final byte IN_MEMORY_FLAG = 2;
+
+  private static final int SEGMENT_BITS = 6;
+  private static final int INITIAL_SEGMENT_CAPACITY = 64;
+  private static final BlockType[] BLOCK_TYPES = BlockType.values();
+
+  /** Estimated heap used by an entry of a {@link ConcurrentHashMap} backing map. */
+  static final long ON_HEAP_ENTRY_SIZE = ClassSize.CONCURRENT_HASHMAP_ENTRY + ClassSize.REFERENCE
+    + ClassSize.align(BlockCacheKey.FIXED_OVERHEAD)
+    + ClassSize.align(ClassSize.estimateBase(BucketEntry.class, false))
+    + ClassSize.align(ClassSize.estimateBase(RefCnt.class, false)) + ClassSize.ATOMIC_BOOLEAN
+    + ClassSize.align(ClassSize.OBJECT + 2 * ClassSize.REFERENCE);
+
+  /** Estimated heap used by the name and id of each file with cached blocks. */
+  private static final long FILE_ID_SIZE = 2 * ClassSize.CONCURRENT_HASHMAP_ENTRY
+    + ClassSize.align(ClassSize.OBJECT + 2 * Integer.BYTES) + ClassSize.INTEGER;
+
+  private final Function<BucketEntry, Recycler> createRecycler;
+  private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+  private final ConcurrentHashMap<String, FileId> fileIds = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Integer, String> fileNames = new ConcurrentHashMap<>();
+  private final AtomicInteger nextFileId = new AtomicInteger();
+  // The allocator of the last block put, which all the blocks of a region server share
+  private volatile ByteBuffAllocator allocator = ByteBuffAllocator.HEAP;
+
+  /**
+   * @param createRecycler used to free the entries read from this map, see
+   *                       {@link BucketEntry#BucketEntry}
+   */
+  CompactBackingMap(Function<BucketEntry, Recycler> createRecycler) {
+    this.createRecycler = createRecycler;
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  private static final class FileId {
+    final int id;
+    // Number of entries of the file, guarded by the lock of the fileIds map entry
+    int count;
+
+    FileId(int id) {
+      this.id = id;
+    }
+  }
+
+  /**
+   * A {@link BucketEntry} read from this map. Two of these are equal if they describe the same
+   * cached block.
+   */
+  private static final class CompactBucketEntry extends BucketEntry {
+    private final CompactBackingMap map;
+    private final BlockCacheKey key;
+
+    CompactBucketEntry(CompactBackingMap map, BlockCacheKey key, long offset, int length,
+      long cachedTime, long accessCounter, boolean inMemory, byte deserializerIndex) {
+      super(offset, length, cachedTime, accessCounter, inMemory, map.createRecycler,
+        map.allocator);
+      this.map = map;
+      this.key = key;
+      this.deserializerIndex = deserializerIndex;
+    }
+
+    @Override
+    void access(long accessCounter) {
+      super.access(accessCounter);
+      map.access(key, getCachedTime(), accessCounter);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof CompactBucketEntry)) {
+        return false;
+      }
+      CompactBucketEntry e = (CompactBucketEntry) o;
+      return offset() == e.offset() && getLength() == e.getLength()
+        && getCachedTime() == e.getCachedTime();
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(offset()) * 31 + Long.hashCode(getCachedTime());
+    }
+  }
+
+  private static int hash(int fileId, long offset) {
+    long h = (((long) fileId) << 40 ^ offset) * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private Segment segmentFor(int hash) {
+    return segments[hash >>> (Integer.SIZE - SEGMENT_BITS)];
+  }
+
+  /** Returns the id of the file, or 0 if it has no entries. */
+  private int fileIdOf(BlockCacheKey key) {
+    String name = key.getHfileName();
+    FileId fileId = name == null ? null : fileIds.get(name);
+    return fileId == null ? 0 : fileId.id;
+  }
+
+  /** Returns the id of the file, counting a new entry for it. */
+  private int acquireFileId(String name) {
+    return fileIds.compute(name, (n, fileId) -> {
+      if (fileId == null) {
+        fileId = new FileId(nextFileId.incrementAndGet());
+        fileNames.put(fileId.id, n);
+      }
+      fileId.count++;
+      return fileId;
+    }).id;
+  }
+
+  private void releaseFileId(String name) {
+    fileIds.computeIfPresent(name, (n, fileId) -> {
+      if (--fileId.count > 0) {
+        return fileId;
+      }
+      fileNames.remove(fileId.id);
+      return null;
+    });
+  }
+
+  private static BlockCacheKey toKey(Object key) {
+    return key instanceof BlockCacheKey ? (BlockCacheKey) key : null;
+  }
+
+  @Override
+  public BucketEntry get(Object k) {
+    BlockCacheKey key = toKey(k);
+    int fileId = key == null ? 0 : fileIdOf(key);
+    if (fileId == 0) {
+      return null;
+    }
+    int hash = hash(fileId, key.getOffset());
+    return segmentFor(hash).get(key, fileId, hash);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public BucketEntry put(BlockCacheKey key, BucketEntry value) {
+    return put(key, value, true);
+  }
+
+  @Override
+  public BucketEntry putIfAbsent(BlockCacheKey key, BucketEntry value) {
+    return put(key, value, false);
+  }
+
+  private BucketEntry put(BlockCacheKey key, BucketEntry value, boolean replace) {
+    if (key.getHfileName() == null || value == null) {
+      throw new NullPointerException();
+    }
+    allocator = value.allocator;
+    int fileId = acquireFileId(key.getHfileName());
+    int hash = hash(fileId, key.getOffset());
+    BucketEntry previous = segmentFor(hash).put(key, value, fileId, hash, replace);
+    if (previous != null) {
+      // The file already had an entry for the key
+      releaseFileId(key.getHfileName());
+    }
+    return previous;
+  }
+
+  @Override
+  public BucketEntry remove(Object key) {
+    return remove(toKey(key), null);
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    return value instanceof BucketEntry && remove(toKey(key), (BucketEntry) value) != null;
+  }
+
+  /**
+   * Removes the entry of the key, if it describes the same cached block as the given entry or if
+   * no entry is given.
+   */
+  private BucketEntry remove(BlockCacheKey key, BucketEntry expected) {
+    int fileId = key == null ? 0 : fileIdOf(key);
+    if (fileId == 0) {
+      return null;
+    }
+    int hash = hash(fileId, key.getOffset());
+    BucketEntry removed = segmentFor(hash).remove(key, fileId, hash, expected);
+    if (removed != null) {
+      releaseFileId(key.getHfileName());
+    }
+    return removed;
+  }
+
+  @Override
+  public boolean replace(BlockCacheKey key, BucketEntry oldValue, BucketEntry newValue) {
+    if (oldValue == null) {
+      throw new NullPointerException();
+    }
+    return replace(key, oldValue, newValue) != null;
+  }
+
+  @Override
+  public BucketEntry replace(BlockCacheKey key, BucketEntry value) {
+    return replace(key, null, value);
+  }
+
+  /**
+   * Replaces the entry of the key, if it describes the same cached block as the given entry or if
+   * no entry is given.
+   */
+  private BucketEntry replace(BlockCacheKey key, BucketEntry expected, BucketEntry value) {
+    if (key == null || value == null) {
+      throw new NullPointerException();
+    }
+    int fileId = fileIdOf(key);
+    if (fileId == 0) {
+      return null;
+    }
+    int hash = hash(fileId, key.getOffset());
+    BucketEntry replaced = segmentFor(hash).replace(key, value, fileId, hash, expected);
+    if (replaced != null) {
+      allocator = value.allocator;
+    }
+    return replaced;
+  }
+
+  void access(BlockCacheKey key, long cachedTime, long accessCounter) {
+    int fileId = fileIdOf(key);
+    if (fileId != 0) {
+      int hash = hash(fileId, key.getOffset());
+      segmentFor(hash).access(fileId, key.getOffset(), hash, cachedTime, accessCounter);
+    }
+  }
+
+  @Override
+  public int size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size;
+    }
+    return (int) Math.min(Integer.MAX_VALUE, size);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (Segment segment : segments) {
+      if (segment.size > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    long[] stamps = new long[segments.length];
+    for (int i = 0; i < segments.length; i++) {
+      stamps[i] = segments[i].lock.writeLock();
+    }
+    try {
+      for (Segment segment : segments) {
+        segment.reset();
+      }
+      fileIds.clear();
+      fileNames.clear();
+    } finally {
+      for (int i = 0; i < segments.length; i++) {
+        segments[i].lock.unlockWrite(stamps[i]);
+      }
+    }
+  }
+
+  /** Returns the size of the direct buffers holding the entries. */
+  long getOffHeapSize() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.capacity() * (long) SLOT_SIZE;
+    }
+    return size;
+  }
+
+  /**
+   * Returns an estimate of the heap a {@link ConcurrentHashMap} of the same entries would use,
+   * less the heap used to intern the file names.
+   */
+  long getHeapSaved() {
+    return Math.max(0, size() * ON_HEAP_ENTRY_SIZE - fileIds.size() * FILE_ID_SIZE);
+  }
+
+  /**
+   * Returns a weakly consistent view of the entries: each segment is copied when the iteration
+   * reaches it.
+   */
+  @Override
+  public Set<Map.Entry<BlockCacheKey, BucketEntry>> entrySet() {
+    return new AbstractSet<Map.Entry<BlockCacheKey, BucketEntry>>() {
+      @Override
+      public Iterator<Map.Entry<BlockCacheKey, BucketEntry>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return CompactBackingMap.this.size();
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        if (!(o instanceof Map.Entry)) {
+          return false;
+        }
+        BucketEntry entry = get(((Map.Entry<?, ?>) o).getKey());
+        return entry != null && entry.equals(((Map.Entry<?, ?>) o).getValue());
+      }
+
+      @Override
+      public boolean remove(Object o) {
+        return o instanceof Map.Entry
+          && CompactBackingMap.this.remove(((Map.Entry<?, ?>) o).getKey(),
+            ((Map.Entry<?, ?>) o).getValue());
+      }
+
+      @Override
+      public void clear() {
+        CompactBackingMap.this.clear();
+      }
+    };
+  }
+
+  private final class EntryIterator implements Iterator<Map.Entry<BlockCacheKey, BucketEntry>> {
+    private int segment;
+    private Iterator<Map.Entry<BlockCacheKey, BucketEntry>> current =
+      Collections.emptyIterator();
+    private Map.Entry<BlockCacheKey, BucketEntry> last;
+
+    @Override
+    public boolean hasNext() {
+      while (!current.hasNext() && segment < segments.length) {
+        current = segments[segment++].entries().iterator();
+      }
+      return current.hasNext();
+    }
+
+    @Override
+    public Map.Entry<BlockCacheKey, BucketEntry> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = current.next();
+      return last;
+    }
+
+    @Override
+    public void remove() {
+      if (last == null) {
+        throw new IllegalStateException();
+      }
+      CompactBackingMap.this.remove(last.getKey(), last.getValue());
+      last = null;
+    }
+  }
+
+  private final class Segment {
+    final StampedLock lock = new StampedLock();
+    // Guarded by the write lock, may be read optimistically
+    ByteBuffer table;
+    int mask;
+    volatile int size;
+
+    Segment() {
+      reset();
+    }
+
+    void reset() {
+      table = ByteBuffer.allocateDirect(INITIAL_SEGMENT_CAPACITY * SLOT_SIZE);
+      mask = INITIAL_SEGMENT_CAPACITY - 1;
+      size = 0;
+    }
+
+    int capacity() {
+      return mask + 1;
+    }
+
+    /**
+     * Returns the slot of the key, or -1. The table may be read without holding the lock, so the
+     * search ends after going around the table once.
+     */
+    private int find(ByteBuffer t, int m, int fileId, long offset, int hash) {
+      int slot = hash & m;
+      for (int i = 0; i <= m; i++) {
+        int base = slot * SLOT_SIZE;
+        int id = t.getInt(base + FILE_ID);
+        if (id == 0) {
+          return -1;
+        }
+        if (id == fileId && t.getLong(base + OFFSET) == offset) {
+          return slot;
+        }
+        slot = (slot + 1) & m;
+      }
+      return -1;
+    }
+
+    BucketEntry get(BlockCacheKey key, int fileId, int hash) {
+      long stamp = lock.tryOptimisticRead();
+      boolean locked = false;
+      try {
+        for (;;) {
+          ByteBuffer t = table;
+          int m = mask;
+          int slot = t.capacity() == (m + 1) * SLOT_SIZE
+            ? find(t, m, fileId, key.getOffset(), hash)
+            : -1;
+          long bucketOffset = 0;
+          int length = 0;
+          long cachedTime = 0;
+          long accessCounter = 0;
+          byte deserializerIndex = 0;
+          byte flags = 0;
+          if (slot >= 0) {
+            int base = slot * SLOT_SIZE;
+            bucketOffset = t.getLong(base + BUCKET_OFFSET);
+            length = t.getInt(base + LENGTH);
+            cachedTime = t.getLong(base + CACHED_TIME);
+            accessCounter = t.getLong(base + ACCESS_COUNTER);
+            deserializerIndex = t.get(base + DESERIALIZER_INDEX);
+            flags = t.get(base + FLAGS);
+          }
+          if (locked || lock.validate(stamp)) {
+            return slot < 0
+              ? null
+              : new CompactBucketEntry(CompactBackingMap.this, key, bucketOffset, length,
+                cachedTime, accessCounter, (flags & IN_MEMORY_FLAG) != 0, deserializerIndex);
+          }
+          stamp = lock.readLock();
+          locked = true;
+        }
+      } finally {
+        if (locked) {
+          lock.unlockRead(stamp);
+        }
+      }
+    }
+
+    BucketEntry put(BlockCacheKey key, BucketEntry value, int fileId, int hash,
+      boolean replace) {
+      long stamp = lock.writeLock();
+      try {
+        int slot = find(table, mask, fileId, key.getOffset(), hash);
+        BucketEntry previous = null;
+        if (slot >= 0) {
+          previous = read(key, slot);
+          if (!replace) {
+            return previous;
+          }
+        } else {
+          if ((size + 1) * 4L > capacity() * 3L) {
+            resize();
+          }
+          slot = hash & mask;
+          while (table.getInt(slot * SLOT_SIZE + FILE_ID) != 0) {
+            slot = (slot + 1) & mask;
+          }
+          size++;
+        }
+        write(slot, key, value, fileId);
+        return previous;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    BucketEntry replace(BlockCacheKey key, BucketEntry value, int fileId, int hash,
+      BucketEntry expected) {
+      long stamp = lock.writeLock();
+      try {
+        int slot = find(table, mask, fileId, key.getOffset(), hash);
+        if (slot < 0 || !matches(slot, expected)) {
+          return null;
+        }
+        BucketEntry replaced = read(key, slot);
+        write(slot, key, value, fileId);
+        return replaced;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    BucketEntry remove(BlockCacheKey key, int fileId, int hash, BucketEntry expected) {
+      long stamp = lock.writeLock();
+      try {
+        int slot = find(table, mask, fileId, key.getOffset(), hash);
+        if (slot < 0) {
+          return null;
+        }
+        if (!matches(slot, expected)) {
+          return null;
+        }
+        BucketEntry removed = read(key, slot);
+        delete(slot);
+        size--;
+        return removed;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    /**
+     * Updates the access counter of the entry cached at the given time. The read lock is enough
+     * as the entries only move under the write lock, and concurrent updates of the same counter
+     * are as racy as those of a {@link BucketEntry}.
+     */
+    void access(int fileId, long offset, int hash, long cachedTime, long accessCounter) {
+      long stamp = lock.readLock();
+      try {
+        int slot = find(table, mask, fileId, offset, hash);
+        if (slot >= 0 && table.getLong(slot * SLOT_SIZE + CACHED_TIME) == cachedTime) {
+          table.putLong(slot * SLOT_SIZE + ACCESS_COUNTER, accessCounter);
+        }
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    /**
+     * Whether the entry at the slot describes the same cached block as the given entry, or no entry
+     * is given. The lock is held.
+     */
+    private boolean matches(int slot, BucketEntry expected) {
+      int base = slot * SLOT_SIZE;
+      return expected == null || (table.getLong(base + BUCKET_OFFSET) == expected.offset()
+        && table.getInt(base + LENGTH) == expected.getLength()
+        && table.getLong(base + CACHED_TIME) == expected.getCachedTime());
+    }
+
+    /** Writes the entry to the slot, the write lock being held. */
+    private void write(int slot, BlockCacheKey key, BucketEntry value, int fileId) {
+      int base = slot * SLOT_SIZE;
+      BlockType blockType = key.getBlockType();
+      byte flags = (byte) ((key.isPrimary() ? PRIMARY_FLAG : 0)
+        | (value.getPriority() == BlockPriority.MEMORY ? IN_MEMORY_FLAG : 0));
+      table.putInt(base + FILE_ID, fileId);
+      table.putInt(base + LENGTH, value.getLength());
+      table.putLong(base + OFFSET, key.getOffset());
+      table.putLong(base + BUCKET_OFFSET, value.offset());
+      table.putLong(base + ACCESS_COUNTER, value.getAccessCounter());
+      table.putLong(base + CACHED_TIME, value.getCachedTime());
+      table.put(base + DESERIALIZER_INDEX, value.deserializerIndex);
+      table.put(base + BLOCK_TYPE, (byte) (blockType == null ? 0 : blockType.ordinal() + 1));
+      table.put(base + FLAGS, flags);
+    }
+
+    /** Reads the entry at the slot, the lock being held. */
+    private BucketEntry read(BlockCacheKey key, int slot) {
+      int base = slot * SLOT_SIZE;
+      return new CompactBucketEntry(CompactBackingMap.this, key,
+        table.getLong(base + BUCKET_OFFSET), table.getInt(base + LENGTH),
+        table.getLong(base + CACHED_TIME), table.getLong(base + ACCESS_COUNTER),
+        (table.get(base + FLAGS) & IN_MEMORY_FLAG) != 0, table.get(base + DESERIALIZER_INDEX));
+    }
+
+    /** Empties the slot, moving back the following entries which could not be in their slot. */
+    private void delete(int slot) {
+      int j = slot;
+      for (;;) {
+        j = (j + 1) & mask;
+        int base = j * SLOT_SIZE;
+        int fileId = table.getInt(base + FILE_ID);
+        if (fileId == 0) {
+          break;
+        }
+        int home = hash(fileId, table.getLong(base + OFFSET)) & mask;
+        // Keep the entry where it is if its home slot is cyclically in (slot, j]
+        boolean stays = slot <= j ? slot < home && home <= j : slot < home || home <= j;
+        if (!stays) {
+          copySlot(table, j, table, slot);
+          slot = j;
+        }
+      }
+      int base = slot * SLOT_SIZE;
+      for (int i = 0; i < SLOT_SIZE; i += Long.BYTES) {
+        table.putLong(base + i, 0);
+      }
+    }
+
+    private void resize() {
+      ByteBuffer old = table;
+      int oldCapacity = capacity();
+      int capacity = oldCapacity << 1;
+      ByteBuffer t = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+      int m = capacity - 1;
+      for (int i = 0; i < oldCapacity; i++) {
+        int base = i * SLOT_SIZE;
+        int fileId = old.getInt(base + FILE_ID);
+        if (fileId != 0) {
+          int slot = hash(fileId, old.getLong(base + OFFSET)) & m;
+          while (t.getInt(slot * SLOT_SIZE + FILE_ID) != 0) {
+            slot = (slot + 1) & m;
+          }
+          copySlot(old, i, t, slot);
+        }
+      }
+      // The old table is left untouched for the optimistic readers
+      table = t;
+      mask = m;
+    }
+
+    /** Copies the entries of the segment, taking its read lock. */
+    List<Map.Entry<BlockCacheKey, BucketEntry>> entries() {
+      long stamp = lock.readLock();
+      try {
+        List<Map.Entry<BlockCacheKey, BucketEntry>> entries = new ArrayList<>(size);
+        for (int slot = 0; slot <= mask; slot++) {
+          int base = slot * SLOT_SIZE;
+          int fileId = table.getInt(base + FILE_ID);
+          String name = fileId == 0 ? null : fileNames.get(fileId);
+          if (name != null) {
+            int blockType = table.get(base + BLOCK_TYPE);
+            BlockCacheKey key = new BlockCacheKey(name, table.getLong(base + OFFSET),
+              (table.get(base + FLAGS) & PRIMARY_FLAG) != 0,
+              blockType == 0 ? null : BLOCK_TYPES[blockType - 1]);
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(key, read(key, slot)));
+          }
+        }
+        return entries;
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+  }
+
+  private static void copySlot(ByteBuffer from, int fromSlot, ByteBuffer to, int toSlot) {
+    for (int i = 0; i < SLOT_SIZE; i += Long.BYTES) {
+      to.putLong(toSlot * SLOT_SIZE + i, from.getLong(fromSlot * SLOT_SIZE + i));
+    }
+  }
+}
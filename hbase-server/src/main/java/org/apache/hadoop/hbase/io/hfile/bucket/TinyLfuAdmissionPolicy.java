@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * An admission policy based on TinyLFU: the number of recent lookups of each block is estimated by
+ * a count-min sketch of 4-bit counters, which are all halved once the sketch has seen ten times as
+ * many lookups as the cache has blocks, so that the estimates favor recent history. A data block is
+ * only admitted if it has been looked up at least {@link #MIN_FREQUENCY_KEY} times, so blocks read
+ * only once never cost a bucket write nor the eviction of another block. Index and bloom blocks are
+ * always admitted.
+ * <p>
+ * Unlike TinyLFU in {@link org.apache.hadoop.hbase.io.hfile.TinyLfuBlockCache}, the candidate is not
+ * compared with a victim, as the BucketCache evicts in batches when it is full.
+ */
+@InterfaceAudience.Private
+public class TinyLfuAdmissionPolicy implements BlockAdmissionPolicy {
+
+  static final String MIN_FREQUENCY_KEY = "hbase.bucketcache.admission.tinylfu.min.frequency";
+  static final int DEFAULT_MIN_FREQUENCY = 2;
+
+  private static final long[] SEED =
+    { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final int MAX_COUNT = 15;
+
+  private final int minFrequency;
+  private final AtomicLongArray table;
+  private final int tableMask;
+  private final long sampleSize;
+  private final AtomicLong size = new AtomicLong();
+  private final AtomicBoolean resetting = new AtomicBoolean();
+
+  public TinyLfuAdmissionPolicy(Configuration conf, long maxBlocks) {
+    this.minFrequency = Math.min(MAX_COUNT, conf.getInt(MIN_FREQUENCY_KEY, DEFAULT_MIN_FREQUENCY));
+    // One long, i.e. 16 counters, per block
+    long blocks = Math.max(64, Math.min(maxBlocks, 1 << 30));
+    int tableSize = (int) Long.highestOneBit(blocks - 1) << 1;
+    this.table = new AtomicLongArray(tableSize);
+    this.tableMask = tableSize - 1;
+    this.sampleSize = 10L * tableSize;
+  }
+
+  @Override
+  public void recordAccess(BlockCacheKey key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && size.incrementAndGet() >= sampleSize) {
+      reset();
+    }
+  }
+
+  @Override
+  public boolean admit(BlockCacheKey key, Cacheable block) {
+    BlockType blockType = block.getBlockType();
+    if (blockType != null && !blockType.isData()) {
+      return true;
+    }
+    return frequency(key) >= minFrequency;
+  }
+
+  /** Returns the estimated number of recent lookups of the block. */
+  int frequency(BlockCacheKey key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int offset = (start + i) << 2;
+      int count = (int) ((table.get(indexOf(hash, i)) >>> offset) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Increments the j-th 4-bit counter of the long at index i, unless it is saturated.
+   * @return whether the counter was incremented
+   */
+  private boolean incrementAt(int i, int j) {
+    int offset = j << 2;
+    long mask = 0xfL << offset;
+    for (;;) {
+      long value = table.get(i);
+      if ((value & mask) == mask) {
+        return false;
+      }
+      if (table.compareAndSet(i, value, value + (1L << offset))) {
+        return true;
+      }
+    }
+  }
+
+  /** Halves all the counters. Increments racing with the reset may be lost, which is harmless. */
+  private void reset() {
+    if (!resetting.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      for (int i = 0; i < table.length(); i++) {
+        table.getAndUpdate(i, value -> (value >>> 1) & RESET_MASK);
+      }
+      size.set(size.get() / 2);
+    } finally {
+      resetting.set(false);
+    }
+  }
+
+  private int indexOf(int item, int i) {
+    long hash = (item + SEED[i]) * SEED[i];
+    hash += hash >>> 32;
+    return ((int) hash) & tableMask;
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
@@ -207,6 +207,7 @@ import org.apache.hadoop.hbase.quotas.SpaceQuotaSnapshotNotifier;
 import org.apache.hadoop.hbase.quotas.SpaceQuotaSnapshotNotifierFactory;
 import org.apache.hadoop.hbase.quotas.SpaceViolationPolicy;
 import org.apache.hadoop.hbase.regionserver.HRegionServer;
+import org.apache.hadoop.hbase.regionserver.IngestCheckpoint;
 import org.apache.hadoop.hbase.regionserver.NoSuchColumnFamilyException;
 import org.apache.hadoop.hbase.regionserver.storefiletracker.ModifyColumnFamilyStoreFileTrackerProcedure;
 import org.apache.hadoop.hbase.regionserver.storefiletracker.ModifyTableStoreFileTrackerProcedure;
@@ -4250,6 +4251,31 @@ public class HMaster extends HBaseServerBase<MasterRpcServices> implements Maste
     return regionServerTracker.getRegionServers();
   }
 
+  /**
+   * Returns the latest ingest checkpoint of each region of the table which has one, keyed by
+   * encoded region name. Split parents are left out, their daughters start from their checkpoints.
+   */
+  public Map<String, IngestCheckpoint> getIngestCheckpoints(TableName tableName)
+    throws IOException {
+    checkInitialized();
+    if (!tableDescriptors.exists(tableName)) {
+      throw new TableNotFoundException(tableName);
+    }
+    MasterFileSystem mfs = getMasterFileSystem();
+    Map<String, IngestCheckpoint> checkpoints = new HashMap<>();
+    for (RegionInfo region : assignmentManager.getRegionStates().getRegionsOfTable(tableName)) {
+      if (region.getReplicaId() != RegionInfo.DEFAULT_REPLICA_ID) {
+        continue;
+      }
+      IngestCheckpoint checkpoint = IngestCheckpoint.read(mfs.getFileSystem(),
+        CommonFSUtils.getRegionDir(mfs.getRootDir(), tableName, region.getEncodedName()));
+      if (checkpoint != null) {
+        checkpoints.put(region.getEncodedName(), checkpoint);
+      }
+    }
+    return checkpoints;
+  }
+
   @RestrictedApi(explanation = "Should only be called in tests", link = "",
       allowedOnPath = ".*/src/test/.*")
   void setLoadBalancer(RSGroupBasedLoadBalancer loadBalancer) {
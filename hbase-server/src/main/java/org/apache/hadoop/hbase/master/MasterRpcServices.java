@@ -94,6 +94,7 @@ import org.apache.hadoop.hbase.quotas.MasterQuotaManager;
 import org.apache.hadoop.hbase.quotas.QuotaObserverChore;
 import org.apache.hadoop.hbase.quotas.QuotaUtil;
 import org.apache.hadoop.hbase.quotas.SpaceQuotaSnapshot;
+import org.apache.hadoop.hbase.regionserver.IngestCheckpoint;
 import org.apache.hadoop.hbase.regionserver.SimpleRpcSchedulerFactory;
 import org.apache.hadoop.hbase.replication.ReplicationException;
 import org.apache.hadoop.hbase.replication.ReplicationPeerConfig;
@@ -189,6 +190,7 @@ import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.ClusterStatusProtos;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.ClusterStatusProtos.RegionStoreSequenceIds;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.NameInt64Pair;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.NameStringPair;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.ProcedureDescription;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.RegionSpecifier;
@@ -238,6 +240,8 @@ import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetCluster
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetClusterStatusResponse;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetCompletedSnapshotsRequest;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetCompletedSnapshotsResponse;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetIngestCheckpointsRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetIngestCheckpointsResponse;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetLocksRequest;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetLocksResponse;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.GetNamespaceDescriptorRequest;
@@ -313,6 +317,7 @@ import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.OfflineReg
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.OfflineRegionResponse;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.RecommissionRegionServerRequest;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.RecommissionRegionServerResponse;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.RegionIngestCheckpoint;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.RegionSpecifierAndState;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.RestoreSnapshotRequest;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.MasterProtos.RestoreSnapshotResponse;
@@ -3557,4 +3562,25 @@ public class MasterRpcServices extends HBaseRpcServicesBase<HMaster>
     }
     return FlushMasterStoreResponse.newBuilder().build();
   }
+
+  @Override
+  public GetIngestCheckpointsResponse getIngestCheckpoints(RpcController controller,
+    GetIngestCheckpointsRequest request) throws ServiceException {
+    rpcPreCheck("getIngestCheckpoints");
+    Map<String, IngestCheckpoint> checkpoints;
+    try {
+      checkpoints = server.getIngestCheckpoints(ProtobufUtil.toTableName(request.getTableName()));
+    } catch (IOException ioe) {
+      throw new ServiceException(ioe);
+    }
+    GetIngestCheckpointsResponse.Builder builder = GetIngestCheckpointsResponse.newBuilder();
+    checkpoints.forEach((region, checkpoint) -> {
+      RegionIngestCheckpoint.Builder regionCheckpoint = RegionIngestCheckpoint.newBuilder()
+        .setEncodedRegionName(region).setSequenceId(checkpoint.getSequenceId());
+      checkpoint.getOffsets().forEach((source, offset) -> regionCheckpoint
+        .addOffset(NameInt64Pair.newBuilder().setName(source).setValue(offset)));
+      builder.addCheckpoint(regionCheckpoint);
+    });
+    return builder.build();
+  }
 }
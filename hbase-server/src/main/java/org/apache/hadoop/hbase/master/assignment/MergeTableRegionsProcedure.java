@@ -53,6 +53,7 @@ import org.apache.hadoop.hbase.procedure2.ProcedureStateSerializer;
 import org.apache.hadoop.hbase.quotas.QuotaExceededException;
 import org.apache.hadoop.hbase.regionserver.HRegionFileSystem;
 import org.apache.hadoop.hbase.regionserver.HStoreFile;
+import org.apache.hadoop.hbase.regionserver.IngestCheckpoint;
 import org.apache.hadoop.hbase.regionserver.StoreFileInfo;
 import org.apache.hadoop.hbase.regionserver.StoreUtils;
 import org.apache.hadoop.hbase.regionserver.storefiletracker.StoreFileTracker;
@@ -574,6 +575,7 @@ public class MergeTableRegionsProcedure
     final Path tableDir = CommonFSUtils.getTableDir(mfs.getRootDir(), regionsToMerge[0].getTable());
     final FileSystem fs = mfs.getFileSystem();
     List<Path> mergedFiles = new ArrayList<>();
+    List<Path> parentDirs = new ArrayList<>();
     HRegionFileSystem mergeRegionFs = HRegionFileSystem
       .createRegionOnFileSystem(env.getMasterConfiguration(), fs, tableDir, mergedRegion);
 
@@ -581,7 +583,10 @@ public class MergeTableRegionsProcedure
       HRegionFileSystem regionFs = HRegionFileSystem
         .openRegionFromFileSystem(env.getMasterConfiguration(), fs, tableDir, ri, false);
       mergedFiles.addAll(mergeStoreFiles(env, regionFs, mergeRegionFs, mergedRegion));
+      parentDirs.add(regionFs.getRegionDir());
     }
+    // The merged region starts from the ingest checkpoints of the parents
+    IngestCheckpoint.inherit(fs, parentDirs, mergeRegionFs.getRegionDir());
     assert mergeRegionFs != null;
     mergeRegionFs.commitMergedRegion(mergedFiles, env);
 
@@ -61,6 +61,7 @@ import org.apache.hadoop.hbase.quotas.QuotaExceededException;
 import org.apache.hadoop.hbase.regionserver.HRegionFileSystem;
 import org.apache.hadoop.hbase.regionserver.HStore;
 import org.apache.hadoop.hbase.regionserver.HStoreFile;
+import org.apache.hadoop.hbase.regionserver.IngestCheckpoint;
 import org.apache.hadoop.hbase.regionserver.RegionSplitPolicy;
 import org.apache.hadoop.hbase.regionserver.RegionSplitRestriction;
 import org.apache.hadoop.hbase.regionserver.StoreFileInfo;
@@ -624,6 +625,10 @@ public class SplitTableRegionProcedure
     HRegionFileSystem regionFs = HRegionFileSystem.openRegionFromFileSystem(
       env.getMasterConfiguration(), fs, tabledir, getParentRegion(), false);
     regionFs.createSplitsDir(daughterOneRI, daughterTwoRI);
+    // The daughters start from the ingest checkpoint of the parent
+    List<Path> parentDirs = Collections.singletonList(regionFs.getRegionDir());
+    IngestCheckpoint.inherit(fs, parentDirs, regionFs.getSplitsDir(daughterOneRI));
+    IngestCheckpoint.inherit(fs, parentDirs, regionFs.getSplitsDir(daughterTwoRI));
 
     Pair<List<Path>, List<Path>> expectedReferences = splitStoreFiles(env, regionFs);
 
@@ -224,6 +224,11 @@ public abstract class AbstractMemStore implements MemStore {
     return timeOfOldestEdit;
   }
 
+  @Override
+  public long getIndexOffHeapSize() {
+    return getActive().getIndexOffHeapSize() + snapshot.getIndexOffHeapSize();
+  }
+
   /**
    * This method is protected under {@link HStore#lock} write lock,<br/>
    * and this method is used by {@link HStore#updateStorefiles} after flushing is completed.<br/>
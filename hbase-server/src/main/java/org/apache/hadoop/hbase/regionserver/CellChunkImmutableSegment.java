@@ -26,6 +26,7 @@ import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.ExtendedCell;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.util.ByteBufferUtils;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.ClassSize;
 import org.apache.yetus.audience.InterfaceAudience;
 
@@ -38,9 +39,12 @@ import org.apache.yetus.audience.InterfaceAudience;
 public class CellChunkImmutableSegment extends ImmutableSegment {
 
   public static final long DEEP_OVERHEAD_CCM =
-    ImmutableSegment.DEEP_OVERHEAD + ClassSize.CELL_CHUNK_MAP;
+    ImmutableSegment.DEEP_OVERHEAD + ClassSize.CELL_CHUNK_MAP + Bytes.SIZEOF_LONG;
   public static final float INDEX_CHUNK_UNUSED_SPACE_PRECENTAGE = 0.1f;
 
+  // the size of the index chunks which are allocated off-heap
+  private long indexOffHeapSize;
+
   ///////////////////// CONSTRUCTORS /////////////////////
   /**
    * ------------------------------------------------------------------------ C-tor to be used when
@@ -130,6 +134,11 @@ public class CellChunkImmutableSegment extends ImmutableSegment {
     return false;
   }
 
+  @Override
+  public long getIndexOffHeapSize() {
+    return indexOffHeapSize;
+  }
+
   ///////////////////// PRIVATE METHODS /////////////////////
   /*------------------------------------------------------------------------*/
   // Create CellSet based on CellChunkMap from compacting iterator
@@ -313,6 +322,9 @@ public class CellChunkImmutableSegment extends ImmutableSegment {
     // all index Chunks are allocated from ChunkCreator
     for (int i = 0; i < numberOfChunks; i++) {
       chunks[i] = this.getMemStoreLAB().getNewExternalChunk(chunkType);
+      if (chunks[i].getData().isDirect()) {
+        indexOffHeapSize += chunks[i].size;
+      }
     }
     return chunks;
   }
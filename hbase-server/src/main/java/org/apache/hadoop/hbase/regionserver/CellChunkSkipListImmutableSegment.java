@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * CellChunkSkipListImmutableSegment is the immutable segment built from a
+ * {@link CellChunkSkipListMutableSegment}, keeping its {@link CellChunkSkipListMap} index. The
+ * index is already on chunks so the segment is not flattened, it becomes a CellChunkMap when it is
+ * merged or compacted in the compaction pipeline.
+ */
+@InterfaceAudience.Private
+public class CellChunkSkipListImmutableSegment extends ImmutableSegment {
+  public static final long DEEP_OVERHEAD_CCSLM =
+    ImmutableSegment.DEEP_OVERHEAD + CellChunkSkipListMap.DEEP_OVERHEAD;
+
+  /**
+   * C-tor to be used when the active CellChunkSkipListMutableSegment is pushed into the compaction
+   * pipeline or snapshot and becomes an ImmutableSegment.
+   */
+  protected CellChunkSkipListImmutableSegment(CellChunkSkipListMutableSegment segment,
+    MemStoreSizing memstoreSizing) {
+    super(segment);
+    // update the segment metadata heap size
+    long indexOverhead = -CellChunkSkipListMutableSegment.DEEP_OVERHEAD_CCSLM + DEEP_OVERHEAD_CCSLM;
+    incMemStoreSize(0, indexOverhead, 0, 0);
+    if (memstoreSizing != null) {
+      memstoreSizing.incMemStoreSize(0, indexOverhead, 0, 0);
+    }
+  }
+
+  @Override
+  protected long indexEntryOnHeapSize(boolean onHeap) {
+    // the links of the nodes are on heap
+    if (onHeap) {
+      return indexEntrySize() + CellChunkSkipListMap.LINKS_SIZE;
+    }
+    // else the node is allocated off-heap
+    return CellChunkSkipListMap.LINKS_SIZE;
+  }
+
+  @Override
+  protected long indexEntryOffHeapSize(boolean offHeap) {
+    if (offHeap) {
+      return indexEntrySize();
+    }
+    // else the index is allocated on-heap
+    return 0;
+  }
+
+  @Override
+  protected long indexEntrySize() {
+    return CellChunkSkipListMap.NODE_SIZE - KeyValue.FIXED_OVERHEAD;
+  }
+
+  @Override
+  protected boolean canBeFlattened() {
+    return false;
+  }
+
+  @Override
+  public long getIndexOffHeapSize() {
+    return ((CellChunkSkipListMap) getCellSet().getDelegatee()).getIndexOffHeapSize();
+  }
+}
@@ -0,0 +1,1208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.hadoop.hbase.ByteBufferKeyOnlyKeyValue;
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.ExtendedCell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.ByteBufferUtils;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * CellChunkSkipListMap is a concurrent skip list of Cells whose nodes are written on index chunks
+ * of the MSLAB, which are off-heap when the chunk pool is off-heap. Like in {@link CellChunkMap} a
+ * node does not reference a Cell object. It holds the data chunk, offset, length and sequence id of
+ * a Cell whose data is on a MSLAB data chunk, and the Cell is rebuilt when it is returned. The keys
+ * are compared on the data chunks, without rebuilding the Cells. A node is laid out as: integer
+ * data chunk | integer offset | integer length | integer level | long sequence id | integer first
+ * link | integer key length. The data chunk is the index of the chunk in the data chunks of the
+ * map. A link to a node packs the index of its index chunk in this map and its offset in that chunk
+ * into a long, 0 is the null link.
+ * <p>
+ * The links of the nodes of an index chunk are in an array of atomic longs next to the chunk, as
+ * there is no compare-and-set on a ByteBuffer, and the skip list is lock-free like the
+ * ConcurrentSkipListMap. A node is completely written before it is linked with a compare-and-set,
+ * from the lowest level up. A node is deleted by marking its links, from the highest level down,
+ * and the writers which pass a deleted node unlink it. Putting a key that is already in the map
+ * links a new node in place of the old one, with the same compare-and-set which deletes the old
+ * node. The space of the deleted nodes is only reclaimed when the MSLAB is closed.
+ * <p>
+ * All the Cells put in the map must be allocated on MSLAB chunks, and a Cell is its own key.
+ */
+@InterfaceAudience.Private
+public class CellChunkSkipListMap implements NavigableMap<Cell, Cell> {
+
+  static final int MAX_LEVEL = 16;
+
+  // the offsets of the fields of a node
+  private static final int DATA_CHUNK = 0;
+  private static final int CELL_OFFSET = Bytes.SIZEOF_INT;
+  private static final int CELL_LENGTH = 2 * Bytes.SIZEOF_INT;
+  private static final int LEVEL = 3 * Bytes.SIZEOF_INT;
+  private static final int SEQ_ID = 4 * Bytes.SIZEOF_INT;
+  private static final int FIRST_LINK = SEQ_ID + Bytes.SIZEOF_LONG;
+  private static final int KEY_LENGTH = FIRST_LINK + Bytes.SIZEOF_INT;
+
+  /** The size of a node on its index chunk */
+  public static final int NODE_SIZE = KEY_LENGTH + Bytes.SIZEOF_INT;
+
+  // an index chunk starts with its id, the nodes follow aligned to longs
+  private static final int FIRST_NODE_OFFSET = Bytes.SIZEOF_LONG;
+
+  // an index chunk has room for 3 links per 2 nodes, the level of a node is 4/3 on average
+  private static final int LINKS_PER_TWO_NODES = 3;
+
+  /** The heap size of the links of a node, as the links of a chunk are on heap */
+  public static final long LINKS_SIZE = LINKS_PER_TWO_NODES * Bytes.SIZEOF_LONG / 2;
+
+  // the null link, also used for the head of the list
+  private static final long NIL = 0;
+
+  // the mark of the links of a deleted node, the nodes are aligned to longs so the bit is free
+  private static final long MARK = 1;
+
+  /** The heap overhead of a CellChunkSkipListMap with its list, not including the nodes */
+  public static final long DEEP_OVERHEAD =
+    ClassSize.align(ClassSize.OBJECT + 4 * ClassSize.REFERENCE + 3 * Bytes.SIZEOF_BOOLEAN)
+      + SkipList.DEEP_OVERHEAD;
+
+  private final SkipList skipList;
+  private final CellComparator comparator;
+  // the bounds of a sub-map, null when unbounded
+  private final Cell lo;
+  private final boolean loInclusive;
+  private final Cell hi;
+  private final boolean hiInclusive;
+  private final boolean descending;
+
+  /* C-tor */
+  public CellChunkSkipListMap(CellComparator comparator, MemStoreLAB memStoreLAB) {
+    this(new SkipList(comparator, memStoreLAB), null, false, null, false, false);
+  }
+
+  private CellChunkSkipListMap(SkipList skipList, Cell lo, boolean loInclusive, Cell hi,
+    boolean hiInclusive, boolean descending) {
+    this.skipList = skipList;
+    this.comparator = skipList.comparator;
+    this.lo = lo;
+    this.loInclusive = loInclusive;
+    this.hi = hi;
+    this.hiInclusive = hiInclusive;
+    this.descending = descending;
+  }
+
+  /** Returns the size of the index chunks of this map which are allocated off-heap */
+  public long getIndexOffHeapSize() {
+    long size = 0;
+    for (IndexChunk chunk : skipList.chunks) {
+      if (chunk.data.isDirect()) {
+        size += chunk.chunk.size;
+      }
+    }
+    return size;
+  }
+
+  // -------------------------------- Bounds --------------------------------
+  private boolean tooLow(Cell key) {
+    if (lo == null) {
+      return false;
+    }
+    int c = comparator.compare(key, lo);
+    return c < 0 || (c == 0 && !loInclusive);
+  }
+
+  private boolean tooHigh(Cell key) {
+    if (hi == null) {
+      return false;
+    }
+    int c = comparator.compare(key, hi);
+    return c > 0 || (c == 0 && !hiInclusive);
+  }
+
+  private boolean inBounds(Cell key) {
+    return !tooLow(key) && !tooHigh(key);
+  }
+
+  // The navigation in ascending order within the bounds. Returns the Cell of the node, or null.
+  private Cell lowestCell() {
+    return boundedCell(lowestNode());
+  }
+
+  private long lowestNode() {
+    if (lo == null) {
+      return skipList.first();
+    }
+    return loInclusive ? skipList.ceiling(lo) : skipList.higher(lo);
+  }
+
+  private Cell highestCell() {
+    long node;
+    if (hi == null) {
+      node = skipList.last();
+    } else {
+      node = hiInclusive ? skipList.floor(hi) : skipList.lower(hi);
+    }
+    return boundedCell(node);
+  }
+
+  private Cell ceilingCell(Cell key) {
+    return tooLow(key) ? lowestCell() : boundedCell(skipList.ceiling(key));
+  }
+
+  private Cell higherCell(Cell key) {
+    return tooLow(key) ? lowestCell() : boundedCell(skipList.higher(key));
+  }
+
+  private Cell floorCell(Cell key) {
+    return tooHigh(key) ? highestCell() : boundedCell(skipList.floor(key));
+  }
+
+  private Cell lowerCell(Cell key) {
+    return tooHigh(key) ? highestCell() : boundedCell(skipList.lower(key));
+  }
+
+  private Cell boundedCell(long node) {
+    if (node == NIL) {
+      return null;
+    }
+    Cell cell = skipList.cell(node);
+    return inBounds(cell) ? cell : null;
+  }
+
+  private static Entry<Cell, Cell> entry(Cell cell) {
+    return cell == null ? null : new AbstractMap.SimpleImmutableEntry<>(cell, cell);
+  }
+
+  @Override
+  public CellComparator comparator() {
+    return comparator;
+  }
+
+  @Override
+  public int size() {
+    if (lo == null && hi == null) {
+      return skipList.size.get();
+    }
+    int size = 0;
+    for (Iterator<Cell> it = new CellChunkSkipListIterator(); it.hasNext(); it.next()) {
+      size++;
+    }
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return lowestCell() == null;
+  }
+
+  // ---------------- Sub-Maps ----------------
+  private CellChunkSkipListMap createSubMap(Cell fromKey, boolean fromInclusive, Cell toKey,
+    boolean toInclusive, boolean descending) {
+    // a sub-map never goes beyond the bounds of this map
+    Cell newLo = lo;
+    boolean newLoInclusive = loInclusive;
+    if (fromKey != null && !tooLow(fromKey)) {
+      newLo = fromKey;
+      newLoInclusive = fromInclusive;
+    }
+    Cell newHi = hi;
+    boolean newHiInclusive = hiInclusive;
+    if (toKey != null && !tooHigh(toKey)) {
+      newHi = toKey;
+      newHiInclusive = toInclusive;
+    }
+    return new CellChunkSkipListMap(skipList, newLo, newLoInclusive, newHi, newHiInclusive,
+      descending);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> subMap(Cell fromKey, boolean fromInclusive, Cell toKey,
+    boolean toInclusive) {
+    if (descending) {
+      return createSubMap(toKey, toInclusive, fromKey, fromInclusive, descending);
+    } else {
+      return createSubMap(fromKey, fromInclusive, toKey, toInclusive, descending);
+    }
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> headMap(Cell toKey, boolean inclusive) {
+    if (descending) {
+      return createSubMap(toKey, inclusive, null, false, descending);
+    } else {
+      return createSubMap(null, false, toKey, inclusive, descending);
+    }
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> tailMap(Cell fromKey, boolean inclusive) {
+    if (descending) {
+      return createSubMap(null, false, fromKey, inclusive, descending);
+    } else {
+      return createSubMap(fromKey, inclusive, null, false, descending);
+    }
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> descendingMap() {
+    return new CellChunkSkipListMap(skipList, lo, loInclusive, hi, hiInclusive, !descending);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> subMap(Cell k1, Cell k2) {
+    return this.subMap(k1, true, k2, false);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> headMap(Cell k) {
+    return this.headMap(k, false);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> tailMap(Cell k) {
+    return this.tailMap(k, true);
+  }
+
+  // -------------------------------- Key's getters --------------------------------
+  @Override
+  public Cell firstKey() {
+    return descending ? highestCell() : lowestCell();
+  }
+
+  @Override
+  public Cell lastKey() {
+    return descending ? lowestCell() : highestCell();
+  }
+
+  @Override
+  public Cell lowerKey(Cell k) {
+    return descending ? higherCell(k) : lowerCell(k);
+  }
+
+  @Override
+  public Cell floorKey(Cell k) {
+    return descending ? ceilingCell(k) : floorCell(k);
+  }
+
+  @Override
+  public Cell ceilingKey(Cell k) {
+    return descending ? floorCell(k) : ceilingCell(k);
+  }
+
+  @Override
+  public Cell higherKey(Cell k) {
+    return descending ? lowerCell(k) : higherCell(k);
+  }
+
+  @Override
+  public boolean containsKey(Object o) {
+    return get(o) != null;
+  }
+
+  // a Cell is its own key, but a value is looked for with equals like in the
+  // ConcurrentSkipListMap, so use containsKey(Object o) instead
+  @Override
+  public boolean containsValue(Object o) {
+    for (Cell cell : values()) {
+      if (cell.equals(o)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public Cell get(Object o) {
+    Cell key = (Cell) o;
+    if (!inBounds(key)) {
+      return null;
+    }
+    Cell cell = boundedCell(skipList.ceiling(key));
+    return (cell != null && comparator.compare(cell, key) == 0) ? cell : null;
+  }
+
+  // -------------------------------- Entry's getters --------------------------------
+  @Override
+  public Entry<Cell, Cell> lowerEntry(Cell k) {
+    return entry(lowerKey(k));
+  }
+
+  @Override
+  public Entry<Cell, Cell> higherEntry(Cell k) {
+    return entry(higherKey(k));
+  }
+
+  @Override
+  public Entry<Cell, Cell> ceilingEntry(Cell k) {
+    return entry(ceilingKey(k));
+  }
+
+  @Override
+  public Entry<Cell, Cell> floorEntry(Cell k) {
+    return entry(floorKey(k));
+  }
+
+  @Override
+  public Entry<Cell, Cell> firstEntry() {
+    return entry(firstKey());
+  }
+
+  @Override
+  public Entry<Cell, Cell> lastEntry() {
+    return entry(lastKey());
+  }
+
+  @Override
+  public Entry<Cell, Cell> pollFirstEntry() {
+    return descending ? pollHighest() : pollLowest();
+  }
+
+  @Override
+  public Entry<Cell, Cell> pollLastEntry() {
+    return descending ? pollLowest() : pollHighest();
+  }
+
+  // A polled Cell may be deleted by another writer before this one, so look for the next one
+  private Entry<Cell, Cell> pollLowest() {
+    for (Cell cell = lowestCell(); cell != null; cell = lowestCell()) {
+      Cell removed = skipList.remove(cell);
+      if (removed != null) {
+        return entry(removed);
+      }
+    }
+    return null;
+  }
+
+  private Entry<Cell, Cell> pollHighest() {
+    for (Cell cell = highestCell(); cell != null; cell = highestCell()) {
+      Cell removed = skipList.remove(cell);
+      if (removed != null) {
+        return entry(removed);
+      }
+    }
+    return null;
+  }
+
+  // -------------------------------- Updates --------------------------------
+  /**
+   * Puts the given Cell in the map, replacing the Cell which is equal to it if any. The key and the
+   * value are the same Cell, which must be allocated on a MSLAB chunk.
+   * @return the replaced Cell, or null
+   */
+  @Override
+  public Cell put(Cell k, Cell v) {
+    if (!inBounds(k)) {
+      throw new IllegalArgumentException("key out of range");
+    }
+    return skipList.put(v);
+  }
+
+  /**
+   * Removes the Cell which is equal to the given one. Its node is unlinked, but its space on the
+   * index chunk is only reclaimed with the MSLAB.
+   * @return the removed Cell, or null
+   */
+  @Override
+  public Cell remove(Object o) {
+    Cell key = (Cell) o;
+    return inBounds(key) ? skipList.remove(key) : null;
+  }
+
+  @Override
+  public void clear() {
+    // the nodes are removed one by one, as in the ConcurrentSkipListMap
+    for (Cell cell = firstKey(); cell != null; cell = firstKey()) {
+      remove(cell);
+    }
+  }
+
+  @Override
+  public void putAll(Map<? extends Cell, ? extends Cell> map) {
+    for (Map.Entry<? extends Cell, ? extends Cell> e : map.entrySet()) {
+      put(e.getKey(), e.getValue());
+    }
+  }
+
+  // -------------------------------- Sub-Sets --------------------------------
+  @Override
+  public NavigableSet<Cell> navigableKeySet() {
+    return new CellChunkSkipListKeySet(this);
+  }
+
+  @Override
+  public NavigableSet<Cell> descendingKeySet() {
+    return new CellChunkSkipListKeySet(descendingMap());
+  }
+
+  @Override
+  public NavigableSet<Cell> keySet() {
+    return navigableKeySet();
+  }
+
+  @Override
+  public Collection<Cell> values() {
+    return new CellChunkSkipListCollection();
+  }
+
+  @Override
+  public Set<Entry<Cell, Cell>> entrySet() {
+    return new CellChunkSkipListEntrySet();
+  }
+
+  // -------------------------------- Iterator K --------------------------------
+  private final class CellChunkSkipListIterator implements Iterator<Cell> {
+    // the node of the next Cell, only used in ascending order
+    private long node;
+    private Cell next;
+    private Cell lastReturned;
+
+    private CellChunkSkipListIterator() {
+      if (descending) {
+        next = highestCell();
+      } else {
+        node = lowestNode();
+        next = boundedCell(node);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Cell next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      lastReturned = next;
+      if (descending) {
+        // the nodes are only linked forward, so look for the lower Cell from the head
+        next = lowerCell(lastReturned);
+      } else {
+        node = skipList.next(node, lastReturned);
+        next = boundedCell(node);
+      }
+      return lastReturned;
+    }
+
+    @Override
+    public void remove() {
+      if (lastReturned == null) {
+        throw new IllegalStateException();
+      }
+      skipList.remove(lastReturned);
+      lastReturned = null;
+    }
+  }
+
+  // -------------------------------- Collection --------------------------------
+  private final class CellChunkSkipListCollection extends AbstractCollection<Cell> {
+
+    @Override
+    public int size() {
+      return CellChunkSkipListMap.this.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return CellChunkSkipListMap.this.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return containsKey(o);
+    }
+
+    @Override
+    public Iterator<Cell> iterator() {
+      return new CellChunkSkipListIterator();
+    }
+
+    @Override
+    public void clear() {
+      CellChunkSkipListMap.this.clear();
+    }
+  }
+
+  private final class CellChunkSkipListEntrySet extends AbstractSet<Entry<Cell, Cell>> {
+
+    @Override
+    public int size() {
+      return CellChunkSkipListMap.this.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return CellChunkSkipListMap.this.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+      Cell cell = get(e.getKey());
+      return cell != null && cell.equals(e.getValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      return contains(o)
+        && CellChunkSkipListMap.this.remove(((Map.Entry<?, ?>) o).getKey()) != null;
+    }
+
+    @Override
+    public Iterator<Entry<Cell, Cell>> iterator() {
+      Iterator<Cell> it = new CellChunkSkipListIterator();
+      return new Iterator<Entry<Cell, Cell>>() {
+        @Override
+        public boolean hasNext() {
+          return it.hasNext();
+        }
+
+        @Override
+        public Entry<Cell, Cell> next() {
+          return entry(it.next());
+        }
+
+        @Override
+        public void remove() {
+          it.remove();
+        }
+      };
+    }
+
+    @Override
+    public void clear() {
+      CellChunkSkipListMap.this.clear();
+    }
+  }
+
+  /** The keys of a map whose Cells are their own keys, as the keys of a ConcurrentSkipListMap */
+  private static final class CellChunkSkipListKeySet extends AbstractSet<Cell>
+    implements NavigableSet<Cell> {
+
+    private final NavigableMap<Cell, Cell> map;
+
+    private CellChunkSkipListKeySet(NavigableMap<Cell, Cell> map) {
+      this.map = map;
+    }
+
+    @Override
+    public int size() {
+      return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return map.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return map.containsKey(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      return map.remove(o) != null;
+    }
+
+    @Override
+    public void clear() {
+      map.clear();
+    }
+
+    @Override
+    public Cell lower(Cell e) {
+      return map.lowerKey(e);
+    }
+
+    @Override
+    public Cell floor(Cell e) {
+      return map.floorKey(e);
+    }
+
+    @Override
+    public Cell ceiling(Cell e) {
+      return map.ceilingKey(e);
+    }
+
+    @Override
+    public Cell higher(Cell e) {
+      return map.higherKey(e);
+    }
+
+    @Override
+    public Comparator<? super Cell> comparator() {
+      return map.comparator();
+    }
+
+    @Override
+    public Cell first() {
+      return map.firstKey();
+    }
+
+    @Override
+    public Cell last() {
+      return map.lastKey();
+    }
+
+    @Override
+    public Cell pollFirst() {
+      Entry<Cell, Cell> e = map.pollFirstEntry();
+      return e == null ? null : e.getKey();
+    }
+
+    @Override
+    public Cell pollLast() {
+      Entry<Cell, Cell> e = map.pollLastEntry();
+      return e == null ? null : e.getKey();
+    }
+
+    @Override
+    public Iterator<Cell> iterator() {
+      return map.values().iterator();
+    }
+
+    @Override
+    public Iterator<Cell> descendingIterator() {
+      return descendingSet().iterator();
+    }
+
+    @Override
+    public NavigableSet<Cell> descendingSet() {
+      return new CellChunkSkipListKeySet(map.descendingMap());
+    }
+
+    @Override
+    public NavigableSet<Cell> subSet(Cell fromElement, boolean fromInclusive, Cell toElement,
+      boolean toInclusive) {
+      return new CellChunkSkipListKeySet(
+        map.subMap(fromElement, fromInclusive, toElement, toInclusive));
+    }
+
+    @Override
+    public NavigableSet<Cell> headSet(Cell toElement, boolean inclusive) {
+      return new CellChunkSkipListKeySet(map.headMap(toElement, inclusive));
+    }
+
+    @Override
+    public NavigableSet<Cell> tailSet(Cell fromElement, boolean inclusive) {
+      return new CellChunkSkipListKeySet(map.tailMap(fromElement, inclusive));
+    }
+
+    @Override
+    public SortedSet<Cell> subSet(Cell fromElement, Cell toElement) {
+      return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<Cell> headSet(Cell toElement) {
+      return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<Cell> tailSet(Cell fromElement) {
+      return tailSet(fromElement, true);
+    }
+  }
+
+  // -------------------------------- Index chunk --------------------------------
+  /** An index chunk of the skip list, with the links of its nodes */
+  private static final class IndexChunk {
+
+    // the chunk of a skip list which has no index chunk yet, no node fits in it
+    static final IndexChunk NONE = new IndexChunk();
+
+    private final Chunk chunk;
+    private final ByteBuffer data;
+    // the index of the chunk in the index chunks of the skip list
+    private final int index;
+    private final AtomicLongArray links;
+    private final AtomicInteger nextLink = new AtomicInteger();
+
+    private IndexChunk() {
+      this.chunk = null;
+      this.data = null;
+      this.index = -1;
+      this.links = new AtomicLongArray(0);
+    }
+
+    IndexChunk(Chunk chunk, int index) {
+      this.chunk = chunk;
+      this.data = chunk.getData();
+      this.index = index;
+      // the nodes are aligned to longs, after the id of the chunk
+      chunk.alloc(FIRST_NODE_OFFSET - ChunkCreator.SIZEOF_CHUNK_HEADER);
+      int nodes = (chunk.size - FIRST_NODE_OFFSET) / NODE_SIZE;
+      this.links = new AtomicLongArray(nodes / 2 * LINKS_PER_TWO_NODES);
+    }
+
+    /**
+     * Allocates a node of the given level, with its links. Its first link is written on the node.
+     * @return the offset of the node, or -1 if the chunk is full
+     */
+    int allocate(int level) {
+      if (chunk == null) {
+        return -1;
+      }
+      // the links are not given back when the chunk is full, as the chunk is not used any more
+      int link = nextLink.getAndAdd(level);
+      if (link + level > links.length()) {
+        return -1;
+      }
+      int offset = chunk.alloc(NODE_SIZE);
+      if (offset < 0) {
+        return -1;
+      }
+      ByteBufferUtils.putInt(data, offset + FIRST_LINK, link);
+      return offset;
+    }
+  }
+
+  // -------------------------------- Skip list --------------------------------
+  /**
+   * The skip list shared by a map and all its sub-maps. The navigation methods ignore the bounds of
+   * the sub-maps and return a node, or {@link #NIL} when there is none.
+   */
+  private static final class SkipList {
+
+    static final long DEEP_OVERHEAD = ClassSize.align(ClassSize.OBJECT + 7 * ClassSize.REFERENCE)
+      + ClassSize.ATOMIC_INTEGER + 2 * ClassSize.ATOMIC_REFERENCE
+      + ClassSize.align(ClassSize.OBJECT + ClassSize.REFERENCE)
+      + ClassSize.align(ClassSize.ARRAY + MAX_LEVEL * Bytes.SIZEOF_LONG)
+      + 2 * ClassSize.align(ClassSize.ARRAY);
+
+    private final CellComparator comparator;
+    private final MemStoreLAB memStoreLAB;
+    // the first node of each level
+    private final AtomicLongArray head = new AtomicLongArray(MAX_LEVEL);
+    private final AtomicInteger size = new AtomicInteger();
+    // the index chunks, replaced by a longer copy when a chunk is added
+    private volatile IndexChunk[] chunks = new IndexChunk[0];
+    // the chunk the nodes are allocated on, null while a writer adds the next one
+    private final AtomicReference<IndexChunk> current = new AtomicReference<>(IndexChunk.NONE);
+    // the data chunks of the Cells, replaced by a longer copy when a chunk is added
+    private final AtomicReference<ByteBuffer[]> dataChunks =
+      new AtomicReference<>(new ByteBuffer[0]);
+
+    SkipList(CellComparator comparator, MemStoreLAB memStoreLAB) {
+      this.comparator = comparator;
+      this.memStoreLAB = memStoreLAB;
+    }
+
+    private ByteBuffer data(long node) {
+      return chunks[(int) (node >>> 32)].data;
+    }
+
+    private static int offset(long node) {
+      return (int) node;
+    }
+
+    private static boolean isMarked(long link) {
+      return (link & MARK) != 0;
+    }
+
+    private static long unmarked(long link) {
+      return link & ~MARK;
+    }
+
+    /** Returns the link of the node at the given level, which is marked if the node is deleted */
+    private long link(long node, int level) {
+      if (node == NIL) {
+        return head.get(level);
+      }
+      IndexChunk chunk = chunks[(int) (node >>> 32)];
+      return chunk.links.get(ByteBufferUtils.toInt(chunk.data, offset(node) + FIRST_LINK) + level);
+    }
+
+    private boolean casLink(long node, int level, long expect, long update) {
+      if (node == NIL) {
+        return head.compareAndSet(level, expect, update);
+      }
+      IndexChunk chunk = chunks[(int) (node >>> 32)];
+      return chunk.links.compareAndSet(
+        ByteBufferUtils.toInt(chunk.data, offset(node) + FIRST_LINK) + level, expect, update);
+    }
+
+    /** Sets a link of a node which is not linked yet */
+    private void setLink(long node, int level, long link) {
+      IndexChunk chunk = chunks[(int) (node >>> 32)];
+      chunk.links.set(ByteBufferUtils.toInt(chunk.data, offset(node) + FIRST_LINK) + level, link);
+    }
+
+    private int level(long node) {
+      return ByteBufferUtils.toInt(data(node), offset(node) + LEVEL);
+    }
+
+    Cell cell(long node) {
+      ByteBuffer block = data(node);
+      int offset = offset(node);
+      return new ByteBufferChunkKeyValue(
+        dataChunks.get()[ByteBufferUtils.toInt(block, offset + DATA_CHUNK)],
+        ByteBufferUtils.toInt(block, offset + CELL_OFFSET),
+        ByteBufferUtils.toInt(block, offset + CELL_LENGTH),
+        ByteBufferUtils.toLong(block, offset + SEQ_ID));
+    }
+
+    /**
+     * Compares the Cell of the node with the key like the comparator. The key of the node is read
+     * on its data chunk through the given reusable cell, and no Cell is rebuilt.
+     */
+    private int compare(long node, Cell key, ByteBufferKeyOnlyKeyValue nodeKey) {
+      ByteBuffer block = data(node);
+      int offset = offset(node);
+      nodeKey.setKey(dataChunks.get()[ByteBufferUtils.toInt(block, offset + DATA_CHUNK)],
+        ByteBufferUtils.toInt(block, offset + CELL_OFFSET) + KeyValue.ROW_OFFSET,
+        ByteBufferUtils.toInt(block, offset + KEY_LENGTH));
+      int c = comparator.compare(nodeKey, key, true);
+      if (c != 0) {
+        return c;
+      }
+      // the later edits sort first
+      return Long.compare(key.getSequenceId(), ByteBufferUtils.toLong(block, offset + SEQ_ID));
+    }
+
+    /** Returns the given node if it is live, else the first live node after it at level 0 */
+    private long live(long node) {
+      while (node != NIL) {
+        long link = link(node, 0);
+        if (!isMarked(link)) {
+          break;
+        }
+        node = unmarked(link);
+      }
+      return node;
+    }
+
+    /**
+     * Returns the first live node after the given one, whose Cell is given. A deleted node may link
+     * to the node which replaced it, so the Cell is looked for again from the head then.
+     */
+    long next(long node, Cell cell) {
+      long link = link(node, 0);
+      return isMarked(link) ? higher(cell) : live(link);
+    }
+
+    /** Returns the last live node whose Cell is less than the key, or equal to it if inclusive */
+    private long findPredecessor(Cell key, boolean inclusive) {
+      ByteBufferKeyOnlyKeyValue nodeKey = new ByteBufferKeyOnlyKeyValue();
+      long pred = NIL;
+      for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+        long node = unmarked(link(pred, level));
+        while (node != NIL) {
+          long next = link(node, level);
+          if (isMarked(next)) {
+            // skip the deleted node, the writers unlink it
+            node = unmarked(next);
+            continue;
+          }
+          int c = compare(node, key, nodeKey);
+          if (c > 0 || (c == 0 && !inclusive)) {
+            break;
+          }
+          pred = node;
+          node = next;
+        }
+      }
+      return pred;
+    }
+
+    /** Returns the first live node after the given one whose Cell is greater than the key */
+    private long findSuccessor(long pred, Cell key, boolean inclusive) {
+      ByteBufferKeyOnlyKeyValue nodeKey = new ByteBufferKeyOnlyKeyValue();
+      // a node may have been linked after the predecessor since it was found
+      long node = live(unmarked(link(pred, 0)));
+      while (node != NIL) {
+        int c = compare(node, key, nodeKey);
+        if (c > 0 || (c == 0 && inclusive)) {
+          break;
+        }
+        node = live(unmarked(link(node, 0)));
+      }
+      return node;
+    }
+
+    long first() {
+      return live(unmarked(link(NIL, 0)));
+    }
+
+    long last() {
+      long node = NIL;
+      for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+        long next = unmarked(link(node, level));
+        while (next != NIL) {
+          long link = link(next, level);
+          if (!isMarked(link)) {
+            node = next;
+          }
+          next = unmarked(link);
+        }
+      }
+      return node;
+    }
+
+    long lower(Cell key) {
+      return findPredecessor(key, false);
+    }
+
+    long floor(Cell key) {
+      return findPredecessor(key, true);
+    }
+
+    long ceiling(Cell key) {
+      return findSuccessor(findPredecessor(key, false), key, true);
+    }
+
+    long higher(Cell key) {
+      return findSuccessor(findPredecessor(key, true), key, false);
+    }
+
+    /**
+     * Finds the predecessor and the successor of the key at each level, where the predecessor is
+     * less than the key and the successor is not, and unlinks the deleted nodes on the way.
+     * @return the successor at level 0 if its Cell is equal to the key, or NIL
+     */
+    private long find(Cell key, long[] preds, long[] succs, ByteBufferKeyOnlyKeyValue nodeKey) {
+      retry: while (true) {
+        long pred = NIL;
+        for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+          long node = unmarked(link(pred, level));
+          while (node != NIL) {
+            long next = link(node, level);
+            if (isMarked(next)) {
+              // the node is deleted, unlink it. If the predecessor changed, start over.
+              if (!casLink(pred, level, node, unmarked(next))) {
+                continue retry;
+              }
+              node = unmarked(next);
+            } else if (compare(node, key, nodeKey) < 0) {
+              pred = node;
+              node = next;
+            } else {
+              break;
+            }
+          }
+          preds[level] = pred;
+          succs[level] = node;
+        }
+        long found = succs[0];
+        return found != NIL && compare(found, key, nodeKey) == 0 ? found : NIL;
+      }
+    }
+
+    /** Marks the links of the node above level 0, the first step of its deletion */
+    private void markUpperLevels(long node) {
+      for (int level = level(node) - 1; level > 0; level--) {
+        long next = link(node, level);
+        while (!isMarked(next)) {
+          casLink(node, level, next, next | MARK);
+          next = link(node, level);
+        }
+      }
+    }
+
+    Cell put(Cell cell) {
+      if (((ExtendedCell) cell).getChunkId() == ExtendedCell.CELL_NOT_BASED_ON_CHUNK) {
+        throw new IllegalArgumentException(
+          "In CellChunkSkipListMap, cell must be allocated on a chunk");
+      }
+      ByteBufferKeyValue kv = (ByteBufferKeyValue) cell;
+      ByteBufferKeyOnlyKeyValue nodeKey = new ByteBufferKeyOnlyKeyValue();
+      long[] preds = new long[MAX_LEVEL];
+      long[] succs = new long[MAX_LEVEL];
+      int level = randomLevel();
+      long node = allocate(kv, level);
+      while (true) {
+        long found = find(cell, preds, succs, nodeKey);
+        if (found != NIL) {
+          // delete the old node and link the new one in its place with the same compare-and-set
+          markUpperLevels(found);
+          long next = link(found, 0);
+          if (isMarked(next)) {
+            // another writer deleted or replaced the old node
+            continue;
+          }
+          setLink(node, 0, next);
+          if (!casLink(found, 0, next, node | MARK)) {
+            continue;
+          }
+          // unlink the old node, then link the new one at its upper levels
+          find(cell, preds, succs, nodeKey);
+          linkUpperLevels(node, level, cell, preds, succs, nodeKey);
+          return cell(found);
+        }
+        for (int i = 0; i < level; i++) {
+          setLink(node, i, succs[i]);
+        }
+        if (!casLink(preds[0], 0, succs[0], node)) {
+          continue;
+        }
+        size.incrementAndGet();
+        linkUpperLevels(node, level, cell, preds, succs, nodeKey);
+        return null;
+      }
+    }
+
+    /** Links a node which is linked at level 0 at its upper levels, unless it is deleted */
+    private void linkUpperLevels(long node, int level, Cell key, long[] preds, long[] succs,
+      ByteBufferKeyOnlyKeyValue nodeKey) {
+      for (int i = 1; i < level; i++) {
+        while (true) {
+          long next = link(node, i);
+          if (isMarked(next)) {
+            return;
+          }
+          long succ = succs[i];
+          // the successor changes when the level is retried
+          if (next != succ && !casLink(node, i, next, succ)) {
+            continue;
+          }
+          if (casLink(preds[i], i, succ, node)) {
+            break;
+          }
+          find(key, preds, succs, nodeKey);
+        }
+      }
+    }
+
+    Cell remove(Cell key) {
+      ByteBufferKeyOnlyKeyValue nodeKey = new ByteBufferKeyOnlyKeyValue();
+      long[] preds = new long[MAX_LEVEL];
+      long[] succs = new long[MAX_LEVEL];
+      while (true) {
+        long node = find(key, preds, succs, nodeKey);
+        if (node == NIL) {
+          return null;
+        }
+        markUpperLevels(node);
+        long next = link(node, 0);
+        // if another writer replaced the node, remove the new one
+        if (!isMarked(next) && casLink(node, 0, next, next | MARK)) {
+          size.decrementAndGet();
+          // unlink the node
+          find(key, preds, succs, nodeKey);
+          return cell(node);
+        }
+      }
+    }
+
+    private static int randomLevel() {
+      // each level has a quarter of the nodes of the level below it
+      int level = 1;
+      int random = ThreadLocalRandom.current().nextInt();
+      while (level < MAX_LEVEL && (random & 3) == 0) {
+        level++;
+        random >>>= 2;
+      }
+      return level;
+    }
+
+    /** Returns the index of the data chunk of the Cell, adding it to the data chunks if needed */
+    private int dataChunk(ByteBuffer buffer) {
+      while (true) {
+        ByteBuffer[] current = dataChunks.get();
+        // the Cells are mostly copied on the current chunk of the MSLAB, the last one added
+        for (int i = current.length - 1; i >= 0; i--) {
+          if (current[i] == buffer) {
+            return i;
+          }
+        }
+        ByteBuffer[] added = Arrays.copyOf(current, current.length + 1);
+        added[current.length] = buffer;
+        if (dataChunks.compareAndSet(current, added)) {
+          return current.length;
+        }
+      }
+    }
+
+    /** Writes a node without its links */
+    private long allocate(ByteBufferKeyValue cell, int level) {
+      int dataChunk = dataChunk(cell.getBuffer());
+      while (true) {
+        IndexChunk chunk = current.get();
+        if (chunk == null) {
+          // another writer is adding a chunk
+          Thread.yield();
+          continue;
+        }
+        int offset = chunk.allocate(level);
+        if (offset < 0) {
+          addChunk(chunk);
+          continue;
+        }
+        ByteBuffer block = chunk.data;
+        ByteBufferUtils.putInt(block, offset + DATA_CHUNK, dataChunk);
+        ByteBufferUtils.putInt(block, offset + CELL_OFFSET, cell.getOffset());
+        ByteBufferUtils.putInt(block, offset + CELL_LENGTH, cell.getSerializedSize());
+        ByteBufferUtils.putInt(block, offset + LEVEL, level);
+        ByteBufferUtils.putLong(block, offset + SEQ_ID, cell.getSequenceId());
+        // a KeyValue starts with the length of its key
+        ByteBufferUtils.putInt(block, offset + KEY_LENGTH,
+          ByteBufferUtils.toInt(cell.getBuffer(), cell.getOffset()));
+        return ((long) chunk.index << 32) | offset;
+      }
+    }
+
+    /** Replaces the full chunk with a new one. The writer which retires the chunk adds it. */
+    private void addChunk(IndexChunk full) {
+      if (!current.compareAndSet(full, null)) {
+        return;
+      }
+      IndexChunk chunk;
+      try {
+        chunk = new IndexChunk(memStoreLAB.getNewExternalChunk(ChunkCreator.ChunkType.INDEX_CHUNK),
+          chunks.length);
+      } catch (RuntimeException | Error e) {
+        current.set(full);
+        throw e;
+      }
+      IndexChunk[] added = Arrays.copyOf(chunks, chunks.length + 1);
+      added[chunk.index] = chunk;
+      // the readers see the new chunk before any link to its nodes
+      chunks = added;
+      current.set(chunk);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A mutable segment whose index is a {@link CellChunkSkipListMap} on the index chunks of its MSLAB,
+ * instead of the ConcurrentSkipListMap on heap. As the index can only reference cells on chunks,
+ * all the cells are copied into the MSLAB, the big cells and the upserted cells included.
+ */
+@InterfaceAudience.Private
+public class CellChunkSkipListMutableSegment extends MutableSegment {
+
+  public static final long DEEP_OVERHEAD_CCSLM = MutableSegment.DEEP_OVERHEAD
+    - ClassSize.CONCURRENT_SKIPLISTMAP + CellChunkSkipListMap.DEEP_OVERHEAD;
+
+  private final CellChunkSkipListMap index;
+
+  protected CellChunkSkipListMutableSegment(CellComparator comparator, MemStoreLAB memStoreLAB,
+    MemStoreSizing memstoreSizing) {
+    super(new CellSet(new CellChunkSkipListMap(comparator, memStoreLAB)), comparator, memStoreLAB,
+      memstoreSizing);
+    this.index = (CellChunkSkipListMap) getCellSet().getDelegatee();
+    // the index is on chunks, only its metadata is on heap
+    long indexOverhead = DEEP_OVERHEAD_CCSLM - MutableSegment.DEEP_OVERHEAD;
+    incMemStoreSize(0, indexOverhead, 0, 0);
+    if (memstoreSizing != null) {
+      memstoreSizing.incMemStoreSize(0, indexOverhead, 0, 0);
+    }
+  }
+
+  @Override
+  public Cell maybeCloneWithAllocator(Cell cell, boolean forceCloneOfBigCell) {
+    return super.maybeCloneWithAllocator(cell, true);
+  }
+
+  /**
+   * Upserts the given cell like the MutableSegment, once it is copied into the MSLAB. The older
+   * versions which are removed keep their space on the chunks until the flush.
+   */
+  @Override
+  public void upsert(Cell cell, long readpoint, MemStoreSizing memStoreSizing,
+    boolean sizeAddedPreOperation) {
+    super.upsert(maybeCloneWithAllocator(cell, true), readpoint, memStoreSizing,
+      sizeAddedPreOperation);
+  }
+
+  @Override
+  protected long indexEntryOnHeapSize(boolean onHeap) {
+    // the links of the nodes are on heap
+    if (onHeap) {
+      return indexEntrySize() + CellChunkSkipListMap.LINKS_SIZE;
+    }
+    // else the node is allocated off-heap
+    return CellChunkSkipListMap.LINKS_SIZE;
+  }
+
+  @Override
+  protected long indexEntryOffHeapSize(boolean offHeap) {
+    if (offHeap) {
+      return indexEntrySize();
+    }
+    // else the index is allocated on-heap
+    return 0;
+  }
+
+  @Override
+  protected long indexEntrySize() {
+    // there is no Cell object, the Cell is rebuilt from the node
+    return CellChunkSkipListMap.NODE_SIZE - KeyValue.FIXED_OVERHEAD;
+  }
+
+  @Override
+  public long getIndexOffHeapSize() {
+    return index.getIndexOffHeapSize();
+  }
+}
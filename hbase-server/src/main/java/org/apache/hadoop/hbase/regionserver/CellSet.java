@@ -20,6 +20,7 @@ package org.apache.hadoop.hbase.regionserver;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.SortedSet;
@@ -99,7 +100,8 @@ public class CellSet implements NavigableSet<Cell> {
 
   @Override
   public Cell higher(Cell e) {
-    throw new UnsupportedOperationException(HConstants.NOT_IMPLEMENTED);
+    Map.Entry<Cell, Cell> entry = this.delegatee.higherEntry(e);
+    return entry == null ? null : entry.getValue();
   }
 
   @Override
@@ -109,7 +111,8 @@ public class CellSet implements NavigableSet<Cell> {
 
   @Override
   public Cell lower(Cell e) {
-    throw new UnsupportedOperationException(HConstants.NOT_IMPLEMENTED);
+    Map.Entry<Cell, Cell> entry = this.delegatee.lowerEntry(e);
+    return entry == null ? null : entry.getValue();
   }
 
   @Override
@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.hbase.regionserver;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
@@ -27,6 +29,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.LongAdder;
 import org.apache.hadoop.hbase.regionserver.HeapMemoryManager.HeapMemoryTuneObserver;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -54,6 +57,10 @@ public class ChunkCreator {
   // the header size need to be changed in case chunk id size is changed
   public static final int SIZEOF_CHUNK_HEADER = Bytes.SIZEOF_INT;
 
+  // The stripes of the pools are this many references apart, so that two of them never share a
+  // cache line
+  private static final int CACHED_CHUNK_SLOT_SPACING = 16;
+
   /**
    * Types of chunks, based on their sizes
    */
@@ -79,12 +86,34 @@ public class ChunkCreator {
   private final int chunkSize;
   private int indexChunkSize;
   private MemStoreChunkPool indexChunksPool;
+  // index chunks allocated on heap, out of the pool, because the pool had run out of chunks
+  private final LongAdder indexChunkPoolMissCount = new LongAdder();
+  // data chunks allocated on heap, out of the pool, because the pool had run out of chunks
+  private final LongAdder dataChunkPoolMissCount = new LongAdder();
+  private final LongAdder jumboChunkCount = new LongAdder();
+  // cell allocations retried by the MemStoreLABs, because their current chunk was full or was
+  // being replaced by another thread
+  private final LongAdder chunkAllocRetryCount = new LongAdder();
+  // the number of stripes of reclaimed chunks kept by each pool, 0 if none
+  private final int cacheStripes;
 
   ChunkCreator(int chunkSize, boolean offheap, long globalMemStoreSize, float poolSizePercentage,
     float initialCountPercentage, HeapMemoryManager heapMemoryManager,
     float indexChunkSizePercentage) {
+    this(chunkSize, offheap, globalMemStoreSize, poolSizePercentage, initialCountPercentage,
+      heapMemoryManager, indexChunkSizePercentage, MemStoreLAB.POOL_CACHE_STRIPES_DEFAULT);
+  }
+
+  ChunkCreator(int chunkSize, boolean offheap, long globalMemStoreSize, float poolSizePercentage,
+    float initialCountPercentage, HeapMemoryManager heapMemoryManager,
+    float indexChunkSizePercentage, int cacheStripes) {
+    if (cacheStripes < 0) {
+      throw new IllegalArgumentException(
+        MemStoreLAB.CHUNK_POOL_CACHE_STRIPES_KEY + " must not be negative");
+    }
     this.offheap = offheap;
     this.chunkSize = chunkSize; // in case pools are not allocated
+    this.cacheStripes = cacheStripes;
     initializePools(chunkSize, globalMemStoreSize, poolSizePercentage, indexChunkSizePercentage,
       initialCountPercentage, heapMemoryManager);
   }
@@ -120,11 +149,28 @@ public class ChunkCreator {
   public static ChunkCreator initialize(int chunkSize, boolean offheap, long globalMemStoreSize,
     float poolSizePercentage, float initialCountPercentage, HeapMemoryManager heapMemoryManager,
     float indexChunkSizePercent) {
+    return initialize(chunkSize, offheap, globalMemStoreSize, poolSizePercentage,
+      initialCountPercentage, heapMemoryManager, indexChunkSizePercent,
+      MemStoreLAB.POOL_CACHE_STRIPES_DEFAULT);
+  }
+
+  /**
+   * Initializes the instance of ChunkCreator
+   * @param cacheStripes the number of stripes of reclaimed chunks each pool keeps in front of its
+   *                     shared queue, 0 for none
+   * @see #initialize(int, boolean, long, float, float, HeapMemoryManager, float)
+   */
+  @edu.umd.cs.findbugs.annotations.SuppressWarnings(
+      value = { "LI_LAZY_INIT_STATIC", "MS_EXPOSE_REP" },
+      justification = "Method is called by single thread at the starting of RS")
+  public static ChunkCreator initialize(int chunkSize, boolean offheap, long globalMemStoreSize,
+    float poolSizePercentage, float initialCountPercentage, HeapMemoryManager heapMemoryManager,
+    float indexChunkSizePercent, int cacheStripes) {
     if (instance != null) {
       return instance;
     }
     instance = new ChunkCreator(chunkSize, offheap, globalMemStoreSize, poolSizePercentage,
-      initialCountPercentage, heapMemoryManager, indexChunkSizePercent);
+      initialCountPercentage, heapMemoryManager, indexChunkSizePercent, cacheStripes);
     return instance;
   }
 
@@ -191,6 +237,11 @@ public class ChunkCreator {
       chunk = pool.getChunk();
       // the pool has run out of maxCount
       if (chunk == null) {
+        if (chunkType == ChunkType.INDEX_CHUNK) {
+          indexChunkPoolMissCount.increment();
+        } else {
+          dataChunkPoolMissCount.increment();
+        }
         if (LOG.isTraceEnabled()) {
           LOG.trace("The chunk pool is full. Reached maxCount= " + pool.getMaxCount()
             + ". Creating chunk onheap.");
@@ -224,6 +275,7 @@ public class ChunkCreator {
     }
     // the new chunk is going to hold the jumbo cell data and needs to be referenced by
     // a strong map.
+    jumboChunkCount.increment();
     return getChunk(ChunkType.JUMBO_CHUNK, allocSize);
   }
 
@@ -287,6 +339,39 @@ public class ChunkCreator {
     return this.offheap;
   }
 
+  /** Returns the number of index chunks allocated out of the exhausted index chunks pool */
+  long getIndexChunkPoolMissCount() {
+    return indexChunkPoolMissCount.sum();
+  }
+
+  /** Returns the number of data chunks allocated out of the exhausted data chunks pool */
+  long getDataChunkPoolMissCount() {
+    return dataChunkPoolMissCount.sum();
+  }
+
+  /** Returns the number of data chunks taken from the stripe of the thread asking for them */
+  long getDataChunkPoolStripeHitCount() {
+    return dataChunksPool == null ? 0 : dataChunksPool.cachedChunkHitCount.sum();
+  }
+
+  /** Returns the number of jumbo chunks allocated, which never come from a pool */
+  long getJumboChunkCount() {
+    return jumboChunkCount.sum();
+  }
+
+  /**
+   * Called by the MemStoreLABs when they had to retry allocating a cell, because their current
+   * chunk was full or was being replaced by another thread.
+   */
+  void incrChunkAllocRetries(int retries) {
+    chunkAllocRetryCount.add(retries);
+  }
+
+  /** Returns the number of cell allocations the MemStoreLABs had to retry */
+  long getChunkAllocRetryCount() {
+    return chunkAllocRetryCount.sum();
+  }
+
   private void removeChunks(Set<Integer> chunkIDs) {
     this.chunkIdMap.keySet().removeAll(chunkIDs);
   }
@@ -317,6 +402,10 @@ public class ChunkCreator {
 
     // A queue of reclaimed chunks
     private final BlockingQueue<Chunk> reclaimedChunks;
+    // Stripes of reclaimed chunks in front of the shared queue, one slot per stripe, null if
+    // disabled. A thread takes from the stripe picked by its id before going to the queue.
+    private final AtomicReferenceArray<Chunk> cachedChunks;
+    private final int stripes;
     private final float poolSizePercentage;
 
     /** Statistics thread schedule pool */
@@ -325,16 +414,20 @@ public class ChunkCreator {
     private static final int statThreadPeriod = 60 * 5;
     private final AtomicLong chunkCount = new AtomicLong();
     private final LongAdder reusedChunkCount = new LongAdder();
+    private final LongAdder cachedChunkHitCount = new LongAdder();
     private final String label;
 
     MemStoreChunkPool(String label, int chunkSize, ChunkType chunkType, int maxCount,
-      int initialCount, float poolSizePercentage) {
+      int initialCount, float poolSizePercentage, int stripes) {
       this.label = label;
       this.chunkSize = chunkSize;
       this.chunkType = chunkType;
       this.maxCount = maxCount;
       this.poolSizePercentage = poolSizePercentage;
       this.reclaimedChunks = new LinkedBlockingQueue<>();
+      this.stripes = stripes;
+      this.cachedChunks =
+        stripes > 0 ? new AtomicReferenceArray<>(stripes * CACHED_CHUNK_SLOT_SPACING) : null;
       for (int i = 0; i < initialCount; i++) {
         Chunk chunk = createChunk(true, chunkType, chunkSize);
         chunk.init();
@@ -355,10 +448,16 @@ public class ChunkCreator {
      * make a chunk then. Note: Chunks returned by this pool must be put back to the pool after its
      * use.
      * @return a chunk
-     * @see #putbackChunks(Chunk)
+     * @see #putbackChunks(List)
      */
     Chunk getChunk() {
-      Chunk chunk = reclaimedChunks.poll();
+      Chunk chunk = pollCachedChunk();
+      if (chunk != null) {
+        cachedChunkHitCount.increment();
+      } else {
+        // the queue, then the stripes of the other threads, before making a chunk
+        chunk = pollAnyChunk();
+      }
       if (chunk != null) {
         chunk.reset();
         reusedChunkCount.increment();
@@ -379,22 +478,114 @@ public class ChunkCreator {
       return chunk;
     }
 
+    /**
+     * Take the chunk cached in the stripe of the current thread, if any.
+     */
+    private Chunk pollCachedChunk() {
+      if (cachedChunks == null) {
+        return null;
+      }
+      int slot = threadStripe() * CACHED_CHUNK_SLOT_SPACING;
+      Chunk chunk = cachedChunks.get(slot);
+      if (chunk != null && cachedChunks.compareAndSet(slot, chunk, null)) {
+        return chunk;
+      }
+      return null;
+    }
+
+    /** Returns the stripe of the current thread */
+    private int threadStripe() {
+      return (int) (Thread.currentThread().getId() % stripes);
+    }
+
+    /**
+     * Take any reclaimed chunk, either from the queue or from one of the stripes.
+     */
+    private Chunk pollAnyChunk() {
+      Chunk chunk = reclaimedChunks.poll();
+      if (chunk != null || cachedChunks == null) {
+        return chunk;
+      }
+      for (int i = 0; i < cachedChunks.length(); i += CACHED_CHUNK_SLOT_SPACING) {
+        chunk = cachedChunks.getAndSet(i, null);
+        if (chunk != null) {
+          return chunk;
+        }
+      }
+      return null;
+    }
+
     int getChunkSize() {
       return chunkSize;
     }
 
+    /** Returns the number of reclaimed chunks in the pool, in the queue and in the stripes */
+    int size() {
+      int size = reclaimedChunks.size();
+      if (cachedChunks != null) {
+        for (int i = 0; i < cachedChunks.length(); i += CACHED_CHUNK_SLOT_SPACING) {
+          if (cachedChunks.get(i) != null) {
+            size++;
+          }
+        }
+      }
+      return size;
+    }
+
+    boolean contains(Chunk c) {
+      if (reclaimedChunks.contains(c)) {
+        return true;
+      }
+      if (cachedChunks != null) {
+        for (int i = 0; i < cachedChunks.length(); i += CACHED_CHUNK_SLOT_SPACING) {
+          if (cachedChunks.get(i) == c) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    void clear() {
+      reclaimedChunks.clear();
+      if (cachedChunks != null) {
+        for (int i = 0; i < cachedChunks.length(); i += CACHED_CHUNK_SLOT_SPACING) {
+          cachedChunks.set(i, null);
+        }
+      }
+    }
+
     /**
      * Add the chunks to the pool, when the pool achieves the max size, it will skip the remaining
-     * chunks
+     * chunks. The empty stripes are refilled first, starting from the stripe of the current
+     * thread, and the rest go to the queue in one batch.
      */
-    private void putbackChunks(Chunk c) {
-      int toAdd = this.maxCount - reclaimedChunks.size();
-      if (c.isFromPool() && c.size == chunkSize && toAdd > 0) {
-        reclaimedChunks.add(c);
-      } else {
-        // remove the chunk (that is not going to pool)
-        // though it is initially from the pool or not
-        ChunkCreator.this.removeChunk(c.getId());
+    private void putbackChunks(List<Chunk> chunks) {
+      int toAdd = this.maxCount - size();
+      List<Chunk> toQueue = new ArrayList<>(chunks.size());
+      int firstStripe = cachedChunks != null ? threadStripe() : 0;
+      int tried = 0;
+      for (Chunk c : chunks) {
+        if (c.isFromPool() && c.size == chunkSize && toAdd > 0) {
+          toAdd--;
+          boolean cached = false;
+          if (cachedChunks != null) {
+            for (; !cached && tried < stripes; tried++) {
+              int slot = ((firstStripe + tried) % stripes) * CACHED_CHUNK_SLOT_SPACING;
+              cached = cachedChunks.compareAndSet(slot, null, c);
+            }
+          }
+          if (!cached) {
+            toQueue.add(c);
+          }
+        } else {
+          // remove the chunk (that is not going to pool)
+          // though it is initially from the pool or not
+          ChunkCreator.this.removeChunk(c.getId());
+        }
+      }
+      if (!toQueue.isEmpty()) {
+        reclaimedChunks.addAll(toQueue);
       }
     }
 
@@ -416,9 +607,10 @@ public class ChunkCreator {
         long total = created + reused;
         LOG.debug(
           "{} stats (chunk size={}): current pool size={}, created chunk count={}, "
-            + "reused chunk count={}, reuseRatio={}",
-          label, chunkSize, reclaimedChunks.size(), created, reused,
-          (total == 0 ? "0" : StringUtils.formatPercent((float) reused / (float) total, 2)));
+            + "reused chunk count={}, reuseRatio={}, reused from stripes={}",
+          label, chunkSize, size(), created, reused,
+          (total == 0 ? "0" : StringUtils.formatPercent((float) reused / (float) total, 2)),
+          cachedChunkHitCount.sum());
       }
     }
 
@@ -449,10 +641,12 @@ public class ChunkCreator {
           LOG.info("{} max count for chunks decreased from {} to {}", this.label, this.maxCount,
             newMaxCount);
           this.maxCount = newMaxCount;
-          if (this.reclaimedChunks.size() > newMaxCount) {
+          if (size() > newMaxCount) {
             synchronized (this) {
-              while (this.reclaimedChunks.size() > newMaxCount) {
-                this.reclaimedChunks.poll();
+              while (size() > newMaxCount) {
+                if (pollAnyChunk() == null) {
+                  break;
+                }
               }
             }
           }
@@ -488,7 +682,7 @@ public class ChunkCreator {
     LOG.info("Allocating {} MemStoreChunkPool with chunk size {}, max count {}, initial count {}",
       label, StringUtils.byteDesc(chunkSize), maxCount, initialCount);
     MemStoreChunkPool memStoreChunkPool = new MemStoreChunkPool(label, chunkSize, chunkType,
-      maxCount, initialCount, poolSizePercentage);
+      maxCount, initialCount, poolSizePercentage, cacheStripes);
     if (heapMemoryManager != null && memStoreChunkPool != null) {
       // Register with Heap Memory manager
       heapMemoryManager.registerTuneObserver(memStoreChunkPool);
@@ -527,12 +721,12 @@ public class ChunkCreator {
     switch (chunkType) {
       case INDEX_CHUNK:
         if (indexChunksPool != null) {
-          return indexChunksPool.reclaimedChunks.size();
+          return indexChunksPool.size();
         }
         break;
       case DATA_CHUNK:
         if (dataChunksPool != null) {
-          return dataChunksPool.reclaimedChunks.size();
+          return dataChunksPool.size();
         }
         break;
       default:
@@ -548,9 +742,9 @@ public class ChunkCreator {
     }
 
     // chunks that are from pool will return true chunk reference not null
-    if (dataChunksPool != null && dataChunksPool.reclaimedChunks.contains(c)) {
+    if (dataChunksPool != null && dataChunksPool.contains(c)) {
       return true;
-    } else if (indexChunksPool != null && indexChunksPool.reclaimedChunks.contains(c)) {
+    } else if (indexChunksPool != null && indexChunksPool.contains(c)) {
       return true;
     }
     return false;
@@ -561,10 +755,10 @@ public class ChunkCreator {
    */
   void clearChunksInPool() {
     if (dataChunksPool != null) {
-      dataChunksPool.reclaimedChunks.clear();
+      dataChunksPool.clear();
     }
     if (indexChunksPool != null) {
-      indexChunksPool.reclaimedChunks.clear();
+      indexChunksPool.clear();
     }
   }
 
@@ -598,16 +792,19 @@ public class ChunkCreator {
       return;
     }
 
-    // if there is a pool, go over all chunk IDs that came back, the chunks may be from pool or not
+    // if there is a pool, go over all chunk IDs that came back, the chunks may be from pool or not.
+    // The pooled ones are handed back to their pools in one batch per pool.
+    List<Chunk> indexChunks = new ArrayList<>();
+    List<Chunk> dataChunks = new ArrayList<>(chunks.size());
     for (int chunkID : chunks) {
       // translate chunk ID to chunk, if chunk initially wasn't in pool
       // this translation will (most likely) return null
       Chunk chunk = ChunkCreator.this.getChunk(chunkID);
       if (chunk != null) {
         if (chunk.isFromPool() && chunk.isIndexChunk()) {
-          indexChunksPool.putbackChunks(chunk);
+          indexChunks.add(chunk);
         } else if (chunk.isFromPool() && chunk.isDataChunk()) {
-          dataChunksPool.putbackChunks(chunk);
+          dataChunks.add(chunk);
         } else {
           // chunks which are not from one of the pools
           // should be released without going to the pools.
@@ -618,7 +815,12 @@ public class ChunkCreator {
       // if chunk is null, it was never covered by the chunkIdMap (and so wasn't in pool also),
       // so we have nothing to do on its release
     }
-    return;
+    if (!indexChunks.isEmpty()) {
+      indexChunksPool.putbackChunks(indexChunks);
+    }
+    if (!dataChunks.isEmpty()) {
+      dataChunksPool.putbackChunks(dataChunks);
+    }
   }
 
   MemStoreChunkPool getIndexChunksPool() {
@@ -267,6 +267,20 @@ public class CompactingMemStore extends AbstractMemStore {
     return h;
   }
 
+  /** Returns the number of times the in-memory compaction strategy chose the action */
+  long getInMemoryCompactionActionCount(MemStoreCompactionStrategy.Action action) {
+    return compactor.getActionCount(action);
+  }
+
+  @Override
+  public long getIndexOffHeapSize() {
+    long size = super.getIndexOffHeapSize();
+    for (Segment segment : this.pipeline.getSegments()) {
+      size += segment.getIndexOffHeapSize();
+    }
+    return size;
+  }
+
   @Override
   public void updateLowestUnflushedSequenceIdInWAL(boolean onlyIfGreater) {
     long minSequenceId = pipeline.getMinSequenceId();
@@ -322,6 +336,12 @@ public class CompactingMemStore extends AbstractMemStore {
     currentActive.sharedUnlock();
   }
 
+  @Override
+  protected void doAdd(MutableSegment currentActive, Cell cell, MemStoreSizing memstoreSizing) {
+    super.doAdd(currentActive, cell, memstoreSizing);
+    compactor.sampleAdd(currentActive, cell);
+  }
+
   @Override
   protected boolean sizeAddedPreOperation() {
     return true;
@@ -549,6 +569,7 @@ public class CompactingMemStore extends AbstractMemStore {
     if (!checkEmpty || !currActive.isEmpty()) {
       pipeline.pushHead(currActive);
       resetActive();
+      compactor.activePushedToPipeline();
     }
   }
 
@@ -172,6 +172,15 @@ public class CompositeImmutableSegment extends ImmutableSegment {
     return result;
   }
 
+  @Override
+  public long getIndexOffHeapSize() {
+    long result = 0;
+    for (ImmutableSegment s : segments) {
+      result += s.getIndexOffHeapSize();
+    }
+    return result;
+  }
+
   /**
    * Updates the heap size counter of the segment by the given delta
    */
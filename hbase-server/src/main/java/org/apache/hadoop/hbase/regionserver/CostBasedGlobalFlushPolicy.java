@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.regionserver.wal.AbstractFSWAL;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.wal.WAL;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Picks the region whose flush gains the most for its cost, rather than just the largest one. The
+ * score of a region is made of
+ * <ul>
+ * <li>the memory the flush frees, as a fraction of the memory held by all the candidates,</li>
+ * <li>plus the rolled WAL files the flush would let us archive, as a fraction of those blocked by
+ * all the candidates. A file blocked by n regions counts for 1/n for each of them,</li>
+ * <li>minus the predicted compaction debt, which is the mean of how close the fullest store written
+ * to gets to the blocking store file count, and of the fraction of the files written which are
+ * small compared to the region flush size,</li>
+ * <li>minus the write rate of the region since its last flush, relative to the highest write rate
+ * of the candidates. A region written to fast soon fills up again and gets flushed on its own,
+ * while the memstore of a cold region would otherwise stay around until the periodic flush.</li>
+ * </ul>
+ * All but the first term are weighted by configurable factors.
+ */
+@InterfaceAudience.Private
+public class CostBasedGlobalFlushPolicy extends GlobalFlushPolicy {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CostBasedGlobalFlushPolicy.class);
+
+  public static final String WAL_WEIGHT_KEY = "hbase.regionserver.global.flush.policy.wal.weight";
+  public static final double DEFAULT_WAL_WEIGHT = 0.5;
+
+  public static final String COMPACTION_WEIGHT_KEY =
+    "hbase.regionserver.global.flush.policy.compaction.weight";
+  public static final double DEFAULT_COMPACTION_WEIGHT = 0.5;
+
+  public static final String WRITE_RATE_WEIGHT_KEY =
+    "hbase.regionserver.global.flush.policy.write.rate.weight";
+  public static final double DEFAULT_WRITE_RATE_WEIGHT = 0.25;
+
+  // A flushed file smaller than this fraction of the region flush size is a small file
+  private static final double SMALL_FILE_FRACTION = 0.1;
+
+  private double walWeight = DEFAULT_WAL_WEIGHT;
+  private double compactionWeight = DEFAULT_COMPACTION_WEIGHT;
+  private double writeRateWeight = DEFAULT_WRITE_RATE_WEIGHT;
+
+  @Override
+  public void setConf(Configuration conf) {
+    super.setConf(conf);
+    if (conf != null) {
+      walWeight = conf.getDouble(WAL_WEIGHT_KEY, DEFAULT_WAL_WEIGHT);
+      compactionWeight = conf.getDouble(COMPACTION_WEIGHT_KEY, DEFAULT_COMPACTION_WEIGHT);
+      writeRateWeight = conf.getDouble(WRITE_RATE_WEIGHT_KEY, DEFAULT_WRITE_RATE_WEIGHT);
+    }
+  }
+
+  @Override
+  public HRegion selectRegionToFlush(List<HRegion> candidates, FlushType flushType) {
+    int n = candidates.size();
+    long[] sizes = new long[n];
+    double[] walShares = new double[n];
+    double[] writeRates = new double[n];
+    long totalSize = 0;
+    double totalWALShares = 0;
+    double maxWriteRate = 0;
+    long now = EnvironmentEdgeManager.currentTime();
+    Map<WAL, Map<byte[], Double>> sharesPerWAL = new IdentityHashMap<>();
+    for (int i = 0; i < n; i++) {
+      HRegion region = candidates.get(i);
+      sizes[i] = getMemStoreSize(region, flushType);
+      totalSize += sizes[i];
+      walShares[i] = getWALShare(region, sharesPerWAL);
+      totalWALShares += walShares[i];
+      // at least a second, so that a region which has just flushed does not look hot
+      long age = Math.max(1000, now - region.getEarliestFlushTimeForAllStores());
+      writeRates[i] = (double) region.getMemStoreDataSize() / age;
+      maxWriteRate = Math.max(maxWriteRate, writeRates[i]);
+    }
+    if (totalSize <= 0) {
+      return null;
+    }
+    HRegion best = null;
+    double bestScore = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < n; i++) {
+      if (sizes[i] <= 0) {
+        continue;
+      }
+      HRegion region = candidates.get(i);
+      double score = (double) sizes[i] / totalSize;
+      if (totalWALShares > 0) {
+        score += walWeight * walShares[i] / totalWALShares;
+      }
+      score -= compactionWeight * getCompactionDebt(region);
+      if (maxWriteRate > 0) {
+        score -= writeRateWeight * writeRates[i] / maxWriteRate;
+      }
+      LOG.trace("Region {} scored {} for a global flush", region, score);
+      if (score > bestScore) {
+        bestScore = score;
+        best = region;
+      }
+    }
+    return best;
+  }
+
+  private static double getWALShare(HRegion region, Map<WAL, Map<byte[], Double>> sharesPerWAL) {
+    WAL wal = region.getWAL();
+    if (!(wal instanceof AbstractFSWAL)) {
+      return 0;
+    }
+    Map<byte[], Double> shares = sharesPerWAL.computeIfAbsent(wal,
+      w -> ((AbstractFSWAL<?>) w).getRolledLogFileBlockingShares());
+    return shares.getOrDefault(region.getRegionInfo().getEncodedNameAsBytes(), 0.0);
+  }
+
+  /** Returns the predicted compaction debt of flushing the region, between 0 and 1 */
+  static double getCompactionDebt(HRegion region) {
+    if (!region.getTableDescriptor().isCompactionEnabled()) {
+      return 0;
+    }
+    long flushSize = region.getMemStoreFlushSize();
+    double fullness = 0;
+    int files = 0;
+    int smallFiles = 0;
+    for (HStore store : region.getStores()) {
+      long storeSize = store.getMemStoreSize().getDataSize();
+      if (storeSize <= 0) {
+        // nothing to write out
+        continue;
+      }
+      files++;
+      if (storeSize < SMALL_FILE_FRACTION * flushSize) {
+        smallFiles++;
+      }
+      long blocking = Math.max(1, store.getBlockingFileCount());
+      fullness = Math.max(fullness, (double) (store.getStorefilesCount() + 1) / blocking);
+    }
+    if (files == 0) {
+      return 0;
+    }
+    return (Math.min(1.0, fullness) + (double) smallFiles / files) / 2;
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.apache.hadoop.hbase.util.ConcurrentMapUtils.computeIfAbsent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.util.HashedBytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * The default {@link RowLockManager}, which creates a context holding the lock of a row when it is
+ * first locked, and drops it once the row is not locked anymore.
+ */
+@InterfaceAudience.Private
+public class DefaultRowLockManager implements RowLockManager {
+
+  private final ConcurrentHashMap<HashedBytes, RowLockContext> lockedRows =
+    new ConcurrentHashMap<>();
+
+  public DefaultRowLockManager(Configuration conf) {
+  }
+
+  @Override
+  public ManagedRowLock getRowLock(byte[] row, boolean readLock) {
+    // create an object to use a a key in the row lock map
+    HashedBytes rowKey = new HashedBytes(row);
+    // Keep trying until we have a lock reference, as the context we get may be being dropped
+    for (;;) {
+      RowLockContext rowLockContext =
+        computeIfAbsent(lockedRows, rowKey, () -> new RowLockContext(rowKey));
+      RowLockImpl result =
+        readLock ? rowLockContext.newReadLock() : rowLockContext.newWriteLock();
+      if (result != null) {
+        return result;
+      }
+    }
+  }
+
+  @Override
+  public List<String> getLockedRows() {
+    List<String> rows = new ArrayList<>(lockedRows.size());
+    for (RowLockContext rowLockContext : lockedRows.values()) {
+      rows.add(rowLockContext.toString());
+    }
+    return rows;
+  }
+
+  class RowLockContext {
+    private final HashedBytes row;
+    final ReadWriteLock readWriteLock = new ReentrantReadWriteLock(true);
+    final AtomicBoolean usable = new AtomicBoolean(true);
+    final AtomicInteger count = new AtomicInteger(0);
+    final Object lock = new Object();
+    private String threadName;
+
+    RowLockContext(HashedBytes row) {
+      this.row = row;
+    }
+
+    RowLockImpl newWriteLock() {
+      Lock l = readWriteLock.writeLock();
+      return getRowLock(l);
+    }
+
+    RowLockImpl newReadLock() {
+      Lock l = readWriteLock.readLock();
+      return getRowLock(l);
+    }
+
+    private RowLockImpl getRowLock(Lock l) {
+      count.incrementAndGet();
+      synchronized (lock) {
+        if (usable.get()) {
+          return new RowLockImpl(this, l);
+        } else {
+          return null;
+        }
+      }
+    }
+
+    void cleanUp() {
+      long c = count.decrementAndGet();
+      if (c <= 0) {
+        synchronized (lock) {
+          if (count.get() <= 0 && usable.get()) { // Don't attempt to remove row if already removed
+            usable.set(false);
+            RowLockContext removed = lockedRows.remove(row);
+            assert removed == this : "we should never remove a different context";
+          }
+        }
+      }
+    }
+
+    public void setThreadName(String threadName) {
+      this.threadName = threadName;
+    }
+
+    @Override
+    public String toString() {
+      return "RowLockContext{" + "row=" + row + ", readWriteLock=" + readWriteLock + ", count="
+        + count + ", threadName=" + threadName + '}';
+    }
+  }
+
+  /**
+   * Class used to represent a lock on a row.
+   */
+  public static class RowLockImpl implements ManagedRowLock {
+    private final RowLockContext context;
+    private final Lock lock;
+
+    public RowLockImpl(RowLockContext context, Lock lock) {
+      this.context = context;
+      this.lock = lock;
+    }
+
+    @Override
+    public Lock getLock() {
+      return lock;
+    }
+
+    public RowLockContext getContext() {
+      return context;
+    }
+
+    @Override
+    public void locked(Thread thread) {
+      context.setThreadName(thread.getName());
+    }
+
+    @Override
+    public void abort() {
+      context.cleanUp();
+    }
+
+    @Override
+    public void release() {
+      lock.unlock();
+      context.cleanUp();
+    }
+
+    @Override
+    public String toString() {
+      return "RowLockImpl{" + "context=" + context + ", lock=" + lock + '}';
+    }
+  }
+}
@@ -0,0 +1,484 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Append;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptor;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.io.TimeRange;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.HashedBytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hbase.thirdparty.com.google.common.base.Throwables;
+
+/**
+ * Coalesces concurrent Increments, or Appends, of the same row into a single mutation, so that a
+ * hot counter costs one read, one WAL edit and one memstore cell per batch of operations rather
+ * than per operation. Enabled per column family by setting {@link #COALESCE_KEY} in its
+ * configuration.
+ * <p>
+ * The first operation on a row leads a batch. The leader waits for the previous batch of the row
+ * to be applied, then for up to {@link #WINDOW_KEY} microseconds, while the operations on the row
+ * arriving meanwhile join its batch. It then applies the sum of the increments, or the
+ * concatenation of the appends, as one mutation, and gives each operation of the batch the result
+ * it would have got had the operations been applied one after the other, in the order they joined
+ * the batch. If the merged mutation fails a sanity check, e.g. because one of the operations
+ * increments a cell which is not a counter, each operation is applied on its own instead.
+ * <p>
+ * Only plain deltas are coalesced: all the families of the operation must have coalescing enabled,
+ * the operation must not set a time range, a TTL, a durability, cell timestamps or cell tags, and
+ * the region must not have coprocessors, as they would only see the merged mutation.
+ * <p>
+ * The nonce of each operation is registered with the nonce manager, as for any other operation.
+ * As a WAL edit only has room for one nonce, the nonces of the operations of a batch are written
+ * to the {@link #NONCES_ATTRIBUTE} extended attribute of its WAL key instead, and reported to the
+ * nonce manager when the WAL is replayed, so that a retry after the region moved is not applied
+ * twice.
+ */
+@InterfaceAudience.Private
+class DeltaCoalescer {
+
+  /** Whether to coalesce the Increments and Appends of a family */
+  static final String COALESCE_KEY = "hbase.hregion.increment.coalesce";
+
+  /** How long a batch waits for more operations once the previous batch of its row is applied */
+  static final String WINDOW_KEY = "hbase.hregion.increment.coalesce.window.us";
+  static final long DEFAULT_WINDOW = 0;
+
+  static final String MAX_BATCH_KEY = "hbase.hregion.increment.coalesce.max.batch";
+  static final int DEFAULT_MAX_BATCH = 1024;
+
+  /** The WAL key attribute with the nonce group and nonce of each operation of a batch */
+  static final String NONCES_ATTRIBUTE = "hbase.coalesced.nonces";
+
+  private final HRegion region;
+  private final Set<byte[]> families;
+  private final long windowNanos;
+  private final int maxBatch;
+  // The last batch of each row with operations in progress
+  private final ConcurrentMap<HashedBytes, Batch> batches = new ConcurrentHashMap<>();
+  private final LongAdder batchCount = new LongAdder();
+  private final LongAdder coalescedCount = new LongAdder();
+
+  /** Returns a coalescer for the region, or null if no family of the table enables coalescing. */
+  static DeltaCoalescer create(HRegion region, Configuration conf, TableDescriptor htd) {
+    Set<byte[]> families = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    for (ColumnFamilyDescriptor family : htd.getColumnFamilies()) {
+      String value = family.getConfigurationValue(COALESCE_KEY);
+      if (value != null ? Boolean.parseBoolean(value) : conf.getBoolean(COALESCE_KEY, false)) {
+        families.add(family.getName());
+      }
+    }
+    return families.isEmpty() ? null : new DeltaCoalescer(region, conf, families);
+  }
+
+  private DeltaCoalescer(HRegion region, Configuration conf, Set<byte[]> families) {
+    this.region = region;
+    this.families = families;
+    this.windowNanos = TimeUnit.MICROSECONDS.toNanos(conf.getLong(WINDOW_KEY, DEFAULT_WINDOW));
+    this.maxBatch = Math.max(1, conf.getInt(MAX_BATCH_KEY, DEFAULT_MAX_BATCH));
+  }
+
+  /** Returns whether the Increment or Append can be coalesced with others. */
+  boolean canCoalesce(Mutation mutation) {
+    TimeRange timeRange = mutation instanceof Increment
+      ? ((Increment) mutation).getTimeRange()
+      : ((Append) mutation).getTimeRange();
+    if (
+      !timeRange.isAllTime() || mutation.getTTL() != Long.MAX_VALUE
+        || mutation.getDurability() != Durability.USE_DEFAULT || mutation.isEmpty()
+    ) {
+      return false;
+    }
+    RegionCoprocessorHost coprocessorHost = region.getCoprocessorHost();
+    if (coprocessorHost != null && !coprocessorHost.getCoprocessors().isEmpty()) {
+      return false;
+    }
+    for (Map.Entry<byte[], List<Cell>> entry : mutation.getFamilyCellMap().entrySet()) {
+      if (!families.contains(entry.getKey())) {
+        return false;
+      }
+      List<Cell> cells = entry.getValue();
+      for (int i = 0; i < cells.size(); i++) {
+        Cell cell = cells.get(i);
+        if (
+          cell.getTimestamp() != HConstants.LATEST_TIMESTAMP || cell.getTagsLength() > 0
+            || (mutation instanceof Increment && cell.getValueLength() != Bytes.SIZEOF_LONG)
+        ) {
+          return false;
+        }
+        // The region applies each delta of a column to its current value, not to one another
+        for (int j = 0; j < i; j++) {
+          if (CellUtil.matchingQualifier(cell, cells.get(j))) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Applies the Increment or Append, which must be coalescable, from within a region operation.
+   */
+  Result apply(Mutation mutation, long nonceGroup, long nonce) throws IOException {
+    RegionServerServices rsServices = region.getRegionServerServices();
+    ServerNonceManager nonceManager = rsServices == null ? null : rsServices.getNonceManager();
+    if (nonceManager == null || nonce == HConstants.NO_NONCE) {
+      return apply(new Member(mutation, nonceGroup, nonce));
+    }
+    boolean canProceed;
+    try {
+      canProceed = nonceManager.startOperation(nonceGroup, nonce, rsServices);
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Nonce start operation interrupted");
+    }
+    if (!canProceed) {
+      // A retry of an operation which has succeeded, which the region turns into a Get
+      return region.applyDelta(mutation, nonceGroup, nonce);
+    }
+    boolean success = false;
+    try {
+      Result result = apply(new Member(mutation, nonceGroup, nonce));
+      success = true;
+      return result;
+    } finally {
+      nonceManager.endOperation(nonceGroup, nonce, success);
+    }
+  }
+
+  private Result apply(Member member) throws IOException {
+    Mutation mutation = member.mutation;
+    HashedBytes row = new HashedBytes(mutation.getRow());
+    boolean increment = mutation instanceof Increment;
+    Batch batch = batches.compute(row, (k, last) -> {
+      if (last != null && !last.closed && last.increment == increment) {
+        last.members.add(member);
+        if (last.members.size() >= maxBatch) {
+          last.closed = true;
+          LockSupport.unpark(last.leaderThread);
+        }
+        return last;
+      }
+      return new Batch(increment, member, last);
+    });
+    if (batch.leader == member) {
+      lead(row, batch);
+    } else {
+      try {
+        batch.done.await();
+      } catch (InterruptedException e) {
+        throw (InterruptedIOException) new InterruptedIOException(
+          "Interrupted waiting for coalesced operation on row " + row).initCause(e);
+      }
+    }
+    if (member.error != null) {
+      Throwables.throwIfUnchecked(member.error);
+      throw (IOException) member.error;
+    }
+    return member.fallback
+      ? region.applyCoalescedDelta(mutation, encodeNonces(Collections.singletonList(member)))
+      : member.result;
+  }
+
+  private void lead(HashedBytes row, Batch batch) {
+    try {
+      awaitUninterruptibly(batch.previous);
+      batch.previous = null;
+      if (windowNanos > 0) {
+        long deadline = System.nanoTime() + windowNanos;
+        for (long remaining = windowNanos; remaining > 0 && !batch.closed;) {
+          LockSupport.parkNanos(this, remaining);
+          remaining = deadline - System.nanoTime();
+        }
+      }
+      // Closes the batch under the same lock as the joins, so the members are all visible
+      batches.computeIfPresent(row, (k, last) -> {
+        batch.closed = true;
+        return last;
+      });
+      applyBatch(batch);
+    } catch (IOException | RuntimeException | Error e) {
+      for (Member member : batch.members) {
+        member.error = e;
+      }
+    } finally {
+      batches.remove(row, batch);
+      batch.done.countDown();
+    }
+  }
+
+  private void applyBatch(Batch batch) throws IOException {
+    List<Member> members = batch.members;
+    batchCount.increment();
+    if (members.size() == 1) {
+      Member member = members.get(0);
+      member.result = region.applyCoalescedDelta(member.mutation, encodeNonces(members));
+      return;
+    }
+    coalescedCount.add(members.size());
+    byte[] row = batch.leader.mutation.getRow();
+    NavigableMap<byte[], NavigableMap<byte[], Column>> columns =
+      new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (Member member : members) {
+      for (Map.Entry<byte[], List<Cell>> entry : member.mutation.getFamilyCellMap().entrySet()) {
+        NavigableMap<byte[], Column> family =
+          columns.computeIfAbsent(entry.getKey(), k -> new TreeMap<>(Bytes.BYTES_COMPARATOR));
+        for (Cell cell : entry.getValue()) {
+          family.computeIfAbsent(CellUtil.cloneQualifier(cell), k -> new Column())
+            .add(cell, batch.increment);
+        }
+      }
+    }
+    Mutation merged = batch.increment ? new Increment(row) : new Append(row);
+    for (Map.Entry<byte[], NavigableMap<byte[], Column>> family : columns.entrySet()) {
+      for (Map.Entry<byte[], Column> column : family.getValue().entrySet()) {
+        if (batch.increment) {
+          ((Increment) merged).addColumn(family.getKey(), column.getKey(), column.getValue().sum);
+        } else {
+          ((Append) merged).addColumn(family.getKey(), column.getKey(),
+            column.getValue().appended.toByteArray());
+        }
+      }
+    }
+    Result result;
+    try {
+      result = region.applyCoalescedDelta(merged, encodeNonces(members));
+    } catch (DoNotRetryIOException e) {
+      // Nothing was applied. Apply each operation on its own, so only the invalid ones fail.
+      for (Member member : members) {
+        member.fallback = true;
+      }
+      return;
+    }
+    for (Map.Entry<byte[], NavigableMap<byte[], Column>> family : columns.entrySet()) {
+      for (Map.Entry<byte[], Column> column : family.getValue().entrySet()) {
+        Cell cell = result.getColumnLatestCell(family.getKey(), column.getKey());
+        if (cell == null) {
+          throw new IOException("No result for coalesced column "
+            + Bytes.toStringBinary(family.getKey()) + ":" + Bytes.toStringBinary(column.getKey()));
+        }
+        column.getValue().setResult(cell, batch.increment);
+      }
+    }
+    for (Member member : members) {
+      member.result = split(member.mutation, columns, batch.increment);
+    }
+  }
+
+  /** Returns the result of the operation as if it had been applied after the previous ones. */
+  private Result split(Mutation mutation,
+    NavigableMap<byte[], NavigableMap<byte[], Column>> columns, boolean increment) {
+    boolean returnResults = increment
+      ? ((Increment) mutation).isReturnResults()
+      : ((Append) mutation).isReturnResults();
+    List<Cell> cells = returnResults ? new ArrayList<>(mutation.size()) : null;
+    for (Map.Entry<byte[], List<Cell>> entry : mutation.getFamilyCellMap().entrySet()) {
+      NavigableMap<byte[], Column> family = columns.get(entry.getKey());
+      for (Cell cell : entry.getValue()) {
+        Column column = family.get(CellUtil.cloneQualifier(cell));
+        byte[] value;
+        if (increment) {
+          column.value += Bytes.toLong(cell.getValueArray(), cell.getValueOffset());
+          value = Bytes.toBytes(column.value);
+        } else {
+          column.length += cell.getValueLength();
+          value = Arrays.copyOf(column.resultValue, column.length);
+        }
+        if (cells != null) {
+          cells.add(new KeyValue(mutation.getRow(), entry.getKey(), CellUtil.cloneQualifier(cell),
+            column.timestamp, KeyValue.Type.Put, value));
+        }
+      }
+    }
+    if (cells == null) {
+      return Result.EMPTY_RESULT;
+    }
+    cells.sort(region.getCellComparator());
+    return Result.create(cells);
+  }
+
+  /**
+   * Returns the nonce groups and nonces of the operations, as pairs of longs, or null if none of
+   * the operations has a nonce.
+   */
+  private static byte[] encodeNonces(List<Member> members) {
+    int count = 0;
+    for (Member member : members) {
+      if (member.nonce != HConstants.NO_NONCE) {
+        count++;
+      }
+    }
+    if (count == 0) {
+      return null;
+    }
+    byte[] nonces = new byte[count * 2 * Bytes.SIZEOF_LONG];
+    int offset = 0;
+    for (Member member : members) {
+      if (member.nonce != HConstants.NO_NONCE) {
+        offset = Bytes.putLong(nonces, offset, member.nonceGroup);
+        offset = Bytes.putLong(nonces, offset, member.nonce);
+      }
+    }
+    return nonces;
+  }
+
+  /**
+   * Reports the nonces of the operations of a batch, as written to the {@link #NONCES_ATTRIBUTE}
+   * of its WAL key, to the nonce manager when replaying the WAL.
+   * @param nonces the value of the attribute, may be null
+   */
+  static void reportNoncesFromWal(ServerNonceManager nonceManager, byte[] nonces,
+    long writeTime) {
+    if (nonces == null) {
+      return;
+    }
+    for (int offset = 0; offset + 2 * Bytes.SIZEOF_LONG <= nonces.length;) {
+      long nonceGroup = Bytes.toLong(nonces, offset);
+      offset += Bytes.SIZEOF_LONG;
+      long nonce = Bytes.toLong(nonces, offset);
+      offset += Bytes.SIZEOF_LONG;
+      nonceManager.reportOperationFromWal(nonceGroup, nonce, writeTime);
+    }
+  }
+
+  private static void awaitUninterruptibly(Batch batch) {
+    if (batch == null) {
+      return;
+    }
+    boolean interrupted = false;
+    for (;;) {
+      try {
+        batch.done.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Returns the number of batches applied. */
+  long getBatchCount() {
+    return batchCount.sum();
+  }
+
+  /** Returns the number of operations applied as part of a batch of more than one operation. */
+  long getCoalescedCount() {
+    return coalescedCount.sum();
+  }
+
+  private static final class Member {
+    final Mutation mutation;
+    final long nonceGroup;
+    final long nonce;
+    Result result;
+    Throwable error;
+    // Whether the operation must be applied on its own
+    boolean fallback;
+
+    Member(Mutation mutation, long nonceGroup, long nonce) {
+      this.mutation = mutation;
+      this.nonceGroup = nonceGroup;
+      this.nonce = nonce;
+    }
+  }
+
+  private static final class Batch {
+    final boolean increment;
+    final Member leader;
+    final Thread leaderThread = Thread.currentThread();
+    // Guarded by the lock of the row in the batches map
+    final List<Member> members = new ArrayList<>();
+    volatile boolean closed;
+    // The batch to wait for before applying this one, null once it has been applied
+    Batch previous;
+    final CountDownLatch done = new CountDownLatch(1);
+
+    Batch(boolean increment, Member leader, Batch previous) {
+      this.increment = increment;
+      this.leader = leader;
+      this.previous = previous;
+      members.add(leader);
+    }
+  }
+
+  /** The merged delta of a column, then the state of the column while splitting the results. */
+  private static final class Column {
+    long sum;
+    ByteArrayOutputStream appended;
+    long timestamp;
+    long value;
+    byte[] resultValue;
+    int length;
+
+    void add(Cell cell, boolean increment) {
+      if (increment) {
+        sum += Bytes.toLong(cell.getValueArray(), cell.getValueOffset());
+      } else {
+        if (appended == null) {
+          appended = new ByteArrayOutputStream();
+        }
+        appended.write(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+      }
+    }
+
+    void setResult(Cell cell, boolean increment) {
+      timestamp = cell.getTimestamp();
+      if (increment) {
+        // The value before the first operation of the batch
+        value = Bytes.toLong(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength())
+          - sum;
+      } else {
+        resultValue = CellUtil.cloneValue(cell);
+        length = resultValue.length - appended.size();
+      }
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.List;
+import org.apache.hadoop.conf.Configured;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A global flush policy picks the region to flush when the memstores of the region server as a
+ * whole are above the low water mark. Without one, the region with the largest memstore which does
+ * not have too many store files is flushed.
+ */
+@InterfaceAudience.Private
+public abstract class GlobalFlushPolicy extends Configured {
+
+  public static final String GLOBAL_FLUSH_POLICY_KEY = "hbase.regionserver.global.flush.policy";
+
+  /**
+   * Returns the region to flush, or null to fall back to the largest region first selection.
+   * @param candidates the online primary regions which may be flushed, from the largest to the
+   *                   smallest memstore for the given flush type
+   * @param flushType  the kind of memory the region server is short of
+   */
+  public abstract HRegion selectRegionToFlush(List<HRegion> candidates, FlushType flushType);
+
+  /** Returns the size of the memstore of the region for the kind of memory we are short of */
+  static long getMemStoreSize(HRegion region, FlushType flushType) {
+    switch (flushType) {
+      case ABOVE_OFFHEAP_HIGHER_MARK:
+      case ABOVE_OFFHEAP_LOWER_MARK:
+        return region.getMemStoreOffHeapSize();
+      case ABOVE_ONHEAP_HIGHER_MARK:
+      case ABOVE_ONHEAP_LOWER_MARK:
+        return region.getMemStoreHeapSize();
+      default:
+        return region.getMemStoreDataSize();
+    }
+  }
+}
@@ -21,7 +21,6 @@ import static org.apache.hadoop.hbase.HConstants.REPLICATION_SCOPE_LOCAL;
 import static org.apache.hadoop.hbase.regionserver.HStoreFile.MAJOR_COMPACTION_KEY;
 import static org.apache.hadoop.hbase.trace.HBaseSemanticAttributes.REGION_NAMES_KEY;
 import static org.apache.hadoop.hbase.trace.HBaseSemanticAttributes.ROW_LOCK_READ_LOCK_KEY;
-import static org.apache.hadoop.hbase.util.ConcurrentMapUtils.computeIfAbsent;
 
 import com.google.errorprone.annotations.RestrictedApi;
 import edu.umd.cs.findbugs.annotations.Nullable;
@@ -67,7 +66,6 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
@@ -168,12 +166,13 @@ import org.apache.hadoop.hbase.util.CommonFSUtils;
 import org.apache.hadoop.hbase.util.CoprocessorConfigurationUtil;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.hadoop.hbase.util.FSUtils;
-import org.apache.hadoop.hbase.util.HashedBytes;
 import org.apache.hadoop.hbase.util.NonceKey;
 import org.apache.hadoop.hbase.util.Pair;
+import org.apache.hadoop.hbase.util.ReflectionUtils;
 import org.apache.hadoop.hbase.util.ServerRegionReplicaUtil;
 import org.apache.hadoop.hbase.util.TableDescriptorChecker;
 import org.apache.hadoop.hbase.util.Threads;
+import org.apache.hadoop.hbase.wal.LoadBalancingGroupingStrategy;
 import org.apache.hadoop.hbase.wal.WAL;
 import org.apache.hadoop.hbase.wal.WALEdit;
 import org.apache.hadoop.hbase.wal.WALFactory;
@@ -187,6 +186,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.hbase.thirdparty.com.google.common.base.Preconditions;
+import org.apache.hbase.thirdparty.com.google.common.base.Throwables;
 import org.apache.hbase.thirdparty.com.google.common.collect.Iterables;
 import org.apache.hbase.thirdparty.com.google.common.collect.Lists;
 import org.apache.hbase.thirdparty.com.google.common.collect.Maps;
@@ -245,6 +245,16 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     "hbase.regionserver.minibatch.size";
   public static final int DEFAULT_HBASE_REGIONSERVER_MINIBATCH_SIZE = 20000;
 
+  /**
+   * Whether to lock and prepare the next mini-batch of a batch of puts while the WAL sync of the
+   * current one is in flight. Preparing a mini-batch calls the preBatchMutate hook of the
+   * coprocessors, which would then run before the postBatchMutate hook of the previous mini-batch,
+   * so batches are not pipelined on regions with coprocessors overriding either hook.
+   */
+  public static final String HBASE_REGIONSERVER_MINIBATCH_PIPELINE_KEY =
+    "hbase.regionserver.minibatch.pipeline";
+  public static final boolean DEFAULT_HBASE_REGIONSERVER_MINIBATCH_PIPELINE = false;
+
   public static final String WAL_HSYNC_CONF_KEY = "hbase.wal.hsync";
   public static final boolean DEFAULT_WAL_HSYNC = false;
 
@@ -267,6 +277,19 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   public static final String SPECIAL_RECOVERED_EDITS_DIR =
     "hbase.hregion.special.recovered.edits.dir";
 
+  /**
+   * Whether to apply the edits replayed from the recovered edits to the stores of a region in
+   * parallel when opening it.
+   */
+  public static final String RECOVERED_EDITS_REPLAY_PARALLEL_KEY =
+    "hbase.hregion.recovered.edits.replay.parallel";
+  public static final boolean DEFAULT_RECOVERED_EDITS_REPLAY_PARALLEL = false;
+
+  /** The number of cells applied at a time when replaying the recovered edits in parallel */
+  public static final String RECOVERED_EDITS_REPLAY_BATCH_SIZE =
+    "hbase.hregion.recovered.edits.replay.batch.size";
+  public static final int DEFAULT_RECOVERED_EDITS_REPLAY_BATCH_SIZE = 10000;
+
   /**
    * Whether to use {@link MetaCellComparator} even if we are not meta region. Used when creating
    * master local region.
@@ -309,13 +332,14 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   // Members
   //////////////////////////////////////////////////////////////////////////////
 
-  // map from a locked row to the context for that lock including:
-  // - CountDownLatch for threads waiting on that row
-  // - the thread that owns the lock (allow reentrancy)
-  // - reference count of (reentrant) locks held by the thread
-  // - the row itself
-  private final ConcurrentHashMap<HashedBytes, RowLockContext> lockedRows =
-    new ConcurrentHashMap<>();
+  // Hands out the row locks, see RowLockManager
+  private final RowLockManager rowLockManager;
+
+  // Coalesces Increments and Appends of hot cells, null if no family enables it
+  private final DeltaCoalescer deltaCoalescer;
+
+  // Tracks the source offsets of edits ingested without WAL, null unless the table enables it
+  private final IngestCheckpointTracker ingestCheckpointTracker;
 
   protected final Map<byte[], HStore> stores =
     new ConcurrentSkipListMap<>(Bytes.BYTES_RAWCOMPARATOR);
@@ -356,7 +380,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
   private BlockCache blockCache;
   private MobFileCache mobFileCache;
-  private final WAL wal;
+  // Not final, as a region may move to another WAL after a flush, see maybeSwitchWAL
+  private volatile WAL wal;
   private final HRegionFileSystem fs;
   protected final Configuration conf;
   private final Configuration baseConf;
@@ -398,6 +423,12 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   // Number of mutations for minibatch processing.
   private final int miniBatchSize;
 
+  // Whether the mini-batches of a batch of puts are pipelined
+  private final boolean miniBatchPipelining;
+
+  // Whether the region server may move this region to another WAL group, see maybeSwitchWAL
+  private final boolean walGroupRebalancing;
+
   final ConcurrentHashMap<RegionScanner, Long> scannerReadPoints;
   final ReadPointCalculationLock smallestReadPointCalcLock;
 
@@ -770,11 +801,16 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
     this.wal = wal;
     this.fs = fs;
-    this.mvcc = new MultiVersionConcurrencyControl(getRegionInfo().getShortNameToLog());
 
     // 'conf' renamed to 'confParam' b/c we use this.conf in the constructor
     this.baseConf = confParam;
     this.conf = new CompoundConfiguration().add(confParam).addBytesMap(htd.getValues());
+    this.mvcc = MultiVersionConcurrencyControl.create(getRegionInfo().getShortNameToLog(), conf);
+    this.rowLockManager = ReflectionUtils.newInstance(conf.getClass(
+      RowLockManager.ROW_LOCK_MANAGER_CLASS_KEY, DefaultRowLockManager.class, RowLockManager.class),
+      conf);
+    this.deltaCoalescer = DeltaCoalescer.create(this, conf, htd);
+    this.ingestCheckpointTracker = IngestCheckpointTracker.create(fs, conf);
     this.cellComparator = htd.isMetaTable()
       || conf.getBoolean(USE_META_CELL_COMPARATOR, DEFAULT_USE_META_CELL_COMPARATOR)
         ? MetaCellComparator.META_COMPARATOR
@@ -851,9 +887,14 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
      * durability or using USE_DEFAULT will default to this value.
      */
     Durability defaultDurability = forceSync ? Durability.FSYNC_WAL : Durability.SYNC_WAL;
-    this.regionDurability = this.htableDescriptor.getDurability() == Durability.USE_DEFAULT
-      ? defaultDurability
-      : this.htableDescriptor.getDurability();
+    if (this.htableDescriptor.getDurability() != Durability.USE_DEFAULT) {
+      this.regionDurability = this.htableDescriptor.getDurability();
+    } else if (this.ingestCheckpointTracker != null) {
+      // the edits are recovered from their source, up to the last ingest checkpoint
+      this.regionDurability = Durability.SKIP_WAL;
+    } else {
+      this.regionDurability = defaultDurability;
+    }
 
     decorateRegionConfiguration(conf);
     if (rsServices != null) {
@@ -884,6 +925,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     this.maxCellSize = conf.getLong(HBASE_MAX_CELL_SIZE_KEY, DEFAULT_MAX_CELL_SIZE);
     this.miniBatchSize =
       conf.getInt(HBASE_REGIONSERVER_MINIBATCH_SIZE, DEFAULT_HBASE_REGIONSERVER_MINIBATCH_SIZE);
+    this.miniBatchPipelining = conf.getBoolean(HBASE_REGIONSERVER_MINIBATCH_PIPELINE_KEY,
+      DEFAULT_HBASE_REGIONSERVER_MINIBATCH_PIPELINE);
+    this.walGroupRebalancing = LoadBalancingGroupingStrategy.isEnabled(conf);
 
     // recover the metrics of read and write requests count if they were retained
     if (rsServices != null && rsServices.getRegionServerAccounting() != null) {
@@ -994,6 +1038,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       status.setStatus("Writing region info on filesystem");
       fs.checkRegionInfoOnFilesystem();
     }
+    if (this.ingestCheckpointTracker != null) {
+      this.ingestCheckpointTracker.initialize();
+    }
 
     // Initialize all the HStores
     status.setStatus("Initializing all the Stores");
@@ -1226,6 +1273,39 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return allStoreFiles;
   }
 
+  /**
+   * Moves this region to the WAL the region server now picks for it, if that is not the WAL the
+   * region is writing to, e.g. because the
+   * {@link org.apache.hadoop.hbase.wal.LoadBalancingGroupingStrategy} reassigned it to a less busy
+   * group. Called after a successful flush. It only switches when the memstore is still empty under
+   * the updates lock, so that no unflushed edits of this region are left in the old WAL, else it
+   * tries again after the next flush.
+   */
+  private void maybeSwitchWAL() throws IOException {
+    if (
+      !walGroupRebalancing || rsServices == null || wal == null
+        || !RegionReplicaUtil.isDefaultReplica(getRegionInfo())
+    ) {
+      return;
+    }
+    WAL target = rsServices.getWAL(getRegionInfo());
+    if (target == null || target == wal) {
+      return;
+    }
+    this.updatesLock.writeLock().lock();
+    try {
+      if (getMemStoreDataSize() != 0) {
+        LOG.debug("Not moving {} to WAL {} yet, its memstore got edits during the flush", this,
+          target);
+        return;
+      }
+      LOG.info("Moving {} from WAL {} to {}", this, wal, target);
+      this.wal = target;
+    } finally {
+      this.updatesLock.writeLock().unlock();
+    }
+  }
+
   protected void writeRegionOpenMarker(WAL wal, long openSeqId) throws IOException {
     Map<byte[], List<Path>> storeFiles = getStoreFiles();
     RegionEventDescriptor regionOpenDesc =
@@ -1562,6 +1642,14 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
    */
   public static final long MAX_FLUSH_PER_CHANGES = 1000000000; // 1G
 
+  /**
+   * Conf key for the number of threads, shared by all the regions of a region server, writing out
+   * the stores of a flush concurrently. With the default of zero the stores of a region are written
+   * out one after the other by the flushing thread. Committing the flushed files is not affected.
+   */
+  public static final String FLUSH_STORE_THREADS_KEY = "hbase.regionserver.flush.store.threads";
+  public static final int DEFAULT_FLUSH_STORE_THREADS = 0;
+
   public static final String CLOSE_WAIT_ABORT = "hbase.regionserver.close.wait.abort";
   public static final boolean DEFAULT_CLOSE_WAIT_ABORT = true;
   public static final String CLOSE_WAIT_TIME = "hbase.regionserver.close.wait.time.ms";
@@ -2488,6 +2576,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         Collection<HStore> specificStoresToFlush = null;
         if (families != null) {
           specificStoresToFlush = getSpecificStores(families);
+        } else if (ingestCheckpointTracker != null) {
+          // an ingest checkpoint needs the edits of all the stores to be durable
+          specificStoresToFlush = stores.values();
         } else {
           specificStoresToFlush = flushPolicy.selectStoresToFlush();
         }
@@ -2501,6 +2592,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
         if (fs.isFlushSucceeded()) {
           flushesQueued.reset();
+          maybeSwitchWAL();
         }
 
         status.markComplete("Flush successful " + fs.toString());
@@ -2780,6 +2872,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         totalSizeOfFlushableStores.incMemStoreSize(snapshotSize);
         storeFlushableSize.put(name, snapshotSize);
       });
+      if (ingestCheckpointTracker != null && isAllFamilies(storesToFlush)) {
+        ingestCheckpointTracker.prepareFlush();
+      }
     } catch (IOException ex) {
       doAbortFlushToWAL(wal, flushOpSeqId, committedFiles);
       throw ex;
@@ -2914,6 +3009,72 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     flushOpSeqIdMVCCEntry.attachCompletionAction(() -> sink.add(walKey, flushMarkerWALEdit, null));
   }
 
+  /**
+   * Writes out the snapshots of the given stores. When a store flush pool is configured and there
+   * is more than one store, all but one of the stores are written out on the pool while the calling
+   * thread writes out the last one. Waits for all the stores to be done even if one of them failed,
+   * so that nothing is still being written when the caller aborts the flush, and then rethrows the
+   * first failure. Only the calling thread updates the given status, the stores written out on the
+   * pool report to statuses of their own.
+   */
+  private void flushStores(Collection<StoreFlushContext> flushes, MonitoredTask status)
+    throws IOException {
+    ThreadPoolExecutor pool =
+      flushes.size() > 1 ? regionServicesForStores.getStoreFlushPool() : null;
+    if (pool == null) {
+      for (StoreFlushContext flush : flushes) {
+        flush.flushCache(status);
+      }
+      return;
+    }
+    List<Future<Void>> futures = new ArrayList<>(flushes.size() - 1);
+    Iterator<StoreFlushContext> iter = flushes.iterator();
+    StoreFlushContext last = null;
+    while (iter.hasNext()) {
+      StoreFlushContext flush = iter.next();
+      if (!iter.hasNext()) {
+        last = flush;
+        break;
+      }
+      futures.add(pool.submit(() -> {
+        flush.flushCache(TaskMonitor.get().createStatus("Flushing a store of " + this, true));
+        return null;
+      }));
+    }
+    Throwable error = null;
+    try {
+      last.flushCache(status);
+    } catch (Throwable t) {
+      error = t;
+    }
+    status.setStatus("Waiting for " + futures.size() + " stores of " + this
+      + " being flushed on the store flush pool");
+    boolean interrupted = false;
+    for (Future<Void> future : futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException e) {
+          // keep waiting, the store may still be writing its file
+          interrupted = true;
+        } catch (ExecutionException e) {
+          if (error == null) {
+            error = e.getCause();
+          }
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (error != null) {
+      Throwables.propagateIfPossible(error, IOException.class);
+      throw new IOException(error);
+    }
+  }
+
   @edu.umd.cs.findbugs.annotations.SuppressWarnings(value = "NN_NAKED_NOTIFY",
       justification = "Intentional; notify is about completed flush")
   FlushResultImpl internalFlushCacheAndCommit(WAL wal, MonitoredTask status,
@@ -2941,9 +3102,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       // just-made new flush store file. The new flushed file is still in the
       // tmp directory.
 
-      for (StoreFlushContext flush : storeFlushCtxs.values()) {
-        flush.flushCache(status);
-      }
+      flushStores(storeFlushCtxs.values(), status);
 
       // Switch snapshot (in memstore) -> new hfile (thus causing
       // all the store scanners to reset/reseek).
@@ -3007,6 +3166,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         }
         wal.abortCacheFlush(this.getRegionInfo().getEncodedNameAsBytes());
       }
+      if (ingestCheckpointTracker != null) {
+        ingestCheckpointTracker.abortFlush();
+      }
       DroppedSnapshotException dse = new DroppedSnapshotException(
         "region: " + Bytes.toStringBinary(getRegionInfo().getRegionName()), t);
       status.abort("Flush failed: " + StringUtils.stringifyException(t));
@@ -3029,6 +3191,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     if (wal != null) {
       wal.completeCacheFlush(this.getRegionInfo().getEncodedNameAsBytes(), flushedSeqId);
     }
+    if (ingestCheckpointTracker != null) {
+      ingestCheckpointTracker.commitFlush(flushOpSeqId);
+    }
 
     // Record latest flush time
     for (HStore store : storesToFlush) {
@@ -3273,6 +3438,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     // Durability of the batch (highest durability of all operations)
     protected Durability durability;
     protected boolean atomic = false;
+    // The operations whose offset the ingest checkpoint tracker accepted but which are not yet
+    // written to the memstore, null until the tracker accepts one
+    private boolean[] ingestOffsetsInFlight;
 
     public BatchOperation(final HRegion region, T[] operations) {
       this.operations = operations;
@@ -3429,6 +3597,18 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       Mutation mutation = getMutation(index);
       try {
         this.checkAndPrepareMutation(mutation, timestamp);
+        // the tracker fails untagged mutations which would skip the WAL for its sake
+        if (
+          region.ingestCheckpointTracker != null && !isInReplay()
+            && region.ingestCheckpointTracker.accept(mutation,
+              mutation.getDurability() == Durability.USE_DEFAULT
+                && region.regionDurability == Durability.SKIP_WAL)
+        ) {
+          if (ingestOffsetsInFlight == null) {
+            ingestOffsetsInFlight = new boolean[size()];
+          }
+          ingestOffsetsInFlight[index] = true;
+        }
 
         if (mutation instanceof Put || mutation instanceof Delete) {
           // store the family map reference to allow for mutations
@@ -3482,6 +3662,33 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       }
     }
 
+    /**
+     * Tells the ingest checkpoint tracker of the region that the operation at the given index has
+     * been written to the memstore, if the tracker accepted its offset.
+     */
+    void recordIngestOffset(int index) {
+      if (ingestOffsetsInFlight != null && ingestOffsetsInFlight[index]) {
+        ingestOffsetsInFlight[index] = false;
+        region.ingestCheckpointTracker.record(getMutation(index));
+      }
+    }
+
+    /**
+     * Releases the offsets the ingest checkpoint tracker of the region accepted for the operations
+     * which were not written to the memstore, failed or not run.
+     */
+    void releaseIngestOffsets() {
+      if (ingestOffsetsInFlight == null) {
+        return;
+      }
+      for (int i = 0; i < ingestOffsetsInFlight.length; i++) {
+        if (ingestOffsetsInFlight[i]) {
+          ingestOffsetsInFlight[i] = false;
+          region.ingestCheckpointTracker.release(getMutation(i));
+        }
+      }
+    }
+
     /**
      * Creates Mini-batch of all operations [nextIndexToProcess, lastIndexExclusive) for which a row
      * lock can be acquired. All mutations with locked rows are considered to be In-progress
@@ -3491,8 +3698,19 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
      */
     public MiniBatchOperationInProgress<Mutation>
       lockRowsAndBuildMiniBatch(List<RowLock> acquiredRowLocks) throws IOException {
+      return lockRowsAndBuildMiniBatch(acquiredRowLocks, true);
+    }
+
+    /**
+     * @param acquiredRowLocks keeps track of rowLocks acquired.
+     * @param waitForLocks     whether to wait for the row locks held by other threads, rather than
+     *                         to end the mini-batch before the first such row
+     * @see #lockRowsAndBuildMiniBatch(List)
+     */
+    public MiniBatchOperationInProgress<Mutation> lockRowsAndBuildMiniBatch(
+      List<RowLock> acquiredRowLocks, boolean waitForLocks) throws IOException {
       int readyToWriteCount = 0;
-      int lastIndexExclusive = 0;
+      int lastIndexExclusive = nextIndexToProcess;
       RowLock prevRowLock = null;
       for (; lastIndexExclusive < size(); lastIndexExclusive++) {
         // It reaches the miniBatchSize, stop here and process the miniBatch
@@ -3531,7 +3749,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         boolean throwException = false;
         try {
           // if atomic then get exclusive lock, else shared lock
-          rowLock = region.getRowLock(mutation.getRow(), !isAtomic(), prevRowLock);
+          rowLock = waitForLocks
+            ? region.getRowLock(mutation.getRow(), !isAtomic(), prevRowLock)
+            : region.getRowLockIfAvailable(mutation.getRow(), !isAtomic(), prevRowLock);
         } catch (TimeoutIOException | InterruptedIOException e) {
           // NOTE: We will retry when other exceptions, but we should stop if we receive
           // TimeoutIOException or InterruptedIOException as operation has timed out or
@@ -3559,6 +3779,10 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
             region.storeHotnessProtector.finish(curFamilyCellMap);
             throw new IOException("Can't apply all operations atomically!");
           }
+          if (!waitForLocks) {
+            // The row is busy, which is expected here, so give the protector back
+            region.storeHotnessProtector.finish(curFamilyCellMap);
+          }
           break; // Stop acquiring more rows for this batch
         } else {
           if (rowLock != prevRowLock) {
@@ -3727,6 +3951,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     private long nonce;
     protected boolean canProceed;
     private boolean regionReplicateEnable;
+    // The nonces of the operations coalesced into the mutation, see DeltaCoalescer
+    private byte[] coalescedNonces;
 
     public MutationBatchOperation(final HRegion region, Mutation[] operations, boolean atomic,
       long nonceGroup, long nonce) {
@@ -4661,9 +4887,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
    * {@link ReplayBatchOperation} instance and {@link #batchMutate(Mutation[])} with
    * {@link MutationBatchOperation} instance as an argument. As the processing of replay batch and
    * mutation batch is very similar, lot of code is shared by providing generic methods in base
-   * class {@link BatchOperation}. The logic for this method and
-   * {@link #doMiniBatchMutate(BatchOperation)} is implemented using methods in base class which are
-   * overridden by derived classes to implement special behavior.
+   * class {@link BatchOperation}. The logic for this method and {@link #doMiniBatchMutate} is
+   * implemented using methods in base class which are overridden by derived classes to implement
+   * special behavior.
    * @param batchOp contains the list of mutations
    * @return an array of OperationStatus which internally contains the OperationStatusCode and the
    *         exceptionMessage if any.
@@ -4671,6 +4897,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
    */
   private OperationStatus[] batchMutate(BatchOperation<?> batchOp) throws IOException {
     boolean initialized = false;
+    boolean pipelined = false;
+    // The next mini-batch, if it was prepared while the WAL sync of the previous one was in flight
+    PreparedMiniBatch prepared = null;
     batchOp.startRegionOperation();
     try {
       while (!batchOp.isDone()) {
@@ -4684,12 +4913,21 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           // validate and prepare batch for write, for MutationBatchOperation it also calls CP
           // prePut()/preDelete()/preIncrement()/preAppend() hooks
           batchOp.checkAndPrepare();
+          pipelined = canPipelineMiniBatches(batchOp);
           initialized = true;
         }
-        doMiniBatchMutate(batchOp);
+        PreparedMiniBatch current = prepared;
+        // Handed over, so that it is not aborted below if doMiniBatchMutate throws
+        prepared = null;
+        prepared = doMiniBatchMutate(batchOp, current, pipelined);
         requestFlushIfNeeded();
       }
     } finally {
+      // The offsets of the operations which did not make it to the memstore
+      batchOp.releaseIngestOffsets();
+      if (prepared != null) {
+        abortPreparedMiniBatch(batchOp, prepared);
+      }
       if (rsServices != null && rsServices.getMetrics() != null) {
         rsServices.getMetrics().updateWriteQueryMeter(this.htableDescriptor.getTableName(),
           batchOp.size());
@@ -4699,12 +4937,39 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return batchOp.retCodeDetails;
   }
 
+  /**
+   * Whether the next mini-batch of the given batch may be locked and prepared while the WAL sync of
+   * the current one is in flight. Only batches of puts qualify, as preparing them does not read
+   * the rows, which the current mini-batch has not written to the memstore yet.
+   */
+  private boolean canPipelineMiniBatches(BatchOperation<?> batchOp) {
+    if (!miniBatchPipelining || batchOp.isAtomic() || batchOp.isInReplay()) {
+      return false;
+    }
+    // keep the batch mutate hooks of the mini-batches in order
+    if (coprocessorHost != null && coprocessorHost.hasCustomBatchMutateHooks()) {
+      return false;
+    }
+    for (int i = 0; i < batchOp.size(); i++) {
+      if (!(batchOp.getMutation(i) instanceof Put)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Called to do a piece of the batch that came in to {@link #batchMutate(Mutation[])} In here we
    * also handle replay of edits on region recover. Also gets change in size brought about by
    * applying {@code batchOp}.
-   */
-  private void doMiniBatchMutate(BatchOperation<?> batchOp) throws IOException {
+   * @param prepared  the mini-batch to do if it was prepared along with the previous one, null to
+   *                  build it here
+   * @param pipelined whether to prepare the next mini-batch while the WAL sync of this one is in
+   *                  flight
+   * @return the next mini-batch if it was prepared, null otherwise
+   */
+  private PreparedMiniBatch doMiniBatchMutate(BatchOperation<?> batchOp,
+    PreparedMiniBatch prepared, boolean pipelined) throws IOException {
     boolean success = false;
     WALEdit walEdit = null;
     WriteEntry writeEntry = null;
@@ -4712,57 +4977,104 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     // We try to set up a batch in the range [batchOp.nextIndexToProcess,lastIndexExclusive)
     MiniBatchOperationInProgress<Mutation> miniBatchOp = null;
     /** Keep track of the locks we hold so we can release them in finally clause */
-    List<RowLock> acquiredRowLocks = Lists.newArrayListWithCapacity(batchOp.size());
-
-    // Check for thread interrupt status in case we have been signaled from
-    // #interruptRegionOperation.
-    checkInterrupt();
+    List<RowLock> acquiredRowLocks;
+    // The next mini-batch, if it is prepared while the WAL sync of this one is in flight
+    final PreparedMiniBatch[] next = new PreparedMiniBatch[1];
+    long start = System.nanoTime();
+    long lockTime;
+    long prepareTime;
+
+    if (prepared == null) {
+      acquiredRowLocks = Lists.newArrayListWithCapacity(batchOp.size());
+      // Check for thread interrupt status in case we have been signaled from
+      // #interruptRegionOperation.
+      checkInterrupt();
+    } else {
+      // Its row locks were taken, and interrupts disabled, along with the previous mini-batch
+      acquiredRowLocks = prepared.acquiredRowLocks;
+      miniBatchOp = prepared.miniBatchOp;
+    }
 
     try {
-      // STEP 1. Try to acquire as many locks as we can and build mini-batch of operations with
-      // locked rows
-      miniBatchOp = batchOp.lockRowsAndBuildMiniBatch(acquiredRowLocks);
+      long now;
+      List<Pair<NonceKey, WALEdit>> walEdits;
+      if (prepared != null) {
+        if (prepared.error != null) {
+          Throwables.propagateIfPossible(prepared.error, IOException.class);
+          throw new IOException(prepared.error);
+        }
+        // The updates lock was released by the previous mini-batch, so that a flush waiting for
+        // it does not have to wait for the whole batch
+        lock(this.updatesLock.readLock(), miniBatchOp.getReadyToWriteCount());
+        locked = true;
+        now = prepared.now;
+        walEdits = prepared.walEdits;
+        lockTime = prepared.lockTime + System.nanoTime() - start;
+        prepareTime = prepared.prepareTime;
+      } else {
+        // STEP 1. Try to acquire as many locks as we can and build mini-batch of operations with
+        // locked rows
+        miniBatchOp = batchOp.lockRowsAndBuildMiniBatch(acquiredRowLocks);
+
+        // We've now grabbed as many mutations off the list as we can
+        // Ensure we acquire at least one.
+        if (miniBatchOp.getReadyToWriteCount() <= 0) {
+          // Nothing to put/delete/increment/append -- an exception in the above such as
+          // NoSuchColumnFamily?
+          return null;
+        }
 
-      // We've now grabbed as many mutations off the list as we can
-      // Ensure we acquire at least one.
-      if (miniBatchOp.getReadyToWriteCount() <= 0) {
-        // Nothing to put/delete/increment/append -- an exception in the above such as
-        // NoSuchColumnFamily?
-        return;
-      }
+        // Check for thread interrupt status in case we have been signaled from
+        // #interruptRegionOperation. Do it before we take the lock and disable interrupts for
+        // the WAL append.
+        checkInterrupt();
 
-      // Check for thread interrupt status in case we have been signaled from
-      // #interruptRegionOperation. Do it before we take the lock and disable interrupts for
-      // the WAL append.
-      checkInterrupt();
+        lock(this.updatesLock.readLock(), miniBatchOp.getReadyToWriteCount());
+        locked = true;
 
-      lock(this.updatesLock.readLock(), miniBatchOp.getReadyToWriteCount());
-      locked = true;
+        // From this point until memstore update this operation should not be interrupted.
+        disableInterrupts();
+        long prepareStart = System.nanoTime();
+        lockTime = prepareStart - start;
 
-      // From this point until memstore update this operation should not be interrupted.
-      disableInterrupts();
+        // STEP 2. Update mini batch of all operations in progress with LATEST_TIMESTAMP timestamp
+        // We should record the timestamp only after we have acquired the rowLock,
+        // otherwise, newer puts/deletes/increment/append are not guaranteed to have a newer
+        // timestamp
 
-      // STEP 2. Update mini batch of all operations in progress with LATEST_TIMESTAMP timestamp
-      // We should record the timestamp only after we have acquired the rowLock,
-      // otherwise, newer puts/deletes/increment/append are not guaranteed to have a newer
-      // timestamp
+        now = EnvironmentEdgeManager.currentTime();
+        batchOp.prepareMiniBatchOperations(miniBatchOp, now, acquiredRowLocks);
 
-      long now = EnvironmentEdgeManager.currentTime();
-      batchOp.prepareMiniBatchOperations(miniBatchOp, now, acquiredRowLocks);
+        // STEP 3. Build WAL edit
 
-      // STEP 3. Build WAL edit
-
-      List<Pair<NonceKey, WALEdit>> walEdits = batchOp.buildWALEdits(miniBatchOp);
+        walEdits = batchOp.buildWALEdits(miniBatchOp);
+        prepareTime = System.nanoTime() - prepareStart;
+      }
 
-      // STEP 4. Append the WALEdits to WAL and sync.
+      // STEP 4. Append the WALEdits to WAL and sync. While the last sync is in flight, the next
+      // mini-batch is prepared if pipelined. Its appends wait until this one is complete, so the
+      // order of the edits and of their mvcc write numbers is that of the mini-batches.
 
+      long walStart = System.nanoTime();
+      final MiniBatchOperationInProgress<Mutation> currentMiniBatchOp = miniBatchOp;
+      // The time spent preparing the next mini-batch, which is accounted to it
+      final long[] overlapTime = { 0 };
+      Runnable whileSyncing = null;
+      if (pipelined && miniBatchOp.getLastIndexExclusive() < batchOp.size()) {
+        whileSyncing = () -> {
+          long overlapStart = System.nanoTime();
+          next[0] = prepareNextMiniBatch(batchOp, currentMiniBatchOp);
+          overlapTime[0] = System.nanoTime() - overlapStart;
+        };
+      }
       for (Iterator<Pair<NonceKey, WALEdit>> it = walEdits.iterator(); it.hasNext();) {
         Pair<NonceKey, WALEdit> nonceKeyWALEditPair = it.next();
         walEdit = nonceKeyWALEditPair.getSecond();
         NonceKey nonceKey = nonceKeyWALEditPair.getFirst();
 
         if (walEdit != null && !walEdit.isEmpty()) {
-          writeEntry = doWALAppend(walEdit, batchOp, miniBatchOp, now, nonceKey);
+          writeEntry = doWALAppend(walEdit, batchOp, miniBatchOp, now, nonceKey,
+            it.hasNext() ? null : whileSyncing);
         }
 
         // Complete mvcc for all but last writeEntry (for replay case)
@@ -4771,16 +5083,28 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           writeEntry = null;
         }
       }
+      long walEnd = System.nanoTime();
 
       // STEP 5. Write back to memStore
       // NOTE: writeEntry can be null here
       writeEntry = batchOp.writeMiniBatchOperationsToMemStore(miniBatchOp, writeEntry, now);
+      if (ingestCheckpointTracker != null && !batchOp.isInReplay()) {
+        batchOp.visitBatchOperations(true, miniBatchOp.getLastIndexExclusive(), (int i) -> {
+          batchOp.recordIngestOffset(i);
+          return true;
+        });
+      }
 
       // STEP 6. Complete MiniBatchOperations: If required calls postBatchMutate() CP hook and
       // complete mvcc for last writeEntry
       batchOp.completeMiniBatchOperations(miniBatchOp, writeEntry);
       writeEntry = null;
       success = true;
+
+      if (pipelined && rsServices != null && rsServices.getMetrics() != null) {
+        rsServices.getMetrics().updateMiniBatch(lockTime, prepareTime,
+          walEnd - walStart - overlapTime[0], System.nanoTime() - walEnd, prepared != null);
+      }
     } finally {
       // Call complete rather than completeAndWait because we probably had error if walKey != null
       if (writeEntry != null) mvcc.complete(writeEntry);
@@ -4790,30 +5114,152 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       }
       releaseRowLocks(acquiredRowLocks);
 
-      enableInterrupts();
-
-      final int finalLastIndexExclusive =
-        miniBatchOp != null ? miniBatchOp.getLastIndexExclusive() : batchOp.size();
-      final boolean finalSuccess = success;
-      batchOp.visitBatchOperations(true, finalLastIndexExclusive, (int i) -> {
-        Mutation mutation = batchOp.getMutation(i);
-        if (mutation instanceof Increment || mutation instanceof Append) {
-          if (finalSuccess) {
-            batchOp.retCodeDetails[i] =
-              new OperationStatus(OperationStatusCode.SUCCESS, batchOp.results[i]);
-          } else {
-            batchOp.retCodeDetails[i] = OperationStatus.FAILURE;
-          }
-        } else {
+      // The next mini-batch keeps interrupts disabled until it is done
+      if (next[0] == null) {
+        enableInterrupts();
+      }
+
+      boolean keepNext = false;
+      try {
+        finishMiniBatch(batchOp, miniBatchOp, walEdit, success);
+        keepNext = success;
+      } finally {
+        if (next[0] != null && !keepNext) {
+          abortPreparedMiniBatch(batchOp, next[0]);
+          next[0] = null;
+        }
+      }
+    }
+    return next[0];
+  }
+
+  /**
+   * Sets the status of the operations of a mini-batch once it is done, and moves the batch past it.
+   */
+  private void finishMiniBatch(BatchOperation<?> batchOp,
+    MiniBatchOperationInProgress<Mutation> miniBatchOp, WALEdit walEdit, boolean success)
+    throws IOException {
+    final int finalLastIndexExclusive =
+      miniBatchOp != null ? miniBatchOp.getLastIndexExclusive() : batchOp.size();
+    batchOp.visitBatchOperations(true, finalLastIndexExclusive, (int i) -> {
+      Mutation mutation = batchOp.getMutation(i);
+      // mvcc has been completed above, so cached rows which may predate this mutation can go
+      invalidateRowCaches(mutation.getRow());
+      if (mutation instanceof Increment || mutation instanceof Append) {
+        if (success) {
           batchOp.retCodeDetails[i] =
-            finalSuccess ? OperationStatus.SUCCESS : OperationStatus.FAILURE;
+            new OperationStatus(OperationStatusCode.SUCCESS, batchOp.results[i]);
+        } else {
+          batchOp.retCodeDetails[i] = OperationStatus.FAILURE;
         }
-        return true;
-      });
+      } else {
+        batchOp.retCodeDetails[i] = success ? OperationStatus.SUCCESS : OperationStatus.FAILURE;
+      }
+      return true;
+    });
 
-      batchOp.doPostOpCleanupForMiniBatch(miniBatchOp, walEdit, finalSuccess);
+    batchOp.doPostOpCleanupForMiniBatch(miniBatchOp, walEdit, success);
 
-      batchOp.nextIndexToProcess = finalLastIndexExclusive;
+    batchOp.nextIndexToProcess = finalLastIndexExclusive;
+  }
+
+  /**
+   * Locks the rows of the mini-batch following the given one and prepares it, while the WAL sync of
+   * the given one is in flight. As this thread holds the row locks of the given mini-batch, it does
+   * not wait for rows locked by other threads: the next mini-batch ends before the first of them.
+   * The updates lock is not taken here but when the next mini-batch is done, once the given one has
+   * released it. Nothing is prepared ahead if the next mini-batch would fail the checks done before
+   * each mini-batch, or if a flush is requested, so that it goes through these checks instead.
+   * @return the next mini-batch, carrying the failure to prepare it if any, or null if its first
+   *         row is busy or the region should not take more writes ahead
+   */
+  private PreparedMiniBatch prepareNextMiniBatch(BatchOperation<?> batchOp,
+    MiniBatchOperationInProgress<Mutation> current) {
+    int currentFirstIndex = batchOp.nextIndexToProcess;
+    int firstIndex = current.getLastIndexExclusive();
+    if (!canPrepareAhead()) {
+      return null;
+    }
+    List<RowLock> acquiredRowLocks = Lists.newArrayListWithCapacity(batchOp.size() - firstIndex);
+    MiniBatchOperationInProgress<Mutation> miniBatchOp = null;
+    long start = System.nanoTime();
+    // The operations of a mini-batch are visited from nextIndexToProcess
+    batchOp.nextIndexToProcess = firstIndex;
+    try {
+      miniBatchOp = batchOp.lockRowsAndBuildMiniBatch(acquiredRowLocks, false);
+      if (miniBatchOp.getReadyToWriteCount() <= 0) {
+        // Left to the next round, which waits for the row
+        return null;
+      }
+      long prepareStart = System.nanoTime();
+      long now = EnvironmentEdgeManager.currentTime();
+      batchOp.prepareMiniBatchOperations(miniBatchOp, now, acquiredRowLocks);
+      List<Pair<NonceKey, WALEdit>> walEdits = batchOp.buildWALEdits(miniBatchOp);
+      return new PreparedMiniBatch(firstIndex, miniBatchOp, acquiredRowLocks, now, walEdits, null,
+        prepareStart - start, System.nanoTime() - prepareStart);
+    } catch (IOException | RuntimeException e) {
+      // Thrown when the mini-batch is done, so that it fails as if it had not been prepared ahead
+      return new PreparedMiniBatch(firstIndex, miniBatchOp, acquiredRowLocks, 0, null, e, 0, 0);
+    } finally {
+      batchOp.nextIndexToProcess = currentFirstIndex;
+    }
+  }
+
+  /**
+   * Whether the next mini-batch may be prepared ahead, which is what {@link #checkReadOnly()} and
+   * {@link #checkResources()} check before each mini-batch, without their side effects. Not while
+   * a flush is requested either, so that the batch does not keep adding to the memstore meanwhile.
+   */
+  private boolean canPrepareAhead() {
+    if (isReadOnly() || this.writestate.flushRequested) {
+      return false;
+    }
+    if (this.getRegionInfo().isMetaRegion()) {
+      return true;
+    }
+    MemStoreSize mss = this.memStoreSizing.getMemStoreSize();
+    return mss.getHeapSize() + mss.getOffHeapSize() <= this.blockingMemStoreSize;
+  }
+
+  /**
+   * Gives up a mini-batch prepared ahead, failing its operations, when the one before it failed.
+   */
+  private void abortPreparedMiniBatch(BatchOperation<?> batchOp, PreparedMiniBatch prepared)
+    throws IOException {
+    releaseRowLocks(prepared.acquiredRowLocks);
+    enableInterrupts();
+    batchOp.nextIndexToProcess = prepared.firstIndex;
+    finishMiniBatch(batchOp, prepared.miniBatchOp, null, false);
+  }
+
+  /**
+   * A mini-batch whose rows were locked, and whose WAL edits were built, while the WAL sync of the
+   * previous mini-batch of the same batch was in flight.
+   */
+  private static final class PreparedMiniBatch {
+    private final int firstIndex;
+    // null if locking the rows failed
+    private final MiniBatchOperationInProgress<Mutation> miniBatchOp;
+    private final List<RowLock> acquiredRowLocks;
+    private final long now;
+    private final List<Pair<NonceKey, WALEdit>> walEdits;
+    // The failure to prepare the mini-batch, thrown when it is done
+    private final Exception error;
+    // The time in nanoseconds it took to lock the rows, and to prepare the mini-batch
+    private final long lockTime;
+    private final long prepareTime;
+
+    PreparedMiniBatch(int firstIndex, MiniBatchOperationInProgress<Mutation> miniBatchOp,
+      List<RowLock> acquiredRowLocks, long now, List<Pair<NonceKey, WALEdit>> walEdits,
+      Exception error, long lockTime, long prepareTime) {
+      this.firstIndex = firstIndex;
+      this.miniBatchOp = miniBatchOp;
+      this.acquiredRowLocks = acquiredRowLocks;
+      this.now = now;
+      this.walEdits = walEdits;
+      this.error = error;
+      this.lockTime = lockTime;
+      this.prepareTime = prepareTime;
     }
   }
 
@@ -5096,8 +5542,12 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
   private OperationStatus mutate(Mutation mutation, boolean atomic, long nonceGroup, long nonce)
     throws IOException {
-    OperationStatus[] status =
-      this.batchMutate(new Mutation[] { mutation }, atomic, nonceGroup, nonce);
+    return mutate(
+      new MutationBatchOperation(this, new Mutation[] { mutation }, atomic, nonceGroup, nonce));
+  }
+
+  private OperationStatus mutate(MutationBatchOperation batchOp) throws IOException {
+    OperationStatus[] status = batchMutate(batchOp);
     if (status[0].getOperationStatusCode().equals(OperationStatusCode.SANITY_CHECK_FAILURE)) {
       throw new FailedSanityCheckException(status[0].getExceptionMsg());
     } else if (status[0].getOperationStatusCode().equals(OperationStatusCode.BAD_FAMILY)) {
@@ -5514,6 +5964,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
     status.setStatus("Opening recovered edits");
     WAL.Reader reader = null;
+    ThreadPoolExecutor replayPool = null;
     try {
       reader = WALFactory.createReader(fs, edits, conf);
       long currentEditSeqId = -1;
@@ -5526,6 +5977,19 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       HStore store = null;
       boolean reported_once = false;
       ServerNonceManager ng = this.rsServices == null ? null : this.rsServices.getNonceManager();
+      ParallelRecoveredEditsReplayer replayer = null;
+      if (
+        stores.size() > 1 && conf.getBoolean(RECOVERED_EDITS_REPLAY_PARALLEL_KEY,
+          DEFAULT_RECOVERED_EDITS_REPLAY_PARALLEL)
+      ) {
+        replayPool = getStoreOpenAndCloseThreadPool(
+          "RecoveredEditsReplayer-" + getRegionInfo().getShortNameToLog());
+        replayer = new ParallelRecoveredEditsReplayer(this, replayPool, conf
+          .getInt(RECOVERED_EDITS_REPLAY_BATCH_SIZE, DEFAULT_RECOVERED_EDITS_REPLAY_BATCH_SIZE));
+      }
+      // the entries whose cells are queued in the replayer, to run the post restore hooks for
+      List<WAL.Entry> queuedEntries = new ArrayList<>();
+      long startTime = EnvironmentEdgeManager.currentTime();
 
       try {
         // How many edits seen before we check elapsed time
@@ -5544,6 +6008,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
           if (ng != null) { // some test, or nonces disabled
             ng.reportOperationFromWal(key.getNonceGroup(), key.getNonce(), key.getWriteTime());
+            DeltaCoalescer.reportNoncesFromWal(ng,
+              key.getExtendedAttribute(DeltaCoalescer.NONCES_ATTRIBUTE), key.getWriteTime());
           }
 
           if (reporter != null) {
@@ -5610,6 +6076,10 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
                 // this is a special edit, we should handle it
                 CompactionDescriptor compaction = WALEdit.getCompaction(cell);
                 if (compaction != null) {
+                  if (replayer != null) {
+                    // replay the compaction after the cells read before it, as it may flush them
+                    applyQueuedEdits(replayer, queuedEntries);
+                  }
                   // replay the compaction
                   replayWALCompactionMarker(compaction, false, true, Long.MAX_VALUE);
                 }
@@ -5649,22 +6119,37 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
             }
             PrivateCellUtil.setSequenceId(cell, currentReplaySeqId);
 
-            restoreEdit(store, cell, memStoreSizing);
+            if (replayer != null) {
+              replayer.add(store, cell);
+            } else {
+              restoreEdit(store, cell, memStoreSizing);
+            }
             editsCount++;
           }
-          MemStoreSize mss = memStoreSizing.getMemStoreSize();
-          incMemStoreSize(mss);
+          if (replayer != null) {
+            queuedEntries.add(entry);
+            if (!replayer.isBatchFull()) {
+              continue;
+            }
+            applyQueuedEdits(replayer, queuedEntries);
+          } else {
+            MemStoreSize mss = memStoreSizing.getMemStoreSize();
+            incMemStoreSize(mss);
+          }
           flush = isFlushSize(this.memStoreSizing.getMemStoreSize());
           if (flush) {
             internalFlushcache(null, currentEditSeqId, stores.values(), status, false,
               FlushLifeCycleTracker.DUMMY);
           }
 
-          if (coprocessorHost != null) {
+          if (replayer == null && coprocessorHost != null) {
             coprocessorHost.postWALRestore(this.getRegionInfo(), key, val);
           }
         }
 
+        if (replayer != null) {
+          applyQueuedEdits(replayer, queuedEntries);
+        }
         if (coprocessorHost != null) {
           coprocessorHost.postReplayWALs(this.getRegionInfo(), edits);
         }
@@ -5691,6 +6176,15 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           throw ioe;
         }
       }
+      if (replayer != null) {
+        // keep the edits read before a truncated or corrupted end of file, like the sequential
+        // replay does
+        applyQueuedEdits(replayer, queuedEntries);
+      }
+      if (rsServices != null && rsServices.getMetrics() != null) {
+        rsServices.getMetrics().updateRecoveredEditsReplay(
+          EnvironmentEdgeManager.currentTime() - startTime, editsCount);
+      }
       if (reporter != null && !reported_once) {
         reporter.progress();
       }
@@ -5701,12 +6195,30 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       return currentEditSeqId;
     } finally {
       status.cleanup();
+      if (replayPool != null) {
+        replayPool.shutdownNow();
+      }
       if (reader != null) {
         reader.close();
       }
     }
   }
 
+  /**
+   * Applies the cells queued in the replayer to the memstores, and runs the post restore hooks of
+   * the entries they came from.
+   */
+  private void applyQueuedEdits(ParallelRecoveredEditsReplayer replayer,
+    List<WAL.Entry> queuedEntries) throws IOException {
+    incMemStoreSize(replayer.apply());
+    if (coprocessorHost != null) {
+      for (WAL.Entry queued : queuedEntries) {
+        coprocessorHost.postWALRestore(this.getRegionInfo(), queued.getKey(), queued.getEdit());
+      }
+    }
+    queuedEntries.clear();
+  }
+
   /**
    * Call to complete a compaction. Its for the case where we find in the WAL a compaction that was
    * not finished. We could find one recovering a WAL after a regionserver crash. See HBASE-2331.
@@ -6918,35 +7430,19 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   // will be override in tests
   protected RowLock getRowLockInternal(byte[] row, boolean readLock, RowLock prevRowLock)
     throws IOException {
-    // create an object to use a a key in the row lock map
-    HashedBytes rowKey = new HashedBytes(row);
-
-    RowLockContext rowLockContext = null;
-    RowLockImpl result = null;
-
+    RowLockManager.ManagedRowLock result = rowLockManager.getRowLock(row, readLock);
     boolean success = false;
     try {
-      // Keep trying until we have a lock or error out.
-      // TODO: do we need to add a time component here?
-      while (result == null) {
-        rowLockContext = computeIfAbsent(lockedRows, rowKey, () -> new RowLockContext(rowKey));
-        // Now try an get the lock.
-        // This can fail as
-        if (readLock) {
-          // For read lock, if the caller has locked the same row previously, it will not try
-          // to acquire the same read lock. It simply returns the previous row lock.
-          RowLockImpl prevRowLockImpl = (RowLockImpl) prevRowLock;
-          if (
-            (prevRowLockImpl != null)
-              && (prevRowLockImpl.getLock() == rowLockContext.readWriteLock.readLock())
-          ) {
-            success = true;
-            return prevRowLock;
-          }
-          result = rowLockContext.newReadLock();
-        } else {
-          result = rowLockContext.newWriteLock();
-        }
+      // For read lock, if the caller has locked the same row previously, it will not try
+      // to acquire the same read lock. It simply returns the previous row lock. So does it for a
+      // write lock whose instance is shared by the holders of the row, as the caller could not
+      // tell the two locks apart to release both.
+      if (
+        prevRowLock instanceof RowLockManager.ManagedRowLock
+          && ((RowLockManager.ManagedRowLock) prevRowLock).getLock() == result.getLock()
+          && (readLock || prevRowLock == result)
+      ) {
+        return prevRowLock;
       }
 
       int timeout = rowLockWaitDuration;
@@ -6963,9 +7459,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         }
       }
 
-      if (timeout <= 0 || !result.getLock().tryLock(timeout, TimeUnit.MILLISECONDS)) {
-        String message = "Timed out waiting for lock for row: " + rowKey + " in region "
-          + getRegionInfo().getEncodedName();
+      if (timeout <= 0 || !tryRowLock(result.getLock(), timeout)) {
+        String message = "Timed out waiting for lock for row: " + Bytes.toStringBinary(row)
+          + " in region " + getRegionInfo().getEncodedName();
         if (reachDeadlineFirst) {
           throw new TimeoutIOException(message);
         } else {
@@ -6973,13 +7469,13 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           throw new IOException(message);
         }
       }
-      rowLockContext.setThreadName(Thread.currentThread().getName());
+      result.locked(Thread.currentThread());
       success = true;
       return result;
     } catch (InterruptedException ie) {
       if (LOG.isDebugEnabled()) {
-        LOG.debug("Thread interrupted waiting for lock on row: {}, in region {}", rowKey,
-          getRegionInfo().getRegionNameAsString());
+        LOG.debug("Thread interrupted waiting for lock on row: {}, in region {}",
+          Bytes.toStringBinary(row), getRegionInfo().getRegionNameAsString());
       }
       throw throwOnInterrupt(ie);
     } catch (Error error) {
@@ -6991,9 +7487,28 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       IOException ioe = new IOException(error);
       throw ioe;
     } finally {
-      // Clean up the counts just in case this was the thing keeping the context alive.
-      if (!success && rowLockContext != null) {
-        rowLockContext.cleanUp();
+      // Give back the reference to the lock, which may be the one keeping it for the row.
+      if (!success) {
+        result.abort();
+      }
+    }
+  }
+
+  /**
+   * Acquires the lock, only measuring the time spent waiting for it if it is not available right
+   * away, so that uncontended locks are not timed.
+   */
+  private boolean tryRowLock(Lock lock, int timeout) throws InterruptedException {
+    // Unlike tryLock(), this does not barge ahead of the threads already waiting for the lock
+    if (lock.tryLock(0, TimeUnit.MILLISECONDS)) {
+      return true;
+    }
+    long start = System.nanoTime();
+    try {
+      return lock.tryLock(timeout, TimeUnit.MILLISECONDS);
+    } finally {
+      if (metricsRegion != null) {
+        metricsRegion.updateRowLockWait(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
       }
     }
   }
@@ -7004,6 +7519,41 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       () -> createRegionSpan("Region.getRowLock").setAttribute(ROW_LOCK_READ_LOCK_KEY, readLock));
   }
 
+  /**
+   * Acquires the lock of the row only if no other thread holds it, without waiting.
+   * @return the lock, or null if the row is locked by another thread
+   */
+  private RowLock getRowLockIfAvailable(byte[] row, boolean readLock, RowLock prevRowLock)
+    throws IOException {
+    RowLockManager.ManagedRowLock result = rowLockManager.getRowLock(row, readLock);
+    boolean success = false;
+    try {
+      // See getRowLockInternal for when the previous row lock is returned
+      if (
+        prevRowLock instanceof RowLockManager.ManagedRowLock
+          && ((RowLockManager.ManagedRowLock) prevRowLock).getLock() == result.getLock()
+          && (readLock || prevRowLock == result)
+      ) {
+        return prevRowLock;
+      }
+      if (!result.getLock().tryLock(0, TimeUnit.MILLISECONDS)) {
+        return null;
+      }
+      result.locked(Thread.currentThread());
+      success = true;
+      return result;
+    } catch (InterruptedException ie) {
+      throw throwOnInterrupt(ie);
+    } catch (Error error) {
+      // The maximum lock count for read lock is 64K, see getRowLockInternal
+      throw new IOException(error);
+    } finally {
+      if (!success) {
+        result.abort();
+      }
+    }
+  }
+
   private void releaseRowLocks(List<RowLock> rowLocks) {
     if (rowLocks != null) {
       for (RowLock rowLock : rowLocks) {
@@ -7017,97 +7567,11 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return lock.getReadLockCount();
   }
 
-  public ConcurrentHashMap<HashedBytes, RowLockContext> getLockedRows() {
-    return lockedRows;
-  }
-
-  class RowLockContext {
-    private final HashedBytes row;
-    final ReadWriteLock readWriteLock = new ReentrantReadWriteLock(true);
-    final AtomicBoolean usable = new AtomicBoolean(true);
-    final AtomicInteger count = new AtomicInteger(0);
-    final Object lock = new Object();
-    private String threadName;
-
-    RowLockContext(HashedBytes row) {
-      this.row = row;
-    }
-
-    RowLockImpl newWriteLock() {
-      Lock l = readWriteLock.writeLock();
-      return getRowLock(l);
-    }
-
-    RowLockImpl newReadLock() {
-      Lock l = readWriteLock.readLock();
-      return getRowLock(l);
-    }
-
-    private RowLockImpl getRowLock(Lock l) {
-      count.incrementAndGet();
-      synchronized (lock) {
-        if (usable.get()) {
-          return new RowLockImpl(this, l);
-        } else {
-          return null;
-        }
-      }
-    }
-
-    void cleanUp() {
-      long c = count.decrementAndGet();
-      if (c <= 0) {
-        synchronized (lock) {
-          if (count.get() <= 0 && usable.get()) { // Don't attempt to remove row if already removed
-            usable.set(false);
-            RowLockContext removed = lockedRows.remove(row);
-            assert removed == this : "we should never remove a different context";
-          }
-        }
-      }
-    }
-
-    public void setThreadName(String threadName) {
-      this.threadName = threadName;
-    }
-
-    @Override
-    public String toString() {
-      return "RowLockContext{" + "row=" + row + ", readWriteLock=" + readWriteLock + ", count="
-        + count + ", threadName=" + threadName + '}';
-    }
-  }
-
   /**
-   * Class used to represent a lock on a row.
+   * Returns a description of each of the rows which are locked or being locked, for debugging.
    */
-  public static class RowLockImpl implements RowLock {
-    private final RowLockContext context;
-    private final Lock lock;
-
-    public RowLockImpl(RowLockContext context, Lock lock) {
-      this.context = context;
-      this.lock = lock;
-    }
-
-    public Lock getLock() {
-      return lock;
-    }
-
-    public RowLockContext getContext() {
-      return context;
-    }
-
-    @Override
-    public void release() {
-      lock.unlock();
-      context.cleanUp();
-    }
-
-    @Override
-    public String toString() {
-      return "RowLockImpl{" + "context=" + context + ", lock=" + lock + '}';
-    }
+  public List<String> getLockedRows() {
+    return rowLockManager.getLockedRows();
   }
 
   /**
@@ -7853,18 +8317,38 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         return results;
       }
     }
-    Scan scan = new Scan(get);
-    if (scan.getLoadColumnFamiliesOnDemandValue() == null) {
-      scan.setLoadColumnFamiliesOnDemand(isLoadingCfsOnDemandDefault());
+    RowCache rowCache = getRowCache(get);
+    List<Cell> cached = null;
+    if (rowCache != null) {
+      cached = rowCache.get(get.getRow());
+      metricsUpdateForRowCache(cached != null);
     }
-    try (RegionScanner scanner = getScanner(scan, null, nonceGroup, nonce)) {
-      List<Cell> tmp = new ArrayList<>();
-      scanner.next(tmp);
-      // Copy EC to heap, then close the scanner.
-      // This can be an EXPENSIVE call. It may make an extra copy from offheap to onheap buffers.
-      // See more details in HBASE-26036.
-      for (Cell cell : tmp) {
-        results.add(CellUtil.cloneIfNecessary(cell));
+    if (cached != null) {
+      results.addAll(cached);
+    } else {
+      // Must be done before the scanner gets its read point, see RowCache
+      Object rowCacheToken = rowCache != null ? rowCache.startPopulating(get.getRow()) : null;
+      Scan scan = new Scan(get);
+      if (scan.getLoadColumnFamiliesOnDemandValue() == null) {
+        scan.setLoadColumnFamiliesOnDemand(isLoadingCfsOnDemandDefault());
+      }
+      try (RegionScanner scanner = getScanner(scan, null, nonceGroup, nonce)) {
+        List<Cell> tmp = new ArrayList<>();
+        scanner.next(tmp);
+        // Copy EC to heap, then close the scanner.
+        // This can be an EXPENSIVE call. It may make an extra copy from offheap to onheap buffers.
+        // See more details in HBASE-26036.
+        for (Cell cell : tmp) {
+          results.add(CellUtil.cloneIfNecessary(cell));
+        }
+      } catch (IOException | RuntimeException e) {
+        if (rowCacheToken != null) {
+          rowCache.abortPopulating(get.getRow(), rowCacheToken);
+        }
+        throw e;
+      }
+      if (rowCacheToken != null) {
+        rowCache.populate(get.getRow(), rowCacheToken, results);
       }
     }
 
@@ -7878,6 +8362,39 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return results;
   }
 
+  /** Returns the row cache which can serve the given Get, or null if there is none. */
+  private RowCache getRowCache(Get get) {
+    if (get.numFamilies() != 1) {
+      return null;
+    }
+    HStore store = stores.get(get.familySet().iterator().next());
+    RowCache rowCache = store != null ? store.getRowCache() : null;
+    return rowCache != null && rowCache.isCacheable(get) ? rowCache : null;
+  }
+
+  /**
+   * Removes the row from the row caches of all the stores. Must be called once the mvcc write entry
+   * of the mutation of the row has completed.
+   */
+  private void invalidateRowCaches(byte[] row) {
+    for (HStore store : stores.values()) {
+      RowCache rowCache = store.getRowCache();
+      if (rowCache != null) {
+        rowCache.invalidate(row);
+      }
+    }
+  }
+
+  private void metricsUpdateForRowCache(boolean hit) {
+    if (this.rsServices != null && this.rsServices.getMetrics() != null) {
+      if (hit) {
+        rsServices.getMetrics().incrRowCacheHit();
+      } else {
+        rsServices.getMetrics().incrRowCacheMiss();
+      }
+    }
+  }
+
   void metricsUpdateForGet(List<Cell> results, long before) {
     if (this.metricsRegion != null) {
       this.metricsRegion.updateGet(EnvironmentEdgeManager.currentTime() - before);
@@ -7991,8 +8508,10 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       checkResources();
       startRegionOperation(Operation.APPEND);
       try {
-        // All edits for the given row (across all column families) must happen atomically.
-        return mutate(append, true, nonceGroup, nonce).getResult();
+        if (deltaCoalescer != null && deltaCoalescer.canCoalesce(append)) {
+          return deltaCoalescer.apply(append, nonceGroup, nonce);
+        }
+        return applyDelta(append, nonceGroup, nonce);
       } finally {
         closeRegionOperation(Operation.APPEND);
       }
@@ -8010,14 +8529,43 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       checkResources();
       startRegionOperation(Operation.INCREMENT);
       try {
-        // All edits for the given row (across all column families) must happen atomically.
-        return mutate(increment, true, nonceGroup, nonce).getResult();
+        if (deltaCoalescer != null && deltaCoalescer.canCoalesce(increment)) {
+          return deltaCoalescer.apply(increment, nonceGroup, nonce);
+        }
+        return applyDelta(increment, nonceGroup, nonce);
       } finally {
         closeRegionOperation(Operation.INCREMENT);
       }
     }, () -> createRegionSpan("Region.increment"));
   }
 
+  /**
+   * Applies an Increment or an Append, without coalescing it. Must be called from within a region
+   * operation.
+   */
+  Result applyDelta(Mutation mutation, long nonceGroup, long nonce) throws IOException {
+    // All edits for the given row (across all column families) must happen atomically.
+    return mutate(mutation, true, nonceGroup, nonce).getResult();
+  }
+
+  /**
+   * Applies an Increment or an Append coalescing the operations sent with the given nonces, which
+   * are written to the WAL key of the edit. Must be called from within a region operation.
+   * @param nonces the nonce groups and nonces of the operations, see {@link DeltaCoalescer}, or
+   *               null if none of them has a nonce
+   */
+  Result applyCoalescedDelta(Mutation mutation, byte[] nonces) throws IOException {
+    MutationBatchOperation batchOp = new MutationBatchOperation(this, new Mutation[] { mutation },
+      true, HConstants.NO_NONCE, HConstants.NO_NONCE);
+    batchOp.coalescedNonces = nonces;
+    return mutate(batchOp).getResult();
+  }
+
+  /** Returns the coalescer of the Increments and Appends, or null if no family enables it. */
+  DeltaCoalescer getDeltaCoalescer() {
+    return deltaCoalescer;
+  }
+
   private WALKeyImpl createWALKeyForWALAppend(boolean isReplay, BatchOperation<?> batchOp, long now,
     long nonceGroup, long nonce) {
     WALKeyImpl walKey = isReplay
@@ -8029,14 +8577,24 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         batchOp.getClusterIds(), nonceGroup, nonce, mvcc, this.getReplicationScope());
     if (isReplay) {
       walKey.setOrigLogSeqNum(batchOp.getOrigLogSeqNum());
+    } else if (
+      batchOp instanceof MutationBatchOperation
+        && ((MutationBatchOperation) batchOp).coalescedNonces != null
+    ) {
+      walKey.addExtendedAttribute(DeltaCoalescer.NONCES_ATTRIBUTE,
+        ((MutationBatchOperation) batchOp).coalescedNonces);
     }
     return walKey;
   }
 
-  /** Returns writeEntry associated with this append */
+  /**
+   * @param whileSyncing if not null, the sync of the edit is requested without waiting, and this is
+   *                     run before waiting for it
+   * @return writeEntry associated with this append
+   */
   private WriteEntry doWALAppend(WALEdit walEdit, BatchOperation<?> batchOp,
-    MiniBatchOperationInProgress<Mutation> miniBatchOp, long now, NonceKey nonceKey)
-    throws IOException {
+    MiniBatchOperationInProgress<Mutation> miniBatchOp, long now, NonceKey nonceKey,
+    Runnable whileSyncing) throws IOException {
     Preconditions.checkArgument(walEdit != null && !walEdit.isEmpty(), "WALEdit is null or empty!");
     Preconditions.checkArgument(
       !walEdit.isReplay() || batchOp.getOrigLogSeqNum() != SequenceId.NO_SEQUENCE_ID,
@@ -8053,14 +8611,20 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       long txid = this.wal.appendData(this.getRegionInfo(), walKey, walEdit);
       WriteEntry writeEntry = walKey.getWriteEntry();
       // Call sync on our edit.
-      if (txid != 0) {
+      if (txid != 0 && whileSyncing == null) {
         sync(txid, batchOp.durability);
+      } else if (txid != 0) {
+        WAL.PendingSync pendingSync = startSync(txid, batchOp.durability);
+        if (pendingSync != null) {
+          whileSyncing.run();
+          pendingSync.await();
+        }
       }
       /**
-       * If above {@link HRegion#sync} throws Exception, the RegionServer should be aborted and
+       * If above sync throws Exception, the RegionServer should be aborted and
        * following {@link BatchOperation#writeMiniBatchOperationsToMemStore} will not be executed,
        * so there is no need to replicate to secondary replica, for this reason here we attach the
-       * region replication action after the {@link HRegion#sync} is successful.
+       * region replication action after the sync is successful.
        */
       this.attachRegionReplicationInWALAppend(batchOp, miniBatchOp, walKey, walEdit, writeEntry);
       return writeEntry;
@@ -8147,7 +8711,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     (2 * ClassSize.ATOMIC_BOOLEAN) + // closed, closing
     (3 * ClassSize.ATOMIC_LONG) + // numPutsWithoutWAL, dataInMemoryWithoutWAL,
                                   // compactionsFailed
-    (3 * ClassSize.CONCURRENT_HASHMAP) + // lockedRows, scannerReadPoints, regionLockHolders
+    (3 * ClassSize.CONCURRENT_HASHMAP) + // rowLockManager, scannerReadPoints, regionLockHolders
     WriteState.HEAP_SIZE + // writestate
     ClassSize.CONCURRENT_SKIPLISTMAP + ClassSize.CONCURRENT_SKIPLISTMAP_ENTRY + // stores
     (2 * ClassSize.REENTRANT_LOCK) + // lock, updatesLock
@@ -8521,6 +9085,35 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     }
   }
 
+  /**
+   * Requests a sync with the given transaction ID, without waiting for it, see
+   * {@link #sync(long, Durability)}
+   * @param txid should sync up to which transaction
+   * @return the sync to wait on, or null if the durability does not ask for one
+   */
+  private WAL.PendingSync startSync(long txid, Durability durability) {
+    if (this.getRegionInfo().isMetaRegion()) {
+      return this.wal.startSync(txid);
+    }
+    switch (durability) {
+      case USE_DEFAULT:
+        // do what table defaults to
+        return shouldSyncWAL() ? this.wal.startSync(txid) : null;
+      case SKIP_WAL:
+        // nothing do to
+        return null;
+      case ASYNC_WAL:
+        // nothing do to
+        return null;
+      case SYNC_WAL:
+        return this.wal.startSync(txid, false);
+      case FSYNC_WAL:
+        return this.wal.startSync(txid, true);
+      default:
+        throw new RuntimeException("Unknown durability " + durability);
+    }
+  }
+
   /**
    * Check whether we should sync the wal from the table's durability settings
    */
@@ -109,6 +109,7 @@ import org.apache.hadoop.hbase.http.InfoServer;
 import org.apache.hadoop.hbase.io.hfile.BlockCache;
 import org.apache.hadoop.hbase.io.hfile.BlockCacheFactory;
 import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.io.hfile.PrefetchExecutor;
 import org.apache.hadoop.hbase.io.util.MemorySizeUtil;
 import org.apache.hadoop.hbase.ipc.CoprocessorRpcUtils;
 import org.apache.hadoop.hbase.ipc.RpcClient;
@@ -142,6 +143,7 @@ import org.apache.hadoop.hbase.regionserver.http.RSDumpServlet;
 import org.apache.hadoop.hbase.regionserver.http.RSStatusServlet;
 import org.apache.hadoop.hbase.regionserver.regionreplication.RegionReplicationBufferManager;
 import org.apache.hadoop.hbase.regionserver.throttle.FlushThroughputControllerFactory;
+import org.apache.hadoop.hbase.regionserver.throttle.PrefetchThroughputControllerFactory;
 import org.apache.hadoop.hbase.regionserver.throttle.ThroughputController;
 import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
 import org.apache.hadoop.hbase.regionserver.wal.WALEventTrackerListener;
@@ -616,14 +618,12 @@ public class HRegionServer extends HBaseServerBase<RSRpcServices>
   public void dumpRowLocks(final PrintWriter out) {
     StringBuilder sb = new StringBuilder();
     for (HRegion region : getRegions()) {
-      if (region.getLockedRows().size() > 0) {
-        for (HRegion.RowLockContext rowLockContext : region.getLockedRows().values()) {
-          sb.setLength(0);
-          sb.append(region.getTableDescriptor().getTableName()).append(",")
-            .append(region.getRegionInfo().getEncodedName()).append(",");
-          sb.append(rowLockContext.toString());
-          out.println(sb);
-        }
+      for (String lockedRow : region.getLockedRows()) {
+        sb.setLength(0);
+        sb.append(region.getTableDescriptor().getTableName()).append(",")
+          .append(region.getRegionInfo().getEncodedName()).append(",");
+        sb.append(lockedRow);
+        out.println(sb);
       }
     }
   }
@@ -1821,6 +1821,9 @@ public class HRegionServer extends HBaseServerBase<RSRpcServices>
 
     this.walRoller = new LogRoller(this);
     this.flushThroughputController = FlushThroughputControllerFactory.create(this, conf);
+    // The prefetch executor is static, these are shared with the other region servers of the JVM
+    PrefetchExecutor.setThroughputController(PrefetchThroughputControllerFactory.create(this, conf));
+    PrefetchExecutor.setPriorityFunction(this::getPrefetchPriority);
     this.procedureResultReporter = new RemoteProcedureResultReporter(this);
 
     // Create the CompactedFileDischarger chore executorService. This chore helps to
@@ -3360,6 +3363,17 @@ public class HRegionServer extends HBaseServerBase<RSRpcServices>
     return flushThroughputController;
   }
 
+  /**
+   * Gives the priority of the prefetch of a store file, which is the read request count of its
+   * region, so that hot regions are warmed first. The store file path is
+   * .../&lt;encoded region name&gt;/&lt;family&gt;/&lt;file&gt;.
+   */
+  private long getPrefetchPriority(Path storeFile) {
+    Path regionDir = storeFile.getParent() == null ? null : storeFile.getParent().getParent();
+    HRegion region = regionDir == null ? null : this.onlineRegions.get(regionDir.getName());
+    return region == null ? 0 : region.getReadRequestsCount();
+  }
+
   @Override
   public double getFlushPressure() {
     if (getRegionServerAccounting() == null || cacheFlusher == null) {
@@ -3376,6 +3390,10 @@ public class HRegionServer extends HBaseServerBase<RSRpcServices>
       old.stop("configuration change");
     }
     this.flushThroughputController = FlushThroughputControllerFactory.create(this, newConf);
+    ThroughputController oldPrefetch = PrefetchExecutor.getThroughputController();
+    oldPrefetch.stop("configuration change");
+    PrefetchExecutor
+      .setThroughputController(PrefetchThroughputControllerFactory.create(this, newConf));
     try {
       Superusers.initialize(newConf);
     } catch (IOException e) {
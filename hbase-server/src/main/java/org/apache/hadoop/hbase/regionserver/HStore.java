@@ -188,6 +188,9 @@ public class HStore
 
   private HFileDataBlockEncoder dataBlockEncoder;
 
+  // Cache of materialized rows for hot Gets, null if not enabled for this family.
+  private final RowCache rowCache;
+
   final StoreEngine<?, ?, ?, ?> storeEngine;
 
   private static final AtomicBoolean offPeakCompactionTracker = new AtomicBoolean();
@@ -207,6 +210,9 @@ public class HStore
   private AtomicLong flushedOutputFileSize = new AtomicLong();
   private AtomicLong compactedCellsSize = new AtomicLong();
   private AtomicLong majorCompactedCellsSize = new AtomicLong();
+  // The time spent writing out snapshots and committing the flushed files, in milliseconds
+  private LongAdder flushWriteTime = new LongAdder();
+  private LongAdder flushCommitTime = new LongAdder();
 
   private final StoreContext storeContext;
 
@@ -276,6 +282,7 @@ public class HStore
     // to clone it?
     scanInfo = new ScanInfo(conf, family, ttl, timeToPurgeDeletes, region.getCellComparator());
     this.memstore = getMemstore();
+    this.rowCache = RowCache.create(family, region.getRegionInfo().getReplicaId());
 
     this.offPeakHours = OffPeakHours.getInstance(conf);
 
@@ -707,6 +714,10 @@ public class HStore
     this.totalUncompressedBytes.addAndGet(r.getTotalUncompressedBytes());
     storeEngine.addStoreFiles(Lists.newArrayList(sf), () -> {
     });
+    if (rowCache != null) {
+      // The loaded file may hold newer cells for any of the cached rows.
+      rowCache.invalidateAll();
+    }
     LOG.info("Loaded HFile " + sf.getFileInfo() + " into " + this);
     if (LOG.isTraceEnabled()) {
       String traceMessage = "BULK LOAD time,size,store size,store files ["
@@ -717,6 +728,9 @@ public class HStore
   }
 
   private ImmutableCollection<HStoreFile> closeWithoutLock() throws IOException {
+    if (rowCache != null) {
+      rowCache.invalidateAll();
+    }
     // Clear so metrics doesn't find them.
     ImmutableCollection<HStoreFile> result = storeEngine.getStoreFileManager().clearFiles();
     Collection<HStoreFile> compactedfiles = storeEngine.getStoreFileManager().clearCompactedFiles();
@@ -774,6 +788,11 @@ public class HStore
     return result;
   }
 
+  /** Returns the row cache of this store, or null if the family has no row cache. */
+  RowCache getRowCache() {
+    return rowCache;
+  }
+
   /**
    * Close all the readers We don't need to worry about subsequent requests because the Region holds
    * a write lock that will prevent any more reads or writes.
@@ -1856,6 +1875,18 @@ public class HStore
     return this.memstore.size();
   }
 
+  /** Returns the size of the off-heap chunks holding the indexes of the memstore segments */
+  long getMemStoreIndexOffHeapSize() {
+    return this.memstore.getIndexOffHeapSize();
+  }
+
+  /** Returns the number of times the in-memory compaction of the memstore chose the action */
+  long getInMemoryCompactionActionCount(MemStoreCompactionStrategy.Action action) {
+    return this.memstore instanceof CompactingMemStore
+      ? ((CompactingMemStore) this.memstore).getInMemoryCompactionActionCount(action)
+      : 0;
+  }
+
   @Override
   public int getCompactPriority() {
     int priority = this.storeEngine.getStoreFileManager().getStoreCompactionPriority();
@@ -1957,12 +1988,18 @@ public class HStore
       if (writerCreationTracker != null) {
         HStore.this.storeFileWriterCreationTrackers.add(writerCreationTracker);
       }
-      tempFiles = HStore.this.flushCache(cacheFlushSeqNum, snapshot, status, throughputController,
-        tracker, writerCreationTracker);
+      long start = EnvironmentEdgeManager.currentTime();
+      try {
+        tempFiles = HStore.this.flushCache(cacheFlushSeqNum, snapshot, status,
+          throughputController, tracker, writerCreationTracker);
+      } finally {
+        flushWriteTime.add(EnvironmentEdgeManager.currentTime() - start);
+      }
     }
 
     @Override
     public boolean commit(MonitoredTask status) throws IOException {
+      long start = EnvironmentEdgeManager.currentTime();
       try {
         if (CollectionUtils.isEmpty(this.tempFiles)) {
           return false;
@@ -1993,6 +2030,7 @@ public class HStore
         // Add new file to store files. Clear snapshot too while we have the Store write lock.
         return completeFlush(storeFiles, snapshot.getId());
       } finally {
+        flushCommitTime.add(EnvironmentEdgeManager.currentTime() - start);
         if (writerCreationTracker != null) {
           HStore.this.storeFileWriterCreationTrackers.remove(writerCreationTracker);
         }
@@ -2425,6 +2463,16 @@ public class HStore
     return mixedRowReadsCount.sum();
   }
 
+  /** Returns the total time in milliseconds spent writing out the snapshots of flushes */
+  long getFlushWriteTime() {
+    return flushWriteTime.sum();
+  }
+
+  /** Returns the total time in milliseconds spent committing the files written by flushes */
+  long getFlushCommitTime() {
+    return flushCommitTime.sum();
+  }
+
   @Override
   public Configuration getReadOnlyConfiguration() {
     return new ReadOnlyConfiguration(this.conf);
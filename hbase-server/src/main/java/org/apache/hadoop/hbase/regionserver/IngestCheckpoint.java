@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A durability marker of a region of a table ingesting with {@link IngestCheckpointTracker}: all
+ * the edits tagged with a source offset up to the offset recorded here for their source are in the
+ * store files of the region, as of the flush with the given sequence id.
+ * <p>
+ * The markers are written to the {@link #CHECKPOINT_DIR} directory of the region, one file per
+ * flush named after its sequence id, so that the master can serve them to
+ * {@link org.apache.hadoop.hbase.client.Admin#getIngestCheckpoints(TableName)} after a crash,
+ * whether the regions are online or not. Before accepting the first edit of a source, a region
+ * writes a marker recording {@link #NO_OFFSET} for it: a region whose marker has no offset for a
+ * source never had edits of it, while a region at NO_OFFSET needs the source replayed from its
+ * start. The regions split or merged from others start from the markers of their parents. A source
+ * should then be replayed from the lowest offset recorded for it over the regions it writes to.
+ */
+@InterfaceAudience.Private
+public final class IngestCheckpoint {
+
+  private static final Logger LOG = LoggerFactory.getLogger(IngestCheckpoint.class);
+
+  /** The directory of the region holding the markers */
+  public static final String CHECKPOINT_DIR = ".ingestcheckpoint";
+
+  /** The offset of a source whose edits the region accepted, none of them durable yet */
+  public static final long NO_OFFSET = -1;
+
+  private static final int VERSION = 1;
+
+  private final long sequenceId;
+  private final long timestamp;
+  private final Map<String, Long> offsets;
+
+  IngestCheckpoint(long sequenceId, long timestamp, Map<String, Long> offsets) {
+    this.sequenceId = sequenceId;
+    this.timestamp = timestamp;
+    this.offsets = Collections.unmodifiableMap(new TreeMap<>(offsets));
+  }
+
+  /** Returns the sequence id of the flush which made the edits durable, 0 if none did yet */
+  public long getSequenceId() {
+    return sequenceId;
+  }
+
+  /** Returns the time the marker was written */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /** Returns the offset up to which the edits are durable, by source */
+  public Map<String, Long> getOffsets() {
+    return offsets;
+  }
+
+  byte[] toByteArray() throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bos)) {
+      out.writeInt(VERSION);
+      out.writeLong(sequenceId);
+      out.writeLong(timestamp);
+      out.writeInt(offsets.size());
+      for (Map.Entry<String, Long> e : offsets.entrySet()) {
+        out.writeUTF(e.getKey());
+        out.writeLong(e.getValue());
+      }
+    }
+    return bos.toByteArray();
+  }
+
+  private static IngestCheckpoint parseFrom(DataInputStream in) throws IOException {
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unknown ingest checkpoint version " + version);
+    }
+    long sequenceId = in.readLong();
+    long timestamp = in.readLong();
+    int count = in.readInt();
+    Map<String, Long> offsets = new TreeMap<>();
+    for (int i = 0; i < count; i++) {
+      offsets.put(in.readUTF(), in.readLong());
+    }
+    return new IngestCheckpoint(sequenceId, timestamp, offsets);
+  }
+
+  /** Returns the name of the marker file of the flush with the given sequence id */
+  static String getFileName(long sequenceId) {
+    return String.format("%019d", sequenceId);
+  }
+
+  /**
+   * Returns the latest readable marker of the region, or null if there is none. A marker which
+   * cannot be read, such as one left half written by a crash, is skipped.
+   */
+  public static IngestCheckpoint read(FileSystem fs, Path regionDir) throws IOException {
+    FileStatus[] files;
+    try {
+      files = fs.listStatus(new Path(regionDir, CHECKPOINT_DIR));
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+    IngestCheckpoint latest = null;
+    for (FileStatus file : files) {
+      IngestCheckpoint checkpoint;
+      try (FSDataInputStream in = fs.open(file.getPath())) {
+        checkpoint = parseFrom(in);
+      } catch (IOException e) {
+        LOG.warn("Skipping unreadable ingest checkpoint {}", file.getPath(), e);
+        continue;
+      }
+      if (latest == null || checkpoint.getSequenceId() > latest.getSequenceId()) {
+        latest = checkpoint;
+      }
+    }
+    return latest;
+  }
+
+  /**
+   * Writes the marker of a region split or merged from the given parent regions, closed by then:
+   * for each source, the lowest offset of the latest markers of the parents which have one. Does
+   * nothing if none of the parents has a marker.
+   */
+  public static void inherit(FileSystem fs, List<Path> parentDirs, Path regionDir)
+    throws IOException {
+    long sequenceId = -1;
+    Map<String, Long> offsets = new TreeMap<>();
+    for (Path parentDir : parentDirs) {
+      IngestCheckpoint checkpoint = read(fs, parentDir);
+      if (checkpoint != null) {
+        sequenceId = Math.max(sequenceId, checkpoint.getSequenceId());
+        checkpoint.getOffsets()
+          .forEach((source, offset) -> offsets.merge(source, offset, Math::min));
+      }
+    }
+    if (sequenceId < 0) {
+      return;
+    }
+    IngestCheckpoint checkpoint =
+      new IngestCheckpoint(sequenceId, EnvironmentEdgeManager.currentTime(), offsets);
+    // The region is not online yet, a procedure retrying the split or merge writes it again
+    Path path = new Path(new Path(regionDir, CHECKPOINT_DIR), getFileName(sequenceId));
+    try (FSDataOutputStream out = fs.create(path, true)) {
+      out.write(checkpoint.toByteArray());
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "sequenceId=" + sequenceId + ", timestamp=" + timestamp + ", offsets=" + offsets;
+  }
+}
@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.exceptions.FailedSanityCheckException;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ingestion of idempotent edits which can be replayed from their source, say a Kafka topic,
+ * without writing them to the WAL. When {@link #INGEST_CHECKPOINT_KEY} is set for a table, as a
+ * table attribute or in the configuration, the edits of its regions which do not ask for a specific
+ * durability skip the WAL. Clients tag these mutations with the {@link #SOURCE_ATTRIBUTE} and
+ * {@link #OFFSET_ATTRIBUTE} attributes, untagged ones fail as they could not be replayed. Flushes
+ * of such regions always flush all the stores, and each successful flush writes an
+ * {@link IngestCheckpoint} telling up to which offset of each source the edits of the region are
+ * durable. Edits after the last checkpoint are lost on a crash and have to be replayed from their
+ * source. The first edit of a source waits for a marker recording
+ * {@link IngestCheckpoint#NO_OFFSET} for it, so that a region holding edits of a source always has
+ * a marker telling so.
+ * <p>
+ * A region only sees the offsets of the edits routed to it, so the offset it checkpoints for a
+ * source is the highest one written to its memstore below all the offsets of the source still in
+ * flight, accepted but not yet written. An edit whose offset is not above the offset already
+ * checkpointed, or being checkpointed, for its source arrived too late to be covered by the
+ * checkpoint and fails with a {@link FailedSanityCheckException}; the client may write it with an
+ * explicit durability instead. Clients replaying a source after a crash only send each region the
+ * edits above its checkpoint.
+ */
+@InterfaceAudience.Private
+public class IngestCheckpointTracker {
+
+  private static final Logger LOG = LoggerFactory.getLogger(IngestCheckpointTracker.class);
+
+  public static final String INGEST_CHECKPOINT_KEY = "hbase.hregion.ingest.checkpoint";
+  /** Mutation attribute naming the source of the edit */
+  public static final String SOURCE_ATTRIBUTE = "hbase.ingest.source";
+  /** Mutation attribute holding the offset of the edit in its source, as a non-negative long */
+  public static final String OFFSET_ATTRIBUTE = "hbase.ingest.offset";
+
+  // The number of markers kept in the region directory
+  private static final int RETAINED_CHECKPOINTS = 2;
+
+  private final HRegionFileSystem fs;
+  // The offsets by source of the edits accepted since the region opened
+  private final Map<String, SourceOffsets> sources = new HashMap<>();
+  // The offsets by source the running flush checkpoints, null when not flushing
+  private Map<String, Long> flushing;
+  // The offsets of the last marker, NO_OFFSET for the sources without a durable edit yet
+  private final Map<String, Long> durable = new HashMap<>();
+  // The sequence id of the last marker
+  private long sequenceId;
+  // Serializes the writes of the markers, taken before the lock of the tracker
+  private final Object writeLock = new Object();
+
+  IngestCheckpointTracker(HRegionFileSystem fs) {
+    this.fs = fs;
+  }
+
+  /** Returns a tracker if the region ingests with checkpoints, null otherwise */
+  static IngestCheckpointTracker create(HRegionFileSystem fs, Configuration conf) {
+    if (
+      !conf.getBoolean(INGEST_CHECKPOINT_KEY, false)
+        || fs.getRegionInfo().getReplicaId() != RegionInfo.DEFAULT_REPLICA_ID
+    ) {
+      return null;
+    }
+    return new IngestCheckpointTracker(fs);
+  }
+
+  /** Picks up the offsets of the last marker of the region, called when the region opens */
+  synchronized void initialize() throws IOException {
+    IngestCheckpoint checkpoint = IngestCheckpoint.read(fs.getFileSystem(), fs.getRegionDir());
+    if (checkpoint != null) {
+      LOG.info("{} resuming from ingest checkpoint {}", fs.getRegionInfo().getEncodedName(),
+        checkpoint);
+      durable.putAll(checkpoint.getOffsets());
+      sequenceId = checkpoint.getSequenceId();
+    }
+  }
+
+  /**
+   * Accepts the offset of a mutation before it is applied to the memstore. The offset stays in
+   * flight until the mutation is {@link #record(Mutation) recorded} or
+   * {@link #release(Mutation) released}.
+   * @param tagRequired whether the mutation skips the WAL for the sake of the checkpoint, so that
+   *                    it has to carry its source and offset
+   * @return true if the offset is in flight, false if the mutation is not tagged
+   * @throws FailedSanityCheckException if a required tag is missing or malformed, or if the offset
+   *                                    is not above the checkpointed offset of its source
+   * @throws IOException                if the marker of the first edit of the source failed
+   */
+  boolean accept(Mutation mutation, boolean tagRequired) throws IOException {
+    byte[] source = mutation.getAttribute(SOURCE_ATTRIBUTE);
+    byte[] offset = mutation.getAttribute(OFFSET_ATTRIBUTE);
+    if (source == null && offset == null && !tagRequired) {
+      return false;
+    }
+    if (source == null || offset == null) {
+      throw new FailedSanityCheckException("Mutation without the " + SOURCE_ATTRIBUTE + " and "
+        + OFFSET_ATTRIBUTE + " attributes would skip the WAL of ingest checkpointed region "
+        + fs.getRegionInfo().getEncodedName() + ", set them or a durability");
+    }
+    long value = offset.length == Bytes.SIZEOF_LONG ? Bytes.toLong(offset) : -1;
+    if (value < 0) {
+      throw new FailedSanityCheckException(
+        "Malformed " + OFFSET_ATTRIBUTE + " " + Bytes.toStringBinary(offset));
+    }
+    String name = Bytes.toString(source);
+    if (!hasMarker(name)) {
+      writeFloor(name);
+    }
+    synchronized (this) {
+      long checkpointed = getCheckpointedOffset(name);
+      if (value <= checkpointed) {
+        throw new FailedSanityCheckException("Offset " + value + " of ingest source " + name
+          + " is not above the offset " + checkpointed + " checkpointed by region "
+          + fs.getRegionInfo().getEncodedName());
+      }
+      sources.computeIfAbsent(name, k -> new SourceOffsets()).inFlight.merge(value, 1,
+        Integer::sum);
+    }
+    return true;
+  }
+
+  private synchronized boolean hasMarker(String source) {
+    return durable.containsKey(source);
+  }
+
+  /**
+   * Writes a marker recording the source, with no durable offset, next to the offsets of the last
+   * marker. It takes the sequence id of the last marker, so it replaces it.
+   */
+  private void writeFloor(String source) throws IOException {
+    synchronized (writeLock) {
+      IngestCheckpoint checkpoint;
+      synchronized (this) {
+        if (durable.containsKey(source)) {
+          return;
+        }
+        Map<String, Long> offsets = new HashMap<>(durable);
+        offsets.put(source, IngestCheckpoint.NO_OFFSET);
+        checkpoint =
+          new IngestCheckpoint(sequenceId, EnvironmentEdgeManager.currentTime(), offsets);
+      }
+      write(checkpoint);
+      synchronized (this) {
+        durable.put(source, IngestCheckpoint.NO_OFFSET);
+      }
+    }
+  }
+
+  /**
+   * Records the offset of an accepted mutation which has been applied to the memstore. The caller
+   * should hold the updates lock of the region, so that the mutation and its offset go to the same
+   * flush.
+   */
+  synchronized void record(Mutation mutation) {
+    SourceOffsets offsets = land(mutation);
+    if (offsets != null) {
+      long offset = Bytes.toLong(mutation.getAttribute(OFFSET_ATTRIBUTE));
+      offsets.applied = Math.max(offsets.applied, offset);
+    }
+  }
+
+  /** Releases the offset of an accepted mutation which was not applied to the memstore */
+  synchronized void release(Mutation mutation) {
+    land(mutation);
+  }
+
+  // Takes the offset of an accepted mutation out of flight
+  private SourceOffsets land(Mutation mutation) {
+    SourceOffsets offsets = sources.get(Bytes.toString(mutation.getAttribute(SOURCE_ATTRIBUTE)));
+    if (offsets != null) {
+      offsets.inFlight.computeIfPresent(Bytes.toLong(mutation.getAttribute(OFFSET_ATTRIBUTE)),
+        (offset, count) -> count == 1 ? null : count - 1);
+    }
+    return offsets;
+  }
+
+  private long getCheckpointedOffset(String source) {
+    long offset = durable.getOrDefault(source, IngestCheckpoint.NO_OFFSET);
+    if (flushing != null) {
+      offset = Math.max(offset, flushing.getOrDefault(source, IngestCheckpoint.NO_OFFSET));
+    }
+    return offset;
+  }
+
+  /**
+   * Picks the offsets the flush checkpoints, those of the edits in the memstores below the offsets
+   * still in flight. Called with the updates lock of the region held while the memstores are
+   * snapshotted.
+   */
+  synchronized void prepareFlush() {
+    flushing = new HashMap<>();
+    sources.forEach((source, offsets) -> {
+      long offset = offsets.applied;
+      if (!offsets.inFlight.isEmpty()) {
+        offset = Math.min(offset, offsets.inFlight.firstKey() - 1);
+      }
+      if (offset >= 0) {
+        flushing.put(source, offset);
+      }
+    });
+  }
+
+  /** Drops the offsets of a failed flush, the next flush checkpoints them again */
+  synchronized void abortFlush() {
+    flushing = null;
+  }
+
+  /**
+   * Writes a marker for the flush with the given sequence id, whose edits are now in store files.
+   * Failing to write it is not fatal, the offsets are written with the next flush.
+   */
+  void commitFlush(long sequenceId) {
+    synchronized (writeLock) {
+      IngestCheckpoint checkpoint;
+      synchronized (this) {
+        if (flushing == null || flushing.isEmpty()) {
+          flushing = null;
+          return;
+        }
+        flushing.forEach((source, offset) -> durable.merge(source, offset, Math::max));
+        flushing = null;
+        this.sequenceId = sequenceId;
+        checkpoint =
+          new IngestCheckpoint(sequenceId, EnvironmentEdgeManager.currentTime(), durable);
+      }
+      try {
+        write(checkpoint);
+      } catch (IOException e) {
+        LOG.warn("Failed writing ingest checkpoint {} of {}", checkpoint,
+          fs.getRegionInfo().getEncodedName(), e);
+      }
+    }
+  }
+
+  private void write(IngestCheckpoint checkpoint) throws IOException {
+    FileSystem fileSystem = fs.getFileSystem();
+    Path dir = new Path(fs.getRegionDir(), IngestCheckpoint.CHECKPOINT_DIR);
+    String name = IngestCheckpoint.getFileName(checkpoint.getSequenceId());
+    // Write to the tmp dir first so a crash never leaves a partial marker in place
+    Path tmpPath = new Path(fs.getTempDir(), IngestCheckpoint.CHECKPOINT_DIR + "." + name);
+    try (FSDataOutputStream out = fileSystem.create(tmpPath, true)) {
+      out.write(checkpoint.toByteArray());
+    }
+    if (!fileSystem.exists(dir) && !fileSystem.mkdirs(dir)) {
+      throw new IOException("Unable to create " + dir);
+    }
+    Path path = new Path(dir, name);
+    // A floor marker replaces the last marker, whose offsets it carries
+    if (fileSystem.exists(path) && !fileSystem.delete(path, false)) {
+      throw new IOException("Unable to delete " + path);
+    }
+    if (!fs.rename(tmpPath, path)) {
+      throw new IOException("Unable to rename " + tmpPath + " to " + path);
+    }
+    FileStatus[] files = fileSystem.listStatus(dir);
+    // The file names are zero padded sequence ids, so they sort in flush order
+    Arrays.sort(files, (f1, f2) -> f1.getPath().getName().compareTo(f2.getPath().getName()));
+    for (int i = 0; i < files.length - RETAINED_CHECKPOINTS; i++) {
+      fileSystem.delete(files[i].getPath(), false);
+    }
+  }
+
+  /** Returns the offsets of the last marker */
+  synchronized Map<String, Long> getDurableOffsets() {
+    return new HashMap<>(durable);
+  }
+
+  private static final class SourceOffsets {
+    // The counts of the accepted mutations by offset, not yet applied or released
+    private final TreeMap<Long, Integer> inFlight = new TreeMap<>();
+    // The highest offset applied to the memstore, -1 if none
+    private long applied = -1;
+  }
+}
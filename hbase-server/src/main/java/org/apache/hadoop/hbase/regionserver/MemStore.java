@@ -131,4 +131,13 @@ public interface MemStore {
   default void stopReplayingFromWAL() {
     return;
   }
+
+  /**
+   * Returns the size of the off-heap chunks holding the indexes of the segments of this MemStore,
+   * including the snapshot. Only flattened segments, and the segments indexed by a
+   * {@link CellChunkSkipListMap}, have such an index.
+   */
+  default long getIndexOffHeapSize() {
+    return 0;
+  }
 }
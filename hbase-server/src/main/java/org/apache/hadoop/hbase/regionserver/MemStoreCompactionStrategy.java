@@ -17,7 +17,11 @@
  */
 package org.apache.hadoop.hbase.regionserver;
 
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +60,8 @@ public abstract class MemStoreCompactionStrategy {
   protected final String cfName;
   // The limit on the number of the segments in the pipeline
   protected final int pipelineThreshold;
+  // The number of times each action was chosen
+  private final Map<Action, LongAdder> actionCounts = new EnumMap<>(Action.class);
 
   public MemStoreCompactionStrategy(Configuration conf, String cfName) {
     this.cfName = cfName;
@@ -65,6 +71,9 @@ public abstract class MemStoreCompactionStrategy {
       pipelineThreshold = // get the limit on the number of the segments in the pipeline
         conf.getInt(COMPACTING_MEMSTORE_THRESHOLD_KEY, COMPACTING_MEMSTORE_THRESHOLD_DEFAULT);
     }
+    for (Action action : Action.values()) {
+      actionCounts.put(action, new LongAdder());
+    }
   }
 
   @Override
@@ -86,9 +95,32 @@ public abstract class MemStoreCompactionStrategy {
   public void resetStats() {
   }
 
+  // called after a cell is added to the active segment, to sample the workload
+  public void sampleAdd(MutableSegment active, Cell cell) {
+  }
+
+  // called when the active segment is pushed into the compaction pipeline
+  public void activePushedToPipeline() {
+  }
+
+  // counts the action returned by getAction, for metrics
+  void recordAction(Action action) {
+    actionCounts.get(action).increment();
+  }
+
+  /** Returns the number of times the action was chosen */
+  long getActionCount(Action action) {
+    return actionCounts.get(action).sum();
+  }
+
+  // the number of segments in the pipeline above which they are merged
+  protected int getPipelineThreshold() {
+    return pipelineThreshold;
+  }
+
   protected Action simpleMergeOrFlatten(VersionedSegmentsList versionedList, String strategy) {
     int numOfSegments = versionedList.getNumOfSegments();
-    if (numOfSegments > pipelineThreshold) {
+    if (numOfSegments > getPipelineThreshold()) {
       // to avoid too many segments, merge now
       LOG.trace("Strategy={}, store={}; merging {} segments", strategy, cfName, numOfSegments);
       return getMergingAction();
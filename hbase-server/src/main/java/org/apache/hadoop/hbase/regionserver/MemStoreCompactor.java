@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.MemoryCompactionPolicy;
 import org.apache.hadoop.hbase.exceptions.IllegalArgumentIOException;
@@ -123,6 +124,19 @@ public class MemStoreCompactor {
     strategy.resetStats();
   }
 
+  void sampleAdd(MutableSegment active, Cell cell) {
+    strategy.sampleAdd(active, cell);
+  }
+
+  void activePushedToPipeline() {
+    strategy.activePushedToPipeline();
+  }
+
+  /** Returns the number of times the in-memory compaction strategy chose the action */
+  long getActionCount(MemStoreCompactionStrategy.Action action) {
+    return strategy.getActionCount(action);
+  }
+
   /**
    * ---------------------------------------------------------------------- Reset the interruption
    * indicator and clear the pointers in order to allow good garbage collection
@@ -141,6 +155,7 @@ public class MemStoreCompactor {
     ImmutableSegment result = null;
     boolean resultSwapped = false;
     MemStoreCompactionStrategy.Action nextStep = strategy.getAction(versionedList);
+    strategy.recordAction(nextStep);
     boolean merge = (nextStep == MemStoreCompactionStrategy.Action.MERGE
       || nextStep == MemStoreCompactionStrategy.Action.MERGE_COUNT_UNIQUE_KEYS);
     try {
@@ -250,7 +265,14 @@ public class MemStoreCompactor {
         strategy = new EagerMemStoreCompactionStrategy(configuration, cfName);
         break;
       case ADAPTIVE:
-        strategy = new AdaptiveMemStoreCompactionStrategy(configuration, cfName);
+        if (
+          configuration.getInt(SamplingMemStoreCompactionStrategy.SAMPLE_INTERVAL_KEY,
+            SamplingMemStoreCompactionStrategy.SAMPLE_INTERVAL_DEFAULT) > 0
+        ) {
+          strategy = new SamplingMemStoreCompactionStrategy(configuration, cfName);
+        } else {
+          strategy = new AdaptiveMemStoreCompactionStrategy(configuration, cfName);
+        }
         break;
       default:
         // sanity check
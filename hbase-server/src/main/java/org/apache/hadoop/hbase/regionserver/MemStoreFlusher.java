@@ -49,6 +49,7 @@ import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.hadoop.hbase.util.ServerRegionReplicaUtil;
 import org.apache.hadoop.hbase.util.Threads;
 import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.util.StringUtils.TraditionalBinaryPrefix;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
@@ -82,6 +83,7 @@ public class MemStoreFlusher implements FlushRequester {
   private final LongAdder updatesBlockedMsHighWater = new LongAdder();
 
   private final FlushHandler[] flushHandlers;
+  private final GlobalFlushPolicy globalFlushPolicy;
   private List<FlushRequestListener> flushRequestListeners = new ArrayList<>(1);
 
   /**
@@ -134,6 +136,11 @@ public class MemStoreFlusher implements FlushRequester {
         + ", Offheap=" + (this.server.getRegionServerAccounting().isOffheap()));
     }
     this.flushHandlers = new FlushHandler[handlerCount];
+    Class<? extends GlobalFlushPolicy> globalFlushPolicyClass =
+      conf.getClass(GlobalFlushPolicy.GLOBAL_FLUSH_POLICY_KEY, null, GlobalFlushPolicy.class);
+    this.globalFlushPolicy = globalFlushPolicyClass == null
+      ? null
+      : ReflectionUtils.newInstance(globalFlushPolicyClass, conf);
   }
 
   public LongAdder getUpdatesBlockedMsHighWater() {
@@ -179,7 +186,10 @@ public class MemStoreFlusher implements FlushRequester {
         return false;
       }
 
-      HRegion regionToFlush;
+      HRegion regionToFlush = globalFlushPolicy == null
+        ? null
+        : globalFlushPolicy.selectRegionToFlush(
+          getFlushCandidates(regionsBySize, excludedRegions), flushType);
       long bestAnyRegionSize;
       long bestFlushableRegionSize;
       switch (flushType) {
@@ -199,7 +209,10 @@ public class MemStoreFlusher implements FlushRequester {
           bestAnyRegionSize = bestAnyRegion.getMemStoreDataSize();
           bestFlushableRegionSize = getMemStoreDataSize(bestFlushableRegion);
       }
-      if (bestAnyRegionSize > 2 * bestFlushableRegionSize) {
+      if (regionToFlush != null) {
+        LOG.debug("Under global heap pressure: region {} selected by {}", regionToFlush,
+          globalFlushPolicy.getClass().getSimpleName());
+      } else if (bestAnyRegionSize > 2 * bestFlushableRegionSize) {
         // Even if it's not supposed to be flushed, pick a region if it's more than twice
         // as big as the best flushable one - otherwise when we're under pressure we make
         // lots of little flushes and cause lots of compactions, etc, which just makes
@@ -396,6 +409,26 @@ public class MemStoreFlusher implements FlushRequester {
     return null;
   }
 
+  private List<HRegion> getFlushCandidates(SortedMap<Long, Collection<HRegion>> regionsBySize,
+    Set<HRegion> excludedRegions) {
+    List<HRegion> candidates = new ArrayList<>();
+    synchronized (regionsInQueue) {
+      for (Collection<HRegion> regions : regionsBySize.values()) {
+        for (HRegion region : regions) {
+          if (
+            excludedRegions.contains(region) || region.writestate.flushing
+              || !region.writestate.writesEnabled
+              || !RegionReplicaUtil.isDefaultReplica(region.getRegionInfo())
+          ) {
+            continue;
+          }
+          candidates.add(region);
+        }
+      }
+    }
+    return candidates;
+  }
+
   private HRegion getBiggestMemStoreOfRegionReplica(
     SortedMap<Long, Collection<HRegion>> regionsBySize, Set<HRegion> excludedRegions) {
     synchronized (regionsInQueue) {
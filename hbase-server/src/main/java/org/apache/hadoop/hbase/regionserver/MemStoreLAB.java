@@ -63,6 +63,21 @@ public interface MemStoreLAB {
   String CHUNK_POOL_INITIALSIZE_KEY = "hbase.hregion.memstore.chunkpool.initialsize";
   float POOL_MAX_SIZE_DEFAULT = 1.0f;
   float POOL_INITIAL_SIZE_DEFAULT = 0.0f;
+  /**
+   * Number of stripes of reclaimed chunks each pool keeps in front of its shared queue. Writer
+   * threads first look in the stripe picked by their thread id, so they do not all contend on the
+   * one queue. 0 disables the stripes.
+   */
+  String CHUNK_POOL_CACHE_STRIPES_KEY = "hbase.hregion.memstore.chunkpool.cache.stripes";
+  int POOL_CACHE_STRIPES_DEFAULT = 0;
+  /**
+   * Whether the active segment indexes its cells with a {@link CellChunkSkipListMap} on the index
+   * chunks, which are off-heap with an off-heap chunk pool, instead of a ConcurrentSkipListMap on
+   * heap. The nodes are on the chunks, only their links stay on heap. Off by default, as every
+   * cell is then copied into the MSLAB, the big cells included.
+   */
+  String CHUNK_SKIPLIST_INDEX_KEY = "hbase.hregion.memstore.mslab.chunkskiplist.index";
+  boolean CHUNK_SKIPLIST_INDEX_DEFAULT = false;
 
   /**
    * Allocates slice in this LAB and copy the passed Cell into this area. Returns new Cell instance
@@ -154,7 +154,8 @@ public class MemStoreLABImpl implements MemStoreLAB {
     }
     Chunk c = null;
     int allocOffset = 0;
-    while (true) {
+    int retries = 0;
+    for (;; retries++) {
       // Try to get the chunk
       c = getOrMakeChunk();
       // We may get null because the some other thread succeeded in getting the lock
@@ -173,6 +174,9 @@ public class MemStoreLABImpl implements MemStoreLAB {
         tryRetireChunk(c);
       }
     }
+    if (retries > 0) {
+      chunkCreator.incrChunkAllocRetries(retries);
+    }
     return copyBBECToChunkCell(cell, c.getData(), allocOffset, size);
   }
 
@@ -189,7 +193,8 @@ public class MemStoreLABImpl implements MemStoreLAB {
     }
     Chunk c = null;
     int allocOffset = 0;
-    while (true) {
+    int retries = 0;
+    for (;; retries++) {
       // Try to get the chunk
       c = getOrMakeChunk();
       // we may get null because the some other thread succeeded in getting the lock
@@ -208,6 +213,9 @@ public class MemStoreLABImpl implements MemStoreLAB {
         tryRetireChunk(c);
       }
     }
+    if (retries > 0) {
+      chunkCreator.incrChunkAllocRetries(retries);
+    }
     return copyToChunkCell(cell, c.getData(), allocOffset, size);
   }
 
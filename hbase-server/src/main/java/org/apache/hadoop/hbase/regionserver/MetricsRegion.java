@@ -70,6 +70,10 @@ public class MetricsRegion {
     source.updateIncrement();
   }
 
+  public void updateRowLockWait(final long micros) {
+    source.updateRowLockWait(micros);
+  }
+
   MetricsRegionSource getSource() {
     return source;
   }
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hbase.regionserver;
 
+import java.util.concurrent.TimeUnit;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.CompatibilitySingletonFactory;
 import org.apache.hadoop.hbase.TableName;
@@ -212,11 +213,44 @@ public class MetricsRegionServer {
     userAggregate.updateAppend(t);
   }
 
+  public void incrRowCacheHit() {
+    serverSource.incrRowCacheHit();
+  }
+
+  public void incrRowCacheMiss() {
+    serverSource.incrRowCacheMiss();
+  }
+
+  /**
+   * Updates the latency of the phases of a mini-batch of mutations, given in nanoseconds. Only
+   * called for the batches which pipeline their mini-batches.
+   * @param pipelined whether the mini-batch was locked and prepared while the WAL sync of the
+   *                  previous one was in flight
+   */
+  public void updateMiniBatch(long lockTime, long prepareTime, long walTime, long memStoreTime,
+    boolean pipelined) {
+    serverSource.updateMiniBatch(TimeUnit.NANOSECONDS.toMicros(lockTime),
+      TimeUnit.NANOSECONDS.toMicros(prepareTime), TimeUnit.NANOSECONDS.toMicros(walTime),
+      TimeUnit.NANOSECONDS.toMicros(memStoreTime));
+    if (pipelined) {
+      serverSource.incrPipelinedMiniBatch();
+    }
+  }
+
   public void updateReplay(long t) {
     serverSource.updateReplay(t);
     userAggregate.updateReplay(t);
   }
 
+  /**
+   * Updates the metrics of the replay of a recovered edits file at region open.
+   * @param t     time it took, in milliseconds
+   * @param edits the number of edits applied to the memstore
+   */
+  public void updateRecoveredEditsReplay(long t, long edits) {
+    serverSource.updateRecoveredEditsReplay(t, edits);
+  }
+
   public void updateScanSize(TableName tn, long scanSize) {
     if (tableMetrics != null && tn != null) {
       tableMetrics.updateScanSize(tn, scanSize);
@@ -80,6 +80,9 @@ class MetricsRegionServerWrapperImpl implements MetricsRegionServerWrapper {
   private volatile long memstoreSize = 0;
   private volatile long onHeapMemstoreSize = 0;
   private volatile long offHeapMemstoreSize = 0;
+  private volatile long inMemoryFlattenCount = 0;
+  private volatile long inMemoryMergeCount = 0;
+  private volatile long inMemoryCompactionCount = 0;
   private volatile long storeFileSize = 0;
   private volatile double storeFileSizeGrowthRate = 0;
   private volatile long maxStoreFileCount = 0;
@@ -534,6 +537,45 @@ class MetricsRegionServerWrapperImpl implements MetricsRegionServerWrapper {
     return offHeapMemstoreSize;
   }
 
+  @Override
+  public long getInMemoryFlattenCount() {
+    return inMemoryFlattenCount;
+  }
+
+  @Override
+  public long getInMemoryMergeCount() {
+    return inMemoryMergeCount;
+  }
+
+  @Override
+  public long getInMemoryCompactionCount() {
+    return inMemoryCompactionCount;
+  }
+
+  @Override
+  public long getMemStoreIndexChunkPoolMissCount() {
+    ChunkCreator chunkCreator = ChunkCreator.getInstance();
+    return chunkCreator != null ? chunkCreator.getIndexChunkPoolMissCount() : 0L;
+  }
+
+  @Override
+  public long getMemStoreDataChunkPoolMissCount() {
+    ChunkCreator chunkCreator = ChunkCreator.getInstance();
+    return chunkCreator != null ? chunkCreator.getDataChunkPoolMissCount() : 0L;
+  }
+
+  @Override
+  public long getMemStoreChunkAllocRetryCount() {
+    ChunkCreator chunkCreator = ChunkCreator.getInstance();
+    return chunkCreator != null ? chunkCreator.getChunkAllocRetryCount() : 0L;
+  }
+
+  @Override
+  public long getMemStoreJumboChunkCount() {
+    ChunkCreator chunkCreator = ChunkCreator.getInstance();
+    return chunkCreator != null ? chunkCreator.getJumboChunkCount() : 0L;
+  }
+
   @Override
   public long getStoreFileSize() {
     return storeFileSize;
@@ -796,6 +838,8 @@ class MetricsRegionServerWrapperImpl implements MetricsRegionServerWrapper {
 
         long tempNumStores = 0, tempNumStoreFiles = 0, tempStoreFileSize = 0;
         long tempMemstoreSize = 0, tempOnHeapMemstoreSize = 0, tempOffHeapMemstoreSize = 0;
+        long tempInMemoryFlattenCount = 0, tempInMemoryMergeCount = 0;
+        long tempInMemoryCompactionCount = 0;
         long tempMaxStoreFileAge = 0, tempNumReferenceFiles = 0;
         long tempMaxStoreFileCount = 0;
         long avgAgeNumerator = 0, numHFiles = 0;
@@ -875,13 +919,23 @@ class MetricsRegionServerWrapperImpl implements MetricsRegionServerWrapper {
           tempCheckAndMutateChecksFailed += r.getCheckAndMutateChecksFailed();
           tempCheckAndMutateChecksPassed += r.getCheckAndMutateChecksPassed();
           tempBlockedRequestsCount += r.getBlockedRequestsCount();
-          List<? extends Store> storeList = r.getStores();
+          List<HStore> storeList = r.getStores();
           tempNumStores += storeList.size();
-          for (Store store : storeList) {
+          for (HStore store : storeList) {
             tempNumStoreFiles += store.getStorefilesCount();
             tempMemstoreSize += store.getMemStoreSize().getDataSize();
             tempOnHeapMemstoreSize += store.getMemStoreSize().getHeapSize();
             tempOffHeapMemstoreSize += store.getMemStoreSize().getOffHeapSize();
+            tempInMemoryFlattenCount +=
+              store.getInMemoryCompactionActionCount(MemStoreCompactionStrategy.Action.FLATTEN)
+                + store.getInMemoryCompactionActionCount(
+                  MemStoreCompactionStrategy.Action.FLATTEN_COUNT_UNIQUE_KEYS);
+            tempInMemoryMergeCount +=
+              store.getInMemoryCompactionActionCount(MemStoreCompactionStrategy.Action.MERGE)
+                + store.getInMemoryCompactionActionCount(
+                  MemStoreCompactionStrategy.Action.MERGE_COUNT_UNIQUE_KEYS);
+            tempInMemoryCompactionCount +=
+              store.getInMemoryCompactionActionCount(MemStoreCompactionStrategy.Action.COMPACT);
             tempStoreFileSize += store.getStorefilesSize();
 
             tempMaxStoreFileCount = Math.max(tempMaxStoreFileCount, store.getStorefilesCount());
@@ -994,6 +1048,9 @@ class MetricsRegionServerWrapperImpl implements MetricsRegionServerWrapper {
         memstoreSize = tempMemstoreSize;
         onHeapMemstoreSize = tempOnHeapMemstoreSize;
         offHeapMemstoreSize = tempOffHeapMemstoreSize;
+        inMemoryFlattenCount = tempInMemoryFlattenCount;
+        inMemoryMergeCount = tempInMemoryMergeCount;
+        inMemoryCompactionCount = tempInMemoryCompactionCount;
         storeFileSize = tempStoreFileSize;
         maxStoreFileCount = tempMaxStoreFileCount;
         maxStoreFileAge = tempMaxStoreFileAge;
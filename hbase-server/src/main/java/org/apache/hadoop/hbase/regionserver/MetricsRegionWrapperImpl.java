@@ -50,6 +50,7 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
   private long storeRefCount;
   private long maxCompactedStoreFileRefCount;
   private long memstoreSize;
+  private long memstoreIndexOffHeapSize;
   private long storeFileSize;
   private long maxStoreFileAge;
   private long minStoreFileAge;
@@ -59,6 +60,8 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
   private long maxCompactionQueueSize;
   private Map<String, Long> readsOnlyFromMemstore;
   private Map<String, Long> mixedReadsOnStore;
+  private Map<String, Long> flushWriteTime;
+  private Map<String, Long> flushCommitTime;
 
   private ScheduledFuture<?> regionMetricsUpdateTask;
 
@@ -116,6 +119,11 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
     return memstoreSize;
   }
 
+  @Override
+  public long getMemStoreIndexOffHeapSize() {
+    return memstoreIndexOffHeapSize;
+  }
+
   @Override
   public long getStoreFileSize() {
     return storeFileSize;
@@ -243,6 +251,16 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
     return mixedReadsOnStore;
   }
 
+  @Override
+  public Map<String, Long> getFlushWriteTime() {
+    return flushWriteTime;
+  }
+
+  @Override
+  public Map<String, Long> getFlushCommitTime() {
+    return flushCommitTime;
+  }
+
   public class HRegionMetricsWrapperRunnable implements Runnable {
 
     @Override
@@ -251,6 +269,7 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
       int tempStoreRefCount = 0;
       int tempMaxCompactedStoreFileRefCount = 0;
       long tempMemstoreSize = 0;
+      long tempMemstoreIndexOffHeapSize = 0;
       long tempStoreFileSize = 0;
       long tempMaxStoreFileAge = 0;
       long tempMinStoreFileAge = Long.MAX_VALUE;
@@ -259,6 +278,8 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
       long tempMaxFlushQueueSize = 0;
       long avgAgeNumerator = 0;
       long numHFiles = 0;
+      Map<String, Long> tempFlushWriteTime = new HashMap<>();
+      Map<String, Long> tempFlushCommitTime = new HashMap<>();
       if (region.stores != null) {
         for (HStore store : region.stores.values()) {
           tempNumStoreFiles += store.getStorefilesCount();
@@ -268,6 +289,7 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
           tempMaxCompactedStoreFileRefCount =
             Math.max(tempMaxCompactedStoreFileRefCount, currentMaxCompactedStoreFileRefCount);
           tempMemstoreSize += store.getMemStoreSize().getDataSize();
+          tempMemstoreIndexOffHeapSize += store.getMemStoreIndexOffHeapSize();
           tempStoreFileSize += store.getStorefilesSize();
           OptionalLong storeMaxStoreFileAge = store.getMaxStoreFileAge();
           if (
@@ -313,6 +335,8 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
             tempVal += store.getMemstoreOnlyRowReadsCount();
           }
           readsOnlyFromMemstore.put(store.getColumnFamilyName(), tempVal);
+          tempFlushWriteTime.put(store.getColumnFamilyName(), store.getFlushWriteTime());
+          tempFlushCommitTime.put(store.getColumnFamilyName(), store.getFlushCommitTime());
         }
       }
 
@@ -320,6 +344,9 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
       storeRefCount = tempStoreRefCount;
       maxCompactedStoreFileRefCount = tempMaxCompactedStoreFileRefCount;
       memstoreSize = tempMemstoreSize;
+      memstoreIndexOffHeapSize = tempMemstoreIndexOffHeapSize;
+      flushWriteTime = tempFlushWriteTime;
+      flushCommitTime = tempFlushCommitTime;
       storeFileSize = tempStoreFileSize;
       maxStoreFileAge = tempMaxStoreFileAge;
       if (tempMinStoreFileAge != Long.MAX_VALUE) {
@@ -20,6 +20,8 @@ package org.apache.hadoop.hbase.regionserver;
 import java.util.LinkedList;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.ClassSize;
 import org.apache.yetus.audience.InterfaceAudience;
@@ -64,6 +66,26 @@ public class MultiVersionConcurrencyControl {
     this.regionName = regionName;
   }
 
+  /**
+   * Creates the mvcc of a region, which is a {@link RingMultiVersionConcurrencyControl} if
+   * {@link RingMultiVersionConcurrencyControl#RING_ENABLED_KEY} is set in the given configuration,
+   * e.g. as an attribute of the table. The ring holds at least four writes per handler, as a handler
+   * may begin a write while it has not completed another one.
+   */
+  static MultiVersionConcurrencyControl create(String regionName, Configuration conf) {
+    if (
+      conf.getBoolean(RingMultiVersionConcurrencyControl.RING_ENABLED_KEY,
+        RingMultiVersionConcurrencyControl.DEFAULT_RING_ENABLED)
+    ) {
+      int handlers = conf.getInt(HConstants.REGION_SERVER_HANDLER_COUNT,
+        HConstants.DEFAULT_REGION_SERVER_HANDLER_COUNT);
+      return new RingMultiVersionConcurrencyControl(regionName,
+        Math.max(4 * handlers, conf.getInt(RingMultiVersionConcurrencyControl.RING_SIZE_KEY,
+          RingMultiVersionConcurrencyControl.DEFAULT_RING_SIZE)));
+    }
+    return new MultiVersionConcurrencyControl(regionName);
+  }
+
   /**
    * Construct and set read point. Write point is uninitialized.
    */
@@ -267,22 +289,22 @@ public class MultiVersionConcurrencyControl {
   @InterfaceAudience.Private
   public static final class WriteEntry {
     private final long writeNumber;
-    private boolean completed = false;
+    private volatile boolean completed = false;
     /**
      * Will be called after completion, i.e, when being removed from the
      * {@link MultiVersionConcurrencyControl#writeQueue}.
      */
     private Optional<Runnable> completionAction = Optional.empty();
 
-    private WriteEntry(long writeNumber) {
+    WriteEntry(long writeNumber) {
       this.writeNumber = writeNumber;
     }
 
-    private void markCompleted() {
+    void markCompleted() {
       this.completed = true;
     }
 
-    private boolean isCompleted() {
+    boolean isCompleted() {
       return this.completed;
     }
 
@@ -291,7 +313,7 @@ public class MultiVersionConcurrencyControl {
       completionAction = Optional.of(action);
     }
 
-    private void runCompletionAction() {
+    void runCompletionAction() {
       completionAction.ifPresent(Runnable::run);
     }
 
@@ -74,8 +74,8 @@ public class MutableSegment extends Segment {
     while (it.hasNext()) {
       Cell cur = it.next();
 
-      if (cell == cur) {
-        // ignore the one just put in
+      // ignore the one just put in, an index on chunks returns a copy of it
+      if (cell == cur || getComparator().compare(cell, cur) == 0) {
         continue;
       }
       // check that this is the row and column we are interested in, otherwise bail
@@ -114,6 +114,20 @@ public class MutableSegment extends Segment {
     return flushed.compareAndSet(false, true);
   }
 
+  /**
+   * Returns whether the segment holds another cell of the same row and column as the given cell.
+   * The versions of a column are next to each other in the segment.
+   */
+  boolean containsOtherVersion(Cell cell) {
+    CellSet set = getCellSet();
+    Cell other = set.higher(cell);
+    if (other != null && CellUtil.matchingRowColumn(cell, other)) {
+      return true;
+    }
+    other = set.lower(cell);
+    return other != null && CellUtil.matchingRowColumn(cell, other);
+  }
+
   /**
    * Returns the first cell in the segment
    * @return the first cell in the segment
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Applies the cells replayed from recovered edits to the memstores of a region, one task per store,
+ * with the stores applied in parallel.
+ * <p>
+ * The cells are queued by store in the order they are read, and applied in batches of
+ * {@link HRegion#RECOVERED_EDITS_REPLAY_BATCH_SIZE} cells. The order of the cells of a store is
+ * kept, and the stores do not share anything, so the memstores end up the same as with the
+ * sequential replay.
+ * <p>
+ * Not thread safe, only used by the thread opening the region.
+ */
+@InterfaceAudience.Private
+class ParallelRecoveredEditsReplayer {
+
+  private final HRegion region;
+
+  private final ExecutorService pool;
+
+  private final int batchSize;
+
+  private final Map<HStore, List<Cell>> pending = new HashMap<>();
+
+  private int pendingCells;
+
+  ParallelRecoveredEditsReplayer(HRegion region, ExecutorService pool, int batchSize) {
+    this.region = region;
+    this.pool = pool;
+    this.batchSize = batchSize;
+  }
+
+  void add(HStore store, Cell cell) {
+    pending.computeIfAbsent(store, s -> new ArrayList<>()).add(cell);
+    pendingCells++;
+  }
+
+  boolean isBatchFull() {
+    return pendingCells >= batchSize;
+  }
+
+  private MemStoreSize restore(HStore store, List<Cell> cells) {
+    MemStoreSizing memStoreSizing = new NonThreadSafeMemStoreSizing();
+    for (Cell cell : cells) {
+      region.restoreEdit(store, cell, memStoreSizing);
+    }
+    return memStoreSizing.getMemStoreSize();
+  }
+
+  /**
+   * Applies the queued cells and waits for them to be in the memstores.
+   * @return the size the memstores of the region grew by
+   */
+  MemStoreSize apply() throws IOException {
+    MemStoreSizing memStoreSizing = new NonThreadSafeMemStoreSizing();
+    if (pending.size() == 1) {
+      // no need to hand the cells of a single store to another thread
+      Map.Entry<HStore, List<Cell>> entry = pending.entrySet().iterator().next();
+      memStoreSizing.incMemStoreSize(restore(entry.getKey(), entry.getValue()));
+    } else if (!pending.isEmpty()) {
+      List<Future<MemStoreSize>> futures = new ArrayList<>(pending.size());
+      for (Map.Entry<HStore, List<Cell>> entry : pending.entrySet()) {
+        HStore store = entry.getKey();
+        List<Cell> cells = entry.getValue();
+        futures.add(pool.submit(() -> restore(store, cells)));
+      }
+      try {
+        for (Future<MemStoreSize> future : futures) {
+          memStoreSizing.incMemStoreSize(future.get());
+        }
+      } catch (InterruptedException e) {
+        throw (InterruptedIOException) new InterruptedIOException(
+          "Interrupted while replaying recovered edits of " + region).initCause(e);
+      } catch (ExecutionException e) {
+        throw new IOException(e.getCause());
+      }
+    }
+    pending.clear();
+    pendingCells = 0;
+    return memStoreSizing.getMemStoreSize();
+  }
+}
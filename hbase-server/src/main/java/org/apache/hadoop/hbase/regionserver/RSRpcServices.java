@@ -239,6 +239,7 @@ import org.apache.hadoop.hbase.shaded.protobuf.generated.QuotaProtos.GetSpaceQuo
 import org.apache.hadoop.hbase.shaded.protobuf.generated.QuotaProtos.GetSpaceQuotaSnapshotsResponse;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.QuotaProtos.GetSpaceQuotaSnapshotsResponse.TableQuotaSnapshot;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.RegistryProtos.ClientMetaService;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.Attribute;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.BulkLoadDescriptor;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.CompactionDescriptor;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.FlushDescriptor;
@@ -2105,6 +2106,12 @@ public class RSRpcServices extends HBaseRpcServicesBase<HRegionServer>
           long nonce = entry.getKey().hasNonce() ? entry.getKey().getNonce() : HConstants.NO_NONCE;
           server.nonceManager.reportOperationFromWal(nonceGroup, nonce,
             entry.getKey().getWriteTime());
+          for (Attribute attribute : entry.getKey().getExtendedAttributesList()) {
+            if (DeltaCoalescer.NONCES_ATTRIBUTE.equals(attribute.getKey())) {
+              DeltaCoalescer.reportNoncesFromWal(server.nonceManager,
+                attribute.getValue().toByteArray(), entry.getKey().getWriteTime());
+            }
+          }
         }
         Pair<WALKey, WALEdit> walEntry = (coprocessorHost == null) ? null : new Pair<>();
         List<MutationReplay> edits =
@@ -107,6 +107,17 @@ public class RegionCoprocessorHost
     return hasCustomPostScannerFilterRow;
   }
 
+  // whether any coprocessor implements preBatchMutate or postBatchMutate
+  private final boolean hasCustomBatchMutateHooks;
+
+  /**
+   * Whether any configured CPs override the preBatchMutate or postBatchMutate hooks, which expect
+   * the mini-batches of a batch to be done one after the other
+   */
+  public boolean hasCustomBatchMutateHooks() {
+    return hasCustomBatchMutateHooks;
+  }
+
   /**
    * Encapsulation of the environment of each coprocessor
    */
@@ -307,6 +318,26 @@ public class RegionCoprocessorHost
       }
     }
     this.hasCustomPostScannerFilterRow = hasCustomPostScannerFilterRow;
+
+    boolean hasCustomBatchMutateHooks = false;
+    out: for (RegionCoprocessorEnvironment env : coprocEnvironments) {
+      if (env.getInstance() instanceof RegionObserver) {
+        Class<?> clazz = env.getInstance().getClass();
+        while (clazz != Object.class) {
+          for (String hook : new String[] { "preBatchMutate", "postBatchMutate" }) {
+            try {
+              clazz.getDeclaredMethod(hook, ObserverContext.class,
+                MiniBatchOperationInProgress.class);
+              hasCustomBatchMutateHooks = true;
+              break out;
+            } catch (NoSuchMethodException ignore) {
+            }
+          }
+          clazz = clazz.getSuperclass();
+        }
+      }
+    }
+    this.hasCustomBatchMutateHooks = hasCustomBatchMutateHooks;
   }
 
   static List<TableCoprocessorAttribute> getTableCoprocessorAttrsFromSchema(Configuration conf,
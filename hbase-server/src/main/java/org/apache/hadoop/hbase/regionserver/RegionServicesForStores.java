@@ -42,6 +42,7 @@ public class RegionServicesForStores {
   private final HRegion region;
   private final RegionServerServices rsServices;
   private int inMemoryPoolSize;
+  private final int storeFlushPoolSize;
 
   public RegionServicesForStores(HRegion region, RegionServerServices rsServices) {
     this.region = region;
@@ -50,6 +51,11 @@ public class RegionServicesForStores {
       this.inMemoryPoolSize =
         rsServices.getConfiguration().getInt(CompactingMemStore.IN_MEMORY_CONPACTION_POOL_SIZE_KEY,
           CompactingMemStore.IN_MEMORY_CONPACTION_POOL_SIZE_DEFAULT);
+      this.storeFlushPoolSize = rsServices.getConfiguration()
+        .getInt(HRegion.FLUSH_STORE_THREADS_KEY, HRegion.DEFAULT_FLUSH_STORE_THREADS);
+    } else {
+      this.storeFlushPoolSize = region.getBaseConf().getInt(HRegion.FLUSH_STORE_THREADS_KEY,
+        HRegion.DEFAULT_FLUSH_STORE_THREADS);
     }
   }
 
@@ -106,6 +112,36 @@ public class RegionServicesForStores {
     }
   }
 
+  private static ThreadPoolExecutor STORE_FLUSH_POOL_FOR_TEST;
+
+  private static synchronized ThreadPoolExecutor getStoreFlushPoolForTest() {
+    if (STORE_FLUSH_POOL_FOR_TEST == null) {
+      STORE_FLUSH_POOL_FOR_TEST = new ThreadPoolExecutor(10, 10, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("StoreFlushForTest-%d").build());
+    }
+    return STORE_FLUSH_POOL_FOR_TEST;
+  }
+
+  /**
+   * Returns the pool shared by all the regions of the region server to write out the stores of a
+   * flush concurrently, or null if the stores should be written out one after the other.
+   */
+  ThreadPoolExecutor getStoreFlushPool() {
+    if (storeFlushPoolSize <= 0) {
+      return null;
+    }
+    if (rsServices != null) {
+      ExecutorService executorService = rsServices.getExecutorService();
+      ExecutorConfig config = executorService.new ExecutorConfig()
+        .setExecutorType(ExecutorType.RS_FLUSH_STORE_OPS).setCorePoolSize(storeFlushPoolSize);
+      return executorService.getExecutorLazily(config);
+    } else {
+      // this could only happen in tests
+      return getStoreFlushPoolForTest();
+    }
+  }
+
   public long getMemStoreFlushSize() {
     return region.getMemStoreFlushSize();
   }
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link MultiVersionConcurrencyControl} which does not serialize writers on a monitor. The
+ * pending writes are kept in a ring indexed by write number, so that a write only has to mark its
+ * entry completed. The thread which wins the right to advance the read point retires all the
+ * completed writes following the read point, in order, and publishes the read point once for the
+ * whole batch. Writers waiting for their write to become visible spin for a while before blocking,
+ * and the monitor they block on is only notified when there are such writers.
+ * <p>
+ * Only the writes which run an action on {@link #begin(Runnable)}, i.e. WAL appends, still get
+ * their write number under a lock, as the action has to keep the order of the write numbers. A new
+ * write waits for the one a ring size before it to be retired, so the ring should be larger than
+ * the number of handlers which can write to the region.
+ */
+@InterfaceAudience.Private
+public class RingMultiVersionConcurrencyControl extends MultiVersionConcurrencyControl {
+  private static final Logger LOG =
+    LoggerFactory.getLogger(RingMultiVersionConcurrencyControl.class);
+
+  /** Whether the regions use this mvcc. May be set per table, as a table attribute. */
+  public static final String RING_ENABLED_KEY = "hbase.regionserver.mvcc.ring.enabled";
+  public static final boolean DEFAULT_RING_ENABLED = false;
+
+  /** The number of pending writes the ring can hold, rounded up to a power of two. */
+  public static final String RING_SIZE_KEY = "hbase.regionserver.mvcc.ring.size";
+  public static final int DEFAULT_RING_SIZE = 1024;
+
+  private static final int SPINS_BEFORE_BLOCKING = 64;
+  private static final long READPOINT_ADVANCE_WAIT_TIME = 10L;
+
+  private final AtomicReferenceArray<WriteEntry> ring;
+  private final int mask;
+  private final Object beginLock = new Object();
+  private final AtomicBoolean advancing = new AtomicBoolean();
+  private final Object readWaiters = new Object();
+  private final AtomicInteger readWaiterCount = new AtomicInteger();
+
+  public RingMultiVersionConcurrencyControl(String regionName, int ringSize) {
+    super(regionName);
+    int size = Integer.highestOneBit(Math.max(2, Math.min(ringSize, 1 << 30)) - 1) << 1;
+    this.ring = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  @Override
+  boolean tryAdvanceTo(long newStartPoint, long expected) {
+    // Holding the right to advance keeps the read point from moving under us
+    while (!advancing.compareAndSet(false, true)) {
+      Thread.yield();
+    }
+    try {
+      for (;;) {
+        long currentRead = readPoint.get();
+        long currentWrite = writePoint.get();
+        if (currentRead != currentWrite) {
+          throw new RuntimeException("Already used this mvcc; currentRead=" + currentRead
+            + ", currentWrite=" + currentWrite + "; too late to tryAdvanceTo");
+        }
+        if (expected != NONE && expected != currentRead) {
+          return false;
+        }
+        if (newStartPoint < currentRead) {
+          return false;
+        }
+        // Fails if a write began since we read the write point, which the next round reports
+        if (writePoint.compareAndSet(currentWrite, newStartPoint)) {
+          readPoint.set(newStartPoint);
+          return true;
+        }
+      }
+    } finally {
+      advancing.set(false);
+    }
+  }
+
+  @Override
+  public WriteEntry begin() {
+    return enqueue(writePoint.incrementAndGet());
+  }
+
+  @Override
+  public WriteEntry begin(Runnable action) {
+    synchronized (beginLock) {
+      WriteEntry e = enqueue(writePoint.incrementAndGet());
+      action.run();
+      return e;
+    }
+  }
+
+  private WriteEntry enqueue(long writeNumber) {
+    WriteEntry e = new WriteEntry(writeNumber);
+    // Wait for the write a ring size before this one to be retired. Waiting for its slot to be
+    // empty is not enough, as the write a ring size after this one could then take it first.
+    for (int spins = 0; writeNumber - ring.length() > readPoint.get(); spins++) {
+      if (spins < SPINS_BEFORE_BLOCKING) {
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+      }
+    }
+    ring.set(indexOf(writeNumber), e);
+    return e;
+  }
+
+  @Override
+  public boolean complete(WriteEntry writeEntry) {
+    writeEntry.markCompleted();
+    advance();
+    return readPoint.get() >= writeEntry.getWriteNumber();
+  }
+
+  /**
+   * Retires the completed writes following the read point and publishes the new read point, unless
+   * another thread is doing it. That thread will then see our completed write, as it checks the
+   * head of the ring again once it has given up the right to advance.
+   */
+  private void advance() {
+    while (isHeadCompleted() && advancing.compareAndSet(false, true)) {
+      try {
+        long read = readPoint.get();
+        long next = read;
+        for (;;) {
+          int index = indexOf(next + 1);
+          WriteEntry e = ring.get(index);
+          if (e == null || e.getWriteNumber() != next + 1 || !e.isCompleted()) {
+            break;
+          }
+          ring.set(index, null);
+          next++;
+          e.runCompletionAction();
+        }
+        if (next > read) {
+          readPoint.set(next);
+          if (readWaiterCount.get() > 0) {
+            synchronized (readWaiters) {
+              readWaiters.notifyAll();
+            }
+          }
+        }
+      } finally {
+        advancing.set(false);
+      }
+    }
+  }
+
+  private boolean isHeadCompleted() {
+    long head = readPoint.get() + 1;
+    WriteEntry e = ring.get(indexOf(head));
+    return e != null && e.getWriteNumber() == head && e.isCompleted();
+  }
+
+  @Override
+  void waitForRead(WriteEntry e) {
+    for (int spins = 0; spins < SPINS_BEFORE_BLOCKING; spins++) {
+      if (readPoint.get() >= e.getWriteNumber()) {
+        return;
+      }
+      Thread.yield();
+    }
+    boolean interrupted = false;
+    int count = 0;
+    readWaiterCount.incrementAndGet();
+    try {
+      synchronized (readWaiters) {
+        while (readPoint.get() < e.getWriteNumber()) {
+          if (count % 100 == 0 && count > 0) {
+            long totalWaitTillNow = READPOINT_ADVANCE_WAIT_TIME * count;
+            LOG.warn("STUCK for : " + totalWaitTillNow + " millis. " + this);
+          }
+          count++;
+          try {
+            readWaiters.wait(READPOINT_ADVANCE_WAIT_TIME);
+          } catch (InterruptedException ie) {
+            // Finish waiting, then reset the interrupt flag on our way out
+            interrupted = true;
+          }
+        }
+      }
+    } finally {
+      readWaiterCount.decrementAndGet();
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private int indexOf(long writeNumber) {
+    return (int) (writeNumber & mask);
+  }
+}
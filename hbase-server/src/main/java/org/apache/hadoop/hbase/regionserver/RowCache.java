@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptor;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.IsolationLevel;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.hadoop.hbase.util.HashedBytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Caches the fully materialized cells of recently read rows of one column family of one region, so
+ * that repeated Gets of the same hot rows skip the store scanners and the block cache. Enabled per
+ * family with {@link ColumnFamilyDescriptor#getRowCacheSize()}.
+ * <p>
+ * Only Gets that read the newest version of every column of exactly this family, with no filter
+ * and no time range, are served from the cache, see {@link #isCacheable(Get)}.
+ * <p>
+ * Consistency with the MVCC read point is kept by the way entries are populated: a reader first
+ * installs a placeholder for the row, then opens its scanner, and finally swaps the placeholder for
+ * the cells it read. Writers remove the row once their MVCC write entry is complete, so a reader
+ * whose read point may predate a write loses its placeholder and never publishes stale cells.
+ */
+@InterfaceAudience.Private
+public class RowCache {
+
+  private static final long ENTRY_OVERHEAD =
+    ClassSize.align(ClassSize.OBJECT + ClassSize.REFERENCE + ClassSize.ARRAY)
+      + ClassSize.CONCURRENT_HASHMAP_ENTRY + ClassSize.align(ClassSize.OBJECT + 2 * Long.BYTES);
+
+  /**
+   * A cached row. Entries without cells are placeholders installed by a reader which is still
+   * reading the row.
+   */
+  private static final class Entry {
+    private final Cell[] cells;
+
+    private Entry(Cell[] cells) {
+      this.cells = cells;
+    }
+
+    private boolean isPlaceholder() {
+      return cells == null;
+    }
+
+    private int weight(HashedBytes row) {
+      long size = ENTRY_OVERHEAD + ClassSize.align(ClassSize.ARRAY + row.getBytes().length);
+      if (cells != null) {
+        size += ClassSize.align(ClassSize.ARRAY + cells.length * ClassSize.REFERENCE);
+        for (Cell cell : cells) {
+          size += cell.heapSize();
+        }
+      }
+      return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+  }
+
+  private final byte[] family;
+  private final long maxSize;
+  private final ConcurrentMap<HashedBytes, Entry> rows;
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+
+  RowCache(byte[] family, long maxSize) {
+    this.family = family;
+    this.maxSize = maxSize;
+    Cache<HashedBytes, Entry> cache = Caffeine.newBuilder().executor(Runnable::run)
+      .maximumWeight(maxSize).weigher((HashedBytes row, Entry entry) -> entry.weight(row)).build();
+    this.rows = cache.asMap();
+  }
+
+  /**
+   * Creates the row cache of a store, or returns null if the family has no row cache configured.
+   * The row cache is only used by default replicas, and not for families with a TTL as cached
+   * cells would not expire.
+   */
+  static RowCache create(ColumnFamilyDescriptor family, int replicaId) {
+    if (
+      family.getRowCacheSize() <= 0 || replicaId != 0
+        || family.getTimeToLive() != HConstants.FOREVER
+    ) {
+      return null;
+    }
+    return new RowCache(family.getName(), family.getRowCacheSize());
+  }
+
+  /**
+   * Returns whether the given Get can be served from, and populate, this row cache: it must read
+   * the newest version of every column of exactly this family, without a filter, time range,
+   * per-family limit or offset, and with the default isolation level.
+   */
+  boolean isCacheable(Get get) {
+    if (get.numFamilies() != 1 || !get.familySet().contains(family)) {
+      return false;
+    }
+    NavigableSet<byte[]> qualifiers = get.getFamilyMap().get(family);
+    return (qualifiers == null || qualifiers.isEmpty()) && get.getFilter() == null
+      && get.getMaxVersions() == 1 && get.getTimeRange().isAllTime()
+      && get.getColumnFamilyTimeRange().isEmpty() && get.getMaxResultsPerColumnFamily() < 0
+      && get.getRowOffsetPerColumnFamily() == 0 && get.getCacheBlocks()
+      && get.getIsolationLevel() == IsolationLevel.READ_COMMITTED;
+  }
+
+  /** Returns the cached cells of the row, or null if the row is not cached. */
+  List<Cell> get(byte[] row) {
+    Entry entry = rows.get(new HashedBytes(row));
+    if (entry == null || entry.isPlaceholder()) {
+      missCount.increment();
+      return null;
+    }
+    hitCount.increment();
+    return Arrays.asList(entry.cells);
+  }
+
+  /**
+   * Must be called before the reader acquires its read point.
+   * @return the token to pass to {@link #populate(byte[], Object, List)}, or null if another reader
+   *         is already populating the row
+   */
+  Object startPopulating(byte[] row) {
+    Entry placeholder = new Entry(null);
+    return rows.putIfAbsent(new HashedBytes(row), placeholder) == null ? placeholder : null;
+  }
+
+  /**
+   * Publishes the cells read for the row, unless the row has been invalidated since
+   * {@link #startPopulating(byte[])} returned the token.
+   */
+  void populate(byte[] row, Object token, List<Cell> cells) {
+    HashedBytes key = new HashedBytes(row);
+    Entry entry = new Entry(cells.toArray(new Cell[cells.size()]));
+    if (entry.weight(key) > maxSize) {
+      rows.remove(key, token);
+    } else {
+      rows.replace(key, (Entry) token, entry);
+    }
+  }
+
+  /** Drops the placeholder installed by {@link #startPopulating(byte[])}, if still present. */
+  void abortPopulating(byte[] row, Object token) {
+    rows.remove(new HashedBytes(row), token);
+  }
+
+  /**
+   * Removes the row. Must be called by writers after their MVCC write entry has completed.
+   */
+  void invalidate(byte[] row) {
+    rows.remove(new HashedBytes(row));
+  }
+
+  /** Removes all the rows, e.g. after a bulk load or when the store is closed. */
+  void invalidateAll() {
+    rows.clear();
+  }
+
+  long getHitCount() {
+    return hitCount.sum();
+  }
+
+  long getMissCount() {
+    return missCount.sum();
+  }
+
+  long getRowCount() {
+    return rows.size();
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import org.apache.hadoop.hbase.regionserver.Region.RowLock;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Hands out the row locks of a {@link HRegion}. The implementation is set by
+ * {@link #ROW_LOCK_MANAGER_CLASS_KEY}, which may be set per table, and must have a constructor
+ * taking the {@link org.apache.hadoop.conf.Configuration} of the region.
+ * <p>
+ * Getting a row lock is done in two steps: {@link #getRowLock(byte[], boolean)} returns a
+ * reference to the lock of the row, which keeps the lock from being used for another row, then the
+ * region acquires it, with a timeout, through {@link ManagedRowLock#getLock()}. The reference is
+ * given back by {@link RowLock#release()} once the lock is acquired, or by
+ * {@link ManagedRowLock#abort()} if it could not be.
+ */
+@InterfaceAudience.Private
+public interface RowLockManager {
+
+  String ROW_LOCK_MANAGER_CLASS_KEY = "hbase.regionserver.rowlock.manager.class";
+
+  /**
+   * Returns a reference to the read or write lock of the row. It is not acquired yet.
+   */
+  ManagedRowLock getRowLock(byte[] row, boolean readLock);
+
+  /**
+   * Returns a description of each of the rows which are locked or being locked, for debugging.
+   */
+  List<String> getLockedRows();
+
+  /**
+   * A row lock handed out by a {@link RowLockManager}. The same instance may be handed out again,
+   * to the same or to another thread, as long as the lock is the same.
+   */
+  interface ManagedRowLock extends RowLock {
+
+    /** Returns the lock to acquire. */
+    Lock getLock();
+
+    /** Called once the lock has been acquired, with the thread which acquired it. */
+    void locked(Thread thread);
+
+    /** Gives back the reference to the lock, which could not be acquired. */
+    void abort();
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Sampling is the variant of Adaptive used when {@link #SAMPLE_INTERVAL_KEY} is set. Instead of
+ * relying on the unique keys counted during the previous merge, it keeps a running estimate d of
+ * the fraction of the cells that a compaction would remove. The estimate is fed by three sources:
+ * one in {@link #SAMPLE_INTERVAL_KEY} adds to the active segment checks whether the segment
+ * already holds a version of the added key, every merge counts the unique keys of its result, and
+ * every compaction measures how many cells it actually removed.
+ * <p>
+ * Sampling compacts the pipeline whenever d exceeds compactionThreshold (see
+ * {@link AdaptiveMemStoreCompactionStrategy#ADAPTIVE_COMPACTION_THRESHOLD_KEY}). Otherwise it
+ * flattens or merges, and lets the pipeline grow longer the fewer duplicates there are, up to
+ * {@link #MAX_PIPELINE_SEGMENTS_KEY} segments when there are none, since merging segments without
+ * duplicates only costs CPU. Unlike Adaptive, the estimate is kept across flushes to disk, so that
+ * a store alternating between append-only and update-heavy phases follows the phases rather than
+ * starting over at every flush.
+ */
+@InterfaceAudience.Private
+public class SamplingMemStoreCompactionStrategy extends MemStoreCompactionStrategy {
+  private static final String NAME = "SAMPLING";
+  /**
+   * One in how many adds to the active segment are sampled. Setting it above zero makes ADAPTIVE
+   * stores use this strategy.
+   */
+  public static final String SAMPLE_INTERVAL_KEY =
+    "hbase.hregion.compacting.memstore.adaptive.sample.interval";
+  public static final int SAMPLE_INTERVAL_DEFAULT = 0;
+  /** The number of segments allowed in the pipeline before merging when there are no duplicates */
+  public static final String MAX_PIPELINE_SEGMENTS_KEY =
+    "hbase.hregion.compacting.memstore.adaptive.pipeline.segments.max";
+  private static final double COMPACTION_THRESHOLD_DEFAULT = 0.5;
+  // The weight of an observation in the estimate
+  private static final double ESTIMATE_WEIGHT = 0.5;
+  // The number of samples needed before they are taken into account
+  private static final int MIN_SAMPLES = 16;
+
+  private final int sampleInterval;
+  private final double compactionThreshold;
+  private final int maxPipelineThreshold;
+  private final LongAdder sampledCells = new LongAdder();
+  private final LongAdder sampledDuplicates = new LongAdder();
+  // The estimated fraction of the cells a compaction would remove, -1 while unknown
+  private volatile double duplicateFraction = -1;
+  private volatile int currentPipelineThreshold;
+  private int numCellsInVersionedList = 0;
+  private boolean compacted = false;
+
+  public SamplingMemStoreCompactionStrategy(Configuration conf, String cfName) {
+    super(conf, cfName);
+    sampleInterval = conf.getInt(SAMPLE_INTERVAL_KEY, SAMPLE_INTERVAL_DEFAULT);
+    compactionThreshold = conf.getDouble(
+      AdaptiveMemStoreCompactionStrategy.ADAPTIVE_COMPACTION_THRESHOLD_KEY,
+      COMPACTION_THRESHOLD_DEFAULT);
+    maxPipelineThreshold =
+      Math.max(pipelineThreshold, conf.getInt(MAX_PIPELINE_SEGMENTS_KEY, 2 * pipelineThreshold));
+    currentPipelineThreshold = pipelineThreshold;
+  }
+
+  @Override
+  public Action getAction(VersionedSegmentsList versionedList) {
+    double duplicates = duplicateFraction;
+    if (duplicates < 0) {
+      duplicates = 1.0 - versionedList.getEstimatedUniquesFrac();
+    }
+    currentPipelineThreshold = getPipelineThreshold(duplicates);
+    String strategyInfo =
+      getName() + " (duplicates=" + duplicates + ", pipelineThreshold=" + currentPipelineThreshold
+        + ")";
+    if (duplicates > compactionThreshold) {
+      numCellsInVersionedList = versionedList.getNumOfCells();
+      compacted = true;
+      return compact(versionedList, strategyInfo);
+    }
+    compacted = false;
+    return simpleMergeOrFlatten(versionedList, strategyInfo);
+  }
+
+  // The fewer duplicates, the less a merge gains, so the more segments may pile up
+  private int getPipelineThreshold(double duplicates) {
+    if (duplicates >= compactionThreshold) {
+      return pipelineThreshold;
+    }
+    double gain = duplicates / compactionThreshold;
+    return pipelineThreshold
+      + (int) Math.round((maxPipelineThreshold - pipelineThreshold) * (1.0 - gain));
+  }
+
+  @Override
+  protected int getPipelineThreshold() {
+    return currentPipelineThreshold;
+  }
+
+  @Override
+  public void sampleAdd(MutableSegment active, Cell cell) {
+    if (sampleInterval <= 0 || ThreadLocalRandom.current().nextInt(sampleInterval) != 0) {
+      return;
+    }
+    sampledCells.increment();
+    if (active.containsOtherVersion(cell)) {
+      sampledDuplicates.increment();
+    }
+  }
+
+  @Override
+  public void activePushedToPipeline() {
+    long cells = sampledCells.sum();
+    if (cells < MIN_SAMPLES) {
+      return;
+    }
+    // Samples of concurrent adds may be lost here, which is fine for an estimate
+    long duplicates = sampledDuplicates.sumThenReset();
+    sampledCells.reset();
+    updateEstimate((double) duplicates / cells);
+  }
+
+  @Override
+  public void updateStats(Segment replacement) {
+    int cells = replacement.getCellsCount();
+    if (compacted) {
+      if (numCellsInVersionedList > 0) {
+        // the fraction of the cells the compaction removed
+        updateEstimate(1.0 - (double) cells / numCellsInVersionedList);
+      }
+    } else if (replacement instanceof ImmutableSegment && cells > 0) {
+      int uniques = ((ImmutableSegment) replacement).getNumUniqueKeys();
+      if (uniques != CellSet.UNKNOWN_NUM_UNIQUES) {
+        updateEstimate(1.0 - (double) uniques / cells);
+      }
+    }
+  }
+
+  private synchronized void updateEstimate(double observed) {
+    double previous = duplicateFraction;
+    duplicateFraction =
+      previous < 0 ? observed : previous + ESTIMATE_WEIGHT * (observed - previous);
+    LOG.trace("Strategy={}, store={}; duplicates estimate {} -> {} (observed {})", getName(),
+      cfName, previous, duplicateFraction, observed);
+  }
+
+  /** Returns the estimated fraction of the cells a compaction would remove, -1 if unknown */
+  double getDuplicateFraction() {
+    return duplicateFraction;
+  }
+
+  @Override
+  protected Action getMergingAction() {
+    return Action.MERGE_COUNT_UNIQUE_KEYS;
+  }
+
+  @Override
+  protected Action getFlattenAction() {
+    return Action.FLATTEN;
+  }
+
+  @Override
+  protected String getName() {
+    return NAME;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + ", maxPipelineThreshold=" + maxPipelineThreshold
+      + ", sampleInterval=" + sampleInterval;
+  }
+}
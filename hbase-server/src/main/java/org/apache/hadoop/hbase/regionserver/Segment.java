@@ -232,6 +232,11 @@ public abstract class Segment implements MemStoreSizing {
     return memStoreSizing.getCellsCount();
   }
 
+  /** Returns the size of the off-heap chunks holding the index of this segment, if any */
+  public long getIndexOffHeapSize() {
+    return 0;
+  }
+
   @Override
   public long incMemStoreSize(long delta, long heapOverhead, long offHeapOverhead, int cellsCount) {
     return this.memStoreSizing.incMemStoreSize(delta, heapOverhead, offHeapOverhead, cellsCount);
@@ -72,6 +72,10 @@ public final class SegmentFactory {
   // create not-flat immutable segment from mutable segment
   public ImmutableSegment createImmutableSegment(MutableSegment segment,
     MemStoreSizing memstoreSizing) {
+    if (segment instanceof CellChunkSkipListMutableSegment) {
+      return new CellChunkSkipListImmutableSegment((CellChunkSkipListMutableSegment) segment,
+        memstoreSizing);
+    }
     return new CSLMImmutableSegment(segment, memstoreSizing);
   }
 
@@ -138,7 +142,13 @@ public final class SegmentFactory {
 
   private MutableSegment generateMutableSegment(final Configuration conf, CellComparator comparator,
     MemStoreLAB memStoreLAB, MemStoreSizing memstoreSizing) {
-    // TBD use configuration to set type of segment
+    // the skip list on chunks needs the MSLAB to allocate its nodes
+    if (
+      conf != null && memStoreLAB != null && conf.getBoolean(MemStoreLAB.CHUNK_SKIPLIST_INDEX_KEY,
+        MemStoreLAB.CHUNK_SKIPLIST_INDEX_DEFAULT)
+    ) {
+      return new CellChunkSkipListMutableSegment(comparator, memStoreLAB, memstoreSizing);
+    }
     CellSet set = new CellSet(comparator);
     return new MutableSegment(set, comparator, memStoreLAB, memstoreSizing);
   }
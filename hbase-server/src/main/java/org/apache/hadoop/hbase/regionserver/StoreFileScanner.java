@@ -288,6 +288,14 @@ public class StoreFileScanner implements KeyValueScanner {
     return true;
   }
 
+  /**
+   * Makes the underlying HFile scanner read up to the given number of data blocks ahead, when it
+   * moves from one block to the next.
+   */
+  void setReadAhead(int maxBlocks) {
+    hfs.setReadAhead(maxBlocks);
+  }
+
   @Override
   public void close() {
     if (closed) return;
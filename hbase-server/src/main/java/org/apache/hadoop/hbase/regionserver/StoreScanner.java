@@ -138,8 +138,20 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
    */
   public static final String STORESCANNER_PREAD_MAX_BYTES = "hbase.storescanner.pread.max.bytes";
 
+  /**
+   * The maximum number of data blocks of each store file which are read asynchronously ahead of a
+   * user scan while it uses pread. Can be overridden per scan with
+   * {@link Scan#setReadAheadBlocks(int)}. 0 disables the read-ahead.
+   */
+  public static final String STORESCANNER_READAHEAD_BLOCKS = "hbase.storescanner.readahead.blocks";
+
+  static final int DEFAULT_STORESCANNER_READAHEAD_BLOCKS = 0;
+
   private final Scan.ReadType readType;
 
+  // The maximum number of blocks the store file scanners read ahead, when using pread
+  private final int readAheadBlocks;
+
   // A flag whether use pread for scan
   // it maybe changed if we use Scan.ReadType.DEFAULT and we have read lots of data.
   private boolean scanUsePread;
@@ -205,6 +217,12 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
       // readType is default if the scan keeps running for a long time.
       this.scanUsePread = this.readType != Scan.ReadType.STREAM;
     }
+    if (get || scanType != ScanType.USER_SCAN) {
+      this.readAheadBlocks = 0;
+    } else {
+      this.readAheadBlocks =
+        scan.getReadAheadBlocks() >= 0 ? scan.getReadAheadBlocks() : scanInfo.getReadAheadBlocks();
+    }
     this.cellsPerHeartbeatCheck = scanInfo.getCellsPerTimeoutCheck();
     // Parallel seeking is on if the config allows and more there is more than one store file.
     if (store != null && store.getStorefilesCount() > 1) {
@@ -462,6 +480,9 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
       }
 
       if (kvs.shouldUseScanner(scan, store, expiredTimestampCutoff)) {
+        if (scanUsePread && readAheadBlocks > 0 && kvs instanceof StoreFileScanner) {
+          ((StoreFileScanner) kvs).setReadAhead(readAheadBlocks);
+        }
         scanners.add(kvs);
       } else {
         kvs.close();
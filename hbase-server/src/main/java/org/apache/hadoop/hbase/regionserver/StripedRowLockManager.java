@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.HashedBytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A {@link RowLockManager} which does not allocate anything to lock a row in the common case. The
+ * rows are hashed to a fixed table of stripes, each with its own lock and its own read and write
+ * {@link ManagedRowLock}s, which a row uses while it is locked if no other row of the stripe is.
+ * Only a row which collides with another locked row of its stripe gets a lock of its own, which is
+ * dropped once the row is not locked anymore.
+ * <p>
+ * A row never has both the lock of its stripe and a lock of its own: the stripe is only given to a
+ * row when no row of the stripe has a lock of its own, or when that row is not one of them.
+ */
+@InterfaceAudience.Private
+public class StripedRowLockManager implements RowLockManager {
+
+  /** The number of stripes, rounded up to a power of two. */
+  public static final String STRIPES_KEY = "hbase.regionserver.rowlock.stripes";
+  public static final int DEFAULT_STRIPES = 256;
+
+  private final Stripe[] stripes;
+  private final int mask;
+
+  public StripedRowLockManager(Configuration conf) {
+    int count = Math.max(1, Math.min(conf.getInt(STRIPES_KEY, DEFAULT_STRIPES), 1 << 16));
+    count = Integer.highestOneBit(count * 2 - 1);
+    this.stripes = new Stripe[count];
+    for (int i = 0; i < count; i++) {
+      stripes[i] = new Stripe();
+    }
+    this.mask = count - 1;
+  }
+
+  @Override
+  public ManagedRowLock getRowLock(byte[] row, boolean readLock) {
+    int hash = Bytes.hashCode(row);
+    Stripe stripe = stripes[(hash ^ (hash >>> 16)) & mask];
+    synchronized (stripe) {
+      if (stripe.count > 0 ? Bytes.equals(stripe.row, row) : !stripe.hasOwnLock(row)) {
+        stripe.row = row;
+        stripe.count++;
+        return readLock ? stripe.readLock : stripe.writeLock;
+      }
+      // The row collides with another row of the stripe, or already has a lock of its own
+      if (stripe.ownLocks == null) {
+        stripe.ownLocks = new HashMap<>();
+      }
+      OwnLock ownLock =
+        stripe.ownLocks.computeIfAbsent(new HashedBytes(row), k -> new OwnLock(stripe, k));
+      ownLock.count++;
+      return readLock ? ownLock.readLock : ownLock.writeLock;
+    }
+  }
+
+  @Override
+  public List<String> getLockedRows() {
+    List<String> rows = new ArrayList<>();
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        if (stripe.count > 0) {
+          rows.add(stripe.toString());
+        }
+        if (stripe.ownLocks != null) {
+          for (OwnLock ownLock : stripe.ownLocks.values()) {
+            rows.add(ownLock.toString());
+          }
+        }
+      }
+    }
+    return rows;
+  }
+
+  /** The state of a lock, and of its references, is guarded by the stripe of the row. */
+  private static abstract class LockState {
+    final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock(true);
+    final StripedRowLock readLock = new StripedRowLock(this, readWriteLock.readLock());
+    final StripedRowLock writeLock = new StripedRowLock(this, readWriteLock.writeLock());
+    int count;
+    volatile String threadName;
+
+    abstract Stripe stripe();
+
+    abstract Object row();
+
+    /** Called once the last reference to the lock is given back. */
+    abstract void unused();
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "{row=" + row() + ", readWriteLock=" + readWriteLock
+        + ", count=" + count + ", threadName=" + threadName + '}';
+    }
+  }
+
+  private static final class Stripe extends LockState {
+    byte[] row;
+    // The rows of the stripe which have a lock of their own, created on the first collision
+    Map<HashedBytes, OwnLock> ownLocks;
+
+    boolean hasOwnLock(byte[] row) {
+      return ownLocks != null && ownLocks.containsKey(new HashedBytes(row));
+    }
+
+    @Override
+    Stripe stripe() {
+      return this;
+    }
+
+    @Override
+    Object row() {
+      return row == null ? null : Bytes.toStringBinary(row);
+    }
+
+    @Override
+    void unused() {
+      row = null;
+    }
+  }
+
+  private static final class OwnLock extends LockState {
+    private final Stripe stripe;
+    private final HashedBytes row;
+
+    OwnLock(Stripe stripe, HashedBytes row) {
+      this.stripe = stripe;
+      this.row = row;
+    }
+
+    @Override
+    Stripe stripe() {
+      return stripe;
+    }
+
+    @Override
+    Object row() {
+      return row;
+    }
+
+    @Override
+    void unused() {
+      stripe.ownLocks.remove(row);
+      if (stripe.ownLocks.isEmpty()) {
+        stripe.ownLocks = null;
+      }
+    }
+  }
+
+  private static final class StripedRowLock implements ManagedRowLock {
+    private final LockState state;
+    private final Lock lock;
+
+    StripedRowLock(LockState state, Lock lock) {
+      this.state = state;
+      this.lock = lock;
+    }
+
+    @Override
+    public Lock getLock() {
+      return lock;
+    }
+
+    @Override
+    public void locked(Thread thread) {
+      state.threadName = thread.getName();
+    }
+
+    @Override
+    public void abort() {
+      Stripe stripe = state.stripe();
+      synchronized (stripe) {
+        if (--state.count == 0) {
+          state.threadName = null;
+          state.unused();
+        }
+      }
+    }
+
+    @Override
+    public void release() {
+      lock.unlock();
+      abort();
+    }
+
+    @Override
+    public String toString() {
+      return "StripedRowLock{" + "state=" + state + ", lock=" + lock + '}';
+    }
+  }
+}
@@ -50,6 +50,7 @@ public class RSStatusServlet extends HttpServlet {
     if (req.getParameter("filter") != null) tmpl.setFilter(req.getParameter("filter"));
     if (req.getParameter("bcn") != null) tmpl.setBcn(req.getParameter("bcn"));
     if (req.getParameter("bcv") != null) tmpl.setBcv(req.getParameter("bcv"));
+    if (req.getParameter("bcf") != null) tmpl.setBcf(req.getParameter("bcf"));
     tmpl.render(resp.getWriter(), hrs);
   }
 }
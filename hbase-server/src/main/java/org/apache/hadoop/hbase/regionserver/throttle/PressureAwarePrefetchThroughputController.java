@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.throttle;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseInterfaceAudience;
+import org.apache.hadoop.hbase.ScheduledChore;
+import org.apache.hadoop.hbase.ipc.RpcScheduler;
+import org.apache.hadoop.hbase.ipc.RpcServerInterface;
+import org.apache.hadoop.hbase.regionserver.RegionServerServices;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A throughput controller for the prefetch of the blocks of the store files, which uses the follow
+ * schema to limit the aggregate throughput of all the prefetches
+ * <ul>
+ * <li>The max throughput is tuned between
+ * {@value #HBASE_HFILE_PREFETCH_MAX_THROUGHPUT_LOWER_BOUND} and
+ * {@value #HBASE_HFILE_PREFETCH_MAX_THROUGHPUT_UPPER_BOUND}, using the formula &quot;upper -
+ * (upper - lower) * rpcPressure&quot;, so that prefetches back off when clients are waiting.</li>
+ * <li>rpcPressure is the number of calls waiting in the queues of the general RPC handlers, divided
+ * by {@value #HBASE_HFILE_PREFETCH_THROUGHPUT_QUEUE_LENGTH_THRESHOLD}, capped at 1.0.</li>
+ * </ul>
+ * @see org.apache.hadoop.hbase.io.hfile.PrefetchExecutor
+ */
+@InterfaceAudience.LimitedPrivate(HBaseInterfaceAudience.CONFIG)
+public class PressureAwarePrefetchThroughputController extends PressureAwareThroughputController {
+
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PressureAwarePrefetchThroughputController.class);
+
+  public static final String HBASE_HFILE_PREFETCH_MAX_THROUGHPUT_UPPER_BOUND =
+    "hbase.hfile.prefetch.throughput.upper.bound";
+
+  private static final long DEFAULT_HBASE_HFILE_PREFETCH_MAX_THROUGHPUT_UPPER_BOUND =
+    200L * 1024 * 1024;
+
+  public static final String HBASE_HFILE_PREFETCH_MAX_THROUGHPUT_LOWER_BOUND =
+    "hbase.hfile.prefetch.throughput.lower.bound";
+
+  private static final long DEFAULT_HBASE_HFILE_PREFETCH_MAX_THROUGHPUT_LOWER_BOUND =
+    20L * 1024 * 1024;
+
+  public static final String HBASE_HFILE_PREFETCH_THROUGHPUT_TUNE_PERIOD =
+    "hbase.hfile.prefetch.throughput.tune.period";
+
+  private static final int DEFAULT_HBASE_HFILE_PREFETCH_THROUGHPUT_TUNE_PERIOD = 5 * 1000;
+
+  public static final String HBASE_HFILE_PREFETCH_THROUGHPUT_QUEUE_LENGTH_THRESHOLD =
+    "hbase.hfile.prefetch.throughput.queue.length.threshold";
+
+  private static final int DEFAULT_HBASE_HFILE_PREFETCH_THROUGHPUT_QUEUE_LENGTH_THRESHOLD = 100;
+
+  // check prefetch throughput every this size
+  public static final String HBASE_HFILE_PREFETCH_THROUGHPUT_CONTROL_CHECK_INTERVAL =
+    "hbase.hfile.prefetch.throughput.control.check.interval";
+
+  private static final long DEFAULT_HBASE_HFILE_PREFETCH_THROUGHPUT_CONTROL_CHECK_INTERVAL =
+    1024L * 1024;// 1MB
+
+  private int queueLengthThreshold;
+
+  @Override
+  public void setup(final RegionServerServices server) {
+    server.getChoreService().scheduleChore(
+      new ScheduledChore("PrefetchThroughputTuner", this, tuningPeriod, this.tuningPeriod) {
+
+        @Override
+        protected void chore() {
+          tune(getRpcPressure(server));
+        }
+      });
+  }
+
+  private double getRpcPressure(RegionServerServices server) {
+    RpcServerInterface rpcServer = server.getRpcServer();
+    RpcScheduler scheduler = rpcServer == null ? null : rpcServer.getScheduler();
+    if (scheduler == null) {
+      // RS initialization
+      return 0.0;
+    }
+    return Math.min(1.0, (double) scheduler.getGeneralQueueLength() / queueLengthThreshold);
+  }
+
+  void tune(double rpcPressure) {
+    double maxThroughputToSet =
+      maxThroughputUpperBound - (maxThroughputUpperBound - maxThroughputLowerBound) * rpcPressure;
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("rpcPressure is " + rpcPressure + ", tune prefetch throughput to "
+        + throughputDesc(maxThroughputToSet));
+    }
+    this.setMaxThroughput(maxThroughputToSet);
+  }
+
+  @Override
+  public void setConf(Configuration conf) {
+    super.setConf(conf);
+    if (conf == null) {
+      return;
+    }
+    this.maxThroughputUpperBound = conf.getLong(HBASE_HFILE_PREFETCH_MAX_THROUGHPUT_UPPER_BOUND,
+      DEFAULT_HBASE_HFILE_PREFETCH_MAX_THROUGHPUT_UPPER_BOUND);
+    this.maxThroughputLowerBound = conf.getLong(HBASE_HFILE_PREFETCH_MAX_THROUGHPUT_LOWER_BOUND,
+      DEFAULT_HBASE_HFILE_PREFETCH_MAX_THROUGHPUT_LOWER_BOUND);
+    this.controlPerSize = conf.getLong(HBASE_HFILE_PREFETCH_THROUGHPUT_CONTROL_CHECK_INTERVAL,
+      DEFAULT_HBASE_HFILE_PREFETCH_THROUGHPUT_CONTROL_CHECK_INTERVAL);
+    this.queueLengthThreshold =
+      Math.max(1, conf.getInt(HBASE_HFILE_PREFETCH_THROUGHPUT_QUEUE_LENGTH_THRESHOLD,
+        DEFAULT_HBASE_HFILE_PREFETCH_THROUGHPUT_QUEUE_LENGTH_THRESHOLD));
+    this.setMaxThroughput(this.maxThroughputUpperBound);
+    this.tuningPeriod = getConf().getInt(HBASE_HFILE_PREFETCH_THROUGHPUT_TUNE_PERIOD,
+      DEFAULT_HBASE_HFILE_PREFETCH_THROUGHPUT_TUNE_PERIOD);
+    LOG.info("Prefetch throughput configurations, upper bound: "
+      + throughputDesc(maxThroughputUpperBound) + ", lower bound "
+      + throughputDesc(maxThroughputLowerBound) + ", queue length threshold: "
+      + queueLengthThreshold + ", tuning period: " + tuningPeriod + " ms");
+  }
+
+  @Override
+  public String toString() {
+    return "DefaultPrefetchController [maxThroughput=" + throughputDesc(getMaxThroughput())
+      + ", activePrefetchNumber=" + activeOperations.size() + "]";
+  }
+}
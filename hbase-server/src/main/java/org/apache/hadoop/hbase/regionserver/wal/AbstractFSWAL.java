@@ -602,10 +602,32 @@ public abstract class AbstractFSWAL<W extends WriterBase> implements WAL {
     TraceUtil.trace(() -> doSync(txid, forceSync), () -> createSpan("WAL.sync"));
   }
 
+  @Override
+  public final PendingSync startSync(long txid) {
+    return startSync(txid, useHsync);
+  }
+
+  @Override
+  public final PendingSync startSync(long txid, boolean forceSync) {
+    if (highestSyncedTxid.get() >= txid) {
+      // Already sync'd.
+      return () -> {
+      };
+    }
+    SyncFuture syncFuture = publishSync(txid, forceSync);
+    return () -> TraceUtil.trace(() -> blockOnSync(syncFuture), () -> createSpan("WAL.sync"));
+  }
+
   protected abstract void doSync(boolean forceSync) throws IOException;
 
   protected abstract void doSync(long txid, boolean forceSync) throws IOException;
 
+  /**
+   * Publishes a request to sync up to the given txid, without waiting for it.
+   * @return the future to block on for the sync to complete
+   */
+  protected abstract SyncFuture publishSync(long txid, boolean forceSync);
+
   /**
    * This is a convenience method that computes a new filename with a given file-number.
    * @param filenum to use
@@ -679,6 +701,20 @@ public abstract class AbstractFSWAL<W extends WriterBase> implements WAL {
     return walFile2Props.size();
   }
 
+  // public only until class moves to o.a.h.h.wal
+  /**
+   * Returns, for each region blocking the archiving of rolled log files, how many of the files
+   * flushing it would free. A file blocked by n regions counts for 1/n for each of them. Keyed by
+   * encoded region name.
+   */
+  public Map<byte[], Double> getRolledLogFileBlockingShares() {
+    List<Map<byte[], Long>> sequenceidsPerFile = new ArrayList<>(walFile2Props.size());
+    for (WalProps props : walFile2Props.values()) {
+      sequenceidsPerFile.add(props.encodedName2HighestSequenceId);
+    }
+    return sequenceIdAccounting.getBlockingShares(sequenceidsPerFile);
+  }
+
   // public only until class moves to o.a.h.h.wal
   /** Returns the number of log files in use */
   public int getNumLogFiles() {
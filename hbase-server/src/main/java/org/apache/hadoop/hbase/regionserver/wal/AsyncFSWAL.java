@@ -136,6 +136,15 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
   public static final String WAL_BATCH_SIZE = "hbase.wal.batch.size";
   public static final long DEFAULT_WAL_BATCH_SIZE = 64L * 1024;
 
+  /**
+   * Target for the p99 of the time the handlers wait for their syncs, in milliseconds. When set,
+   * a sync request which comes while another sync is in flight may be held until that sync
+   * completes, so that more edits are grouped into the next sync, as long as the target is met. See
+   * {@link SyncGroupingController}. 0, the default, disables this.
+   */
+  public static final String WAL_SYNC_LATENCY_TARGET_MS = "hbase.wal.async.sync.latency.target.ms";
+  public static final long DEFAULT_WAL_SYNC_LATENCY_TARGET_MS = 0;
+
   public static final String ASYNC_WAL_USE_SHARED_EVENT_LOOP =
     "hbase.wal.async.use-shared-event-loop";
   public static final boolean DEFAULT_ASYNC_WAL_USE_SHARED_EVENT_LOOP = false;
@@ -179,6 +188,12 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
 
   private final long batchSize;
 
+  // null if no sync latency target is set
+  private final SyncGroupingController syncGroupingController;
+
+  // the number of syncs issued on the writers and not completed yet
+  private int syncsInFlight;
+
   private final ExecutorService closeExecutor = Executors.newCachedThreadPool(
     new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Close-WAL-Writer-%d").build());
 
@@ -260,6 +275,11 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
     waitingConsumePayloadsGatingSequence.set(waitingConsumePayloads.getCursor());
 
     batchSize = conf.getLong(WAL_BATCH_SIZE, DEFAULT_WAL_BATCH_SIZE);
+    long syncLatencyTargetMs =
+      conf.getLong(WAL_SYNC_LATENCY_TARGET_MS, DEFAULT_WAL_SYNC_LATENCY_TARGET_MS);
+    syncGroupingController = syncLatencyTargetMs > 0
+      ? new SyncGroupingController(TimeUnit.MILLISECONDS.toNanos(syncLatencyTargetMs), batchSize)
+      : null;
     waitOnShutdownInSeconds = conf.getInt(ASYNC_WAL_WAIT_ON_SHUTDOWN_IN_SECONDS,
       DEFAULT_ASYNC_WAL_WAIT_ON_SHUTDOWN_IN_SECONDS);
   }
@@ -423,20 +443,57 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
     highestProcessedAppendTxidAtLastSync = currentHighestProcessedAppendTxid;
     final long startTimeNs = System.nanoTime();
     final long epoch = (long) epochAndState >>> 2L;
+    syncsInFlight++;
     addListener(writer.sync(shouldUseHsync), (result, error) -> {
+      syncsInFlight--;
       if (error != null) {
         syncFailed(epoch, error);
       } else {
         syncCompleted(epoch, writer, currentHighestProcessedAppendTxid, startTimeNs);
       }
+      if (syncGroupingController != null) {
+        syncDeferred();
+      }
     }, consumeExecutor);
   }
 
+  // In sync latency target mode, whether to hold the pending sync requests until the syncs in
+  // flight complete, so that more edits are grouped into the next sync.
+  private boolean shouldDeferSync(AsyncWriter writer) {
+    return syncGroupingController != null && syncsInFlight > 0
+      && syncGroupingController.shouldDefer(writer.getLength() - fileLengthAtLastSync);
+  }
+
+  // Issue the sync requests held by shouldDeferSync, once no sync is in flight anymore.
+  private void syncDeferred() {
+    int currentEpochAndState = epochAndState;
+    if (
+      syncsInFlight > 0 || writerBroken(currentEpochAndState) || waitingRoll(currentEpochAndState)
+    ) {
+      // a rolling or broken writer is taken care of by the roll
+      return;
+    }
+    AsyncWriter writer = this.writer;
+    if (
+      writer != null && writer.getLength() > fileLengthAtLastSync && !syncFutures.isEmpty()
+        && syncFutures.last().getTxid() > highestProcessedAppendTxidAtLastSync
+    ) {
+      sync(writer);
+    }
+  }
+
+  private void recordSyncWait(SyncFuture sync) {
+    if (syncGroupingController != null) {
+      syncGroupingController.recordWait(System.nanoTime() - sync.getStartTimeNs());
+    }
+  }
+
   private int finishSyncLowerThanTxid(long txid) {
     int finished = 0;
     for (Iterator<SyncFuture> iter = syncFutures.iterator(); iter.hasNext();) {
       SyncFuture sync = iter.next();
       if (sync.getTxid() <= txid) {
+        recordSyncWait(sync);
         markFutureDoneAndOffer(sync, txid, null);
         iter.remove();
         finished++;
@@ -456,6 +513,7 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
         long maxSyncTxid = highestSyncedTxid.get();
         for (SyncFuture sync : syncFutures) {
           maxSyncTxid = Math.max(maxSyncTxid, sync.getTxid());
+          recordSyncWait(sync);
           markFutureDoneAndOffer(sync, maxSyncTxid, null);
         }
         highestSyncedTxid.set(maxSyncTxid);
@@ -666,6 +724,7 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
           if (
             writer.getLength() > fileLengthAtLastSync && !syncFutures.isEmpty()
               && syncFutures.last().getTxid() > highestProcessedAppendTxidAtLastSync
+              && !shouldDeferSync(writer)
           ) {
             // no new data in the ringbuffer and we have at least one sync request
             sync(writer);
@@ -733,6 +792,11 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
     if (highestSyncedTxid.get() >= txid) {
       return;
     }
+    blockOnSync(publishSync(txid, forceSync));
+  }
+
+  @Override
+  protected SyncFuture publishSync(long txid, boolean forceSync) {
     // here we do not use ring buffer sequence as txid
     long sequence = waitingConsumePayloads.next();
     SyncFuture future;
@@ -746,7 +810,7 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
     if (shouldScheduleConsumer()) {
       consumeExecutor.execute(consumer);
     }
-    blockOnSync(future);
+    return future;
   }
 
   protected final AsyncWriter createAsyncWriter(FileSystem fs, Path path) throws IOException {
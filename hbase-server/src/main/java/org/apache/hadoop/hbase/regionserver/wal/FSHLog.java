@@ -828,6 +828,11 @@ public class FSHLog extends AbstractFSWAL<Writer> {
     publishSyncThenBlockOnCompletion(forceSync);
   }
 
+  @Override
+  protected SyncFuture publishSync(long txid, boolean forceSync) {
+    return publishSyncOnRingBuffer(forceSync);
+  }
+
   boolean isLowReplicationRollEnabled() {
     return lowReplicationRollEnabled;
   }
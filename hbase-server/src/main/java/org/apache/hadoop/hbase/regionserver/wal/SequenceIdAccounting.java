@@ -460,6 +460,44 @@ class SequenceIdAccounting {
     return result;
   }
 
+  /**
+   * Works out which regions block the archiving of WAL files, as areAllLower does for a single
+   * file, and shares each blocked file evenly between the regions blocking it.
+   * @param sequenceidsPerFile For each WAL file, sequenceids keyed by encoded region name.
+   * @return For each region blocking at least one of the files, the sum of its shares. Keyed by
+   *         encoded region name.
+   */
+  Map<byte[], Double> getBlockingShares(Collection<Map<byte[], Long>> sequenceidsPerFile) {
+    Map<byte[], Long> flushing;
+    Map<byte[], Long> unflushed;
+    synchronized (this.tieLock) {
+      flushing = flattenToLowestSequenceId(this.flushingSequenceIds);
+      unflushed = flattenToLowestSequenceId(this.lowestUnflushedSequenceIds);
+    }
+    Map<byte[], Double> shares = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    List<byte[]> blocking = new ArrayList<>();
+    for (Map<byte[], Long> sequenceids : sequenceidsPerFile) {
+      blocking.clear();
+      for (Map.Entry<byte[], Long> e : sequenceids.entrySet()) {
+        long oldestFlushing = Long.MAX_VALUE;
+        long oldestUnflushed = Long.MAX_VALUE;
+        if (flushing != null && flushing.containsKey(e.getKey())) {
+          oldestFlushing = flushing.get(e.getKey());
+        }
+        if (unflushed != null && unflushed.containsKey(e.getKey())) {
+          oldestUnflushed = unflushed.get(e.getKey());
+        }
+        if (Math.min(oldestFlushing, oldestUnflushed) <= e.getValue()) {
+          blocking.add(e.getKey());
+        }
+      }
+      for (byte[] encodedRegionName : blocking) {
+        shares.merge(encodedRegionName, 1.0 / blocking.size(), Double::sum);
+      }
+    }
+    return shares;
+  }
+
   /**
    * Iterates over the given Map and compares sequence ids with corresponding entries in
    * {@link #lowestUnflushedSequenceIds}. If a region in {@link #lowestUnflushedSequenceIds} has a
@@ -86,6 +86,11 @@ class SyncFuture {
 
   private boolean forceSync;
 
+  /**
+   * The time this operation was requested, for measuring how long its thread waits.
+   */
+  private long startTimeNs;
+
   SyncFuture() {
     this.doneLock = new ReentrantLock();
     this.doneCondition = doneLock.newCondition();
@@ -107,6 +112,7 @@ class SyncFuture {
     this.forceSync = forceSync;
     this.txid = txid;
     this.throwable = null;
+    this.startTimeNs = System.nanoTime();
     return this;
   }
 
@@ -124,6 +130,10 @@ class SyncFuture {
     return forceSync;
   }
 
+  long getStartTimeNs() {
+    return startTimeNs;
+  }
+
   /**
    * Returns the thread that owned this sync future, use with caution as we return the reference to
    * the actual thread object.
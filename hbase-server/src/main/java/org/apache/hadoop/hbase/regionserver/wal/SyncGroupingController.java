@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import java.util.Arrays;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides how many bytes {@link AsyncFSWAL} groups into a sync while another sync is in flight, so
+ * that the p99 of the time the handlers wait for their syncs stays under a target.
+ * <p>
+ * The wait of every finished sync request is recorded. Once a window of waits is full, its p99 is
+ * compared with the target. Above the target, the group size is halved, down to 0 which means to
+ * sync as soon as there is a request, like when no target is set. Under half the target, the group
+ * size grows by a step, up to the WAL batch size, above which a sync is always issued anyway.
+ * <p>
+ * Not thread safe, only used from the consumer of the WAL.
+ */
+@InterfaceAudience.Private
+class SyncGroupingController {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SyncGroupingController.class);
+
+  static final int WINDOW_SIZE = 256;
+
+  // the number of steps to go from no grouping to the max group size
+  static final int STEPS = 16;
+
+  private final long targetNs;
+
+  private final long maxGroupBytes;
+
+  private final long step;
+
+  private final long[] waits = new long[WINDOW_SIZE];
+
+  private int count;
+
+  private long groupBytes;
+
+  SyncGroupingController(long targetNs, long maxGroupBytes) {
+    this.targetNs = targetNs;
+    this.maxGroupBytes = maxGroupBytes;
+    this.step = Math.max(1, maxGroupBytes / STEPS);
+  }
+
+  /**
+   * Records how long a handler waited for its sync, and adjusts the group size when the window is
+   * full.
+   */
+  void recordWait(long waitNs) {
+    waits[count++] = waitNs;
+    if (count < WINDOW_SIZE) {
+      return;
+    }
+    count = 0;
+    Arrays.sort(waits);
+    long p99 = waits[(int) (WINDOW_SIZE * 0.99)];
+    long oldGroupBytes = groupBytes;
+    if (p99 > targetNs) {
+      groupBytes = groupBytes / 2;
+      if (groupBytes < step) {
+        groupBytes = 0;
+      }
+    } else if (p99 < targetNs / 2) {
+      groupBytes = Math.min(maxGroupBytes, groupBytes + step);
+    }
+    if (groupBytes != oldGroupBytes && LOG.isDebugEnabled()) {
+      LOG.debug("p99 sync wait {} us against a target of {} us, group size changed from {} to {}",
+        p99 / 1000, targetNs / 1000, oldGroupBytes, groupBytes);
+    }
+  }
+
+  /**
+   * Returns whether to hold the sync of the given number of unsynced bytes until the sync in flight
+   * completes.
+   */
+  boolean shouldDefer(long unsyncedBytes) {
+    return unsyncedBytes < groupBytes;
+  }
+
+  long getGroupBytes() {
+    return groupBytes;
+  }
+}
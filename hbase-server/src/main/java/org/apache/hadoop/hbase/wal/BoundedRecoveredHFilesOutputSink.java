@@ -19,8 +19,12 @@ package org.apache.hadoop.hbase.wal;
 
 import static org.apache.hadoop.hbase.TableName.META_TABLE_NAME;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +35,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
 import org.apache.hadoop.hbase.CellComparatorImpl;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.MetaCellComparator;
@@ -52,6 +57,13 @@ import org.slf4j.LoggerFactory;
 /**
  * A WALSplitter sink that outputs {@link org.apache.hadoop.hbase.io.hfile.HFile}s. Runs with a
  * bounded number of HFile writers at any one time rather than let the count run up.
+ * <p>
+ * By default, an HFile is written per family every time the buffer of a region is written out,
+ * which ends up with many small HFiles when the WAL holds much more than the split buffer. With
+ * {@link #WAL_SPLIT_TO_HFILE_SPILL} set, the sorted cells of each family are spilled to a file on
+ * local disk instead, and when the split is done the spilled runs are merged with what is still
+ * buffered into a single HFile per region family. The memory used stays bounded by the split
+ * buffer size, as the merge only holds a cell of every run.
  * @see BoundedRecoveredEditsOutputSink for a sink implementation that writes intermediate
  *      recovered.edits files.
  */
@@ -59,8 +71,45 @@ import org.slf4j.LoggerFactory;
 public class BoundedRecoveredHFilesOutputSink extends OutputSink {
   private static final Logger LOG = LoggerFactory.getLogger(BoundedRecoveredHFilesOutputSink.class);
 
+  /**
+   * Whether to spill the sorted cells of the regions to local disk and write one HFile per region
+   * family when the split is done.
+   */
+  public static final String WAL_SPLIT_TO_HFILE_SPILL = "hbase.wal.split.to.hfile.spill";
+  public static final boolean DEFAULT_WAL_SPLIT_TO_HFILE_SPILL = false;
+
+  /**
+   * The local directory to spill to, defaults to a directory under hbase.tmp.dir.
+   */
+  public static final String WAL_SPLIT_TO_HFILE_SPILL_DIR = "hbase.wal.split.to.hfile.spill.dir";
+
   private final WALSplitter walSplitter;
 
+  // null if we do not spill
+  private final File spillDir;
+
+  // The spilled runs of each region, by encoded region name
+  private final ConcurrentMap<String, RegionSpills> regionSpills = new ConcurrentHashMap<>();
+
+  /**
+   * The runs spilled for a region. Only touched by one thread at a time, as a region buffer is only
+   * written by one thread at a time, and the final merge happens after all the writes are done.
+   */
+  private static final class RegionSpills {
+    final TableName tableName;
+    final Map<String, List<File>> familyRuns = new HashMap<>();
+    final Map<String, Long> familySeqIds = new HashMap<>();
+
+    RegionSpills(TableName tableName) {
+      this.tableName = tableName;
+    }
+
+    void deleteAll() {
+      familyRuns.values().forEach(runs -> runs.forEach(CellSpillFile::delete));
+      familyRuns.clear();
+    }
+  }
+
   // Since the splitting process may create multiple output files, we need a map
   // to track the output count of each region.
   private ConcurrentMap<String, Long> regionEditsWrittenMap = new ConcurrentHashMap<>();
@@ -71,33 +120,29 @@ public class BoundedRecoveredHFilesOutputSink extends OutputSink {
     WALSplitter.PipelineController controller, EntryBuffers entryBuffers, int numWriters) {
     super(controller, entryBuffers, numWriters);
     this.walSplitter = walSplitter;
+    if (walSplitter.conf.getBoolean(WAL_SPLIT_TO_HFILE_SPILL, DEFAULT_WAL_SPLIT_TO_HFILE_SPILL)) {
+      this.spillDir = new File(walSplitter.conf.get(WAL_SPLIT_TO_HFILE_SPILL_DIR,
+        walSplitter.conf.get("hbase.tmp.dir", System.getProperty("java.io.tmpdir"))
+          + File.separator + "wal-split-spill"));
+    } else {
+      this.spillDir = null;
+    }
+  }
+
+  private static CellComparator getComparator(boolean isMetaTable) {
+    return isMetaTable ? MetaCellComparator.META_COMPARATOR : CellComparatorImpl.COMPARATOR;
   }
 
   @Override
   void append(RegionEntryBuffer buffer) throws IOException {
     Map<String, CellSet> familyCells = new HashMap<>();
     Map<String, Long> familySeqIds = new HashMap<>();
-    boolean isMetaTable = buffer.tableName.equals(META_TABLE_NAME);
-    // First iterate all Cells to find which column families are present and to stamp Cell with
-    // sequence id.
-    for (WAL.Entry entry : buffer.entryBuffer) {
-      long seqId = entry.getKey().getSequenceId();
-      List<Cell> cells = entry.getEdit().getCells();
-      for (Cell cell : cells) {
-        if (CellUtil.matchingFamily(cell, WALEdit.METAFAMILY)) {
-          continue;
-        }
-        PrivateCellUtil.setSequenceId(cell, seqId);
-        String familyName = Bytes.toString(CellUtil.cloneFamily(cell));
-        // comparator need to be specified for meta
-        familyCells
-          .computeIfAbsent(familyName,
-            key -> new CellSet(
-              isMetaTable ? MetaCellComparator.META_COMPARATOR : CellComparatorImpl.COMPARATOR))
-          .add(cell);
-        familySeqIds.compute(familyName, (k, v) -> v == null ? seqId : Math.max(v, seqId));
-      }
+    sortByFamily(buffer, familyCells, familySeqIds);
+    if (spillDir != null) {
+      spill(buffer, familyCells, familySeqIds);
+      return;
     }
+    boolean isMetaTable = buffer.tableName.equals(META_TABLE_NAME);
 
     // Create a new hfile writer for each column family, write edits then close writer.
     String regionName = Bytes.toString(buffer.encodedRegionName);
@@ -124,6 +169,90 @@ public class BoundedRecoveredHFilesOutputSink extends OutputSink {
     }
   }
 
+  /**
+   * Iterates all Cells to find which column families are present, sort the cells of each family
+   * and stamp them with their sequence id.
+   */
+  private static void sortByFamily(RegionEntryBuffer buffer, Map<String, CellSet> familyCells,
+    Map<String, Long> familySeqIds) {
+    // comparator need to be specified for meta
+    CellComparator comparator = getComparator(buffer.tableName.equals(META_TABLE_NAME));
+    for (WAL.Entry entry : buffer.entryBuffer) {
+      long seqId = entry.getKey().getSequenceId();
+      List<Cell> cells = entry.getEdit().getCells();
+      for (Cell cell : cells) {
+        if (CellUtil.matchingFamily(cell, WALEdit.METAFAMILY)) {
+          continue;
+        }
+        PrivateCellUtil.setSequenceId(cell, seqId);
+        String familyName = Bytes.toString(CellUtil.cloneFamily(cell));
+        familyCells.computeIfAbsent(familyName, key -> new CellSet(comparator)).add(cell);
+        familySeqIds.compute(familyName, (k, v) -> v == null ? seqId : Math.max(v, seqId));
+      }
+    }
+  }
+
+  /**
+   * Spill the sorted cells of each family of the region to local disk, to be merged when closing.
+   */
+  private void spill(RegionEntryBuffer buffer, Map<String, CellSet> familyCells,
+    Map<String, Long> familySeqIds) throws IOException {
+    String regionName = Bytes.toString(buffer.encodedRegionName);
+    RegionSpills spills =
+      regionSpills.computeIfAbsent(regionName, k -> new RegionSpills(buffer.tableName));
+    Files.createDirectories(spillDir.toPath());
+    for (Map.Entry<String, CellSet> cellsEntry : familyCells.entrySet()) {
+      String familyName = cellsEntry.getKey();
+      File run = CellSpillFile.write(spillDir, cellsEntry.getValue());
+      LOG.trace("Spilled {} cells of {} of region {} to {}", cellsEntry.getValue().size(),
+        familyName, regionName, run);
+      spills.familyRuns.computeIfAbsent(familyName, k -> new ArrayList<>()).add(run);
+      spills.familySeqIds.merge(familyName, familySeqIds.get(familyName), Math::max);
+    }
+    regionEditsWrittenMap.compute(regionName,
+      (k, v) -> v == null ? buffer.entryBuffer.size() : v + buffer.entryBuffer.size());
+  }
+
+  /**
+   * Merge the spilled runs of the region and the cells still buffered for it into one HFile per
+   * family.
+   */
+  private void mergeSpills(String regionName, RegionSpills spills, RegionEntryBuffer buffer)
+    throws IOException {
+    Map<String, CellSet> familyCells = new HashMap<>();
+    Map<String, Long> familySeqIds = new HashMap<>(spills.familySeqIds);
+    if (buffer != null) {
+      Map<String, Long> bufferSeqIds = new HashMap<>();
+      sortByFamily(buffer, familyCells, bufferSeqIds);
+      bufferSeqIds.forEach((family, seqId) -> familySeqIds.merge(family, seqId, Math::max));
+      regionEditsWrittenMap.compute(regionName,
+        (k, v) -> v == null ? buffer.entryBuffer.size() : v + buffer.entryBuffer.size());
+    }
+    boolean isMetaTable = spills.tableName.equals(META_TABLE_NAME);
+    try {
+      for (String familyName : familySeqIds.keySet()) {
+        List<File> runs = spills.familyRuns.getOrDefault(familyName, Collections.emptyList());
+        StoreFileWriter writer = createRecoveredHFileWriter(spills.tableName, regionName,
+          familySeqIds.get(familyName), familyName, isMetaTable);
+        openingWritersNum.incrementAndGet();
+        long cells;
+        try {
+          cells = CellSpillFile.merge(runs, familyCells.get(familyName),
+            getComparator(isMetaTable), writer);
+          writer.appendMetadata(familySeqIds.get(familyName), false);
+          splits.add(writer.getPath());
+        } finally {
+          openingWritersNum.decrementAndGet();
+          writer.close();
+        }
+        LOG.trace("Merged {} spilled runs into {}, cells={}", runs.size(), writer.getPath(),
+          cells);
+      }
+    } finally {
+      spills.deleteAll();
+    }
+  }
+
   @Override
   public List<Path> close() throws IOException {
     boolean isSuccessful = true;
@@ -140,15 +269,42 @@ public class BoundedRecoveredHFilesOutputSink extends OutputSink {
    * @return true when there is no error.
    */
   private boolean writeRemainingEntryBuffers() throws IOException {
-    for (EntryBuffers.RegionEntryBuffer buffer : entryBuffers.buffers.values()) {
-      closeCompletionService.submit(() -> {
-        append(buffer);
-        return null;
-      });
+    int n = 0;
+    if (spillDir != null) {
+      // Merge each region which spilled with what is still buffered for it, and write out the
+      // buffers of the regions which did not spill as usual.
+      Map<String, RegionEntryBuffer> remaining = new HashMap<>();
+      for (EntryBuffers.RegionEntryBuffer buffer : entryBuffers.buffers.values()) {
+        remaining.put(Bytes.toString(buffer.encodedRegionName), buffer);
+      }
+      for (Map.Entry<String, RegionSpills> entry : regionSpills.entrySet()) {
+        RegionEntryBuffer buffer = remaining.remove(entry.getKey());
+        closeCompletionService.submit(() -> {
+          mergeSpills(entry.getKey(), entry.getValue(), buffer);
+          return null;
+        });
+        n++;
+      }
+      for (EntryBuffers.RegionEntryBuffer buffer : remaining.values()) {
+        closeCompletionService.submit(() -> {
+          mergeSpills(Bytes.toString(buffer.encodedRegionName),
+            new RegionSpills(buffer.tableName), buffer);
+          return null;
+        });
+        n++;
+      }
+    } else {
+      for (EntryBuffers.RegionEntryBuffer buffer : entryBuffers.buffers.values()) {
+        closeCompletionService.submit(() -> {
+          append(buffer);
+          return null;
+        });
+        n++;
+      }
     }
     boolean progressFailed = false;
     try {
-      for (int i = 0, n = entryBuffers.buffers.size(); i < n; i++) {
+      for (int i = 0; i < n; i++) {
         Future<Void> future = closeCompletionService.take();
         future.get();
         if (!progressFailed && reporter != null && !reporter.progress()) {
@@ -163,6 +319,8 @@ public class BoundedRecoveredHFilesOutputSink extends OutputSink {
       throw new IOException(e.getCause());
     } finally {
       closeThreadPool.shutdownNow();
+      // nothing to do with the spills left by a failure
+      regionSpills.values().forEach(RegionSpills::deleteAll);
     }
     return !progressFailed;
   }
@@ -200,9 +358,8 @@ public class BoundedRecoveredHFilesOutputSink extends OutputSink {
         .withOutputDir(outputDir);
     HFileContext hFileContext =
       new HFileContextBuilder().withChecksumType(StoreUtils.getChecksumType(walSplitter.conf))
-        .withBytesPerCheckSum(StoreUtils.getBytesPerChecksum(walSplitter.conf)).withCellComparator(
-          isMetaTable ? MetaCellComparator.META_COMPARATOR : CellComparatorImpl.COMPARATOR)
-        .build();
+        .withBytesPerCheckSum(StoreUtils.getBytesPerChecksum(walSplitter.conf))
+        .withCellComparator(getComparator(isMetaTable)).build();
     return writerBuilder.withFileContext(hFileContext).build();
   }
 }
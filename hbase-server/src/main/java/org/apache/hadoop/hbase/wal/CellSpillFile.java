@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.regionserver.CellSink;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A file on local disk holding a sorted run of the cells of a region family, spilled by
+ * {@link BoundedRecoveredHFilesOutputSink} while splitting a WAL, and the merge of such runs.
+ * <p>
+ * Each cell is written as its sequence id followed by the length and the bytes of the cell in the
+ * KeyValue format, tags included.
+ */
+@InterfaceAudience.Private
+final class CellSpillFile {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private CellSpillFile() {
+  }
+
+  /**
+   * Writes the given cells, which must be sorted, to a new file under the given directory.
+   * @return the written file
+   */
+  static File write(File dir, Iterable<Cell> cells) throws IOException {
+    File file = File.createTempFile("cells-", ".spill", dir);
+    try (DataOutputStream out = new DataOutputStream(
+      new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE))) {
+      for (Cell cell : cells) {
+        out.writeLong(cell.getSequenceId());
+        out.writeInt(KeyValueUtil.getSerializedSize(cell, true));
+        KeyValueUtil.oswrite(cell, out, true);
+      }
+    } catch (IOException e) {
+      delete(file);
+      throw e;
+    }
+    return file;
+  }
+
+  static void delete(File file) {
+    if (!file.delete() && file.exists()) {
+      file.deleteOnExit();
+    }
+  }
+
+  /**
+   * A source of sorted cells for the merge.
+   */
+  private static abstract class Source implements Closeable {
+
+    Cell current;
+
+    /** Returns the next cell, or null when there is none left */
+    abstract Cell read() throws IOException;
+
+    boolean advance() throws IOException {
+      current = read();
+      return current != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+  }
+
+  private static final class FileSource extends Source {
+
+    private final DataInputStream in;
+
+    FileSource(File file) throws IOException {
+      this.in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+    }
+
+    @Override
+    Cell read() throws IOException {
+      long seqId;
+      try {
+        seqId = in.readLong();
+      } catch (EOFException e) {
+        return null;
+      }
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      KeyValue kv = new KeyValue(bytes, 0, bytes.length);
+      kv.setSequenceId(seqId);
+      return kv;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  private static final class IteratorSource extends Source {
+
+    private final Iterator<Cell> iter;
+
+    IteratorSource(Iterator<Cell> iter) {
+      this.iter = iter;
+    }
+
+    @Override
+    Cell read() {
+      return iter.hasNext() ? iter.next() : null;
+    }
+  }
+
+  /**
+   * Merges the spilled runs and the cells still in memory, which must be sorted too, into the given
+   * sink. As for the cells in memory, a cell equal to an already merged one, sequence id included,
+   * is dropped.
+   * @return the number of cells appended to the sink
+   */
+  static long merge(List<File> runs, Iterable<Cell> inMemory, CellComparator comparator,
+    CellSink sink) throws IOException {
+    List<Source> sources = new ArrayList<>(runs.size() + 1);
+    PriorityQueue<Source> heap =
+      new PriorityQueue<>(runs.size() + 1, (a, b) -> comparator.compare(a.current, b.current));
+    long count = 0;
+    try {
+      for (File run : runs) {
+        sources.add(new FileSource(run));
+      }
+      if (inMemory != null) {
+        sources.add(new IteratorSource(inMemory.iterator()));
+      }
+      for (Source source : sources) {
+        if (source.advance()) {
+          heap.add(source);
+        }
+      }
+      Cell last = null;
+      while (!heap.isEmpty()) {
+        Source source = heap.poll();
+        Cell cell = source.current;
+        if (last == null || comparator.compare(last, cell) != 0) {
+          sink.append(cell);
+          last = cell;
+          count++;
+        }
+        if (source.advance()) {
+          heap.add(source);
+        }
+      }
+    } finally {
+      for (Source source : sources) {
+        source.close();
+      }
+    }
+    return count;
+  }
+}
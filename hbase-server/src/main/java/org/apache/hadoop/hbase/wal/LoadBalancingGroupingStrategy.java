@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import static org.apache.hadoop.hbase.util.ConcurrentMapUtils.computeIfAbsent;
+import static org.apache.hadoop.hbase.wal.BoundedGroupingStrategy.DEFAULT_NUM_REGION_GROUPS;
+import static org.apache.hadoop.hbase.wal.BoundedGroupingStrategy.NUM_REGION_GROUPS;
+import static org.apache.hadoop.hbase.wal.RegionGroupingProvider.REGION_GROUPING_STRATEGY;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.CompatibilitySingletonFactory;
+import org.apache.hadoop.hbase.regionserver.wal.MetricsWALSource;
+import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.wal.RegionGroupingProvider.RegionGroupingStrategy;
+import org.apache.hadoop.hbase.wal.RegionGroupingProvider.Strategies;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A WAL grouping strategy that, like {@link BoundedGroupingStrategy}, spreads the regions over
+ * "hbase.wal.regiongrouping.numgroups" groups, but keeps track of the bytes appended to and the
+ * sync latency of the WAL of each group, and of the bytes each region appended.
+ * <p/>
+ * When a WAL of the groups is rolled, and at most once per {@link #REBALANCE_PERIOD}, the regions
+ * which appended the most to the busiest group are reassigned to the least busy one. This only
+ * happens when the busiest group appended at least {@link #REBALANCE_SKEW} times the mean of the
+ * groups, and its syncs were not faster than the ones of the least busy group, as then the skew is
+ * not hurting. At most {@link #REBALANCE_MAX_MOVES} regions are reassigned at a time.
+ * <p/>
+ * A reassigned region keeps writing to its old WAL until it finishes a flush with an empty
+ * memstore, which is the point where the old WAL holds no unflushed edits of the region anymore.
+ * Edits of a region may then span the WALs of two groups, so this strategy should not be used with
+ * serial replication peers.
+ */
+@InterfaceAudience.Private
+public class LoadBalancingGroupingStrategy implements RegionGroupingStrategy {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LoadBalancingGroupingStrategy.class);
+
+  static final String REBALANCE_PERIOD = "hbase.wal.regiongrouping.balanced.period";
+  static final long DEFAULT_REBALANCE_PERIOD = 5 * 60 * 1000L;
+  static final String REBALANCE_SKEW = "hbase.wal.regiongrouping.balanced.skew";
+  static final float DEFAULT_REBALANCE_SKEW = 1.5f;
+  static final String REBALANCE_MAX_MOVES = "hbase.wal.regiongrouping.balanced.max.moves";
+  static final int DEFAULT_REBALANCE_MAX_MOVES = 2;
+
+  private final ConcurrentHashMap<String, String> groupNameCache = new ConcurrentHashMap<>();
+  private final AtomicInteger counter = new AtomicInteger(0);
+  private final MetricsWALSource metrics =
+    CompatibilitySingletonFactory.getInstance(MetricsWALSource.class);
+  private String[] groupNames;
+  private Map<String, GroupLoad> groupLoads;
+  private long rebalancePeriod;
+  private float rebalanceSkew;
+  private int maxMoves;
+  private volatile long lastRebalance;
+  private volatile long lastSkewPercent;
+
+  /**
+   * The load of a group since the last rebalance.
+   */
+  private static final class GroupLoad {
+    final LongAdder appendBytes = new LongAdder();
+    final LongAdder syncNanos = new LongAdder();
+    final LongAdder syncs = new LongAdder();
+    final ConcurrentHashMap<String, LongAdder> regionBytes = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Returns whether the regions may be moved between WAL groups with the given configuration, in
+   * which case the regions look for their new WAL after each flush.
+   */
+  public static boolean isEnabled(Configuration conf) {
+    String strategy = conf.get(REGION_GROUPING_STRATEGY);
+    return Strategies.balanced.name().equals(strategy)
+      || LoadBalancingGroupingStrategy.class.getName().equals(strategy);
+  }
+
+  @Override
+  public void init(Configuration config, String providerId) {
+    int regionGroupNumber = config.getInt(NUM_REGION_GROUPS, DEFAULT_NUM_REGION_GROUPS);
+    groupNames = new String[regionGroupNumber];
+    groupLoads = new HashMap<>();
+    for (int i = 0; i < regionGroupNumber; i++) {
+      groupNames[i] = providerId + GROUP_NAME_DELIMITER + "regiongroup-" + i;
+      groupLoads.put(groupNames[i], new GroupLoad());
+    }
+    rebalancePeriod = config.getLong(REBALANCE_PERIOD, DEFAULT_REBALANCE_PERIOD);
+    rebalanceSkew = config.getFloat(REBALANCE_SKEW, DEFAULT_REBALANCE_SKEW);
+    maxMoves = config.getInt(REBALANCE_MAX_MOVES, DEFAULT_REBALANCE_MAX_MOVES);
+    lastRebalance = EnvironmentEdgeManager.currentTime();
+  }
+
+  @Override
+  public String group(byte[] identifier, byte[] namespace) {
+    String idStr = Bytes.toString(identifier);
+    return computeIfAbsent(groupNameCache, idStr,
+      () -> groupNames[Math.floorMod(counter.getAndIncrement(), groupNames.length)]);
+  }
+
+  @Override
+  public WALActionsListener getWALActionsListener(String group) {
+    GroupLoad load = groupLoads.get(group);
+    if (load == null) {
+      // not one of our groups, e.g. the WAL for regions without a RegionInfo
+      return null;
+    }
+    return new WALActionsListener() {
+      @Override
+      public void postAppend(long entryLen, long elapsedTimeMillis, WALKey logKey,
+        WALEdit logEdit) {
+        load.appendBytes.add(entryLen);
+        computeIfAbsent(load.regionBytes, Bytes.toString(logKey.getEncodedRegionName()),
+          LongAdder::new).add(entryLen);
+      }
+
+      @Override
+      public void postSync(long timeInNanos, int handlerSyncs) {
+        load.syncNanos.add(timeInNanos);
+        load.syncs.increment();
+      }
+
+      @Override
+      public void postLogRoll(Path oldPath, Path newPath) {
+        if (EnvironmentEdgeManager.currentTime() - lastRebalance >= rebalancePeriod) {
+          rebalance();
+        }
+      }
+    };
+  }
+
+  /**
+   * Looks at the load of the groups since the last rebalance, and reassigns the regions that
+   * appended the most to the busiest group to the least busy group, if the skew is big enough.
+   */
+  synchronized void rebalance() {
+    lastRebalance = EnvironmentEdgeManager.currentTime();
+    int n = groupNames.length;
+    long[] bytes = new long[n];
+    double[] syncLatency = new double[n];
+    List<Map<String, Long>> regionBytes = new ArrayList<>(n);
+    long total = 0;
+    for (int i = 0; i < n; i++) {
+      GroupLoad load = groupLoads.get(groupNames[i]);
+      bytes[i] = load.appendBytes.sumThenReset();
+      long syncNanos = load.syncNanos.sumThenReset();
+      long syncs = load.syncs.sumThenReset();
+      syncLatency[i] = syncs == 0 ? 0 : (double) syncNanos / syncs;
+      Map<String, Long> appendedByRegion = new HashMap<>();
+      load.regionBytes.forEach((region, appended) -> appendedByRegion.put(region, appended.sum()));
+      regionBytes.add(appendedByRegion);
+      load.regionBytes.clear();
+      total += bytes[i];
+    }
+    if (total == 0) {
+      return;
+    }
+    int busiest = 0;
+    int leastBusy = 0;
+    for (int i = 1; i < n; i++) {
+      if (bytes[i] > bytes[busiest]) {
+        busiest = i;
+      }
+      if (bytes[i] < bytes[leastBusy]) {
+        leastBusy = i;
+      }
+    }
+    double skew = bytes[busiest] * n / (double) total;
+    lastSkewPercent = Math.round(skew * 100);
+    metrics.setGroupLoadSkew(lastSkewPercent);
+    if (skew < rebalanceSkew || syncLatency[busiest] < syncLatency[leastBusy]) {
+      return;
+    }
+    String from = groupNames[busiest];
+    String to = groupNames[leastBusy];
+    List<Map.Entry<String, Long>> candidates = new ArrayList<>(regionBytes.get(busiest).entrySet());
+    candidates.sort(Map.Entry.<String, Long> comparingByValue().reversed());
+    long gap = bytes[busiest] - bytes[leastBusy];
+    int moves = 0;
+    for (Map.Entry<String, Long> candidate : candidates) {
+      if (moves >= maxMoves) {
+        break;
+      }
+      long appended = candidate.getValue();
+      // Moving a region narrows the gap between the two groups only if it appended less than the
+      // gap, otherwise the least busy group just becomes the busiest one
+      if (appended >= gap) {
+        continue;
+      }
+      // Skip the regions which are already reassigned, they may still be writing to their old WAL
+      if (groupNameCache.replace(candidate.getKey(), from, to)) {
+        LOG.info("Moving region {} from WAL group {} to {}, it appended {} of the {} bytes of {}",
+          candidate.getKey(), from, to, appended, bytes[busiest], from);
+        gap -= 2 * appended;
+        moves++;
+        metrics.incrementGroupRegionMoves();
+      }
+    }
+  }
+
+  /** Returns the busiest group's appended bytes over the mean, in percent, at the last rebalance */
+  long getLastSkewPercent() {
+    return lastSkewPercent;
+  }
+}
@@ -49,6 +49,9 @@ import org.slf4j.LoggerFactory;
  * "bounded".</li>
  * <li><em>identity</em> : each region belongs to its own group.</li>
  * <li><em>bounded</em> : bounded number of groups and region evenly assigned to each group.</li>
+ * <li><em>namespace</em> : each namespace belongs to its own group.</li>
+ * <li><em>balanced</em> : bounded number of groups, and regions moved from busy groups to less busy
+ * ones as the load changes, see {@link LoadBalancingGroupingStrategy}.</li>
  * </ul>
  * Optionally, a FQCN to a custom implementation may be given.
  */
@@ -68,6 +71,14 @@ public class RegionGroupingProvider implements WALProvider {
     String group(final byte[] identifier, byte[] namespace);
 
     void init(Configuration config, String providerId);
+
+    /**
+     * Returns a listener to register on the WALs of the given group, for strategies that follow the
+     * load of the groups, or null.
+     */
+    default WALActionsListener getWALActionsListener(String group) {
+      return null;
+    }
   }
 
   /**
@@ -77,7 +88,8 @@ public class RegionGroupingProvider implements WALProvider {
     defaultStrategy(BoundedGroupingStrategy.class),
     identity(IdentityGroupingStrategy.class),
     bounded(BoundedGroupingStrategy.class),
-    namespace(NamespaceGroupingStrategy.class);
+    namespace(NamespaceGroupingStrategy.class),
+    balanced(LoadBalancingGroupingStrategy.class);
 
     final Class<? extends RegionGroupingStrategy> clazz;
 
@@ -174,6 +186,10 @@ public class RegionGroupingProvider implements WALProvider {
     provider.init(factory, conf,
       META_WAL_PROVIDER_ID.equals(providerId) ? META_WAL_PROVIDER_ID : group, this.abortable);
     provider.addWALActionsListener(new MetricsWAL());
+    WALActionsListener listener = strategy.getWALActionsListener(group);
+    if (listener != null) {
+      provider.addWALActionsListener(listener);
+    }
     return provider;
   }
 
@@ -164,6 +164,41 @@ public interface WAL extends Closeable, WALFileLengthProvider {
     sync(txid);
   }
 
+  /**
+   * Requests a sync of the WAL up to the given txid without waiting for it, so that the caller can
+   * do other work while the sync is in flight. The caller must call {@link PendingSync#await()}
+   * before relying on the durability of the edits, and should not sync again until then, as the
+   * sync futures of a thread are reused.
+   * @param txid Transaction id to sync to.
+   * @return the handle to wait on for the sync to complete
+   */
+  default PendingSync startSync(long txid) {
+    return () -> sync(txid);
+  }
+
+  /**
+   * @param txid      Transaction id to sync to.
+   * @param forceSync Flag to force sync rather than flushing to the buffer. Example - Hadoop hflush
+   *                  vs hsync.
+   * @return the handle to wait on for the sync to complete
+   * @see #startSync(long)
+   */
+  default PendingSync startSync(long txid, boolean forceSync) {
+    return () -> sync(txid, forceSync);
+  }
+
+  /**
+   * A sync requested through {@link #startSync(long)}, which may still be in flight.
+   */
+  @FunctionalInterface
+  interface PendingSync {
+    /**
+     * Waits for the sync to complete.
+     * @throws when timeout, it would throw {@link WALSyncTimeoutIOException}.
+     */
+    void await() throws IOException;
+  }
+
   /**
    * WAL keeps track of the sequence numbers that are as yet not flushed im memstores in order to be
    * able to do accounting to figure which WALs can be let go. This method tells WAL that some
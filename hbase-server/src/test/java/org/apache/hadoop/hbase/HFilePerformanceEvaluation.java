@@ -30,6 +30,7 @@ import org.apache.hadoop.hbase.io.crypto.DefaultCipherProvider;
 import org.apache.hadoop.hbase.io.crypto.Encryption;
 import org.apache.hadoop.hbase.io.crypto.KeyProviderForTesting;
 import org.apache.hadoop.hbase.io.crypto.aes.AES;
+import org.apache.hadoop.hbase.io.encoding.IndexBlockEncoding;
 import org.apache.hadoop.hbase.io.hfile.CacheConfig;
 import org.apache.hadoop.hbase.io.hfile.HFile;
 import org.apache.hadoop.hbase.io.hfile.HFileContext;
@@ -115,6 +116,10 @@ public class HFilePerformanceEvaluation {
     runWriteBenchmark(conf, fs, mf, "none", "none");
     runReadBenchmark(conf, fs, mf, "none", "none");
 
+    // codec=none cipher=none index=prefix_tree, to compare with the NONE index encoding above
+    runWriteBenchmark(conf, fs, mf, "none", "none", IndexBlockEncoding.PREFIX_TREE);
+    runReadBenchmark(conf, fs, mf, "none", "none", IndexBlockEncoding.PREFIX_TREE);
+
     // codec=gz cipher=none
     runWriteBenchmark(conf, fs, mf, "gz", "none");
     runReadBenchmark(conf, fs, mf, "gz", "none");
@@ -176,13 +181,33 @@ public class HFilePerformanceEvaluation {
    */
   private void runWriteBenchmark(Configuration conf, FileSystem fs, Path mf, String codec,
     String cipher) throws Exception {
+    runWriteBenchmark(conf, fs, mf, codec, cipher, IndexBlockEncoding.NONE);
+  }
+
+  /**
+   * Write a test HFile with the given codec, cipher & index block encoding, and record the size of
+   * the resulting block index.
+   * @param codec         "none", "lzo", "gz", "snappy"
+   * @param cipher        "none", "aes"
+   * @param indexEncoding the index block encoding to compare with {@link IndexBlockEncoding#NONE}
+   */
+  private void runWriteBenchmark(Configuration conf, FileSystem fs, Path mf, String codec,
+    String cipher, IndexBlockEncoding indexEncoding) throws Exception {
     if (fs.exists(mf)) {
       fs.delete(mf, true);
     }
 
-    runBenchmark(new SequentialWriteBenchmark(conf, fs, mf, ROW_COUNT, codec, cipher), ROW_COUNT,
-      codec, getCipherName(conf, cipher));
+    runBenchmark(
+      new SequentialWriteBenchmark(conf, fs, mf, ROW_COUNT, codec, cipher, indexEncoding),
+      ROW_COUNT, codec, getCipherName(conf, cipher), indexEncoding);
 
+    try (HFile.Reader reader = HFile.createReader(fs, mf, new CacheConfig(conf), true, conf)) {
+      String msg = "Block index with index[" + indexEncoding + "]: "
+        + reader.getTrailer().getUncompressedDataIndexSize() + " bytes uncompressed, "
+        + reader.indexSize() + " bytes on heap";
+      LOG.info(msg);
+      testSummary.append(msg).append("\n");
+    }
   }
 
   /**
@@ -192,12 +217,23 @@ public class HFilePerformanceEvaluation {
    */
   private void runReadBenchmark(final Configuration conf, final FileSystem fs, final Path mf,
     final String codec, final String cipher) {
+    runReadBenchmark(conf, fs, mf, codec, cipher, IndexBlockEncoding.NONE);
+  }
+
+  /**
+   * Run all the read benchmarks for the test HFile
+   * @param codec         "none", "lzo", "gz", "snappy"
+   * @param cipher        "none", "aes"
+   * @param indexEncoding the index block encoding the test HFile was written with
+   */
+  private void runReadBenchmark(final Configuration conf, final FileSystem fs, final Path mf,
+    final String codec, final String cipher, final IndexBlockEncoding indexEncoding) {
     PerformanceEvaluationCommons.concurrentReads(new Runnable() {
       @Override
       public void run() {
         try {
           runBenchmark(new UniformRandomSmallScan(conf, fs, mf, ROW_COUNT), ROW_COUNT, codec,
-            getCipherName(conf, cipher));
+            getCipherName(conf, cipher), indexEncoding);
         } catch (Exception e) {
           testSummary.append("UniformRandomSmallScan failed " + e.getMessage());
           e.printStackTrace();
@@ -210,7 +246,7 @@ public class HFilePerformanceEvaluation {
       public void run() {
         try {
           runBenchmark(new UniformRandomReadBenchmark(conf, fs, mf, ROW_COUNT), ROW_COUNT, codec,
-            getCipherName(conf, cipher));
+            getCipherName(conf, cipher), indexEncoding);
         } catch (Exception e) {
           testSummary.append("UniformRandomReadBenchmark failed " + e.getMessage());
           e.printStackTrace();
@@ -223,7 +259,7 @@ public class HFilePerformanceEvaluation {
       public void run() {
         try {
           runBenchmark(new GaussianRandomReadBenchmark(conf, fs, mf, ROW_COUNT), ROW_COUNT, codec,
-            getCipherName(conf, cipher));
+            getCipherName(conf, cipher), indexEncoding);
         } catch (Exception e) {
           testSummary.append("GaussianRandomReadBenchmark failed " + e.getMessage());
           e.printStackTrace();
@@ -236,7 +272,7 @@ public class HFilePerformanceEvaluation {
       public void run() {
         try {
           runBenchmark(new SequentialReadBenchmark(conf, fs, mf, ROW_COUNT), ROW_COUNT, codec,
-            getCipherName(conf, cipher));
+            getCipherName(conf, cipher), indexEncoding);
         } catch (Exception e) {
           testSummary.append("SequentialReadBenchmark failed " + e.getMessage());
           e.printStackTrace();
@@ -248,18 +284,25 @@ public class HFilePerformanceEvaluation {
 
   protected void runBenchmark(RowOrientedBenchmark benchmark, int rowCount, String codec,
     String cipher) throws Exception {
+    runBenchmark(benchmark, rowCount, codec, cipher, IndexBlockEncoding.NONE);
+  }
+
+  protected void runBenchmark(RowOrientedBenchmark benchmark, int rowCount, String codec,
+    String cipher, IndexBlockEncoding indexEncoding) throws Exception {
     LOG.info("Running " + benchmark.getClass().getSimpleName() + " with codec[" + codec + "] "
-      + "cipher[" + cipher + "] for " + rowCount + " rows.");
+      + "cipher[" + cipher + "] index[" + indexEncoding + "] for " + rowCount + " rows.");
 
     long elapsedTime = benchmark.run();
 
     LOG.info("Running " + benchmark.getClass().getSimpleName() + " with codec[" + codec + "] "
-      + "cipher[" + cipher + "] for " + rowCount + " rows took " + elapsedTime + "ms.");
+      + "cipher[" + cipher + "] index[" + indexEncoding + "] for " + rowCount + " rows took "
+      + elapsedTime + "ms.");
 
     // Store results to print summary at the end
     testSummary.append("Running ").append(benchmark.getClass().getSimpleName())
-      .append(" with codec[").append(codec).append("] cipher[").append(cipher).append("] for ")
-      .append(rowCount).append(" rows took ").append(elapsedTime).append("ms.").append("\n");
+      .append(" with codec[").append(codec).append("] cipher[").append(cipher).append("] index[")
+      .append(indexEncoding).append("] for ").append(rowCount).append(" rows took ")
+      .append(elapsedTime).append("ms.").append("\n");
   }
 
   static abstract class RowOrientedBenchmark {
@@ -329,17 +372,25 @@ public class HFilePerformanceEvaluation {
   static class SequentialWriteBenchmark extends RowOrientedBenchmark {
     protected HFile.Writer writer;
     private byte[] bytes = new byte[ROW_LENGTH];
+    private final IndexBlockEncoding indexEncoding;
 
     public SequentialWriteBenchmark(Configuration conf, FileSystem fs, Path mf, int totalRows,
       String codec, String cipher) {
+      this(conf, fs, mf, totalRows, codec, cipher, IndexBlockEncoding.NONE);
+    }
+
+    public SequentialWriteBenchmark(Configuration conf, FileSystem fs, Path mf, int totalRows,
+      String codec, String cipher, IndexBlockEncoding indexEncoding) {
       super(conf, fs, mf, totalRows, codec, cipher);
+      this.indexEncoding = indexEncoding;
     }
 
     @Override
     void setUp() throws Exception {
 
       HFileContextBuilder builder = new HFileContextBuilder()
-        .withCompression(HFileWriterImpl.compressionByName(codec)).withBlockSize(RFILE_BLOCKSIZE);
+        .withCompression(HFileWriterImpl.compressionByName(codec)).withBlockSize(RFILE_BLOCKSIZE)
+        .withIndexBlockEncoding(indexEncoding);
 
       if (cipher == "aes") {
         byte[] cipherKey = new byte[AES.KEY_LENGTH];
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Checksum;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.hadoop.hbase.util.ChecksumType;
+import org.apache.hadoop.util.DataChecksum;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the time taken to verify the checksums of off-heap HFile blocks by
+ * {@link ChecksumUtil#verifyChunkedSums(DataChecksum, ByteBuff, ByteBuff, String)}, which copies
+ * the blocks spanning several buffers to the heap, and by
+ * {@link ChecksumUtil#verifyChunkedSumsZeroCopy(Checksum, int, ByteBuff, int, String)}.
+ * <p>
+ * Usage: ChecksumPerformance [iterations]
+ */
+@InterfaceAudience.Private
+public class ChecksumPerformance {
+  private static final Logger LOG = LoggerFactory.getLogger(ChecksumPerformance.class);
+
+  private static final int DATA_SIZE = 64 * 1024;
+  private static final int BUFFER_SIZE = 4096;
+
+  private static long timeCopying(ChecksumType type, int bytesPerChecksum, ByteBuff buf,
+    int dataLength, int iterations) {
+    DataChecksum dataChecksum =
+      DataChecksum.newDataChecksum(type.getDataChecksumType(), bytesPerChecksum);
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      ByteBuff data = buf.duplicate().position(0).limit(dataLength);
+      ByteBuff checksums = buf.duplicate().position(dataLength).limit(buf.limit());
+      if (!ChecksumUtil.verifyChunkedSums(dataChecksum, data, checksums, "bench")) {
+        throw new IllegalStateException("Checksum mismatch");
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long timeZeroCopy(ChecksumType type, int bytesPerChecksum, ByteBuff buf,
+    int dataLength, int iterations) {
+    Checksum checksum = ChecksumUtil.newZeroCopyChecksum(type);
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      if (!ChecksumUtil.verifyChunkedSumsZeroCopy(checksum, bytesPerChecksum, buf, dataLength,
+        "bench")) {
+        throw new IllegalStateException("Checksum mismatch");
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  public static void main(String[] args) throws IOException {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    Random rand = new Random(42);
+    for (ChecksumType type : new ChecksumType[] { ChecksumType.CRC32, ChecksumType.CRC32C }) {
+      if (ChecksumUtil.newZeroCopyChecksum(type) == null) {
+        LOG.info("No zero-copy implementation of {} on this JVM, skipping", type);
+        continue;
+      }
+      for (int bytesPerChecksum : new int[] { 512, 4096, 16 * 1024, 64 * 1024 }) {
+        byte[] block =
+          TestChecksum.createChecksummedBlock(type, bytesPerChecksum, DATA_SIZE, rand);
+        ByteBuff buf = TestChecksum.toDirectByteBuff(block, BUFFER_SIZE);
+        int dataLength = HConstants.HFILEBLOCK_HEADER_SIZE + DATA_SIZE;
+        // Warm up both paths before timing
+        timeCopying(type, bytesPerChecksum, buf, dataLength, iterations);
+        timeZeroCopy(type, bytesPerChecksum, buf, dataLength, iterations);
+        long copying = timeCopying(type, bytesPerChecksum, buf, dataLength, iterations);
+        long zeroCopy = timeZeroCopy(type, bytesPerChecksum, buf, dataLength, iterations);
+        double mb = (double) dataLength * iterations / (1024 * 1024);
+        LOG.info(String.format("%s bytesPerChecksum=%d: copying %.1f MB/s, zero-copy %.1f MB/s",
+          type, bytesPerChecksum, mb * 1e9 / copying, mb * 1e9 / zeroCopy));
+      }
+    }
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.hadoop.hbase.io.hfile;
 import static org.apache.hadoop.hbase.io.compress.Compression.Algorithm.GZ;
 import static org.apache.hadoop.hbase.io.compress.Compression.Algorithm.NONE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -29,6 +30,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.util.Random;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
@@ -47,6 +49,7 @@ import org.apache.hadoop.hbase.nio.SingleByteBuff;
 import org.apache.hadoop.hbase.testclassification.IOTests;
 import org.apache.hadoop.hbase.testclassification.SmallTests;
 import org.apache.hadoop.hbase.util.ChecksumType;
+import org.apache.hadoop.util.DataChecksum;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -171,6 +174,67 @@ public class TestChecksum {
     }
   }
 
+  /**
+   * Creates a block made of a header with the checksum fields set, random data, and the checksums
+   * of the header and data.
+   */
+  static byte[] createChecksummedBlock(ChecksumType type, int bytesPerChecksum, int dataSize,
+    Random rand) throws IOException {
+    int sizeWithHeader = HConstants.HFILEBLOCK_HEADER_SIZE + dataSize;
+    int numBytes = (int) ChecksumUtil.numBytes(sizeWithHeader, bytesPerChecksum);
+    byte[] block = new byte[sizeWithHeader + numBytes];
+    rand.nextBytes(block);
+    ByteBuffer header = ByteBuffer.wrap(block);
+    header.put(HFileBlock.Header.CHECKSUM_TYPE_INDEX, type.getCode());
+    header.putInt(HFileBlock.Header.BYTES_PER_CHECKSUM_INDEX, bytesPerChecksum);
+    header.putInt(HFileBlock.Header.ON_DISK_DATA_SIZE_WITH_HEADER_INDEX, sizeWithHeader);
+    ChecksumUtil.generateChecksums(block, 0, sizeWithHeader, block, sizeWithHeader, type,
+      bytesPerChecksum);
+    return block;
+  }
+
+  /** Copies the block into direct ByteBuffers of the given size. */
+  static ByteBuff toDirectByteBuff(byte[] block, int bufferSize) {
+    int count = (block.length + bufferSize - 1) / bufferSize;
+    ByteBuffer[] buffers = new ByteBuffer[count];
+    for (int i = 0; i < count; i++) {
+      int length = Math.min(bufferSize, block.length - i * bufferSize);
+      buffers[i] = ByteBuffer.allocateDirect(length);
+      buffers[i].put(block, i * bufferSize, length).flip();
+    }
+    return count == 1 ? new SingleByteBuff(buffers[0]) : new MultiByteBuff(buffers);
+  }
+
+  @Test
+  public void testZeroCopyChecksum() throws IOException {
+    Random rand = new Random(1234);
+    for (ChecksumType type : new ChecksumType[] { ChecksumType.CRC32, ChecksumType.CRC32C }) {
+      for (int bytesPerChecksum : new int[] { 512, 1000, 16 * 1024 }) {
+        byte[] block = createChecksummedBlock(type, bytesPerChecksum, 64 * 1024 + 7, rand);
+        // A single buffer, buffers smaller than chunks, and buffers not aligned on chunks
+        for (int bufferSize : new int[] { block.length, 333, 4096, 65 * 1024 }) {
+          ByteBuff buf = toDirectByteBuff(block, bufferSize);
+          assertTrue(ChecksumUtil.validateChecksum(buf, "test", 0,
+            HConstants.HFILEBLOCK_HEADER_SIZE_NO_CHECKSUM));
+          assertEquals(0, buf.position());
+          // Same result as Hadoop's checksum
+          int dataLength = block.length - (int) ChecksumUtil
+            .numBytes(HConstants.HFILEBLOCK_HEADER_SIZE + 64 * 1024 + 7, bytesPerChecksum);
+          assertTrue(ChecksumUtil.verifyChunkedSums(
+            DataChecksum.newDataChecksum(type.getDataChecksumType(), bytesPerChecksum),
+            buf.duplicate().position(0).limit(dataLength),
+            buf.duplicate().position(dataLength).limit(buf.limit()), "test"));
+
+          // Corrupt the last data byte
+          int index = dataLength - 1;
+          buf.put(index, (byte) (buf.get(index) ^ 1));
+          assertFalse(ChecksumUtil.validateChecksum(buf, "test", 0,
+            HConstants.HFILEBLOCK_HEADER_SIZE_NO_CHECKSUM));
+        }
+      }
+    }
+  }
+
   /**
    * HFileBlock buffer does not include checksum because it is discarded after verifying upon
    * reading from disk. We artificially add a checksum onto the buffer for use in testing that
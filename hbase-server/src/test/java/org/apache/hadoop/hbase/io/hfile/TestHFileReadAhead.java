@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.fs.HFileSystem;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.StoreFileWriter;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests that pread scanners reading blocks ahead return the same cells as without read-ahead.
+ */
+@Category({ IOTests.class, MediumTests.class })
+public class TestHFileReadAhead {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestHFileReadAhead.class);
+
+  private static final HBaseTestingUtil TEST_UTIL = new HBaseTestingUtil();
+  private static final int DATA_BLOCK_SIZE = 1024;
+  private static final int NUM_KV = 2000;
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+  private Configuration conf;
+  private CacheConfig cacheConf;
+  private FileSystem fs;
+
+  @Before
+  public void setUp() throws IOException {
+    conf = TEST_UTIL.getConfiguration();
+    fs = HFileSystem.get(conf);
+    cacheConf = new CacheConfig(conf, BlockCacheFactory.createBlockCache(conf));
+  }
+
+  private static byte[] row(int i) {
+    return Bytes.toBytes(String.format("row-%08d", i));
+  }
+
+  private static byte[] value(int i) {
+    return Bytes.toBytes(String.format("value-%0100d", i));
+  }
+
+  private Path writeStoreFile(String name) throws IOException {
+    HFileContext meta = new HFileContextBuilder().withBlockSize(DATA_BLOCK_SIZE).build();
+    StoreFileWriter sfw = new StoreFileWriter.Builder(conf, cacheConf, fs)
+      .withOutputDir(new Path(TEST_UTIL.getDataTestDir(), name)).withFileContext(meta).build();
+    for (int i = 0; i < NUM_KV; i++) {
+      sfw.append(new KeyValue(row(i), FAMILY, QUALIFIER, 1, value(i)));
+    }
+    sfw.close();
+    return sfw.getPath();
+  }
+
+  private static void assertCell(int i, Cell cell) {
+    assertTrue(CellUtil.matchingRows(cell, row(i)));
+    assertTrue(CellUtil.matchingValue(cell, value(i)));
+  }
+
+  @Test
+  public void testScanWithReadAhead() throws IOException {
+    Path path = writeStoreFile("testScanWithReadAhead");
+    try (HFile.Reader reader = HFile.createReader(fs, path, cacheConf, true, conf);
+      HFileScanner scanner = reader.getScanner(conf, true, true)) {
+      scanner.setReadAhead(8);
+      HFileReadAhead readAhead = ((HFileReaderImpl.HFileScannerImpl) scanner).getReadAhead();
+      assertNotNull(readAhead);
+      assertTrue(scanner.seekTo());
+      int i = 0;
+      do {
+        assertCell(i++, scanner.getCell());
+      } while (scanner.next());
+      assertEquals(NUM_KV, i);
+      assertTrue(readAhead.getDepth() >= 1 && readAhead.getDepth() <= 8);
+    }
+  }
+
+  @Test
+  public void testSeekWhileReadingAhead() throws IOException {
+    Path path = writeStoreFile("testSeekWhileReadingAhead");
+    try (HFile.Reader reader = HFile.createReader(fs, path, cacheConf, true, conf);
+      HFileScanner scanner = reader.getScanner(conf, true, true)) {
+      scanner.setReadAhead(4);
+      assertTrue(scanner.seekTo());
+      // Cross a few blocks, so there are blocks read ahead
+      for (int i = 0; i < 100; i++) {
+        assertCell(i, scanner.getCell());
+        assertTrue(scanner.next());
+      }
+      // Jump back and forth, the blocks read ahead are dropped
+      for (int target : new int[] { 1500, 10, 1999 }) {
+        assertEquals(0, scanner.seekTo(new KeyValue(row(target), FAMILY, QUALIFIER, 1,
+          KeyValue.Type.Put)));
+        for (int i = target; i < Math.min(NUM_KV, target + 100); i++) {
+          assertCell(i, scanner.getCell());
+          assertEquals(i < NUM_KV - 1, scanner.next());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testNoReadAheadForStreamScanner() throws IOException {
+    Path path = writeStoreFile("testNoReadAheadForStreamScanner");
+    try (HFile.Reader reader = HFile.createReader(fs, path, cacheConf, true, conf);
+      HFileScanner scanner = reader.getScanner(conf, true, false)) {
+      scanner.setReadAhead(8);
+      assertNull(((HFileReaderImpl.HFileScannerImpl) scanner).getReadAhead());
+    }
+  }
+
+  @Test
+  public void testRegionScanWithReadAheadAttribute() throws IOException {
+    TableDescriptor desc = TableDescriptorBuilder
+      .newBuilder(TableName.valueOf("testRegionScanWithReadAheadAttribute")).setColumnFamily(
+        ColumnFamilyDescriptorBuilder.newBuilder(FAMILY).setBlocksize(DATA_BLOCK_SIZE).build())
+      .build();
+    HRegion region =
+      TEST_UTIL.createLocalHRegion(desc, HConstants.EMPTY_START_ROW, HConstants.EMPTY_END_ROW);
+    try {
+      for (int i = 0; i < NUM_KV; i++) {
+        region.put(new Put(row(i)).addColumn(FAMILY, QUALIFIER, value(i)));
+      }
+      region.flush(true);
+      Scan scan = new Scan().setReadType(Scan.ReadType.PREAD).setReadAheadBlocks(4);
+      assertEquals(4, scan.getReadAheadBlocks());
+      assertEquals(-1, new Scan().getReadAheadBlocks());
+      try (RegionScanner scanner = region.getScanner(scan)) {
+        int i = 0;
+        boolean more;
+        do {
+          List<Cell> cells = new ArrayList<>();
+          more = scanner.next(cells);
+          for (Cell cell : cells) {
+            assertCell(i++, cell);
+          }
+        } while (more);
+        assertEquals(NUM_KV, i);
+        assertFalse(scanner.next(new ArrayList<>()));
+      }
+    } finally {
+      HBaseTestingUtil.closeRegionAndWAL(region);
+    }
+  }
+}
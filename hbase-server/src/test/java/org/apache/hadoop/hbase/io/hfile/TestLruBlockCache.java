@@ -50,6 +50,8 @@ import org.junit.experimental.categories.Category;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.hbase.thirdparty.com.google.common.collect.Iterators;
+
 /**
  * Tests the concurrent LruBlockCache.
  * <p>
@@ -266,6 +268,34 @@ public class TestLruBlockCache {
     }
   }
 
+  @Test
+  public void testEvictBlocksByHfileName() throws Exception {
+    long maxSize = 100000;
+    long blockSize = calculateBlockSizeDefault(maxSize, 10);
+    LruBlockCache cache = new LruBlockCache(maxSize, blockSize, false);
+
+    // Two files of four blocks
+    CachedItem[] blocks = new CachedItem[8];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = new CachedItem("file" + (i % 2), (int) blockSize / 2, i);
+      cache.cacheBlock(blocks[i].cacheKey, blocks[i]);
+    }
+    assertEquals(8, cache.getBlockCount());
+    assertEquals(4, Iterators.size(cache.iterator("file0")));
+
+    assertTrue(cache.evictBlock(blocks[1].cacheKey));
+    assertEquals(3, Iterators.size(cache.iterator("file1")));
+    assertEquals(3, cache.evictBlocksByHfileName("file1"));
+    assertEquals(0, cache.evictBlocksByHfileName("file1"));
+    assertEquals(4, cache.getBlockCount());
+
+    BlockCacheUtil.CachedBlocksByFile cbsbf =
+      BlockCacheUtil.getLoadedCachedBlocksByFile(null, cache, "file0");
+    assertEquals(4, cbsbf.getCount());
+    assertEquals(1, cbsbf.getCachedBlockStatsByFile().size());
+    assertEquals(0, BlockCacheUtil.getLoadedCachedBlocksByFile(null, cache, "file1").getCount());
+  }
+
   @Test
   public void testCacheEvictionTwoPriorities() throws Exception {
     long maxSize = 100000;
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.Waiter;
+import org.apache.hadoop.hbase.io.hfile.PrefetchExecutor.PrefetchTask;
+import org.apache.hadoop.hbase.regionserver.throttle.NoLimitThroughputController;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests the ordering, progress and cancellation of the prefetches run by {@link PrefetchExecutor}.
+ */
+@Category({ IOTests.class, MediumTests.class })
+public class TestPrefetchScheduling {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestPrefetchScheduling.class);
+
+  private static final long TIMEOUT = 30000;
+
+  private final Configuration conf = HBaseConfiguration.create();
+
+  private final List<Path> requested = new ArrayList<>();
+
+  @After
+  public void tearDown() {
+    for (Path path : requested) {
+      PrefetchExecutor.cancel(path);
+    }
+    PrefetchExecutor.setPriorityFunction(path -> 0);
+    PrefetchExecutor.setThroughputController(NoLimitThroughputController.INSTANCE);
+  }
+
+  private static Path storeFile(String region, String file) {
+    return new Path("/hbase/data/default/t/" + region + "/f/" + file);
+  }
+
+  private void request(Path path, Runnable runnable) {
+    requested.add(path);
+    PrefetchExecutor.request(path, () -> {
+      try {
+        runnable.run();
+      } finally {
+        PrefetchExecutor.complete(path);
+      }
+    });
+  }
+
+  private static PrefetchTask getTask(Path path) {
+    return PrefetchExecutor.getPrefetchTasks().stream().filter(t -> t.getPath().equals(path))
+      .findFirst().orElse(null);
+  }
+
+  private void waitForState(Path path, PrefetchTask.State state) {
+    Waiter.waitFor(conf, TIMEOUT, () -> {
+      PrefetchTask task = getTask(path);
+      return task != null && task.getState() == state;
+    });
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  public void testHotRegionsFirst() throws Exception {
+    PrefetchExecutor.setPriorityFunction(path -> path.getParent().getParent().getName()
+      .equals("hot") ? 100 : 1);
+    // Keep all the prefetch threads busy
+    int threads = conf.getInt("hbase.hfile.thread.prefetch", 4);
+    List<CountDownLatch> blockers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      CountDownLatch blocker = new CountDownLatch(1);
+      blockers.add(blocker);
+      Path path = storeFile("busy", "file" + i);
+      request(path, () -> await(blocker));
+      waitForState(path, PrefetchTask.State.RUNNING);
+    }
+
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    Path cold = storeFile("cold", "file");
+    Path hot = storeFile("hot", "file");
+    request(cold, () -> order.add("cold"));
+    waitForState(cold, PrefetchTask.State.READY);
+    request(hot, () -> order.add("hot"));
+    waitForState(hot, PrefetchTask.State.READY);
+
+    // Free one thread only, which must pick the hot region although it was requested last
+    blockers.get(0).countDown();
+    Waiter.waitFor(conf, TIMEOUT, () -> PrefetchExecutor.isCompleted(hot));
+    for (CountDownLatch blocker : blockers) {
+      blocker.countDown();
+    }
+    Waiter.waitFor(conf, TIMEOUT, () -> PrefetchExecutor.isCompleted(cold));
+    assertEquals(2, order.size());
+    assertEquals("hot", order.get(0));
+  }
+
+  @Test
+  public void testProgressAndCancel() throws Exception {
+    Path path = storeFile("region", "file");
+    CountDownLatch reported = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    request(path, () -> {
+      try {
+        PrefetchExecutor.prefetched(path, 64, 256, 64);
+        reported.countDown();
+        new CountDownLatch(1).await();
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+      }
+    });
+    reported.await();
+    PrefetchTask task = getTask(path);
+    assertEquals(64, task.getOffset());
+    assertEquals(256, task.getEnd());
+    assertEquals(PrefetchTask.State.RUNNING, task.getState());
+    assertFalse(PrefetchExecutor.isCompleted(path));
+
+    PrefetchExecutor.cancel(path);
+    interrupted.await();
+    assertTrue(PrefetchExecutor.isCompleted(path));
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.io.encoding.IndexBlockEncoding;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ IOTests.class, MediumTests.class })
+public class TestPrefixTreeIndexBlockEncoder {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestPrefixTreeIndexBlockEncoder.class);
+
+  private static final HBaseTestingUtil TEST_UTIL = new HBaseTestingUtil();
+  private static final int NUM_KV = 10000;
+  private static final int[] INDEX_CHUNK_SIZES = { 4096, 512, 384 };
+
+  private Configuration conf;
+  private FileSystem fs;
+
+  @Before
+  public void setUp() throws IOException {
+    conf = TEST_UTIL.getConfiguration();
+    fs = FileSystem.get(conf);
+  }
+
+  private static List<KeyValue> createKeyValues() {
+    List<KeyValue> kvs = new ArrayList<>(NUM_KV);
+    byte[] family = Bytes.toBytes("f");
+    byte[] qualifier = Bytes.toBytes("q");
+    for (int i = 0; i < NUM_KV; ++i) {
+      // Long shared prefixes, with rows of different lengths
+      String row =
+        String.format("tenant-%04d/device/%06d", i / 1000, i) + (i % 3 == 0 ? "" : "/x");
+      kvs.add(new KeyValue(Bytes.toBytes(row), family, qualifier, 1L, Bytes.toBytes(i)));
+    }
+    kvs.sort(CellComparatorImpl.COMPARATOR);
+    return kvs;
+  }
+
+  private Path writeHFile(String name, List<KeyValue> kvs, int indexChunkSize,
+    IndexBlockEncoding encoding) throws IOException {
+    Path path = new Path(TEST_UTIL.getDataTestDir(), name);
+    conf.setInt(HFileBlockIndex.MAX_CHUNK_SIZE_KEY, indexChunkSize);
+    HFileContext meta =
+      new HFileContextBuilder().withBlockSize(1024).withIndexBlockEncoding(encoding).build();
+    try (HFile.Writer writer = HFile.getWriterFactory(conf, new CacheConfig(conf))
+      .withPath(fs, path).withFileContext(meta).create()) {
+      for (KeyValue kv : kvs) {
+        writer.append(kv);
+      }
+    }
+    return path;
+  }
+
+  @Test
+  public void testSeekMatchesNoneEncoding() throws IOException {
+    List<KeyValue> kvs = createKeyValues();
+    for (int indexChunkSize : INDEX_CHUNK_SIZES) {
+      Path nonePath =
+        writeHFile("none_" + indexChunkSize, kvs, indexChunkSize, IndexBlockEncoding.NONE);
+      Path prefixTreePath = writeHFile("prefix_tree_" + indexChunkSize, kvs, indexChunkSize,
+        IndexBlockEncoding.PREFIX_TREE);
+      try (
+        HFile.Reader none = HFile.createReader(fs, nonePath, CacheConfig.DISABLED, true, conf);
+        HFile.Reader prefixTree =
+          HFile.createReader(fs, prefixTreePath, CacheConfig.DISABLED, true, conf)) {
+        assertEquals(none.getTrailer().getNumDataIndexLevels(),
+          prefixTree.getTrailer().getNumDataIndexLevels());
+        assertTrue("Encoded index should be smaller than the flat one",
+          prefixTree.getTrailer().getUncompressedDataIndexSize()
+              < none.getTrailer().getUncompressedDataIndexSize());
+        assertEquals(0, CellComparatorImpl.COMPARATOR.compare(none.getFirstKey().get(),
+          prefixTree.getFirstKey().get()));
+        assertEquals(0, CellComparatorImpl.COMPARATOR.compare(none.midKey().get(),
+          prefixTree.midKey().get()));
+
+        HFileScanner scanner = prefixTree.getScanner(conf, false, true);
+        for (int i = 0; i < kvs.size(); ++i) {
+          KeyValue kv = kvs.get(i);
+          assertEquals("Failed to seek to key #" + i + " (" + kv + ")", 0, scanner.seekTo(kv));
+          assertEquals(0, CellComparatorImpl.COMPARATOR.compare(kv, scanner.getCell()));
+        }
+        // Before the first key of the file
+        assertEquals(-1, scanner.seekTo(KeyValueUtil.createFirstOnRow(new byte[] { 0 })));
+        assertTrue(scanner.seekBefore(kvs.get(1)));
+        assertEquals(0, CellComparatorImpl.COMPARATOR.compare(kvs.get(0), scanner.getCell()));
+      }
+    }
+  }
+}
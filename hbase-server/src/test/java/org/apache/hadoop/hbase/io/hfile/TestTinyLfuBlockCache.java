@@ -124,6 +124,28 @@ public class TestTinyLfuBlockCache {
     assertEquals(10, cache.getBlockCount());
   }
 
+  @Test
+  public void testEvictBlocksByHfileName() throws Exception {
+    long maxSize = 100000;
+    long blockSize = calculateBlockSizeDefault(maxSize, 10);
+    TinyLfuBlockCache cache = new TinyLfuBlockCache(maxSize, blockSize, blockSize, Runnable::run);
+
+    // Two files of four blocks
+    CachedItem[] blocks = new CachedItem[8];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = new CachedItem("file" + (i % 2), (int) blockSize / 2, i);
+      cache.cacheBlock(blocks[i].cacheKey, blocks[i]);
+    }
+    assertEquals(8, cache.getBlockCount());
+
+    assertTrue(cache.evictBlock(blocks[1].cacheKey));
+    assertEquals(3, cache.evictBlocksByHfileName("file1"));
+    assertEquals(0, cache.evictBlocksByHfileName("file1"));
+    assertEquals(4, cache.getBlockCount());
+    assertEquals(4, cache.evictBlocksByHfileName("file0"));
+    assertEquals(0, cache.getBlockCount());
+  }
+
   @Test
   public void testScanResistance() throws Exception {
 
@@ -266,7 +288,11 @@ public class TestTinyLfuBlockCache {
     int size;
 
     CachedItem(String blockName, int size) {
-      this.cacheKey = new BlockCacheKey(blockName, 0);
+      this(blockName, size, 0);
+    }
+
+    CachedItem(String blockName, int size, int offset) {
+      this.cacheKey = new BlockCacheKey(blockName, offset);
       this.size = size;
     }
 
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.CacheTestUtils;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ IOTests.class, SmallTests.class })
+public class TestBlockAdmissionPolicy {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestBlockAdmissionPolicy.class);
+
+  private static final int BLOCK_SIZE = 8192;
+
+  @Test
+  public void testTinyLfuFrequency() {
+    TinyLfuAdmissionPolicy policy =
+      new TinyLfuAdmissionPolicy(HBaseConfiguration.create(), 1024);
+    BlockCacheKey key = new BlockCacheKey("file", 0);
+    assertEquals(0, policy.frequency(key));
+    for (int i = 1; i <= 20; i++) {
+      policy.recordAccess(key);
+      assertEquals(Math.min(i, 15), policy.frequency(key));
+    }
+    // Ages out once the sketch has seen enough other lookups
+    for (int i = 0; i < 10 * 1024; i++) {
+      policy.recordAccess(new BlockCacheKey("other", i));
+    }
+    assertTrue(policy.frequency(key) < 15);
+  }
+
+  @Test
+  public void testOneHitWonderIsNotCached() throws Exception {
+    Configuration conf = HBaseConfiguration.create();
+    conf.set(BucketCache.ADMISSION_POLICY_KEY, TinyLfuAdmissionPolicy.class.getName());
+    BucketCache cache = new BucketCache("offheap", 32 * 1024 * 1024, BLOCK_SIZE, null,
+      BucketCache.DEFAULT_WRITER_THREADS, BucketCache.DEFAULT_WRITER_QUEUE_ITEMS, null,
+      BucketCache.DEFAULT_ERROR_TOLERATION_DURATION, conf);
+    try {
+      CacheTestUtils.HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 3);
+      BucketCacheStats stats = (BucketCacheStats) cache.getStats();
+
+      // Read once
+      BlockCacheKey key = blocks[0].getBlockName();
+      assertNull(cache.getBlock(key, true, false, true));
+      cache.cacheBlock(key, blocks[0].getBlock());
+      assertFalse(cache.ramCache.containsKey(key));
+      assertFalse(cache.backingMap.containsKey(key));
+      assertEquals(1, stats.getRejectedCount());
+
+      // Read again
+      assertNull(cache.getBlock(key, true, false, true));
+      cache.cacheBlock(key, blocks[0].getBlock());
+      assertTrue(cache.ramCache.containsKey(key) || cache.backingMap.containsKey(key));
+      assertEquals(1, stats.getAdmittedCount());
+
+      // Cached on write
+      cache.cacheBlock(blocks[1].getBlockName(), blocks[1].getBlock(), false, true);
+      assertTrue(cache.ramCache.containsKey(blocks[1].getBlockName())
+        || cache.backingMap.containsKey(blocks[1].getBlockName()));
+      // In memory
+      cache.cacheBlock(blocks[2].getBlockName(), blocks[2].getBlock(), true);
+      assertTrue(cache.ramCache.containsKey(blocks[2].getBlockName())
+        || cache.backingMap.containsKey(blocks[2].getBlockName()));
+      assertEquals(1, stats.getAdmittedCount());
+      assertEquals(1, stats.getRejectedCount());
+    } finally {
+      cache.shutdown();
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtil;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.CacheTestUtils;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests recovering a persistent {@link BucketCache} from its checkpoint, when it was not shut down
+ * cleanly.
+ */
+@Category({ IOTests.class, SmallTests.class })
+public class TestBucketCacheCheckpoint {
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestBucketCacheCheckpoint.class);
+
+  private static final long CAPACITY_SIZE = 32 * 1024 * 1024;
+  private static final int BLOCK_SIZE = 8192;
+
+  private BucketCache createCache(Configuration conf, Path testDir) throws Exception {
+    return createCache(conf, testDir, null);
+  }
+
+  private BucketCache createCache(Configuration conf, Path testDir, int[] bucketSizes)
+    throws Exception {
+    return new BucketCache("file:" + testDir + "/bucket.cache", CAPACITY_SIZE, BLOCK_SIZE,
+      bucketSizes,
+      BucketCache.DEFAULT_WRITER_THREADS, BucketCache.DEFAULT_WRITER_QUEUE_ITEMS,
+      testDir + "/bucket.persistence", BucketCache.DEFAULT_ERROR_TOLERATION_DURATION, conf);
+  }
+
+  @Test
+  public void testRecoverAfterCrash() throws Exception {
+    HBaseTestingUtil TEST_UTIL = new HBaseTestingUtil();
+    Path testDir = TEST_UTIL.getDataTestDir();
+    TEST_UTIL.getTestFileSystem().mkdirs(testDir);
+    Configuration conf = TEST_UTIL.getConfiguration();
+    // Long enough that the test drives the flushes
+    conf.setLong(BucketCache.CHECKPOINT_INTERVAL_KEY, 60 * 60 * 1000);
+
+    BucketCache bucketCache = createCache(conf, testDir);
+    CacheTestUtils.HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 10);
+    for (CacheTestUtils.HFileBlockPair block : blocks) {
+      cacheAndWaitUntilFlushedToBucket(bucketCache, block.getBlockName(), block.getBlock());
+    }
+    BlockCacheKey evicted = blocks[0].getBlockName();
+    assertTrue(bucketCache.evictBlock(evicted));
+    long usedSize = bucketCache.getAllocator().getUsedSize();
+    // The space of the evicted block is only freed once its eviction is in the log, which
+    // freeSpace does, as there is nothing to evict here.
+    bucketCache.freeSpace("testing");
+    assertTrue(bucketCache.getAllocator().getUsedSize() < usedSize);
+    usedSize = bucketCache.getAllocator().getUsedSize();
+
+    // Do not shut down the first cache, so there is no persistence file to restore from
+    assertFalse(new File(testDir + "/bucket.persistence").exists());
+    BucketCache recovered = createCache(conf, testDir);
+    try {
+      assertEquals(blocks.length - 1, recovered.backingMap.size());
+      assertFalse(recovered.backingMap.containsKey(evicted));
+      assertEquals(usedSize, recovered.getAllocator().getUsedSize());
+      BucketCacheStats stats = (BucketCacheStats) recovered.getStats();
+      assertEquals(blocks.length - 1, stats.getRecoveredBlockCount());
+      assertEquals(1.0, stats.getRecoveredBlockRatio(), 0.001);
+      for (int i = 1; i < blocks.length; i++) {
+        Cacheable block = recovered.getBlock(blocks[i].getBlockName(), false, false, false);
+        assertNotNull(block);
+        assertEquals(blocks[i].getBlock(), block);
+        block.release();
+      }
+    } finally {
+      recovered.shutdown();
+      bucketCache.shutdown();
+      TEST_UTIL.cleanupTestDir();
+    }
+  }
+
+  @Test
+  public void testRecoveredBlockRatio() throws Exception {
+    HBaseTestingUtil TEST_UTIL = new HBaseTestingUtil();
+    Path testDir = TEST_UTIL.getDataTestDir();
+    TEST_UTIL.getTestFileSystem().mkdirs(testDir);
+    Configuration conf = TEST_UTIL.getConfiguration();
+    conf.setLong(BucketCache.CHECKPOINT_INTERVAL_KEY, 60 * 60 * 1000);
+
+    BucketCache bucketCache = createCache(conf, testDir);
+    CacheTestUtils.HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 4);
+    for (CacheTestUtils.HFileBlockPair block : blocks) {
+      cacheAndWaitUntilFlushedToBucket(bucketCache, block.getBlockName(), block.getBlock());
+    }
+    // Make the additions durable in the log
+    bucketCache.freeSpace("testing");
+
+    // The blocks do not fit the buckets of the restarted cache, so none can be restored
+    BucketCache recovered = createCache(conf, testDir, new int[] { 5120 });
+    try {
+      assertEquals(0, recovered.backingMap.size());
+      BucketCacheStats stats = (BucketCacheStats) recovered.getStats();
+      assertEquals(0, stats.getRecoveredBlockCount());
+      assertEquals(0.0, stats.getRecoveredBlockRatio(), 0.001);
+    } finally {
+      recovered.shutdown();
+      bucketCache.shutdown();
+      TEST_UTIL.cleanupTestDir();
+    }
+  }
+
+  private void waitUntilFlushedToBucket(BucketCache cache, BlockCacheKey cacheKey)
+    throws InterruptedException {
+    while (!cache.backingMap.containsKey(cacheKey) || cache.ramCache.containsKey(cacheKey)) {
+      Thread.sleep(100);
+    }
+  }
+
+  private void cacheAndWaitUntilFlushedToBucket(BucketCache cache, BlockCacheKey cacheKey,
+    Cacheable block) throws InterruptedException {
+    cache.cacheBlock(cacheKey, block);
+    waitUntilFlushedToBucket(cache, cacheKey);
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HBaseTestingUtil;
+import org.apache.hadoop.hbase.io.ByteBuffAllocator;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockPriority;
+import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.io.hfile.CacheTestUtils;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ IOTests.class, SmallTests.class })
+public class TestCompactBackingMap {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestCompactBackingMap.class);
+
+  private static final int BLOCK_SIZE = 8192;
+
+  private static BucketEntry newEntry(long offset, int length, boolean inMemory) {
+    BucketEntry entry = new BucketEntry(offset, length, offset, inMemory,
+      e -> ByteBuffAllocator.NONE, ByteBuffAllocator.HEAP);
+    entry.deserializerIndex = 3;
+    return entry;
+  }
+
+  private static void assertSameBlock(BucketEntry expected, BucketEntry actual) {
+    assertNotNull(actual);
+    assertEquals(expected.offset(), actual.offset());
+    assertEquals(expected.getLength(), actual.getLength());
+    assertEquals(expected.getCachedTime(), actual.getCachedTime());
+    assertEquals(expected.getPriority(), actual.getPriority());
+    assertEquals(expected.deserializerIndex, actual.deserializerIndex);
+  }
+
+  @Test
+  public void testPutGetRemove() {
+    CompactBackingMap map = new CompactBackingMap(e -> ByteBuffAllocator.NONE);
+    BlockCacheKey key = new BlockCacheKey("file", 1234, false, BlockType.LEAF_INDEX);
+    BucketEntry entry = newEntry(256, 100, true);
+    assertNull(map.put(key, entry));
+    assertSameBlock(entry, map.get(new BlockCacheKey("file", 1234)));
+    assertNull(map.get(new BlockCacheKey("file", 0)));
+    assertNull(map.get(new BlockCacheKey("other", 1234)));
+    assertEquals(1, map.size());
+
+    // The keys are restored when iterating
+    Map.Entry<BlockCacheKey, BucketEntry> e = map.entrySet().iterator().next();
+    assertEquals(key, e.getKey());
+    assertFalse(e.getKey().isPrimary());
+    assertEquals(BlockType.LEAF_INDEX, e.getKey().getBlockType());
+
+    // Access counters are written through
+    BucketEntry read = map.get(key);
+    read.access(4321);
+    assertEquals(4321, map.get(key).getAccessCounter());
+    assertEquals(BlockPriority.MEMORY, map.get(key).getPriority());
+
+    // Entries read separately are equal, but a new block at the same offset is not
+    assertEquals(map.get(key), map.get(key));
+    BucketEntry replacement = newEntry(256, 100, false);
+    assertNotEquals(replacement.getCachedTime(), entry.getCachedTime());
+    assertFalse(map.remove(key, replacement));
+    assertSameBlock(entry, map.put(key, replacement));
+    assertFalse(map.remove(key, entry));
+    assertEquals(1, map.size());
+    assertTrue(map.remove(key, replacement));
+    assertTrue(map.isEmpty());
+    assertNull(map.get(key));
+  }
+
+  @Test
+  public void testReplace() {
+    CompactBackingMap map = new CompactBackingMap(e -> ByteBuffAllocator.NONE);
+    BlockCacheKey key = new BlockCacheKey("file", 1234);
+    BucketEntry entry = newEntry(256, 100, true);
+    BucketEntry replacement = newEntry(512, 200, false);
+    assertNull(map.replace(key, entry));
+    assertFalse(map.replace(key, entry, replacement));
+    assertTrue(map.isEmpty());
+
+    map.put(key, entry);
+    // Only replaced if the entry describes the same cached block
+    assertFalse(map.replace(key, replacement, newEntry(768, 300, false)));
+    assertSameBlock(entry, map.get(key));
+    assertTrue(map.replace(key, entry, replacement));
+    assertSameBlock(replacement, map.get(key));
+    assertSameBlock(replacement, map.replace(key, entry));
+    assertSameBlock(entry, map.get(key));
+    assertEquals(1, map.size());
+    assertTrue(map.remove(key, entry));
+    assertTrue(map.isEmpty());
+    assertEquals(0, map.getHeapSaved());
+  }
+
+  @Test
+  public void testAgainstHashMap() {
+    CompactBackingMap map = new CompactBackingMap(e -> ByteBuffAllocator.NONE);
+    Map<BlockCacheKey, BucketEntry> expected = new HashMap<>();
+    Random rand = new Random(42);
+    for (int i = 0; i < 100000; i++) {
+      // Few files and offsets, so that the tables grow and entries collide and get removed
+      BlockCacheKey key = new BlockCacheKey("file" + rand.nextInt(20), rand.nextInt(5000) * 64L);
+      if (rand.nextInt(3) == 0) {
+        BucketEntry removed = expected.remove(key);
+        BucketEntry actual = map.remove(key);
+        if (removed == null) {
+          assertNull(actual);
+        } else {
+          assertSameBlock(removed, actual);
+        }
+      } else {
+        BucketEntry entry = newEntry(i * 256L, i, rand.nextBoolean());
+        BucketEntry previous = expected.put(key, entry);
+        BucketEntry actual = map.put(key, entry);
+        if (previous == null) {
+          assertNull(actual);
+        } else {
+          assertSameBlock(previous, actual);
+        }
+      }
+    }
+    assertEquals(expected.size(), map.size());
+    for (Map.Entry<BlockCacheKey, BucketEntry> entry : expected.entrySet()) {
+      assertSameBlock(entry.getValue(), map.get(entry.getKey()));
+    }
+    int count = 0;
+    for (Map.Entry<BlockCacheKey, BucketEntry> entry : map.entrySet()) {
+      assertSameBlock(expected.get(entry.getKey()), entry.getValue());
+      count++;
+    }
+    assertEquals(expected.size(), count);
+    assertTrue(map.getHeapSaved() > 0);
+    assertTrue(map.getOffHeapSize() >= expected.size() * CompactBackingMap.SLOT_SIZE);
+
+    for (Iterator<BlockCacheKey> it = map.keySet().iterator(); it.hasNext();) {
+      it.next();
+      it.remove();
+    }
+    assertTrue(map.isEmpty());
+    assertEquals(0, map.getHeapSaved());
+  }
+
+  @Test
+  public void testBucketCache() throws Exception {
+    HBaseTestingUtil testUtil = new HBaseTestingUtil();
+    Path testDir = testUtil.getDataTestDir();
+    testUtil.getTestFileSystem().mkdirs(testDir);
+    Configuration conf = testUtil.getConfiguration();
+    conf.setBoolean(BucketCache.COMPACT_BACKING_MAP_KEY, true);
+    BucketCache cache = new BucketCache("file:" + testDir + "/bucket.cache", 32 * 1024 * 1024,
+      BLOCK_SIZE, null, BucketCache.DEFAULT_WRITER_THREADS,
+      BucketCache.DEFAULT_WRITER_QUEUE_ITEMS, null, BucketCache.DEFAULT_ERROR_TOLERATION_DURATION,
+      conf);
+    try {
+      assertTrue(cache.backingMap instanceof CompactBackingMap);
+      CacheTestUtils.HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 10);
+      BlockCacheKey[] keys = new BlockCacheKey[blocks.length];
+      for (int i = 0; i < blocks.length; i++) {
+        // Two files of five blocks
+        keys[i] = new BlockCacheKey("file" + (i % 2), i * BLOCK_SIZE);
+        cache.cacheBlock(keys[i], blocks[i].getBlock());
+        while (!cache.backingMap.containsKey(keys[i]) || cache.ramCache.containsKey(keys[i])) {
+          Thread.sleep(100);
+        }
+      }
+      long usedSize = cache.getAllocator().getUsedSize();
+      for (int i = 0; i < blocks.length; i++) {
+        Cacheable block = cache.getBlock(keys[i], false, false, false);
+        assertEquals(blocks[i].getBlock(), block);
+        block.release();
+      }
+      assertTrue(((BucketCacheStats) cache.getStats()).getBackingMapHeapSaved() > 0);
+
+      assertTrue(cache.evictBlock(keys[0]));
+      assertFalse(cache.evictBlock(keys[0]));
+      assertNull(cache.getBlock(keys[0], false, false, false));
+      assertTrue(cache.getAllocator().getUsedSize() < usedSize);
+      assertEquals(5, cache.evictBlocksByHfileName("file1"));
+      assertEquals(4, cache.backingMap.size());
+      assertEquals(4, cache.getBlockCount());
+      assertEquals(4, cache.evictBlocksByHfileName("file0"));
+      assertTrue(cache.backingMap.isEmpty());
+      assertEquals(0, cache.getAllocator().getUsedSize());
+    } finally {
+      cache.shutdown();
+      testUtil.cleanupTestDir();
+    }
+  }
+
+  @Test
+  public void testNotUsedWithSharedMemory() throws Exception {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setBoolean(BucketCache.COMPACT_BACKING_MAP_KEY, true);
+    BucketCache cache = new BucketCache("offheap", 32 * 1024 * 1024, BLOCK_SIZE, null,
+      BucketCache.DEFAULT_WRITER_THREADS, BucketCache.DEFAULT_WRITER_QUEUE_ITEMS, null,
+      BucketCache.DEFAULT_ERROR_TOLERATION_DURATION, conf);
+    try {
+      assertFalse(cache.backingMap instanceof CompactBackingMap);
+    } finally {
+      cache.shutdown();
+    }
+  }
+}
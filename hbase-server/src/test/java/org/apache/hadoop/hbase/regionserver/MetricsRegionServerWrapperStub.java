@@ -82,6 +82,41 @@ public class MetricsRegionServerWrapperStub implements MetricsRegionServerWrappe
     return 600;
   }
 
+  @Override
+  public long getInMemoryFlattenCount() {
+    return 0;
+  }
+
+  @Override
+  public long getInMemoryMergeCount() {
+    return 0;
+  }
+
+  @Override
+  public long getInMemoryCompactionCount() {
+    return 0;
+  }
+
+  @Override
+  public long getMemStoreIndexChunkPoolMissCount() {
+    return 0;
+  }
+
+  @Override
+  public long getMemStoreDataChunkPoolMissCount() {
+    return 0;
+  }
+
+  @Override
+  public long getMemStoreChunkAllocRetryCount() {
+    return 0;
+  }
+
+  @Override
+  public long getMemStoreJumboChunkCount() {
+    return 0;
+  }
+
   @Override
   public long getStoreFileSize() {
     return 1900;
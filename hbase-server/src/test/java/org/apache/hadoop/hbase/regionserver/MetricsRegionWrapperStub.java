@@ -77,6 +77,11 @@ public class MetricsRegionWrapperStub implements MetricsRegionWrapper {
     return 103;
   }
 
+  @Override
+  public long getMemStoreIndexOffHeapSize() {
+    return 130;
+  }
+
   @Override
   public long getStoreFileSize() {
     return 104;
@@ -198,4 +203,18 @@ public class MetricsRegionWrapperStub implements MetricsRegionWrapper {
     map.put("info", 0L);
     return map;
   }
+
+  @Override
+  public Map<String, Long> getFlushWriteTime() {
+    Map<String, Long> map = new HashMap<>();
+    map.put("info", 131L);
+    return map;
+  }
+
+  @Override
+  public Map<String, Long> getFlushCommitTime() {
+    Map<String, Long> map = new HashMap<>();
+    map.put("info", 132L);
+    return map;
+  }
 }
@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.util.MemorySizeUtil;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RegionServerTests.class, SmallTests.class })
+public class TestCellChunkSkipListMap {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestCellChunkSkipListMap.class);
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final byte[] VALUE = Bytes.toBytes("v");
+
+  private final Configuration conf = new Configuration();
+  private final CellComparator comparator = CellComparator.getInstance();
+  private MemStoreLAB mslab;
+
+  @Before
+  public void setUp() {
+    long globalMemStoreLimit =
+      (long) (ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax()
+        * MemorySizeUtil.getGlobalMemStoreHeapPercent(conf, false));
+    ChunkCreator.initialize(MemStoreLAB.CHUNK_SIZE_DEFAULT, false, globalMemStoreLimit, 0.2f,
+      MemStoreLAB.POOL_INITIAL_SIZE_DEFAULT, null, MemStoreLAB.INDEX_CHUNK_SIZE_PERCENTAGE_DEFAULT);
+    mslab = new MemStoreLABImpl(conf);
+  }
+
+  @After
+  public void tearDown() {
+    mslab.close();
+  }
+
+  private Cell createCell(int row, long seqId) {
+    KeyValue kv =
+      new KeyValue(Bytes.toBytes(String.format("row-%06d", row)), FAMILY, QUALIFIER, 1L, VALUE);
+    kv.setSequenceId(seqId);
+    return mslab.copyCellInto(kv);
+  }
+
+  private static int rowOf(Cell cell) {
+    return Integer.parseInt(Bytes.toString(CellUtil.cloneRow(cell)).substring(4));
+  }
+
+  @Test
+  public void testNavigation() {
+    CellChunkSkipListMap map = new CellChunkSkipListMap(comparator, mslab);
+    // enough nodes for several index chunks
+    int numOfCells = 20000;
+    List<Integer> rows = new ArrayList<>();
+    for (int i = 0; i < numOfCells; i++) {
+      rows.add(2 * i);
+    }
+    Collections.shuffle(rows);
+    for (int row : rows) {
+      Cell cell = createCell(row, 1);
+      assertNull(map.put(cell, cell));
+    }
+    assertEquals(numOfCells, map.size());
+    assertEquals(0, rowOf(map.firstKey()));
+    assertEquals(2 * (numOfCells - 1), rowOf(map.lastKey()));
+
+    int expected = 0;
+    for (Cell cell : map.values()) {
+      assertEquals(expected, rowOf(cell));
+      expected += 2;
+    }
+    assertEquals(2 * numOfCells, expected);
+
+    Iterator<Cell> it = map.descendingMap().values().iterator();
+    for (int i = numOfCells - 1; i >= numOfCells - 10; i--) {
+      assertEquals(2 * i, rowOf(it.next()));
+    }
+
+    Cell odd = createCell(101, 1);
+    Cell even = createCell(100, 1);
+    assertEquals(102, rowOf(map.higherEntry(odd).getValue()));
+    assertEquals(100, rowOf(map.lowerEntry(odd).getValue()));
+    assertEquals(102, rowOf(map.higherEntry(even).getValue()));
+    assertEquals(98, rowOf(map.lowerEntry(even).getValue()));
+    assertEquals(100, rowOf(map.ceilingKey(even)));
+    assertEquals(100, rowOf(map.floorKey(odd)));
+    assertEquals(100, rowOf(map.get(even)));
+    assertNull(map.get(odd));
+
+    NavigableMap<Cell, Cell> tail = map.tailMap(odd, true);
+    assertEquals(102, rowOf(tail.firstKey()));
+    assertEquals(numOfCells - 51, tail.size());
+    NavigableMap<Cell, Cell> head = map.headMap(even, false);
+    assertEquals(98, rowOf(head.lastKey()));
+    assertEquals(50, head.size());
+    assertNull(head.higherEntry(createCell(98, 1)));
+    assertEquals(98, rowOf(head.descendingMap().firstKey()));
+    assertTrue(map.tailMap(createCell(2 * numOfCells, 1), true).isEmpty());
+  }
+
+  @Test
+  public void testPutReplacesEqualCell() {
+    CellChunkSkipListMap map = new CellChunkSkipListMap(comparator, mslab);
+    for (int i = 0; i < 100; i++) {
+      Cell cell = createCell(i, 1);
+      map.put(cell, cell);
+    }
+    Cell old = map.get(createCell(50, 1));
+    Cell cell = createCell(50, 1);
+    Cell replaced = map.put(cell, cell);
+    assertEquals(0, comparator.compare(old, replaced));
+    assertEquals(100, map.size());
+    // the cell is rebuilt from the new node, on the data of the new cell
+    Cell found = map.get(cell);
+    assertSame(((ByteBufferKeyValue) cell).getBuffer(), ((ByteBufferKeyValue) found).getBuffer());
+    assertEquals(((ByteBufferKeyValue) cell).getOffset(), ((ByteBufferKeyValue) found).getOffset());
+  }
+
+  @Test
+  public void testConcurrentReadersAndWriter() throws Exception {
+    CellChunkSkipListMap map = new CellChunkSkipListMap(comparator, mslab);
+    int numOfCells = 20000;
+    AtomicBoolean done = new AtomicBoolean(false);
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    List<Thread> readers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread reader = new Thread(() -> {
+        try {
+          while (!done.get()) {
+            Cell prev = null;
+            for (Cell cell : map.values()) {
+              assertTrue(prev == null || comparator.compare(prev, cell) < 0);
+              prev = cell;
+            }
+          }
+        } catch (Throwable t) {
+          error.set(t);
+        }
+      });
+      reader.start();
+      readers.add(reader);
+    }
+    List<Integer> rows = new ArrayList<>();
+    for (int i = 0; i < numOfCells; i++) {
+      rows.add(i);
+    }
+    Collections.shuffle(rows);
+    for (int row : rows) {
+      Cell cell = createCell(row, 1);
+      map.put(cell, cell);
+    }
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    assertNull(error.get());
+    assertEquals(numOfCells, map.size());
+  }
+
+  @Test
+  public void testConcurrentWriters() throws Exception {
+    CellChunkSkipListMap map = new CellChunkSkipListMap(comparator, mslab);
+    int numOfCells = 20000;
+    int numOfWriters = 4;
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    List<Thread> writers = new ArrayList<>();
+    for (int i = 0; i < numOfWriters; i++) {
+      Thread writer = new Thread(() -> {
+        try {
+          // all the writers put the same rows, in a different order
+          List<Integer> rows = new ArrayList<>();
+          for (int row = 0; row < numOfCells; row++) {
+            rows.add(row);
+          }
+          Collections.shuffle(rows);
+          for (int row : rows) {
+            Cell cell = createCell(row, 1);
+            map.put(cell, cell);
+          }
+        } catch (Throwable t) {
+          error.set(t);
+        }
+      });
+      writer.start();
+      writers.add(writer);
+    }
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    assertNull(error.get());
+    assertEquals(numOfCells, map.size());
+    int expected = 0;
+    for (Cell cell : map.values()) {
+      assertEquals(expected++, rowOf(cell));
+    }
+    assertEquals(numOfCells, expected);
+  }
+
+  @Test
+  public void testRemove() {
+    CellChunkSkipListMap map = new CellChunkSkipListMap(comparator, mslab);
+    for (int i = 0; i < 100; i++) {
+      Cell cell = createCell(i, 1);
+      map.put(cell, cell);
+    }
+    assertEquals(50, rowOf(map.remove(createCell(50, 1))));
+    assertNull(map.remove(createCell(50, 1)));
+    assertNull(map.get(createCell(50, 1)));
+    assertEquals(51, rowOf(map.higherKey(createCell(49, 1))));
+    assertEquals(0, rowOf(map.pollFirstEntry().getKey()));
+    assertEquals(99, rowOf(map.pollLastEntry().getKey()));
+    assertEquals(97, map.size());
+
+    // remove the even rows through the iterator
+    for (Iterator<Cell> it = map.values().iterator(); it.hasNext();) {
+      if (rowOf(it.next()) % 2 == 0) {
+        it.remove();
+      }
+    }
+    assertEquals(49, map.size());
+    assertEquals(1, rowOf(map.firstKey()));
+    assertEquals(97, rowOf(map.lastKey()));
+
+    NavigableSet<Cell> keys = map.navigableKeySet();
+    assertTrue(keys.contains(createCell(11, 1)));
+    assertFalse(keys.contains(createCell(12, 1)));
+    assertEquals(13, rowOf(keys.higher(createCell(11, 1))));
+    assertEquals(97, rowOf(map.descendingKeySet().first()));
+    assertTrue(map.containsValue(map.get(createCell(11, 1))));
+    assertEquals(49, map.entrySet().size());
+
+    // clear a sub-map, the rows out of it stay
+    map.subMap(createCell(10, 1), true, createCell(20, 1), false).clear();
+    assertEquals(44, map.size());
+    assertEquals(9, rowOf(map.lowerKey(createCell(21, 1))));
+    assertEquals(21, rowOf(map.ceilingKey(createCell(10, 1))));
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertEquals(0, map.size());
+  }
+
+  @Test
+  public void testConcurrentRemoveAndReplace() throws Exception {
+    CellChunkSkipListMap map = new CellChunkSkipListMap(comparator, mslab);
+    int numOfCells = 10000;
+    for (int i = 0; i < numOfCells; i++) {
+      Cell cell = createCell(i, 1);
+      map.put(cell, cell);
+    }
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    // one writer removes the odd rows while the other replaces all the rows
+    Thread remover = new Thread(() -> {
+      try {
+        for (int i = 1; i < numOfCells; i += 2) {
+          assertEquals(i, rowOf(map.remove(createCell(i, 1))));
+        }
+      } catch (Throwable t) {
+        error.set(t);
+      }
+    });
+    Thread replacer = new Thread(() -> {
+      try {
+        for (int i = 0; i < numOfCells; i += 2) {
+          Cell cell = createCell(i, 1);
+          assertEquals(i, rowOf(map.put(cell, cell)));
+        }
+      } catch (Throwable t) {
+        error.set(t);
+      }
+    });
+    remover.start();
+    replacer.start();
+    remover.join();
+    replacer.join();
+    assertNull(error.get());
+    assertEquals(numOfCells / 2, map.size());
+    int expected = 0;
+    for (Cell cell : map.values()) {
+      assertEquals(expected, rowOf(cell));
+      expected += 2;
+    }
+    assertEquals(numOfCells, expected);
+  }
+
+  @Test
+  public void testUpsertRemovesOlderVersions() throws Exception {
+    conf.setBoolean(MemStoreLAB.CHUNK_SKIPLIST_INDEX_KEY, true);
+    MemStoreSizing sizing = new NonThreadSafeMemStoreSizing();
+    MutableSegment segment =
+      SegmentFactory.instance().createMutableSegment(conf, comparator, sizing);
+    for (int i = 1; i <= 3; i++) {
+      KeyValue kv = new KeyValue(Bytes.toBytes("row"), FAMILY, QUALIFIER, i, VALUE);
+      kv.setSequenceId(i);
+      segment.upsert(kv, 3, sizing, false);
+    }
+    // the versions below the newest one which every scanner sees are removed
+    assertEquals(2, segment.getCellsCount());
+    assertEquals(3, segment.first().getTimestamp());
+    segment.close();
+  }
+
+  @Test
+  public void testMutableSegmentWithChunkSkipListIndex() throws Exception {
+    conf.setBoolean(MemStoreLAB.CHUNK_SKIPLIST_INDEX_KEY, true);
+    MemStoreSizing sizing = new NonThreadSafeMemStoreSizing();
+    MutableSegment segment =
+      SegmentFactory.instance().createMutableSegment(conf, comparator, sizing);
+    assertTrue(segment instanceof CellChunkSkipListMutableSegment);
+    for (int i = 9; i >= 0; i--) {
+      KeyValue kv = new KeyValue(Bytes.toBytes("row-" + i), FAMILY, QUALIFIER, 1L, VALUE);
+      kv.setSequenceId(i);
+      segment.add(segment.maybeCloneWithAllocator(kv, false), true, sizing, false);
+    }
+    assertEquals(10, segment.getCellsCount());
+    assertTrue(sizing.getDataSize() > 0);
+    assertEquals("row-0", Bytes.toString(CellUtil.cloneRow(segment.first())));
+
+    ImmutableSegment immutable = SegmentFactory.instance().createImmutableSegment(segment, sizing);
+    assertTrue(immutable instanceof CellChunkSkipListImmutableSegment);
+    assertFalse(immutable.canBeFlattened());
+    try (KeyValueScanner scanner = immutable.getScanner(Long.MAX_VALUE)) {
+      scanner.seek(KeyValue.LOWESTKEY);
+      for (int i = 0; i < 10; i++) {
+        assertEquals("row-" + i, Bytes.toString(CellUtil.cloneRow(scanner.next())));
+      }
+      assertNull(scanner.next());
+    }
+    immutable.close();
+  }
+}
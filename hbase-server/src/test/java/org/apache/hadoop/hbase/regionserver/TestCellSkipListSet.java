@@ -19,6 +19,7 @@ package org.apache.hadoop.hbase.regionserver;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Iterator;
@@ -180,4 +181,19 @@ public class TestCellSkipListSet {
     assertTrue(Bytes.equals(head.first().getValueArray(), head.first().getValueOffset(),
       head.first().getValueLength(), value2, 0, value2.length));
   }
+
+  @Test
+  public void testHigherLower() throws Exception {
+    byte[] bytes = Bytes.toBytes(name.getMethodName());
+    final int total = 3;
+    KeyValue[] kvs = new KeyValue[total];
+    for (int i = 0; i < total; i++) {
+      kvs[i] = new KeyValue(bytes, bytes, Bytes.toBytes("" + i), bytes);
+      this.csls.add(kvs[i]);
+    }
+    assertEquals(kvs[2], this.csls.higher(kvs[1]));
+    assertEquals(kvs[0], this.csls.lower(kvs[1]));
+    assertNull(this.csls.higher(kvs[2]));
+    assertNull(this.csls.lower(kvs[0]));
+  }
 }
@@ -850,6 +850,49 @@ public class TestCompactingMemStore extends TestDefaultMemStore {
     memstore.clearSnapshot(snapshot.getId());
   }
 
+  @Test
+  public void testSamplingCompaction() throws IOException {
+    MemoryCompactionPolicy compactionType = MemoryCompactionPolicy.ADAPTIVE;
+    memstore.getConfiguration().set(CompactingMemStore.COMPACTING_MEMSTORE_TYPE_KEY,
+      String.valueOf(compactionType));
+    memstore.getConfiguration()
+      .setDouble(AdaptiveMemStoreCompactionStrategy.ADAPTIVE_COMPACTION_THRESHOLD_KEY, 0.45);
+    memstore.getConfiguration()
+      .setInt(SamplingMemStoreCompactionStrategy.COMPACTING_MEMSTORE_THRESHOLD_KEY, 2);
+    memstore.getConfiguration().setInt(SamplingMemStoreCompactionStrategy.SAMPLE_INTERVAL_KEY, 1);
+    ((MyCompactingMemStore) memstore).initiateType(compactionType, memstore.getConfiguration());
+    CompactingMemStore compactingMemStore = (CompactingMemStore) memstore;
+
+    // append-only: no duplicates are sampled, so the segment is flattened
+    String[] distinctKeys = new String[16];
+    for (int i = 0; i < distinctKeys.length; i++) {
+      distinctKeys[i] = "R" + i;
+    }
+    addRowsByKeys(memstore, distinctKeys);
+    compactingMemStore.flushInMemory();
+    assertEquals(1, compactingMemStore
+      .getInMemoryCompactionActionCount(MemStoreCompactionStrategy.Action.FLATTEN));
+    assertEquals(0, compactingMemStore
+      .getInMemoryCompactionActionCount(MemStoreCompactionStrategy.Action.COMPACT));
+    assertEquals(16, compactingMemStore.getImmutableSegments().getNumOfCells());
+
+    // update-heavy: most adds are new versions of a key, so the pipeline is compacted
+    String[] sameKeys = new String[16];
+    for (int i = 0; i < sameKeys.length; i++) {
+      sameKeys[i] = "A";
+    }
+    addRowsByKeys(memstore, sameKeys);
+    compactingMemStore.flushInMemory();
+    assertEquals(1, compactingMemStore
+      .getInMemoryCompactionActionCount(MemStoreCompactionStrategy.Action.COMPACT));
+    assertTrue(compactingMemStore.getImmutableSegments().getNumOfCells() < 32);
+
+    MemStoreSize mss = memstore.getFlushableSize();
+    MemStoreSnapshot snapshot = memstore.snapshot();
+    region.decrMemStoreSize(mss);
+    memstore.clearSnapshot(snapshot.getId());
+  }
+
   protected int addRowsByKeys(final AbstractMemStore hmc, String[] keys) {
     byte[] fam = Bytes.toBytes("testfamily");
     byte[] qf = Bytes.toBytes("testqualifier");
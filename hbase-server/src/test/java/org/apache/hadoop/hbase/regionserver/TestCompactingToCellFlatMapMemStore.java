@@ -782,11 +782,15 @@ public class TestCompactingToCellFlatMapMemStore extends TestCompactingMemStore
     assertEquals(totalCellsLen, regionServicesForStores.getMemStoreSize());
     assertEquals(totalHeapSize, ((CompactingMemStore) memstore).heapSize());
 
+    long jumboChunkCount = chunkCreator.getJumboChunkCount();
     ((CompactingMemStore) memstore).flushInMemory(); // push keys to pipeline and flatten
     while (((CompactingMemStore) memstore).isMemStoreFlushingInMemory()) {
       Threads.sleep(10);
     }
     assertEquals(0, memstore.getSnapshot().getCellsCount());
+    // the big cell is copied into a jumbo chunk, the index is in an on-heap chunk
+    assertEquals(jumboChunkCount + 1, chunkCreator.getJumboChunkCount());
+    assertEquals(0, memstore.getIndexOffHeapSize());
 
     // One cell is duplicated, but it shouldn't be compacted because we are in BASIC mode.
     // totalCellsLen should remain the same
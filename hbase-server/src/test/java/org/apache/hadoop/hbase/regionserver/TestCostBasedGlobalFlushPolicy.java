@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.regionserver.wal.AbstractFSWAL;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.util.ManualEnvironmentEdge;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RegionServerTests.class, SmallTests.class })
+public class TestCostBasedGlobalFlushPolicy {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestCostBasedGlobalFlushPolicy.class);
+
+  private static final long NOW = 10000000;
+  private static final long FLUSH_SIZE = 500;
+  private static final long HOUR = 3600000;
+  private static final TableDescriptor TD =
+    TableDescriptorBuilder.newBuilder(TableName.valueOf("TestCostBasedGlobalFlushPolicy")).build();
+
+  private GlobalFlushPolicy policy;
+  private AbstractFSWAL<?> wal;
+  private Map<byte[], Double> walShares;
+  private int regionId = 0;
+
+  @Before
+  public void setUp() {
+    ManualEnvironmentEdge edge = new ManualEnvironmentEdge();
+    edge.setValue(NOW);
+    EnvironmentEdgeManager.injectEdge(edge);
+    policy = ReflectionUtils.newInstance(CostBasedGlobalFlushPolicy.class,
+      HBaseConfiguration.create());
+    walShares = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    wal = mock(AbstractFSWAL.class);
+    doReturn(walShares).when(wal).getRolledLogFileBlockingShares();
+  }
+
+  @After
+  public void tearDown() {
+    EnvironmentEdgeManager.reset();
+  }
+
+  private HRegion mockRegion(long size, int storeFiles, long lastFlushTime) {
+    RegionInfo hri =
+      RegionInfoBuilder.newBuilder(TD.getTableName()).setRegionId(regionId++).build();
+    HStore store = mock(HStore.class);
+    doReturn(new MemStoreSize(size, size, 0, 1)).when(store).getMemStoreSize();
+    doReturn(storeFiles).when(store).getStorefilesCount();
+    doReturn(16L).when(store).getBlockingFileCount();
+    HRegion region = mock(HRegion.class);
+    doReturn(hri).when(region).getRegionInfo();
+    doReturn(TD).when(region).getTableDescriptor();
+    doReturn(Collections.singletonList(store)).when(region).getStores();
+    doReturn(wal).when(region).getWAL();
+    doReturn(size).when(region).getMemStoreDataSize();
+    doReturn(size).when(region).getMemStoreHeapSize();
+    doReturn(FLUSH_SIZE).when(region).getMemStoreFlushSize();
+    doReturn(lastFlushTime).when(region).getEarliestFlushTimeForAllStores();
+    return region;
+  }
+
+  private HRegion select(HRegion... regions) {
+    return policy.selectRegionToFlush(Arrays.asList(regions), FlushType.ABOVE_ONHEAP_LOWER_MARK);
+  }
+
+  @Test
+  public void testLargestWithoutOtherCosts() {
+    HRegion large = mockRegion(100, 0, NOW - HOUR);
+    HRegion small = mockRegion(50, 0, NOW - HOUR);
+    assertSame(large, select(large, small));
+  }
+
+  @Test
+  public void testPrefersRegionBlockingWALs() {
+    HRegion large = mockRegion(100, 0, NOW - HOUR);
+    HRegion pinning = mockRegion(90, 0, NOW - HOUR);
+    walShares.put(pinning.getRegionInfo().getEncodedNameAsBytes(), 3.0);
+    assertSame(pinning, select(large, pinning));
+  }
+
+  @Test
+  public void testAvoidsCompactionDebt() {
+    HRegion nearlyBlocked = mockRegion(100, 15, NOW - HOUR);
+    HRegion other = mockRegion(80, 0, NOW - HOUR);
+    assertSame(other, select(nearlyBlocked, other));
+  }
+
+  @Test
+  public void testPrefersColdRegion() {
+    HRegion hot = mockRegion(100, 0, NOW - 1000);
+    HRegion cold = mockRegion(95, 0, NOW - HOUR);
+    assertSame(cold, select(hot, cold));
+  }
+
+  @Test
+  public void testNothingToFlush() {
+    assertNull(select(mockRegion(0, 0, NOW - HOUR)));
+  }
+}
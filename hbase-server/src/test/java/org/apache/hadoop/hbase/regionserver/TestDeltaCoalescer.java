@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Append;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.wal.WALEdit;
+import org.apache.hadoop.hbase.wal.WALKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestDeltaCoalescer {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestDeltaCoalescer.class);
+
+  private static final HBaseTestingUtil TEST_UTIL = new HBaseTestingUtil();
+  private static final byte[] COALESCED = Bytes.toBytes("coalesced");
+  private static final byte[] PLAIN = Bytes.toBytes("plain");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final byte[] ROW = Bytes.toBytes("row");
+  private static final int THREADS = 16;
+
+  @Rule
+  public TestName name = new TestName();
+
+  private HRegion region;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws IOException {
+    TableDescriptor desc = TableDescriptorBuilder
+      .newBuilder(TableName.valueOf(name.getMethodName()))
+      .setValue(DeltaCoalescer.WINDOW_KEY, "100000")
+      .setColumnFamily(ColumnFamilyDescriptorBuilder.newBuilder(COALESCED)
+        .setConfiguration(DeltaCoalescer.COALESCE_KEY, "true").build())
+      .setColumnFamily(ColumnFamilyDescriptorBuilder.of(PLAIN)).build();
+    region = TEST_UTIL.createLocalHRegion(desc, HConstants.EMPTY_START_ROW,
+      HConstants.EMPTY_END_ROW);
+    executor = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    executor.shutdownNow();
+    HBaseTestingUtil.closeRegionAndWAL(region);
+  }
+
+  private long getValue(Result result) {
+    return Bytes.toLong(CellUtil.cloneValue(result.getColumnLatestCell(COALESCED, QUALIFIER)));
+  }
+
+  @Test
+  public void testOnlyConfiguredFamiliesAreCoalesced() throws IOException {
+    DeltaCoalescer coalescer = region.getDeltaCoalescer();
+    assertTrue(coalescer.canCoalesce(new Increment(ROW).addColumn(COALESCED, QUALIFIER, 1)));
+    assertTrue(coalescer.canCoalesce(new Append(ROW).addColumn(COALESCED, QUALIFIER, ROW)));
+    assertFalse(coalescer.canCoalesce(new Increment(ROW).addColumn(PLAIN, QUALIFIER, 1)));
+    assertFalse(coalescer.canCoalesce(
+      new Increment(ROW).addColumn(COALESCED, QUALIFIER, 1).addColumn(PLAIN, QUALIFIER, 1)));
+    assertFalse(coalescer
+      .canCoalesce(new Increment(ROW).addColumn(COALESCED, QUALIFIER, 1).setTimeRange(0, 10)));
+    assertFalse(
+      coalescer.canCoalesce(new Increment(ROW).addColumn(COALESCED, QUALIFIER, 1).setTTL(1000)));
+    assertNull(DeltaCoalescer.create(region, region.getBaseConf(),
+      TableDescriptorBuilder.newBuilder(TableName.valueOf("t"))
+        .setColumnFamily(ColumnFamilyDescriptorBuilder.of(PLAIN)).build()));
+  }
+
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    int perThread = 50;
+    List<Future<List<Long>>> futures = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      futures.add(executor.submit(() -> {
+        List<Long> values = new ArrayList<>();
+        for (int j = 0; j < perThread; j++) {
+          values.add(
+            getValue(region.increment(new Increment(ROW).addColumn(COALESCED, QUALIFIER, 1))));
+        }
+        return values;
+      }));
+    }
+    // Each increment gets the value it would have got had they been applied one after another
+    Set<Long> values = new HashSet<>();
+    for (Future<List<Long>> future : futures) {
+      values.addAll(future.get(1, TimeUnit.MINUTES));
+    }
+    int total = THREADS * perThread;
+    assertEquals(total, values.size());
+    for (long i = 1; i <= total; i++) {
+      assertTrue(values.contains(i));
+    }
+    assertEquals(total, getValue(region.get(new Get(ROW).addFamily(COALESCED))));
+
+    DeltaCoalescer coalescer = region.getDeltaCoalescer();
+    assertTrue(coalescer.getCoalescedCount() > 0);
+    assertTrue(coalescer.getBatchCount() < total);
+  }
+
+  @Test
+  public void testConcurrentAppends() throws Exception {
+    List<Future<byte[]>> futures = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      byte[] value = new byte[] { (byte) i };
+      futures.add(executor.submit(() -> CellUtil.cloneValue(region
+        .append(new Append(ROW).addColumn(COALESCED, QUALIFIER, value))
+        .getColumnLatestCell(COALESCED, QUALIFIER))));
+    }
+    byte[] last = CellUtil.cloneValue(
+      region.get(new Get(ROW).addFamily(COALESCED)).getColumnLatestCell(COALESCED, QUALIFIER));
+    assertEquals(THREADS, last.length);
+    // Each append sees the appends applied before it, and ends with its own value
+    Set<Integer> lengths = new HashSet<>();
+    for (int i = 0; i < THREADS; i++) {
+      byte[] value = futures.get(i).get(1, TimeUnit.MINUTES);
+      assertEquals((byte) i, value[value.length - 1]);
+      assertArrayEquals(value, Bytes.copy(last, 0, value.length));
+      lengths.add(value.length);
+    }
+    assertEquals(THREADS, lengths.size());
+  }
+
+  @Test
+  public void testNoncesAreWrittenToTheWAL() throws Exception {
+    List<byte[]> walNonces = Collections.synchronizedList(new ArrayList<>());
+    region.getWAL().registerWALActionsListener(new WALActionsListener() {
+      @Override
+      public void visitLogEntryBeforeWrite(RegionInfo info, WALKey logKey, WALEdit logEdit) {
+        byte[] nonces = logKey.getExtendedAttribute(DeltaCoalescer.NONCES_ATTRIBUTE);
+        if (nonces != null) {
+          walNonces.add(nonces);
+        }
+      }
+    });
+    long nonceGroup = 1;
+    List<Future<Result>> futures = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      long nonce = i + 1;
+      futures.add(executor.submit(() -> region
+        .increment(new Increment(ROW).addColumn(COALESCED, QUALIFIER, 1), nonceGroup, nonce)));
+    }
+    byte[] appended = Bytes.toBytes("appended");
+    for (int i = 0; i < THREADS; i++) {
+      long nonce = THREADS + i + 1;
+      futures.add(executor.submit(() -> region
+        .append(new Append(ROW).addColumn(COALESCED, appended, ROW), nonceGroup, nonce)));
+    }
+    for (Future<Result> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+    Result result = region.get(new Get(ROW).addFamily(COALESCED));
+    assertEquals(THREADS, getValue(result));
+    assertEquals(THREADS * ROW.length,
+      result.getColumnLatestCell(COALESCED, appended).getValueLength());
+    assertTrue(region.getDeltaCoalescer().getCoalescedCount() > 0);
+
+    // Replaying the WAL restores the nonce of every operation, and only once
+    ServerNonceManager nonceManager = new ServerNonceManager(region.getBaseConf());
+    int count = 0;
+    for (byte[] nonces : walNonces) {
+      count += nonces.length / (2 * Bytes.SIZEOF_LONG);
+      DeltaCoalescer.reportNoncesFromWal(nonceManager, nonces,
+        EnvironmentEdgeManager.currentTime());
+    }
+    assertEquals(2 * THREADS, count);
+    for (long nonce = 1; nonce <= 2 * THREADS; nonce++) {
+      assertFalse(nonceManager.startOperation(nonceGroup, nonce, null));
+    }
+  }
+
+  @Test
+  public void testInvalidOperationFailsAlone() throws Exception {
+    byte[] notCounter = Bytes.toBytes("notCounter");
+    region.put(new Put(ROW).addColumn(COALESCED, notCounter, Bytes.toBytes("abc")));
+    Future<Result> invalid = executor
+      .submit(() -> region.increment(new Increment(ROW).addColumn(COALESCED, notCounter, 1)));
+    Future<Result> valid = executor
+      .submit(() -> region.increment(new Increment(ROW).addColumn(COALESCED, QUALIFIER, 5)));
+    assertEquals(5, getValue(valid.get(1, TimeUnit.MINUTES)));
+    try {
+      invalid.get(1, TimeUnit.MINUTES);
+      fail("Incremented a cell which is not a counter");
+    } catch (Exception e) {
+      assertTrue(e.getCause() instanceof DoNotRetryIOException);
+    }
+    assertEquals(5, getValue(region.get(new Get(ROW).addFamily(COALESCED))));
+  }
+}
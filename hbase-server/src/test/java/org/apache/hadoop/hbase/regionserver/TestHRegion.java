@@ -52,9 +52,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -64,6 +66,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
@@ -121,7 +124,9 @@ import org.apache.hadoop.hbase.client.TableDescriptor;
 import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
 import org.apache.hadoop.hbase.coprocessor.CoprocessorHost;
 import org.apache.hadoop.hbase.coprocessor.MetaTableMetrics;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessor;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 import org.apache.hadoop.hbase.coprocessor.RegionObserver;
 import org.apache.hadoop.hbase.exceptions.FailedSanityCheckException;
 import org.apache.hadoop.hbase.filter.BigDecimalComparator;
@@ -145,6 +150,7 @@ import org.apache.hadoop.hbase.regionserver.Region.Operation;
 import org.apache.hadoop.hbase.regionserver.Region.RowLock;
 import org.apache.hadoop.hbase.regionserver.TestHStore.FaultyFileSystem;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequestImpl;
+import org.apache.hadoop.hbase.regionserver.throttle.ThroughputController;
 import org.apache.hadoop.hbase.regionserver.wal.FSHLog;
 import org.apache.hadoop.hbase.regionserver.wal.MetricsWALSource;
 import org.apache.hadoop.hbase.regionserver.wal.WALUtil;
@@ -465,6 +471,83 @@ public class TestHRegion {
     }
   }
 
+  @Test
+  public void testParallelStoreFlush() throws Exception {
+    byte[][] families = { Bytes.toBytes("fam1"), Bytes.toBytes("fam2"), Bytes.toBytes("fam3") };
+    Configuration conf = HBaseConfiguration.create(CONF);
+    conf.setInt(HRegion.FLUSH_STORE_THREADS_KEY, 2);
+    conf.set(DefaultStoreEngine.DEFAULT_STORE_FLUSHER_CLASS_KEY,
+      BlockingStoreFlusher.class.getName());
+    BlockingStoreFlusher.reset("fam1", families.length - 1);
+    this.region = initHRegion(tableName, method, conf, families);
+    for (byte[] row : HBaseTestingUtil.ROWS) {
+      Put put = new Put(row);
+      for (byte[] family : families) {
+        put.addColumn(family, qual1, row);
+      }
+      region.put(put);
+    }
+    assertTrue(region.flush(true).isFlushSucceeded());
+    assertEquals(0, region.getMemStoreDataSize());
+    // the other stores were flushed while the flush of fam1 was held
+    assertTrue(BlockingStoreFlusher.OVERLAPPED.get());
+    // the last store is flushed by the flushing thread, the others on the store flush pool
+    Map<String, String> threads = BlockingStoreFlusher.FLUSH_THREADS;
+    assertTrue(threads.get("fam1").startsWith("StoreFlushForTest"));
+    assertTrue(threads.get("fam2").startsWith("StoreFlushForTest"));
+    assertEquals(Thread.currentThread().getName(), threads.get("fam3"));
+    for (byte[] family : families) {
+      assertEquals(1, region.getStore(family).getStorefilesCount());
+    }
+    for (byte[] row : HBaseTestingUtil.ROWS) {
+      Result r = region.get(new Get(row));
+      assertEquals(families.length, r.size());
+    }
+  }
+
+  /**
+   * Holds the flush of one store until the other stores of the flush are written out, and records
+   * the threads the stores are flushed on.
+   */
+  public static class BlockingStoreFlusher extends DefaultStoreFlusher {
+    static final Map<String, String> FLUSH_THREADS = new ConcurrentHashMap<>();
+    static final AtomicBoolean OVERLAPPED = new AtomicBoolean();
+    static volatile String blockedFamily;
+    static volatile CountDownLatch othersFlushed;
+
+    public BlockingStoreFlusher(Configuration conf, HStore store) {
+      super(conf, store);
+    }
+
+    static void reset(String family, int others) {
+      FLUSH_THREADS.clear();
+      OVERLAPPED.set(false);
+      blockedFamily = family;
+      othersFlushed = new CountDownLatch(others);
+    }
+
+    @Override
+    public List<Path> flushSnapshot(MemStoreSnapshot snapshot, long cacheFlushId,
+      MonitoredTask status, ThroughputController throughputController,
+      FlushLifeCycleTracker tracker, Consumer<Path> writerCreationTracker) throws IOException {
+      String family = store.getColumnFamilyName();
+      FLUSH_THREADS.put(family, Thread.currentThread().getName());
+      if (family.equals(blockedFamily)) {
+        try {
+          OVERLAPPED.set(othersFlushed.await(60, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+        return super.flushSnapshot(snapshot, cacheFlushId, status, throughputController, tracker,
+          writerCreationTracker);
+      }
+      List<Path> paths = super.flushSnapshot(snapshot, cacheFlushId, status,
+        throughputController, tracker, writerCreationTracker);
+      othersFlushed.countDown();
+      return paths;
+    }
+  }
+
   /**
    * Test we do not lose data if we fail a flush and then close. Part of HBase-10466. Tests the
    * following from the issue description: "Bug 1: Wrong calculation of HRegion.memstoreSize: When a
@@ -780,6 +863,66 @@ public class TestHRegion {
     }
   }
 
+  @Test
+  public void testParallelRecoveredEditsReplay() throws Exception {
+    byte[] family1 = Bytes.toBytes("family1");
+    byte[] family2 = Bytes.toBytes("family2");
+    Configuration conf = new Configuration(CONF);
+    conf.setBoolean(HRegion.RECOVERED_EDITS_REPLAY_PARALLEL_KEY, true);
+    // make the batches end in the middle of the files and of the edits
+    conf.setInt(HRegion.RECOVERED_EDITS_REPLAY_BATCH_SIZE, 5);
+    this.region = initHRegion(tableName, method, conf, family1, family2);
+    final WALFactory wals = new WALFactory(CONF, method);
+    try {
+      Path regiondir = region.getRegionFileSystem().getRegionDir();
+      FileSystem fs = region.getRegionFileSystem().getFileSystem();
+      byte[] regionName = region.getRegionInfo().getEncodedNameAsBytes();
+
+      Path recoveredEditsDir = WALSplitUtil.getRegionDirRecoveredEditsDir(regiondir);
+
+      long maxSeqId = 1050;
+      long minSeqId = 1000;
+
+      for (long i = minSeqId; i <= maxSeqId; i += 10) {
+        Path recoveredEdits = new Path(recoveredEditsDir, String.format("%019d", i + 2));
+        fs.create(recoveredEdits);
+        WALProvider.Writer writer = wals.createRecoveredEditsWriter(fs, recoveredEdits);
+        for (long j = i; j < i + 3; j++) {
+          long time = System.nanoTime();
+          WALEdit edit = new WALEdit();
+          // the same columns are written by every edit, the last one must win
+          edit.add(new KeyValue(row, family1, qual1, time, KeyValue.Type.Put, Bytes.toBytes(j)));
+          edit.add(new KeyValue(row, family2, qual1, time, KeyValue.Type.Put, Bytes.toBytes(j)));
+          edit.add(new KeyValue(row, family2, Bytes.toBytes(j), time, KeyValue.Type.Put,
+            Bytes.toBytes(j)));
+          writer.append(new WAL.Entry(
+            new WALKeyImpl(regionName, tableName, j, time, HConstants.DEFAULT_CLUSTER_ID), edit));
+        }
+        writer.close();
+      }
+      MonitoredTask status = TaskMonitor.get().createStatus(method);
+      Map<byte[], Long> maxSeqIdInStores = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (HStore store : region.getStores()) {
+        maxSeqIdInStores.put(Bytes.toBytes(store.getColumnFamilyName()), minSeqId - 1);
+      }
+      long seqId = region.replayRecoveredEditsIfAny(maxSeqIdInStores, null, status);
+      assertEquals(maxSeqId + 2, seqId);
+      region.getMVCC().advanceTo(seqId);
+      Result result = region.get(new Get(row));
+      assertArrayEquals(Bytes.toBytes(maxSeqId + 2), result.getValue(family1, qual1));
+      assertArrayEquals(Bytes.toBytes(maxSeqId + 2), result.getValue(family2, qual1));
+      for (long i = minSeqId; i <= maxSeqId; i += 10) {
+        for (long j = i; j < i + 3; j++) {
+          assertArrayEquals(Bytes.toBytes(j), result.getValue(family2, Bytes.toBytes(j)));
+        }
+      }
+    } finally {
+      HBaseTestingUtil.closeRegionAndWAL(this.region);
+      this.region = null;
+      wals.close();
+    }
+  }
+
   @Test
   public void testSkipRecoveredEditsReplaySomeIgnored() throws Exception {
     byte[] family = Bytes.toBytes("family");
@@ -1573,6 +1716,111 @@ public class TestHRegion {
     metricsAssertHelper.assertCounter("syncTimeNumOps", syncs + 2, source);
   }
 
+  @Test
+  public void testPipelinedBatchPut() throws IOException {
+    Configuration conf = HBaseConfiguration.create(CONF);
+    conf.setBoolean(HRegion.HBASE_REGIONSERVER_MINIBATCH_PIPELINE_KEY, true);
+    conf.setInt(HRegion.HBASE_REGIONSERVER_MINIBATCH_SIZE, 2);
+    this.region = initHRegion(tableName, method, conf, COLUMN_FAMILY_BYTES);
+    MetricsWALSource source = CompatibilitySingletonFactory.getInstance(MetricsWALSource.class);
+    long syncs = metricsAssertHelper.getCounter("syncTimeNumOps", source);
+
+    // Each row is put again three mini-batches later
+    final Put[] puts = new Put[10];
+    for (int i = 0; i < puts.length; i++) {
+      puts[i] = new Put(Bytes.toBytes("row_" + (i % 5)));
+      puts[i].addColumn(COLUMN_FAMILY_BYTES, qual, Bytes.toBytes(i));
+    }
+    OperationStatus[] codes = this.region.batchMutate(puts);
+    assertEquals(10, codes.length);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(OperationStatusCode.SUCCESS, codes[i].getOperationStatusCode());
+    }
+    // one sync per mini-batch
+    metricsAssertHelper.assertCounter("syncTimeNumOps", syncs + 5, source);
+    for (int i = 0; i < 5; i++) {
+      Result r = region.get(new Get(Bytes.toBytes("row_" + i)));
+      assertEquals(i + 5, Bytes.toInt(r.getValue(COLUMN_FAMILY_BYTES, qual)));
+    }
+  }
+
+  @Test
+  public void testPipelinedBatchPutKeepsBatchMutateHookOrder() throws IOException {
+    Configuration conf = HBaseConfiguration.create(CONF);
+    conf.setBoolean(HRegion.HBASE_REGIONSERVER_MINIBATCH_PIPELINE_KEY, true);
+    conf.setInt(HRegion.HBASE_REGIONSERVER_MINIBATCH_SIZE, 2);
+    conf.set(CoprocessorHost.REGION_COPROCESSOR_CONF_KEY,
+      BatchMutateHookRecorder.class.getName());
+    this.region = initHRegion(tableName, method, conf, COLUMN_FAMILY_BYTES);
+    // region service is null in unit test, we need to load the coprocessor once
+    region.setCoprocessorHost(new RegionCoprocessorHost(region, null, conf));
+    assertTrue(region.getCoprocessorHost().hasCustomBatchMutateHooks());
+    BatchMutateHookRecorder recorder = (BatchMutateHookRecorder) region.getCoprocessorHost()
+      .findCoprocessor(BatchMutateHookRecorder.class.getName());
+
+    final Put[] puts = new Put[10];
+    for (int i = 0; i < puts.length; i++) {
+      puts[i] = new Put(Bytes.toBytes("row_" + i));
+      puts[i].addColumn(COLUMN_FAMILY_BYTES, qual, Bytes.toBytes(i));
+    }
+    OperationStatus[] codes = this.region.batchMutate(puts);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(OperationStatusCode.SUCCESS, codes[i].getOperationStatusCode());
+    }
+    // the post hook of each mini-batch runs before the pre hook of the next one
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      expected.add("pre");
+      expected.add("post");
+    }
+    assertEquals(expected, recorder.hooks);
+  }
+
+  /**
+   * Records the batch mutate hooks called on the region.
+   */
+  public static class BatchMutateHookRecorder implements RegionCoprocessor, RegionObserver {
+    final List<String> hooks = new ArrayList<>();
+
+    @Override
+    public Optional<RegionObserver> getRegionObserver() {
+      return Optional.of(this);
+    }
+
+    @Override
+    public void preBatchMutate(ObserverContext<RegionCoprocessorEnvironment> c,
+      MiniBatchOperationInProgress<Mutation> miniBatchOp) {
+      hooks.add("pre");
+    }
+
+    @Override
+    public void postBatchMutate(ObserverContext<RegionCoprocessorEnvironment> c,
+      MiniBatchOperationInProgress<Mutation> miniBatchOp) {
+      hooks.add("post");
+    }
+  }
+
+  @Test
+  public void testPipelinedBatchPutOverMemStoreLimit() throws IOException {
+    Configuration conf = HBaseConfiguration.create(CONF);
+    conf.setBoolean(HRegion.HBASE_REGIONSERVER_MINIBATCH_PIPELINE_KEY, true);
+    conf.setInt(HRegion.HBASE_REGIONSERVER_MINIBATCH_SIZE, 2);
+    conf.setLong(HConstants.HREGION_MEMSTORE_FLUSH_SIZE, 8 * 1024);
+    conf.setLong(HConstants.HREGION_MEMSTORE_BLOCK_MULTIPLIER, 1);
+    this.region = initHRegion(tableName, method, conf, COLUMN_FAMILY_BYTES);
+
+    final Put[] puts = new Put[20];
+    for (int i = 0; i < puts.length; i++) {
+      puts[i] = new Put(Bytes.toBytes("row_" + i));
+      puts[i].addColumn(COLUMN_FAMILY_BYTES, qual, new byte[1024]);
+    }
+    // mini-batches prepared ahead are checked against the memstore limit too
+    assertThrows(RegionTooBusyException.class, () -> region.batchMutate(puts));
+    assertTrue(region.get(new Get(Bytes.toBytes("row_0"))).containsColumn(COLUMN_FAMILY_BYTES,
+      qual));
+    assertTrue(region.get(new Get(Bytes.toBytes("row_19"))).isEmpty());
+  }
+
   @Test
   public void testBatchPut_whileMultipleRowLocksHeld() throws Exception {
     final Put[] puts = new Put[10];
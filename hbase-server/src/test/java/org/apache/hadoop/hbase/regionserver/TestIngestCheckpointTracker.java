@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.exceptions.FailedSanityCheckException;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestIngestCheckpointTracker {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestIngestCheckpointTracker.class);
+
+  private static final HBaseTestingUtil TEST_UTIL = new HBaseTestingUtil();
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+  @Rule
+  public TestName name = new TestName();
+
+  private HRegion region;
+
+  @Before
+  public void setUp() throws IOException {
+    TableDescriptor desc =
+      TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .setValue(IngestCheckpointTracker.INGEST_CHECKPOINT_KEY, "true")
+        .setColumnFamily(ColumnFamilyDescriptorBuilder.of(FAMILY)).build();
+    region =
+      TEST_UTIL.createLocalHRegion(desc, HConstants.EMPTY_START_ROW, HConstants.EMPTY_END_ROW);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    HBaseTestingUtil.closeRegionAndWAL(region);
+  }
+
+  private static Put put(int row, String source, long offset) {
+    Put put = new Put(Bytes.toBytes(row)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(offset));
+    put.setAttribute(IngestCheckpointTracker.SOURCE_ATTRIBUTE, Bytes.toBytes(source));
+    put.setAttribute(IngestCheckpointTracker.OFFSET_ATTRIBUTE, Bytes.toBytes(offset));
+    return put;
+  }
+
+  private IngestCheckpoint readCheckpoint() throws IOException {
+    HRegionFileSystem fs = region.getRegionFileSystem();
+    return IngestCheckpoint.read(fs.getFileSystem(), fs.getRegionDir());
+  }
+
+  @Test
+  public void testEditsSkipWAL() throws IOException {
+    region.put(put(0, "a", 1));
+    assertEquals(1, region.getNumMutationsWithoutWAL());
+  }
+
+  @Test
+  public void testCheckpointOnFlush() throws IOException {
+    assertNull(readCheckpoint());
+    for (int i = 1; i <= 10; i++) {
+      region.put(put(i, "a", i));
+    }
+    region.put(put(0, "b", 5));
+    region.flush(true);
+    IngestCheckpoint checkpoint = readCheckpoint();
+    assertEquals(10L, checkpoint.getOffsets().get("a").longValue());
+    assertEquals(5L, checkpoint.getOffsets().get("b").longValue());
+
+    // not durable until the next flush
+    region.put(put(11, "a", 11));
+    assertEquals(checkpoint.getSequenceId(), readCheckpoint().getSequenceId());
+    region.flush(true);
+    IngestCheckpoint next = readCheckpoint();
+    assertTrue(next.getSequenceId() > checkpoint.getSequenceId());
+    assertEquals(11L, next.getOffsets().get("a").longValue());
+    assertEquals(5L, next.getOffsets().get("b").longValue());
+
+    region.put(put(12, "a", 12));
+    region.flush(true);
+    HRegionFileSystem fs = region.getRegionFileSystem();
+    assertEquals(2, fs.getFileSystem()
+      .listStatus(new Path(fs.getRegionDir(), IngestCheckpoint.CHECKPOINT_DIR)).length);
+  }
+
+  @Test
+  public void testFirstEditOfSourceWritesMarker() throws IOException {
+    region.put(put(0, "a", 3));
+    assertEquals(IngestCheckpoint.NO_OFFSET, readCheckpoint().getOffsets().get("a").longValue());
+    region.flush(true);
+    IngestCheckpoint checkpoint = readCheckpoint();
+    assertEquals(3L, checkpoint.getOffsets().get("a").longValue());
+
+    // a new source replaces the last marker, with the same sequence id
+    region.put(put(1, "b", 7));
+    IngestCheckpoint next = readCheckpoint();
+    assertEquals(checkpoint.getSequenceId(), next.getSequenceId());
+    assertEquals(3L, next.getOffsets().get("a").longValue());
+    assertEquals(IngestCheckpoint.NO_OFFSET, next.getOffsets().get("b").longValue());
+    HRegionFileSystem fs = region.getRegionFileSystem();
+    assertEquals(2, fs.getFileSystem()
+      .listStatus(new Path(fs.getRegionDir(), IngestCheckpoint.CHECKPOINT_DIR)).length);
+  }
+
+  @Test
+  public void testInheritCheckpoints() throws IOException {
+    region.put(put(0, "a", 10));
+    region.put(put(1, "b", 5));
+    region.flush(true);
+    HRegionFileSystem fs = region.getRegionFileSystem();
+    FileSystem fileSystem = fs.getFileSystem();
+    Path daughterDir = new Path(fs.getTableDir(), "daughter");
+    IngestCheckpoint.inherit(fileSystem, Collections.singletonList(fs.getRegionDir()),
+      daughterDir);
+    IngestCheckpoint daughter = IngestCheckpoint.read(fileSystem, daughterDir);
+    assertEquals(readCheckpoint().getSequenceId(), daughter.getSequenceId());
+    assertEquals(readCheckpoint().getOffsets(), daughter.getOffsets());
+
+    // merged with a region which got no edits of b, and edits of c none of which are durable
+    Path otherDir = new Path(fs.getTableDir(), "other");
+    Map<String, Long> offsets = new HashMap<>();
+    offsets.put("a", 4L);
+    offsets.put("c", IngestCheckpoint.NO_OFFSET);
+    try (FSDataOutputStream out = fileSystem.create(new Path(
+      new Path(otherDir, IngestCheckpoint.CHECKPOINT_DIR), IngestCheckpoint.getFileName(1)))) {
+      out.write(new IngestCheckpoint(1, 0, offsets).toByteArray());
+    }
+    Path mergedDir = new Path(fs.getTableDir(), "merged");
+    IngestCheckpoint.inherit(fileSystem, Arrays.asList(fs.getRegionDir(), otherDir), mergedDir);
+    IngestCheckpoint merged = IngestCheckpoint.read(fileSystem, mergedDir);
+    assertEquals(daughter.getSequenceId(), merged.getSequenceId());
+    assertEquals(4L, merged.getOffsets().get("a").longValue());
+    assertEquals(5L, merged.getOffsets().get("b").longValue());
+    assertEquals(IngestCheckpoint.NO_OFFSET, merged.getOffsets().get("c").longValue());
+
+    // nothing to inherit from regions which never got a tagged edit
+    Path emptyDir = new Path(fs.getTableDir(), "empty");
+    IngestCheckpoint.inherit(fileSystem,
+      Collections.singletonList(new Path(fs.getTableDir(), "none")), emptyDir);
+    assertNull(IngestCheckpoint.read(fileSystem, emptyDir));
+  }
+
+  @Test
+  public void testResumeAfterReopen() throws IOException {
+    region.put(put(0, "a", 3));
+    region.close();
+    assertEquals(3L, readCheckpoint().getOffsets().get("a").longValue());
+    region = HRegion.openHRegion(region, null);
+    region.put(put(1, "c", 1));
+    region.flush(true);
+    IngestCheckpoint checkpoint = readCheckpoint();
+    assertEquals(3L, checkpoint.getOffsets().get("a").longValue());
+    assertEquals(1L, checkpoint.getOffsets().get("c").longValue());
+  }
+
+  @Test
+  public void testUntaggedMutationFails() throws IOException {
+    Put put = new Put(Bytes.toBytes(0)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(0L));
+    try {
+      region.put(put);
+      fail("An untagged mutation should not skip the WAL");
+    } catch (FailedSanityCheckException e) {
+      // expected
+    }
+    assertEquals(0, region.getNumMutationsWithoutWAL());
+    // an explicit durability does not need the tags
+    put.setDurability(Durability.SYNC_WAL);
+    region.put(put);
+    assertEquals(0, region.getNumMutationsWithoutWAL());
+  }
+
+  @Test
+  public void testOffsetBelowCheckpointFails() throws IOException {
+    region.put(put(0, "a", 10));
+    region.flush(true);
+    for (long offset : new long[] { 5, 10 }) {
+      try {
+        region.put(put(1, "a", offset));
+        fail("Offset " + offset + " is already checkpointed");
+      } catch (FailedSanityCheckException e) {
+        // expected
+      }
+    }
+    region.put(put(1, "a", 11));
+    region.put(put(2, "b", 5));
+    region.flush(true);
+    assertEquals(11L, readCheckpoint().getOffsets().get("a").longValue());
+    assertEquals(5L, readCheckpoint().getOffsets().get("b").longValue());
+  }
+
+  @Test
+  public void testOffsetsInFlightHoldBackCheckpoint() throws IOException {
+    IngestCheckpointTracker tracker = new IngestCheckpointTracker(region.getRegionFileSystem());
+    Put five = put(0, "a", 5);
+    Put six = put(1, "a", 6);
+    Put seven = put(2, "a", 7);
+    assertTrue(tracker.accept(five, true));
+    assertTrue(tracker.accept(six, true));
+    assertTrue(tracker.accept(seven, true));
+    // six and seven are applied before five, and seven fails
+    tracker.record(six);
+    tracker.release(seven);
+    tracker.prepareFlush();
+    tracker.commitFlush(1);
+    assertEquals(4L, tracker.getDurableOffsets().get("a").longValue());
+
+    tracker.record(five);
+    tracker.prepareFlush();
+    tracker.commitFlush(2);
+    assertEquals(6L, tracker.getDurableOffsets().get("a").longValue());
+    try {
+      tracker.accept(put(3, "a", 6), true);
+      fail("Offset 6 is already checkpointed");
+    } catch (FailedSanityCheckException e) {
+      // expected
+    }
+  }
+}
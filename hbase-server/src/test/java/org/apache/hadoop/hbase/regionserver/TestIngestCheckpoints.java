@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.TableNameTestRule;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestIngestCheckpoints {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestIngestCheckpoints.class);
+
+  private static final HBaseTestingUtil TEST_UTIL = new HBaseTestingUtil();
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final String SOURCE = "source";
+
+  @Rule
+  public TableNameTestRule name = new TableNameTestRule();
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    TEST_UTIL.startMiniCluster(1);
+  }
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    TEST_UTIL.shutdownMiniCluster();
+  }
+
+  private static Put put(int row, long offset) {
+    Put put = new Put(Bytes.toBytes(row)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(offset));
+    put.setAttribute(IngestCheckpointTracker.SOURCE_ATTRIBUTE, Bytes.toBytes(SOURCE));
+    put.setAttribute(IngestCheckpointTracker.OFFSET_ATTRIBUTE, Bytes.toBytes(offset));
+    return put;
+  }
+
+  private static long getOffset(Map<String, Long> offsets) {
+    return offsets.get(SOURCE).longValue();
+  }
+
+  @Test
+  public void testCheckpointsOfSplitRegions() throws Exception {
+    TableName tableName = name.getTableName();
+    Admin admin = TEST_UTIL.getAdmin();
+    admin.createTable(TableDescriptorBuilder.newBuilder(tableName)
+      .setValue(IngestCheckpointTracker.INGEST_CHECKPOINT_KEY, "true")
+      .setColumnFamily(ColumnFamilyDescriptorBuilder.of(FAMILY)).build());
+    assertTrue(admin.getIngestCheckpoints(tableName).isEmpty());
+    try (Table table = TEST_UTIL.getConnection().getTable(tableName)) {
+      for (int i = 1; i <= 10; i++) {
+        table.put(put(i, i));
+      }
+    }
+    // The region tells it got edits of the source, none of them durable yet
+    Map<String, Map<String, Long>> checkpoints = admin.getIngestCheckpoints(tableName);
+    assertEquals(1, checkpoints.size());
+    assertEquals(IngestCheckpoint.NO_OFFSET, getOffset(checkpoints.values().iterator().next()));
+
+    admin.flush(tableName);
+    checkpoints = admin.getIngestCheckpoints(tableName);
+    assertEquals(10L, getOffset(checkpoints.values().iterator().next()));
+
+    // The daughters start from the checkpoint of their parent
+    admin.split(tableName, Bytes.toBytes(5));
+    TEST_UTIL.waitFor(30000, () -> admin.getIngestCheckpoints(tableName).size() == 2);
+    for (Map<String, Long> offsets : admin.getIngestCheckpoints(tableName).values()) {
+      assertEquals(10L, getOffset(offsets));
+    }
+  }
+}
@@ -26,8 +26,10 @@ import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicReference;
 import org.apache.hadoop.conf.Configuration;
@@ -284,6 +286,49 @@ public class TestMemStoreChunkPool {
     }
   }
 
+  @Test
+  public void testPutbackChunksToStripes() {
+    final int maxCount = 10;
+    final int chunkSize = 40;
+    final int valSize = 7;
+    ChunkCreator oldCreator = ChunkCreator.getInstance();
+    ChunkCreator newCreator = new ChunkCreator(chunkSize, false, 400, 1, 0.5f, null, 0, 4);
+    ChunkCreator.instance = newCreator;
+    try {
+      final KeyValue kv =
+        new KeyValue(Bytes.toBytes("r"), Bytes.toBytes("f"), Bytes.toBytes("q"), new byte[valSize]);
+      MemStoreLABImpl mslab = new MemStoreLABImpl(conf);
+      // Every cell takes a chunk of its own, and the last one is allocated out of the pool
+      for (int i = 0; i <= maxCount; i++) {
+        mslab.copyCellInto(kv);
+      }
+      assertEquals(0, newCreator.getPoolSize());
+      assertEquals(1, newCreator.getDataChunkPoolMissCount());
+      assertEquals(maxCount, newCreator.getChunkAllocRetryCount());
+      Set<Integer> chunkIds = new HashSet<>(mslab.chunks);
+      // The pooled chunks all come back, part of them to the stripes and the rest to the queue
+      mslab.close();
+      assertEquals(maxCount, newCreator.getPoolSize());
+      assertEquals(maxCount, mslab.getNumOfChunksReturnedToPool(chunkIds).intValue());
+      assertEquals(0, newCreator.getDataChunkPoolStripeHitCount());
+      // The next chunk of this thread comes from its stripe, which was refilled first
+      mslab = new MemStoreLABImpl(conf);
+      mslab.copyCellInto(kv);
+      assertEquals(1, newCreator.getDataChunkPoolStripeHitCount());
+      // Once the queue is drained, the chunks in the stripes of other threads are used
+      for (int i = 1; i < maxCount; i++) {
+        mslab.copyCellInto(kv);
+      }
+      assertEquals(0, newCreator.getPoolSize());
+      assertEquals(1, newCreator.getDataChunkPoolMissCount());
+      assertEquals(1, newCreator.getDataChunkPoolStripeHitCount());
+      mslab.close();
+      assertEquals(maxCount, newCreator.getPoolSize());
+    } finally {
+      ChunkCreator.instance = oldCreator;
+    }
+  }
+
   // This test is for HBASE-26142, which throws NPE when indexChunksPool is null.
   @Test
   public void testNoIndexChunksPoolOrNoDataChunksPool() throws Exception {
@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.hbase.regionserver;
 
+import static org.junit.Assert.assertTrue;
+
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.CompatibilityFactory;
 import org.apache.hadoop.hbase.HBaseClassTestRule;
@@ -62,6 +64,8 @@ public class TestMetricsRegion {
     HELPER.assertGauge(
       "namespace_TestNS_table_MetricsRegionWrapperStub_region_DEADBEEF001_metric_memstoreSize", 103,
       agg);
+    HELPER.assertGauge("namespace_TestNS_table_MetricsRegionWrapperStub_region_DEADBEEF001"
+      + "_metric_memStoreIndexOffHeapSize", 130, agg);
     HELPER.assertCounter(
       "namespace_TestNS_table_MetricsRegionWrapperStub_region_DEADBEEF001_metric_cpRequestCount",
       108, agg);
@@ -71,6 +75,10 @@ public class TestMetricsRegion {
     HELPER.assertCounter(
       "namespace_TestNS_table_MetricsRegionWrapperStub_region_DEADBEEF001_metric_replicaid", 0,
       agg);
+    HELPER.assertCounter("namespace_TestNS_table_MetricsRegionWrapperStub_region_DEADBEEF001"
+      + "_store_info_metric_flushWriteTime", 131, agg);
+    HELPER.assertCounter("namespace_TestNS_table_MetricsRegionWrapperStub_region_DEADBEEF001"
+      + "_store_info_metric_flushCommitTime", 132, agg);
     mr.close();
 
     // test region with replica id > 0
@@ -101,4 +109,19 @@ public class TestMetricsRegion {
       + "_metric_maxFlushQueueSize", 6, agg);
     mr.close();
   }
+
+  @Test
+  public void testRowLockWait() {
+    MetricsRegion mr = new MetricsRegion(new MetricsRegionWrapperStub(), new Configuration());
+    MetricsRegionAggregateSource agg = mr.getSource().getAggregateSource();
+    mr.updateRowLockWait(100);
+    mr.updateRowLockWait(250);
+    HELPER.assertCounter("namespace_TestNS_table_MetricsRegionWrapperStub_region_DEADBEEF001"
+      + "_metric_rowLockWaitCount", 2, agg);
+    HELPER.assertCounter("namespace_TestNS_table_MetricsRegionWrapperStub_region_DEADBEEF001"
+      + "_metric_rowLockWaitTimeTotal", 350, agg);
+    // The wait times go to a histogram shared by all the regions
+    assertTrue(HELPER.getCounter(MetricsRegionSource.ROW_LOCK_WAIT_TIME + "_num_ops", agg) >= 2);
+    mr.close();
+  }
 }
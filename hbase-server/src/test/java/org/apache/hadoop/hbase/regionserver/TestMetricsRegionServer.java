@@ -212,6 +212,20 @@ public class TestMetricsRegionServer {
     HELPER.assertCounter("flushedOutputBytes", 33, serverSource);
   }
 
+  @Test
+  public void testMiniBatch() {
+    rsm.updateMiniBatch(1000, 2000, 3000, 4000, false);
+    HELPER.assertCounter("miniBatchLockTime_num_ops", 1, serverSource);
+    HELPER.assertCounter("miniBatchPrepareTime_num_ops", 1, serverSource);
+    HELPER.assertCounter("miniBatchWalTime_num_ops", 1, serverSource);
+    HELPER.assertCounter("miniBatchMemStoreTime_num_ops", 1, serverSource);
+    HELPER.assertCounter("pipelinedMiniBatchCount", 0, serverSource);
+
+    rsm.updateMiniBatch(1000, 2000, 3000, 4000, true);
+    HELPER.assertCounter("miniBatchWalTime_num_ops", 2, serverSource);
+    HELPER.assertCounter("pipelinedMiniBatchCount", 1, serverSource);
+  }
+
   @Test
   public void testCompaction() {
     rsm.updateCompaction(null, false, 1, 2, 3, 4, 5);
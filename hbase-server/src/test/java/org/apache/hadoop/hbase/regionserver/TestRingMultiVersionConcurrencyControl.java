@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestRingMultiVersionConcurrencyControl {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestRingMultiVersionConcurrencyControl.class);
+
+  @Test
+  public void testOutOfOrderCompletion() {
+    RingMultiVersionConcurrencyControl mvcc = new RingMultiVersionConcurrencyControl("test", 4);
+    List<Long> completed = new ArrayList<>();
+    List<MultiVersionConcurrencyControl.WriteEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      MultiVersionConcurrencyControl.WriteEntry e = mvcc.begin();
+      e.attachCompletionAction(() -> completed.add(e.getWriteNumber()));
+      entries.add(e);
+    }
+    assertEquals(3, mvcc.getWritePoint());
+    assertFalse(mvcc.complete(entries.get(2)));
+    assertFalse(mvcc.complete(entries.get(1)));
+    assertEquals(0, mvcc.getReadPoint());
+    assertTrue(completed.isEmpty());
+    // Completing the head retires the whole batch, in order
+    assertTrue(mvcc.complete(entries.get(0)));
+    assertEquals(3, mvcc.getReadPoint());
+    assertEquals(3, completed.size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(i + 1, completed.get(i).longValue());
+    }
+  }
+
+  @Test
+  public void testAdvanceTo() {
+    RingMultiVersionConcurrencyControl mvcc = new RingMultiVersionConcurrencyControl("test", 4);
+    mvcc.advanceTo(100);
+    assertEquals(100, mvcc.getReadPoint());
+    assertEquals(100, mvcc.getWritePoint());
+    MultiVersionConcurrencyControl.WriteEntry e = mvcc.begin();
+    assertEquals(101, e.getWriteNumber());
+    mvcc.completeAndWait(e);
+    assertEquals(101, mvcc.getReadPoint());
+    // Never goes back
+    mvcc.advanceTo(50);
+    assertEquals(101, mvcc.getWritePoint());
+  }
+
+  @Test
+  public void testWrapAround() throws Exception {
+    // Many more writers than ring slots, so that writes wait for the ring to have room
+    RingMultiVersionConcurrencyControl mvcc = new RingMultiVersionConcurrencyControl("test", 8);
+    AtomicBoolean outOfOrder = new AtomicBoolean();
+    long[] lastCompleted = new long[1];
+    int writers = 32;
+    int writesPerWriter = 2000;
+    ExecutorService pool = Executors.newFixedThreadPool(writers);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < writers; i++) {
+        futures.add(pool.submit(() -> {
+          for (int j = 0; j < writesPerWriter; j++) {
+            MultiVersionConcurrencyControl.WriteEntry e =
+              j % 2 == 0 ? mvcc.begin() : mvcc.begin(() -> {
+              });
+            e.attachCompletionAction(() -> {
+              // Completion actions run one at a time, in write number order
+              if (lastCompleted[0] + 1 != e.getWriteNumber()) {
+                outOfOrder.set(true);
+              }
+              lastCompleted[0] = e.getWriteNumber();
+            });
+            if (ThreadLocalRandom.current().nextInt(16) == 0) {
+              Thread.yield();
+            }
+            mvcc.completeAndWait(e);
+            assertTrue(mvcc.getReadPoint() >= e.getWriteNumber());
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+    assertFalse(outOfOrder.get());
+    assertEquals((long) writers * writesPerWriter, mvcc.getReadPoint());
+    assertEquals(mvcc.getWritePoint(), mvcc.getReadPoint());
+  }
+
+  @Test
+  public void testSelectedPerTable() throws Exception {
+    HBaseTestingUtil util = new HBaseTestingUtil();
+    byte[] family = Bytes.toBytes("f");
+    TableDescriptor desc = TableDescriptorBuilder.newBuilder(TableName.valueOf("testRingMvcc"))
+      .setValue(RingMultiVersionConcurrencyControl.RING_ENABLED_KEY, "true")
+      .setColumnFamily(ColumnFamilyDescriptorBuilder.of(family)).build();
+    HRegion region =
+      util.createLocalHRegion(desc, HConstants.EMPTY_START_ROW, HConstants.EMPTY_END_ROW);
+    try {
+      assertTrue(region.getMVCC() instanceof RingMultiVersionConcurrencyControl);
+      long readPoint = region.getMVCC().getReadPoint();
+      region.put(new Put(Bytes.toBytes("row")).addColumn(family, family, family));
+      assertTrue(region.getMVCC().getReadPoint() > readPoint);
+      assertEquals(region.getMVCC().getWritePoint(), region.getMVCC().getReadPoint());
+    } finally {
+      HBaseTestingUtil.closeRegionAndWAL(region);
+    }
+  }
+}
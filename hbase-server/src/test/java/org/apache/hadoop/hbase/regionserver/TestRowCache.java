@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestRowCache {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestRowCache.class);
+
+  private static final HBaseTestingUtil TEST_UTIL = new HBaseTestingUtil();
+  private static final byte[] CACHED = Bytes.toBytes("cached");
+  private static final byte[] UNCACHED = Bytes.toBytes("uncached");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final byte[] ROW = Bytes.toBytes("row");
+
+  @Rule
+  public TestName name = new TestName();
+
+  private HRegion region;
+
+  @Before
+  public void setUp() throws IOException {
+    TableDescriptor desc = TableDescriptorBuilder
+      .newBuilder(TableName.valueOf(name.getMethodName()))
+      .setColumnFamily(
+        ColumnFamilyDescriptorBuilder.newBuilder(CACHED).setRowCacheSize(1024 * 1024).build())
+      .setColumnFamily(ColumnFamilyDescriptorBuilder.of(UNCACHED)).build();
+    region = TEST_UTIL.createLocalHRegion(desc, HConstants.EMPTY_START_ROW,
+      HConstants.EMPTY_END_ROW);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    HBaseTestingUtil.closeRegionAndWAL(region);
+  }
+
+  private RowCache getRowCache() {
+    return region.getStore(CACHED).getRowCache();
+  }
+
+  private long getValue(byte[] family) throws IOException {
+    Result result = region.get(new Get(ROW).addFamily(family));
+    return Bytes.toLong(CellUtil.cloneValue(result.getColumnLatestCell(family, QUALIFIER)));
+  }
+
+  private void put(long value) throws IOException {
+    region.put(new Put(ROW).addColumn(CACHED, QUALIFIER, Bytes.toBytes(value))
+      .addColumn(UNCACHED, QUALIFIER, Bytes.toBytes(value)));
+  }
+
+  @Test
+  public void testOnlyConfiguredFamilyIsCached() throws IOException {
+    assertNotNull(getRowCache());
+    assertNull(region.getStore(UNCACHED).getRowCache());
+  }
+
+  @Test
+  public void testHitAndInvalidateOnWrite() throws IOException {
+    RowCache rowCache = getRowCache();
+    put(1);
+    assertEquals(1, getValue(CACHED));
+    assertEquals(0, rowCache.getHitCount());
+    assertEquals(1, rowCache.getRowCount());
+    assertEquals(1, getValue(CACHED));
+    assertEquals(1, rowCache.getHitCount());
+
+    put(2);
+    assertEquals(0, rowCache.getRowCount());
+    assertEquals(2, getValue(CACHED));
+    assertEquals(2, getValue(CACHED));
+    assertEquals(2, rowCache.getHitCount());
+
+    region.increment(new Increment(ROW).addColumn(CACHED, QUALIFIER, 3));
+    assertEquals(5, getValue(CACHED));
+
+    region.delete(new Delete(ROW).addFamily(CACHED));
+    assertTrue(region.get(new Get(ROW).addFamily(CACHED)).isEmpty());
+    // The absence of the row is cached too
+    long hits = rowCache.getHitCount();
+    assertTrue(region.get(new Get(ROW).addFamily(CACHED)).isEmpty());
+    assertEquals(hits + 1, rowCache.getHitCount());
+  }
+
+  @Test
+  public void testSurvivesFlush() throws IOException {
+    RowCache rowCache = getRowCache();
+    put(1);
+    assertEquals(1, getValue(CACHED));
+    region.flush(true);
+    assertEquals(1, getValue(CACHED));
+    assertEquals(1, rowCache.getHitCount());
+  }
+
+  @Test
+  public void testNonCacheableGets() throws IOException {
+    RowCache rowCache = getRowCache();
+    put(1);
+    region.get(new Get(ROW));
+    region.get(new Get(ROW).addColumn(CACHED, QUALIFIER));
+    region.get(new Get(ROW).addFamily(CACHED).readVersions(2));
+    region.get(new Get(ROW).addFamily(CACHED).setTimeRange(0, 10));
+    assertEquals(0, rowCache.getRowCount());
+    assertEquals(0, rowCache.getHitCount() + rowCache.getMissCount());
+  }
+
+  @Test
+  public void testInvalidatedWhilePopulating() throws IOException {
+    RowCache rowCache = getRowCache();
+    Object token = rowCache.startPopulating(ROW);
+    assertNotNull(token);
+    // A concurrent reader does not populate the row
+    assertNull(rowCache.startPopulating(ROW));
+    rowCache.invalidate(ROW);
+    rowCache.populate(ROW, token, Arrays.asList());
+    assertNull(rowCache.get(ROW));
+    assertEquals(0, rowCache.getRowCount());
+
+    token = rowCache.startPopulating(ROW);
+    rowCache.populate(ROW, token, Arrays.asList());
+    assertNotNull(rowCache.get(ROW));
+    assertFalse(rowCache.get(ROW).iterator().hasNext());
+  }
+}
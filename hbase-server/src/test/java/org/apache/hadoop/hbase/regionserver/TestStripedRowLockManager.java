@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HBaseTestingUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.regionserver.Region.RowLock;
+import org.apache.hadoop.hbase.regionserver.RowLockManager.ManagedRowLock;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestStripedRowLockManager {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestStripedRowLockManager.class);
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+
+  private static StripedRowLockManager createManager(int stripes) {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setInt(StripedRowLockManager.STRIPES_KEY, stripes);
+    return new StripedRowLockManager(conf);
+  }
+
+  private static ManagedRowLock lock(ManagedRowLock rowLock) {
+    assertTrue(rowLock.getLock().tryLock());
+    rowLock.locked(Thread.currentThread());
+    return rowLock;
+  }
+
+  @Test
+  public void testSameRowSharesLock() {
+    StripedRowLockManager manager = createManager(16);
+    byte[] row = Bytes.toBytes("row");
+    ManagedRowLock first = lock(manager.getRowLock(row, true));
+    // An equal row in another array
+    ManagedRowLock second = lock(manager.getRowLock(Bytes.toBytes("row"), true));
+    assertSame(first, second);
+    assertEquals(1, manager.getLockedRows().size());
+    first.release();
+    second.release();
+    assertTrue(manager.getLockedRows().isEmpty());
+  }
+
+  @Test
+  public void testCollision() throws Exception {
+    // All the rows collide with a single stripe
+    StripedRowLockManager manager = createManager(1);
+    byte[] row1 = Bytes.toBytes("row1");
+    byte[] row2 = Bytes.toBytes("row2");
+    ManagedRowLock lock1 = lock(manager.getRowLock(row1, false));
+    ManagedRowLock lock2 = lock(manager.getRowLock(row2, false));
+    assertNotSame(lock1.getLock(), lock2.getLock());
+    assertEquals(2, manager.getLockedRows().size());
+
+    // The stripe is free, but row2 must keep its own lock while it is held
+    lock1.release();
+    ManagedRowLock again = manager.getRowLock(row2, false);
+    assertSame(lock2.getLock(), again.getLock());
+    assertFalse(CompletableFuture.supplyAsync(() -> again.getLock().tryLock()).get());
+    again.abort();
+    lock2.release();
+    assertTrue(manager.getLockedRows().isEmpty());
+
+    // Now row2 gets the write lock of the stripe, which row1 had
+    ManagedRowLock stripe = lock(manager.getRowLock(row2, false));
+    assertSame(lock1, stripe);
+    stripe.release();
+    assertTrue(manager.getLockedRows().isEmpty());
+  }
+
+  @Test
+  public void testWriteLockIsExclusive() throws Exception {
+    StripedRowLockManager manager = createManager(16);
+    byte[] row = Bytes.toBytes("row");
+    ManagedRowLock writeLock = lock(manager.getRowLock(row, false));
+    CompletableFuture<Boolean> other = CompletableFuture.supplyAsync(() -> {
+      ManagedRowLock readLock = manager.getRowLock(row, true);
+      try {
+        if (!readLock.getLock().tryLock(30, TimeUnit.SECONDS)) {
+          readLock.abort();
+          return false;
+        }
+      } catch (InterruptedException e) {
+        readLock.abort();
+        return false;
+      }
+      readLock.release();
+      return true;
+    });
+    Thread.sleep(100);
+    assertFalse(other.isDone());
+    writeLock.release();
+    assertTrue(other.get());
+    assertTrue(manager.getLockedRows().isEmpty());
+  }
+
+  @Test
+  public void testRegion() throws IOException {
+    TableDescriptor desc = TableDescriptorBuilder.newBuilder(TableName.valueOf("testRegion"))
+      .setValue(RowLockManager.ROW_LOCK_MANAGER_CLASS_KEY, StripedRowLockManager.class.getName())
+      .setValue(StripedRowLockManager.STRIPES_KEY, "2")
+      .setColumnFamily(ColumnFamilyDescriptorBuilder.of(FAMILY)).build();
+    HRegion region = new HBaseTestingUtil().createLocalHRegion(desc, HConstants.EMPTY_START_ROW,
+      HConstants.EMPTY_END_ROW);
+    try {
+      // The same row several times, and more rows than stripes, atomically and not
+      Mutation[] puts = new Mutation[8];
+      for (int i = 0; i < puts.length; i++) {
+        puts[i] = new Put(Bytes.toBytes("row" + i / 2)).addColumn(FAMILY, Bytes.toBytes(i),
+          Bytes.toBytes(i));
+      }
+      region.batchMutate(puts);
+      region.batchMutate(puts, true, HConstants.NO_NONCE, HConstants.NO_NONCE);
+      region.mutateRowsWithLocks(Arrays.asList(puts).subList(0, 6),
+        Arrays.asList(Bytes.toBytes("row0"), Bytes.toBytes("row1"), Bytes.toBytes("row2")),
+        HConstants.NO_NONCE, HConstants.NO_NONCE);
+      assertTrue(region.getLockedRows().isEmpty());
+      assertEquals(2, region.get(new Get(Bytes.toBytes("row3"))).size());
+
+      RowLock rowLock = region.getRowLock(Bytes.toBytes("row0"), false);
+      assertEquals(1, region.getLockedRows().size());
+      rowLock.release();
+      assertTrue(region.getLockedRows().isEmpty());
+    } finally {
+      HBaseTestingUtil.closeRegionAndWAL(region);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RegionServerTests.class, SmallTests.class })
+public class TestSyncGroupingController {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestSyncGroupingController.class);
+
+  private static final long TARGET_NS = 10_000_000L;
+
+  private static final long MAX_GROUP_BYTES = 64 * 1024;
+
+  private static final long STEP = MAX_GROUP_BYTES / SyncGroupingController.STEPS;
+
+  private static void fillWindow(SyncGroupingController controller, long waitNs) {
+    for (int i = 0; i < SyncGroupingController.WINDOW_SIZE; i++) {
+      controller.recordWait(waitNs);
+    }
+  }
+
+  @Test
+  public void testGrowUnderTarget() {
+    SyncGroupingController controller = new SyncGroupingController(TARGET_NS, MAX_GROUP_BYTES);
+    // no grouping until we know the target is met
+    assertEquals(0, controller.getGroupBytes());
+    assertFalse(controller.shouldDefer(1));
+    fillWindow(controller, TARGET_NS / 4);
+    assertEquals(STEP, controller.getGroupBytes());
+    assertTrue(controller.shouldDefer(STEP - 1));
+    assertFalse(controller.shouldDefer(STEP));
+    for (int i = 0; i < 2 * SyncGroupingController.STEPS; i++) {
+      fillWindow(controller, TARGET_NS / 4);
+    }
+    assertEquals(MAX_GROUP_BYTES, controller.getGroupBytes());
+  }
+
+  @Test
+  public void testShrinkOverTarget() {
+    SyncGroupingController controller = new SyncGroupingController(TARGET_NS, MAX_GROUP_BYTES);
+    for (int i = 0; i < SyncGroupingController.STEPS; i++) {
+      fillWindow(controller, TARGET_NS / 4);
+    }
+    assertEquals(MAX_GROUP_BYTES, controller.getGroupBytes());
+    // between half the target and the target nothing changes
+    fillWindow(controller, TARGET_NS * 3 / 4);
+    assertEquals(MAX_GROUP_BYTES, controller.getGroupBytes());
+    // a few slow syncs which stay under the p99 do not matter either
+    for (int i = 0; i < SyncGroupingController.WINDOW_SIZE; i++) {
+      controller.recordWait(i == 0 ? TARGET_NS * 10 : TARGET_NS / 4);
+    }
+    assertEquals(MAX_GROUP_BYTES, controller.getGroupBytes());
+    fillWindow(controller, TARGET_NS * 2);
+    assertEquals(MAX_GROUP_BYTES / 2, controller.getGroupBytes());
+    for (int i = 0; i < SyncGroupingController.STEPS; i++) {
+      fillWindow(controller, TARGET_NS * 2);
+    }
+    // back to syncing as soon as asked
+    assertEquals(0, controller.getGroupBytes());
+    assertFalse(controller.shouldDefer(1));
+  }
+}
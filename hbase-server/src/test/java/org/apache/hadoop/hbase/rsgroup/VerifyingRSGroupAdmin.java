@@ -954,4 +954,10 @@ public class VerifyingRSGroupAdmin implements Admin, Closeable {
   public void flushMasterStore() throws IOException {
     admin.flushMasterStore();
   }
+
+  @Override
+  public Map<String, Map<String, Long>> getIngestCheckpoints(TableName tableName)
+    throws IOException {
+    return admin.getIngestCheckpoints(tableName);
+  }
 }
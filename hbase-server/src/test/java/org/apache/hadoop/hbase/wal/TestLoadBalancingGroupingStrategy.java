@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import static org.apache.hadoop.hbase.wal.BoundedGroupingStrategy.NUM_REGION_GROUPS;
+import static org.apache.hadoop.hbase.wal.RegionGroupingProvider.REGION_GROUPING_STRATEGY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RegionServerTests.class, SmallTests.class })
+public class TestLoadBalancingGroupingStrategy {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestLoadBalancingGroupingStrategy.class);
+
+  private static final TableName TABLE = TableName.valueOf("test");
+
+  private LoadBalancingGroupingStrategy strategy;
+
+  @Before
+  public void setUp() {
+    Configuration conf = new Configuration();
+    conf.setInt(NUM_REGION_GROUPS, 2);
+    strategy = new LoadBalancingGroupingStrategy();
+    strategy.init(conf, "test");
+  }
+
+  private String group(String region) {
+    return strategy.group(Bytes.toBytes(region), null);
+  }
+
+  private static void append(WALActionsListener listener, String region, long len)
+    throws IOException {
+    listener.postAppend(len, 0, new WALKeyImpl(Bytes.toBytes(region), TABLE, 0), null);
+  }
+
+  @Test
+  public void testIsEnabled() {
+    Configuration conf = new Configuration();
+    assertFalse(LoadBalancingGroupingStrategy.isEnabled(conf));
+    conf.set(REGION_GROUPING_STRATEGY, RegionGroupingProvider.Strategies.bounded.name());
+    assertFalse(LoadBalancingGroupingStrategy.isEnabled(conf));
+    conf.set(REGION_GROUPING_STRATEGY, RegionGroupingProvider.Strategies.balanced.name());
+    assertTrue(LoadBalancingGroupingStrategy.isEnabled(conf));
+  }
+
+  @Test
+  public void testMoveHotRegion() throws IOException {
+    // round robin, like the bounded strategy
+    String hot = group("r1");
+    String cold = group("r2");
+    assertNotEquals(hot, cold);
+    assertEquals(hot, group("r3"));
+    assertEquals(cold, group("r4"));
+    WALActionsListener hotListener = strategy.getWALActionsListener(hot);
+    WALActionsListener coldListener = strategy.getWALActionsListener(cold);
+
+    append(hotListener, "r1", 600);
+    append(hotListener, "r3", 300);
+    append(coldListener, "r2", 50);
+    append(coldListener, "r4", 50);
+    hotListener.postSync(1000000, 1);
+    coldListener.postSync(100000, 1);
+    strategy.rebalance();
+    assertEquals(180, strategy.getLastSkewPercent());
+    // r1 narrows the gap, and then r3 would not
+    assertEquals(cold, group("r1"));
+    assertEquals(hot, group("r3"));
+    assertEquals(cold, group("r2"));
+    assertEquals(cold, group("r4"));
+  }
+
+  @Test
+  public void testNoMoveWhenSyncsAreFast() throws IOException {
+    String busy = group("r1");
+    String idle = group("r2");
+    WALActionsListener busyListener = strategy.getWALActionsListener(busy);
+    WALActionsListener idleListener = strategy.getWALActionsListener(idle);
+
+    append(busyListener, "r1", 900);
+    append(idleListener, "r2", 100);
+    // the busy group still syncs faster than the idle one
+    busyListener.postSync(100000, 1);
+    idleListener.postSync(1000000, 1);
+    strategy.rebalance();
+    assertEquals(180, strategy.getLastSkewPercent());
+    assertEquals(busy, group("r1"));
+
+    // a balanced load moves nothing either
+    append(busyListener, "r1", 500);
+    append(idleListener, "r2", 500);
+    strategy.rebalance();
+    assertEquals(100, strategy.getLastSkewPercent());
+    assertEquals(busy, group("r1"));
+  }
+}
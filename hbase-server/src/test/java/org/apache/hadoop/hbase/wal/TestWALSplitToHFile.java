@@ -25,6 +25,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.io.IOException;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
@@ -70,6 +71,7 @@ import org.apache.hadoop.hbase.util.CommonFSUtils;
 import org.apache.hadoop.hbase.util.EnvironmentEdge;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.hadoop.hbase.util.FSTableDescriptors;
+import org.apache.hadoop.hbase.util.FSUtils;
 import org.apache.hadoop.hbase.util.Pair;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -370,6 +372,52 @@ public class TestWALSplitToHFile {
     }
   }
 
+  @Test
+  public void testSpillToLocalDisk() throws Exception {
+    Pair<TableDescriptor, RegionInfo> pair = setupTableAndRegion();
+    TableDescriptor td = pair.getFirst();
+    RegionInfo ri = pair.getSecond();
+
+    WAL wal = createWAL(this.conf, rootDir, logName);
+    HRegion region = HRegion.openHRegion(this.conf, this.fs, rootDir, ri, td, wal);
+    for (int i = 0; i < countPerFamily; i++) {
+      for (ColumnFamilyDescriptor cfd : td.getColumnFamilies()) {
+        region.put(new Put(Bytes.toBytes(i)).addColumn(cfd.getName(), QUALIFIER, VALUE1));
+      }
+    }
+    // Now close the region without flush
+    region.close(true);
+    wal.shutdown();
+    // split the log, with the buffer of the region written out after every edit
+    File spillDir = new File(UTIL.getDataTestDir(TEST_NAME.getMethodName()).toString());
+    Configuration splitConf = HBaseConfiguration.create(this.conf);
+    splitConf.setBoolean(BoundedRecoveredHFilesOutputSink.WAL_SPLIT_TO_HFILE_SPILL, true);
+    splitConf.set(BoundedRecoveredHFilesOutputSink.WAL_SPLIT_TO_HFILE_SPILL_DIR,
+      spillDir.getPath());
+    splitConf.setLong(WALSplitter.SPLIT_WAL_BUFFER_SIZE, 1);
+    WALSplitter.split(rootDir, logDir, oldLogDir, FileSystem.get(splitConf), splitConf, wals);
+
+    // one recovered hfile per family, and the spilled runs are gone
+    Path regionDir = FSUtils.getRegionDirFromRootDir(rootDir, ri);
+    for (ColumnFamilyDescriptor cfd : td.getColumnFamilies()) {
+      assertEquals(1,
+        WALSplitUtil.getRecoveredHFiles(this.fs, regionDir, cfd.getNameAsString()).length);
+    }
+    File[] leftOver = spillDir.listFiles();
+    assertNotNull(leftOver);
+    assertEquals(0, leftOver.length);
+
+    // reopen the region
+    WAL wal2 = createWAL(this.conf, rootDir, logName);
+    HRegion region2 = HRegion.openHRegion(conf, this.fs, rootDir, ri, td, wal2);
+    for (int i = 0; i < countPerFamily; i++) {
+      for (ColumnFamilyDescriptor cfd : td.getColumnFamilies()) {
+        Result result = region2.get(new Get(Bytes.toBytes(i)).addFamily(cfd.getName()));
+        assertTrue(Bytes.equals(VALUE1, result.getValue(cfd.getName(), QUALIFIER)));
+      }
+    }
+  }
+
   /**
    * Test writing edits into an HRegion, closing it, splitting logs, opening Region again. Verify
    * seqids.
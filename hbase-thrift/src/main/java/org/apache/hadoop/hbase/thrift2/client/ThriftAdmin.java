@@ -1329,4 +1329,9 @@ public class ThriftAdmin implements Admin {
   public void flushMasterStore() throws IOException {
     throw new NotImplementedException("flushMasterStore not supported in ThriftAdmin");
   }
+
+  @Override
+  public Map<String, Map<String, Long>> getIngestCheckpoints(TableName tableName) {
+    throw new NotImplementedException("getIngestCheckpoints not supported in ThriftAdmin");
+  }
 }